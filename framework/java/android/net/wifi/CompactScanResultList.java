@@ -0,0 +1,386 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.net.wifi;
+
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+import android.net.wifi.ScanResult.InformationElement;
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parcelable list of {@link ScanResult}s, with a more compact encoding than a list of
+ * individually parceled scan results.
+ *
+ * The fixed width fields of all the scan results are written column by column, the strings are
+ * deduplicated, and the SSIDs of all the scan results are packed into a single byte array. The
+ * information elements are created as soon as the list is unparceled, since they are exposed
+ * through a public field: their bytes are written one element at a time, so that each one is
+ * read straight into its own array, without going through an intermediate buffer.
+ *
+ * @hide
+ */
+public final class CompactScanResultList implements Parcelable {
+    // String fields of each scan result, in the order they are written in.
+    private static final int STRING_SSID = 0;
+    private static final int STRING_BSSID = 1;
+    private static final int STRING_CAPABILITIES = 2;
+    private static final int STRING_VENUE_NAME = 3;
+    private static final int STRING_OPERATOR_FRIENDLY_NAME = 4;
+    private static final int STRING_IFACE_NAME = 5;
+    private static final int NUM_STRINGS = 6;
+
+    // Index of a null string, or length of a null array.
+    private static final int NULL = -1;
+
+    @NonNull
+    private final List<ScanResult> mScanResults;
+
+    /** Create a list holding the provided scan results. */
+    public CompactScanResultList(@NonNull List<ScanResult> scanResults) {
+        mScanResults = scanResults;
+    }
+
+    /** Get the scan results of this list. */
+    @NonNull
+    public List<ScanResult> getList() {
+        return mScanResults;
+    }
+
+    /** Implement the Parcelable interface */
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    /** Implement the Parcelable interface */
+    @Override
+    public void writeToParcel(@NonNull Parcel dest, int flags) {
+        final int n = mScanResults.size();
+        dest.writeInt(n);
+        if (n == 0) return;
+
+        List<String> strings = new ArrayList<>();
+        Map<String, Integer> stringIndices = new HashMap<>();
+        int[] stringRefs = new int[n * NUM_STRINGS];
+        long[] hessids = new long[n];
+        long[] timestamps = new long[n];
+        long[] seens = new long[n];
+        long[] resultFlags = new long[n];
+        int[] anqpDomainIds = new int[n];
+        int[] levels = new int[n];
+        int[] frequencies = new int[n];
+        int[] distancesCm = new int[n];
+        int[] distancesSdCm = new int[n];
+        int[] channelWidths = new int[n];
+        int[] centerFreqs0 = new int[n];
+        int[] centerFreqs1 = new int[n];
+        int[] wifiStandards = new int[n];
+        int[] numUsages = new int[n];
+        boolean[] untrusteds = new boolean[n];
+        int[] ssidLengths = new int[n];
+        int[] ieCounts = new int[n];
+        int numIes = 0;
+        for (int i = 0; i < n; i++) {
+            InformationElement[] ies = mScanResults.get(i).informationElements;
+            if (ies != null) numIes += ies.length;
+        }
+        int[] ieIds = new int[numIes];
+        int[] ieIdExts = new int[numIes];
+        ByteArrayOutputStream blob = new ByteArrayOutputStream();
+
+        int ie = 0;
+        for (int i = 0; i < n; i++) {
+            ScanResult result = mScanResults.get(i);
+            int base = i * NUM_STRINGS;
+            stringRefs[base + STRING_SSID] = indexString(result.SSID, strings, stringIndices);
+            stringRefs[base + STRING_BSSID] = indexString(result.BSSID, strings, stringIndices);
+            stringRefs[base + STRING_CAPABILITIES] =
+                    indexString(result.capabilities, strings, stringIndices);
+            stringRefs[base + STRING_VENUE_NAME] = indexString(
+                    result.venueName != null ? result.venueName.toString() : "",
+                    strings, stringIndices);
+            stringRefs[base + STRING_OPERATOR_FRIENDLY_NAME] = indexString(
+                    result.operatorFriendlyName != null
+                            ? result.operatorFriendlyName.toString() : "",
+                    strings, stringIndices);
+            stringRefs[base + STRING_IFACE_NAME] = indexString(
+                    result.ifaceName != null ? result.ifaceName : "", strings, stringIndices);
+            hessids[i] = result.hessid;
+            timestamps[i] = result.timestamp;
+            seens[i] = result.seen;
+            resultFlags[i] = result.flags;
+            anqpDomainIds[i] = result.anqpDomainId;
+            levels[i] = result.level;
+            frequencies[i] = result.frequency;
+            distancesCm[i] = result.distanceCm;
+            distancesSdCm[i] = result.distanceSdCm;
+            channelWidths[i] = result.channelWidth;
+            centerFreqs0[i] = result.centerFreq0;
+            centerFreqs1[i] = result.centerFreq1;
+            wifiStandards[i] = result.getWifiStandard();
+            numUsages[i] = result.numUsage;
+            untrusteds[i] = result.untrusted;
+
+            if (result.wifiSsid != null) {
+                byte[] octets = result.wifiSsid.getOctets();
+                ssidLengths[i] = octets.length;
+                blob.write(octets, 0, octets.length);
+            } else {
+                ssidLengths[i] = NULL;
+            }
+
+            InformationElement[] ies = result.informationElements;
+            if (ies == null) {
+                ieCounts[i] = NULL;
+                continue;
+            }
+            ieCounts[i] = ies.length;
+            for (InformationElement element : ies) {
+                ieIds[ie] = element.id;
+                ieIdExts[ie] = element.idExt;
+                ie++;
+            }
+        }
+
+        dest.writeStringList(strings);
+        dest.writeIntArray(stringRefs);
+        dest.writeLongArray(hessids);
+        dest.writeLongArray(timestamps);
+        dest.writeLongArray(seens);
+        dest.writeLongArray(resultFlags);
+        dest.writeIntArray(anqpDomainIds);
+        dest.writeIntArray(levels);
+        dest.writeIntArray(frequencies);
+        dest.writeIntArray(distancesCm);
+        dest.writeIntArray(distancesSdCm);
+        dest.writeIntArray(channelWidths);
+        dest.writeIntArray(centerFreqs0);
+        dest.writeIntArray(centerFreqs1);
+        dest.writeIntArray(wifiStandards);
+        dest.writeIntArray(numUsages);
+        dest.writeBooleanArray(untrusteds);
+        dest.writeIntArray(ssidLengths);
+        dest.writeIntArray(ieCounts);
+        dest.writeIntArray(ieIds);
+        dest.writeIntArray(ieIdExts);
+        dest.writeByteArray(blob.toByteArray());
+        for (int i = 0; i < n; i++) {
+            InformationElement[] ies = mScanResults.get(i).informationElements;
+            if (ies == null) continue;
+            for (InformationElement element : ies) {
+                dest.writeByteArray(element.bytes);
+            }
+        }
+
+        // The remaining fields are rarely set, and are written for each scan result.
+        for (int i = 0; i < n; i++) {
+            writeRareFields(dest, mScanResults.get(i));
+        }
+    }
+
+    private static int indexString(@Nullable String string, List<String> strings,
+            Map<String, Integer> stringIndices) {
+        if (string == null) return NULL;
+        Integer index = stringIndices.get(string);
+        if (index == null) {
+            index = strings.size();
+            strings.add(string);
+            stringIndices.put(string, index);
+        }
+        return index;
+    }
+
+    private static void writeRareFields(Parcel dest, ScanResult result) {
+        if (result.anqpLines != null) {
+            dest.writeInt(result.anqpLines.size());
+            for (String line : result.anqpLines) {
+                dest.writeString(line);
+            }
+        } else {
+            dest.writeInt(0);
+        }
+        if (result.anqpElements != null) {
+            dest.writeInt(result.anqpElements.length);
+            for (AnqpInformationElement element : result.anqpElements) {
+                dest.writeInt(element.getVendorId());
+                dest.writeInt(element.getElementId());
+                dest.writeByteArray(element.getPayload());
+            }
+        } else {
+            dest.writeInt(0);
+        }
+        if (result.radioChainInfos != null) {
+            dest.writeInt(result.radioChainInfos.length);
+            for (ScanResult.RadioChainInfo info : result.radioChainInfos) {
+                dest.writeInt(info.id);
+                dest.writeInt(info.level);
+            }
+        } else {
+            dest.writeInt(0);
+        }
+    }
+
+    private static void readRareFields(Parcel in, ScanResult result) {
+        int count = in.readInt();
+        if (count != 0) {
+            result.anqpLines = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                result.anqpLines.add(in.readString());
+            }
+        }
+        count = in.readInt();
+        if (count != 0) {
+            result.anqpElements = new AnqpInformationElement[count];
+            for (int i = 0; i < count; i++) {
+                int vendorId = in.readInt();
+                int elementId = in.readInt();
+                result.anqpElements[i] =
+                        new AnqpInformationElement(vendorId, elementId, in.createByteArray());
+            }
+        }
+        count = in.readInt();
+        if (count != 0) {
+            result.radioChainInfos = new ScanResult.RadioChainInfo[count];
+            for (int i = 0; i < count; i++) {
+                result.radioChainInfos[i] = new ScanResult.RadioChainInfo();
+                result.radioChainInfos[i].id = in.readInt();
+                result.radioChainInfos[i].level = in.readInt();
+            }
+        }
+    }
+
+    /**
+     * Read the bytes of the |count| information elements starting at index |first| of the
+     * element arrays.
+     */
+    private static InformationElement[] readInformationElements(Parcel in, int[] ids,
+            int[] idExts, int first, int count) {
+        InformationElement[] ies = new InformationElement[count];
+        for (int i = 0; i < count; i++) {
+            InformationElement ie = new InformationElement();
+            ie.id = ids[first + i];
+            ie.idExt = idExts[first + i];
+            ie.bytes = in.createByteArray();
+            ies[i] = ie;
+        }
+        return ies;
+    }
+
+    /** Implement the Parcelable interface */
+    public static final @NonNull Creator<CompactScanResultList> CREATOR =
+            new Creator<CompactScanResultList>() {
+                @Override
+                public CompactScanResultList createFromParcel(Parcel in) {
+                    final int n = in.readInt();
+                    List<ScanResult> scanResults = new ArrayList<>(n);
+                    if (n == 0) return new CompactScanResultList(scanResults);
+
+                    List<String> strings = in.createStringArrayList();
+                    int[] stringRefs = in.createIntArray();
+                    long[] hessids = in.createLongArray();
+                    long[] timestamps = in.createLongArray();
+                    long[] seens = in.createLongArray();
+                    long[] resultFlags = in.createLongArray();
+                    int[] anqpDomainIds = in.createIntArray();
+                    int[] levels = in.createIntArray();
+                    int[] frequencies = in.createIntArray();
+                    int[] distancesCm = in.createIntArray();
+                    int[] distancesSdCm = in.createIntArray();
+                    int[] channelWidths = in.createIntArray();
+                    int[] centerFreqs0 = in.createIntArray();
+                    int[] centerFreqs1 = in.createIntArray();
+                    int[] wifiStandards = in.createIntArray();
+                    int[] numUsages = in.createIntArray();
+                    boolean[] untrusteds = in.createBooleanArray();
+                    int[] ssidLengths = in.createIntArray();
+                    int[] ieCounts = in.createIntArray();
+                    int[] ieIds = in.createIntArray();
+                    int[] ieIdExts = in.createIntArray();
+                    byte[] blob = in.createByteArray();
+
+                    int offset = 0;
+                    int ie = 0;
+                    for (int i = 0; i < n; i++) {
+                        int base = i * NUM_STRINGS;
+                        WifiSsid wifiSsid = null;
+                        if (ssidLengths[i] != NULL) {
+                            wifiSsid = WifiSsid.createFromByteArray(
+                                    Arrays.copyOfRange(blob, offset, offset + ssidLengths[i]));
+                            offset += ssidLengths[i];
+                        }
+                        ScanResult result = new ScanResult(
+                                wifiSsid,
+                                getString(strings, stringRefs[base + STRING_SSID]),
+                                getString(strings, stringRefs[base + STRING_BSSID]),
+                                hessids[i],
+                                anqpDomainIds[i],
+                                getString(strings, stringRefs[base + STRING_CAPABILITIES]),
+                                levels[i],
+                                frequencies[i],
+                                timestamps[i],
+                                distancesCm[i],
+                                distancesSdCm[i],
+                                channelWidths[i],
+                                centerFreqs0[i],
+                                centerFreqs1[i],
+                                false /* rtt responder, fixed with flags below */);
+                        result.setWifiStandard(wifiStandards[i]);
+                        result.seen = seens[i];
+                        result.untrusted = untrusteds[i];
+                        result.numUsage = numUsages[i];
+                        result.venueName =
+                                getString(strings, stringRefs[base + STRING_VENUE_NAME]);
+                        result.operatorFriendlyName = getString(strings,
+                                stringRefs[base + STRING_OPERATOR_FRIENDLY_NAME]);
+                        result.ifaceName =
+                                getString(strings, stringRefs[base + STRING_IFACE_NAME]);
+                        result.flags = resultFlags[i];
+
+                        scanResults.add(result);
+                    }
+                    // The bytes of the information elements follow the shared byte array.
+                    for (int i = 0; i < n; i++) {
+                        int count = ieCounts[i];
+                        if (count == NULL) continue;
+                        scanResults.get(i).informationElements =
+                                readInformationElements(in, ieIds, ieIdExts, ie, count);
+                        ie += count;
+                    }
+                    for (ScanResult result : scanResults) {
+                        readRareFields(in, result);
+                    }
+                    return new CompactScanResultList(scanResults);
+                }
+
+                @Override
+                public CompactScanResultList[] newArray(int size) {
+                    return new CompactScanResultList[size];
+                }
+            };
+
+    private static String getString(List<String> strings, int index) {
+        return index == NULL ? null : strings.get(index);
+    }
+}
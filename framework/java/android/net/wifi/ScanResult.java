@@ -86,6 +86,57 @@ public final class ScanResult implements Parcelable {
      */
     public String capabilities;
 
+    /**
+     * Returned by {@link #getSecurityFlags()} if no security flags match the |capabilities|
+     * string.
+     * @hide
+     */
+    public static final long INVALID_SECURITY_FLAGS = -1;
+
+    /**
+     * Security flags of the access point, as parsed by the wifi service, and the |capabilities|
+     * string they correspond to.
+     */
+    private static final class SecurityFlags {
+        public final long flags;
+        public final String capabilities;
+
+        SecurityFlags(long flags, String capabilities) {
+            this.flags = flags;
+            this.capabilities = capabilities;
+        }
+    }
+
+    /**
+     * Scan results are shared between threads, so the flags and the capabilities string they
+     * belong to are always published together. The flags are stale once |capabilities| is
+     * replaced.
+     */
+    private volatile SecurityFlags mSecurityFlags;
+
+    /**
+     * Set the security flags of the access point, matching the current |capabilities| string.
+     * The meaning of the flags is private to the wifi service.
+     * @hide
+     */
+    public void setSecurityFlags(long securityFlags) {
+        mSecurityFlags = new SecurityFlags(securityFlags, capabilities);
+    }
+
+    /**
+     * Get the security flags set with {@link #setSecurityFlags(long)}, or
+     * {@link #INVALID_SECURITY_FLAGS} if they were not set for the current |capabilities| string.
+     * @hide
+     */
+    public long getSecurityFlags() {
+        SecurityFlags securityFlags = mSecurityFlags;
+        if (securityFlags == null || securityFlags.capabilities == null
+                || securityFlags.capabilities != capabilities) {
+            return INVALID_SECURITY_FLAGS;
+        }
+        return securityFlags.flags;
+    }
+
     /**
      * The interface name on which the scan result was received.
      * @hide
@@ -1168,6 +1219,7 @@ public final class ScanResult implements Parcelable {
             informationElements = source.informationElements;
             anqpElements = source.anqpElements;
             capabilities = source.capabilities;
+            mSecurityFlags = source.mSecurityFlags;
             level = source.level;
             frequency = source.frequency;
             channelWidth = source.channelWidth;
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.net.wifi;
+
+import android.annotation.NonNull;
+import android.annotation.SystemApi;
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Describes how the cached scan results changed since a given scan result generation. Use
+ * {@link WifiManager#getScanResultsDelta(long)} to retrieve it.
+ *
+ * Each completed full band scan increments the generation. If the requested generation is too old
+ * to compute a delta from (or is unknown), {@link #isFullSnapshot()} returns true and
+ * {@link #getUpdatedResults()} contains all the cached scan results; the caller should then
+ * discard its own copy of the scan results.
+ *
+ * @hide
+ */
+@SystemApi
+public final class ScanResultsDelta implements Parcelable {
+    private final long mGeneration;
+    private final boolean mFullSnapshot;
+    private final List<ScanResult> mUpdatedResults;
+    private final List<String> mRemovedBssids;
+
+    /** @hide */
+    public ScanResultsDelta(long generation, boolean fullSnapshot,
+            @NonNull List<ScanResult> updatedResults, @NonNull List<String> removedBssids) {
+        mGeneration = generation;
+        mFullSnapshot = fullSnapshot;
+        mUpdatedResults = new ArrayList<>(updatedResults);
+        mRemovedBssids = new ArrayList<>(removedBssids);
+    }
+
+    /**
+     * Get the generation of the scan results this delta brings the caller up to. Pass it to the
+     * next {@link WifiManager#getScanResultsDelta(long)} call.
+     */
+    public long getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * Whether this delta contains the full set of cached scan results rather than the changes
+     * since the requested generation.
+     */
+    public boolean isFullSnapshot() {
+        return mFullSnapshot;
+    }
+
+    /**
+     * Get the scan results which were added or updated since the requested generation, or all the
+     * cached scan results if {@link #isFullSnapshot()} is true.
+     */
+    @NonNull
+    public List<ScanResult> getUpdatedResults() {
+        return Collections.unmodifiableList(mUpdatedResults);
+    }
+
+    /**
+     * Get the BSSIDs of the scan results which were removed since the requested generation.
+     * Always empty if {@link #isFullSnapshot()} is true.
+     */
+    @NonNull
+    public List<String> getRemovedBssids() {
+        return Collections.unmodifiableList(mRemovedBssids);
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sbuf = new StringBuilder();
+        sbuf.append("ScanResultsDelta{mGeneration=").append(mGeneration)
+                .append(", mFullSnapshot=").append(mFullSnapshot)
+                .append(", mUpdatedResults.size=").append(mUpdatedResults.size())
+                .append(", mRemovedBssids=").append(mRemovedBssids)
+                .append("}");
+        return sbuf.toString();
+    }
+
+    @Override
+    public void writeToParcel(@NonNull Parcel dest, int flags) {
+        dest.writeLong(mGeneration);
+        dest.writeBoolean(mFullSnapshot);
+        dest.writeTypedList(mUpdatedResults);
+        dest.writeStringList(mRemovedBssids);
+    }
+
+    public static final @NonNull Creator<ScanResultsDelta> CREATOR =
+            new Creator<ScanResultsDelta>() {
+                @Override
+                public ScanResultsDelta createFromParcel(@NonNull Parcel in) {
+                    long generation = in.readLong();
+                    boolean fullSnapshot = in.readBoolean();
+                    List<ScanResult> updatedResults = new ArrayList<>();
+                    in.readTypedList(updatedResults, ScanResult.CREATOR);
+                    List<String> removedBssids = new ArrayList<>();
+                    in.readStringList(removedBssids);
+                    return new ScanResultsDelta(generation, fullSnapshot, updatedResults,
+                            removedBssids);
+                }
+
+                @Override
+                public ScanResultsDelta[] newArray(int size) {
+                    return new ScanResultsDelta[size];
+                }
+            };
+}
@@ -3235,6 +3235,29 @@ public class WifiManager {
     public List<ScanResult> getScanResults() {
         try {
             return mService.getScanResults(mContext.getOpPackageName(),
+                    mContext.getAttributionTag()).getList();
+        } catch (RemoteException e) {
+            throw e.rethrowFromSystemServer();
+        }
+    }
+
+    /**
+     * Return the changes to the results of the latest access point scans since the provided
+     * scan result generation. This allows callers which poll the scan results to only transfer
+     * the scan results which changed since their last call.
+     *
+     * @param sinceGeneration the generation returned by {@link ScanResultsDelta#getGeneration()}
+     * on the previous call, or a negative value to request all the cached scan results.
+     * @return the {@link ScanResultsDelta} since the provided generation. If
+     * {@link ScanResultsDelta#isFullSnapshot()} is true, it contains all the cached scan results.
+     * @hide
+     */
+    @SystemApi
+    @RequiresPermission(android.Manifest.permission.NETWORK_SETTINGS)
+    @NonNull
+    public ScanResultsDelta getScanResultsDelta(long sinceGeneration) {
+        try {
+            return mService.getScanResultsDelta(sinceGeneration, mContext.getOpPackageName(),
                     mContext.getAttributionTag());
         } catch (RemoteException e) {
             throw e.rethrowFromSystemServer();
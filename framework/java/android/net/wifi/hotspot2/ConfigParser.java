@@ -19,6 +19,7 @@ package android.net.wifi.hotspot2;
 import android.net.wifi.hotspot2.omadm.PpsMoParser;
 import android.text.TextUtils;
 import android.util.Base64;
+import android.util.Base64InputStream;
 import android.util.Log;
 import android.util.Pair;
 
@@ -144,12 +145,14 @@ public final class ConfigParser {
         }
 
         try {
-            // Decode the data.
-            byte[] decodedData = Base64.decode(new String(data, StandardCharsets.ISO_8859_1),
-                    Base64.DEFAULT);
-            Map<String, byte[]> mimeParts = parseMimeMultipartMessage(new LineNumberReader(
-                    new InputStreamReader(new ByteArrayInputStream(decodedData),
-                            StandardCharsets.ISO_8859_1)));
+            // Decode the data while reading the MIME message, instead of decoding the whole
+            // installation file up front. Each MIME part is still read and decoded whole.
+            LineNumberReader in = new LineNumberReader(new InputStreamReader(
+                    new Base64InputStream(new ByteArrayInputStream(data), Base64.DEFAULT),
+                    StandardCharsets.ISO_8859_1));
+            Map<String, byte[]> mimeParts = parseMimeMultipartMessage(in);
+            // Decode the rest of the data past the last MIME part to reject a malformed file.
+            in.skip(Long.MAX_VALUE);
             return createPasspointConfig(mimeParts);
         } catch (IOException | IllegalArgumentException e) {
             Log.e(TAG, "Failed to parse installation file: " + e.getMessage());
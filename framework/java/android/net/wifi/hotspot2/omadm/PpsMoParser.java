@@ -27,9 +27,13 @@ import android.util.Pair;
 
 import com.android.modules.utils.build.SdkLevel;
 
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
 
 import java.io.IOException;
+import java.io.StringReader;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -40,6 +44,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
 /**
  * Utility class for converting OMA-DM (Open Mobile Alliance's Device Management)
  * PPS-MO (PerProviderSubscription Management Object) XML tree to a
@@ -281,7 +289,7 @@ public final class PpsMoParser {
 
     /**
      * Class representing a node within the PerProviderSubscription tree.
-     * This is used to flatten out and eliminate the extra layering in the XMLNode tree,
+     * This is used to flatten out and eliminate the extra layering in the XML tree,
      * to make the data parsing easier and cleaner.
      *
      * A PPSNode can be an internal or a leaf node, but not both.
@@ -381,175 +389,65 @@ public final class PpsMoParser {
      * Convert a XML string representation of a PPS MO (PerProviderSubscription
      * Management Object) tree to a {@link PasspointConfiguration} object.
      *
+     * The XML string is parsed in a single pass, the PPS instance tree is built directly from
+     * the SAX events without keeping the XML tree of the whole document.
+     *
      * @param xmlString XML string representation of a PPS MO tree
      * @return {@link PasspointConfiguration} or null
      */
     public static PasspointConfiguration parseMoText(String xmlString) {
-        // Convert the XML string to a XML tree.
-        XMLParser xmlParser = new XMLParser();
-        XMLNode root = null;
-        try {
-            root = xmlParser.parse(xmlString);
-        } catch(IOException | SAXException e) {
+        if (TextUtils.isEmpty(xmlString)) {
             Log.e(TAG, "Failed to parse XML input");
             return null;
         }
-        if (root == null) {
-            Log.e(TAG, "Root is not available");
-            return null;
-        }
 
-        // Verify root node is a "MgmtTree" node.
-        if (root.getTag() != TAG_MANAGEMENT_TREE) {
-            Log.e(TAG, "Root is not a MgmtTree");
-            return null;
-        }
-
-        String verDtd = null;    // Used for detecting duplicate VerDTD element.
-        PasspointConfiguration config = null;
-        for (XMLNode child : root.getChildren()) {
-            switch(child.getTag()) {
-                case TAG_VER_DTD:
-                    if (verDtd != null) {
-                        Log.e(TAG, "Duplicate VerDTD element");
-                        return null;
-                    }
-                    verDtd = child.getText();
-                    break;
-                case TAG_NODE:
-                    if (config != null) {
-                        Log.e(TAG, "Unexpected multiple Node element under MgmtTree");
-                        return null;
-                    }
-                    try {
-                        config = parsePpsNode(child);
-                    } catch (ParsingException e) {
-                        Log.e(TAG, e.getMessage());
-                        return null;
-                    }
-                    break;
-                default:
-                    Log.e(TAG, "Unknown node: " + child.getTag());
-                    return null;
+        MoTextHandler handler = new MoTextHandler();
+        try {
+            SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
+            parser.parse(new InputSource(new StringReader(xmlString)), handler);
+        } catch (SAXException e) {
+            if (e.getException() instanceof ParsingException) {
+                Log.e(TAG, e.getException().getMessage());
+            } else {
+                Log.e(TAG, "Failed to parse XML input");
             }
+            return null;
+        } catch (IOException | ParserConfigurationException e) {
+            Log.e(TAG, "Failed to parse XML input");
+            return null;
         }
-        return config;
+        return handler.getConfig();
     }
 
     /**
-     * Parse a PerProviderSubscription node. Below is the format of the XML tree (with
-     * each XML element represent a node in the tree):
+     * SAX handler converting a PPS MO XML document to a {@link PasspointConfiguration}.
      *
-     * <Node>
-     *   <NodeName>PerProviderSubscription</NodeName>
-     *   <RTProperties>
-     *     ...
-     *   </RTPProperties>
-     *   <Node>
-     *     <NodeName>UpdateIdentifier</NodeName>
-     *     <Value>...</Value>
-     *   </Node>
+     * Below is the format of the XML document (with each XML element represent a node in the
+     * tree):
+     *
+     * <MgmtTree>
+     *   <VerDTD>...</VerDTD>
      *   <Node>
-     *     ...
+     *     <NodeName>PerProviderSubscription</NodeName>
+     *     <RTProperties>
+     *       <Type>
+     *         <DDFName>urn:...</DDFName>
+     *       </Type>
+     *     </RTProperties>
+     *     <Node>
+     *       <NodeName>UpdateIdentifier</NodeName>
+     *       <Value>...</Value>
+     *     </Node>
+     *     <Node>
+     *       ...
+     *     </Node>
      *   </Node>
-     * </Node>
+     * </MgmtTree>
      *
-     * @param node XMLNode that contains PerProviderSubscription node.
-     * @return PasspointConfiguration or null
-     * @throws ParsingException
-     */
-    private static PasspointConfiguration parsePpsNode(XMLNode node)
-            throws ParsingException {
-        PasspointConfiguration config = null;
-        String nodeName = null;
-        int updateIdentifier = Integer.MIN_VALUE;
-        for (XMLNode child : node.getChildren()) {
-            switch (child.getTag()) {
-                case TAG_NODE_NAME:
-                    if (nodeName != null) {
-                        throw new ParsingException("Duplicate NodeName: " + child.getText());
-                    }
-                    nodeName = child.getText();
-                    if (!TextUtils.equals(nodeName, NODE_PER_PROVIDER_SUBSCRIPTION)) {
-                        throw new ParsingException("Unexpected NodeName: " + nodeName);
-                    }
-                    break;
-                case TAG_NODE:
-                    // A node can be either an UpdateIdentifier node or a PerProviderSubscription
-                    // instance node.  Flatten out the XML tree first by converting it to a PPS
-                    // tree to reduce the complexity of the parsing code.
-                    PPSNode ppsNodeRoot = buildPpsNode(child);
-                    if (TextUtils.equals(ppsNodeRoot.getName(), NODE_UPDATE_IDENTIFIER)) {
-                        if (updateIdentifier != Integer.MIN_VALUE) {
-                            throw new ParsingException("Multiple node for UpdateIdentifier");
-                        }
-                        updateIdentifier = parseInteger(getPpsNodeValue(ppsNodeRoot));
-                    } else {
-                        // Only one PerProviderSubscription instance is expected and allowed.
-                        if (config != null) {
-                            throw new ParsingException("Multiple PPS instance");
-                        }
-                        config = parsePpsInstance(ppsNodeRoot);
-                    }
-                    break;
-                case TAG_RT_PROPERTIES:
-                    // Parse and verify URN stored in the RT (Run Time) Properties.
-                    String urn = parseUrn(child);
-                    if (!TextUtils.equals(urn, PPS_MO_URN)) {
-                        throw new ParsingException("Unknown URN: " + urn);
-                    }
-                    break;
-                default:
-                    throw new ParsingException("Unknown tag under PPS node: " + child.getTag());
-            }
-        }
-        if (config != null && updateIdentifier != Integer.MIN_VALUE) {
-            config.setUpdateIdentifier(updateIdentifier);
-        }
-        return config;
-    }
-
-    /**
-     * Parse the URN stored in the RTProperties. Below is the format of the RTPProperties node:
-     *
-     * <RTProperties>
-     *   <Type>
-     *     <DDFName>urn:...</DDFName>
-     *   </Type>
-     * </RTProperties>
-     *
-     * @param node XMLNode that contains RTProperties node.
-     * @return URN String of URN.
-     * @throws ParsingException
-     */
-    private static String parseUrn(XMLNode node) throws ParsingException {
-        if (node.getChildren().size() != 1)
-            throw new ParsingException("Expect RTPProperties node to only have one child");
-
-        XMLNode typeNode = node.getChildren().get(0);
-        if (typeNode.getChildren().size() != 1) {
-            throw new ParsingException("Expect Type node to only have one child");
-        }
-        if (!TextUtils.equals(typeNode.getTag(), TAG_TYPE)) {
-            throw new ParsingException("Unexpected tag for Type: " + typeNode.getTag());
-        }
-
-        XMLNode ddfNameNode = typeNode.getChildren().get(0);
-        if (!ddfNameNode.getChildren().isEmpty()) {
-            throw new ParsingException("Expect DDFName node to have no child");
-        }
-        if (!TextUtils.equals(ddfNameNode.getTag(), TAG_DDF_NAME)) {
-            throw new ParsingException("Unexpected tag for DDFName: " + ddfNameNode.getTag());
-        }
-
-        return ddfNameNode.getText();
-    }
-
-    /**
-     * Convert a XML tree represented by XMLNode to a PPS (PerProviderSubscription) instance tree
-     * represented by PPSNode.  This flattens out the XML tree to allow easier and cleaner parsing
-     * of the PPS configuration data.  Only three types of XML tag are expected: "NodeName",
-     * "Node", and "Value".
+     * Each "Node" element under the PerProviderSubscription node is converted to a PPS
+     * (PerProviderSubscription) tree represented by PPSNode as soon as its end tag is reached,
+     * and is parsed right away.  Only three types of XML tag are expected within these
+     * elements: "NodeName", "Node", and "Value".
      *
      * The original XML tree (each XML element represent a node):
      *
@@ -575,57 +473,307 @@ public final class PpsMoParser {
      *   |
      *   ---------[child2] --------[grandchild1] --- ...
      *
-     * @param node XMLNode pointed to the root of a XML tree
-     * @return PPSNode pointing to the root of a PPS tree
-     * @throws ParsingException
+     * The text of an element is the text enclosed directly within it, without the leading and
+     * the trailing whitespaces.  Elements nested within an element holding text are ignored.
      */
-    private static PPSNode buildPpsNode(XMLNode node) throws ParsingException {
-        String nodeName = null;
-        String nodeValue = null;
-        List<PPSNode> childNodes = new ArrayList<PPSNode>();
-        // Names of parsed child nodes, use for detecting multiple child nodes with the same name.
-        Set<String> parsedNodes = new HashSet<String>();
-
-        for (XMLNode child : node.getChildren()) {
-            String tag = child.getTag();
-            if (TextUtils.equals(tag, TAG_NODE_NAME)) {
-                if (nodeName != null) {
-                    throw new ParsingException("Duplicate NodeName node");
+    private static class MoTextHandler extends DefaultHandler {
+        // Types of the XML elements.
+        private static final int ELEMENT_MANAGEMENT_TREE = 0;
+        private static final int ELEMENT_VER_DTD = 1;
+        private static final int ELEMENT_PPS = 2;
+        private static final int ELEMENT_RT_PROPERTIES = 3;
+        private static final int ELEMENT_TYPE = 4;
+        private static final int ELEMENT_DDF_NAME = 5;
+        private static final int ELEMENT_NODE = 6;
+        private static final int ELEMENT_NODE_NAME = 7;
+        private static final int ELEMENT_VALUE = 8;
+        private static final int ELEMENT_IGNORED = 9;
+
+        /**
+         * An XML element which end tag hasn't been reached yet.
+         */
+        private static class Element {
+            public final int type;
+            // Text enclosed within the element, only for the elements holding text.
+            public final StringBuilder text;
+            public int childCount = 0;
+
+            // NodeName and Value of a Node element or the PerProviderSubscription node.
+            public String nodeName = null;
+            public String nodeValue = null;
+            // Children of a Node element.
+            public List<PPSNode> childNodes = null;
+            // Names of parsed child nodes, use for detecting multiple child nodes with the
+            // same name.
+            public Set<String> parsedNodes = null;
+
+            // URN of the RTProperties and the Type elements.
+            public String urn = null;
+
+            // Parsed data of the PerProviderSubscription node.
+            public PasspointConfiguration config = null;
+            public int updateIdentifier = Integer.MIN_VALUE;
+
+            Element(int type) {
+                this.type = type;
+                boolean holdsText = type == ELEMENT_VER_DTD || type == ELEMENT_DDF_NAME
+                        || type == ELEMENT_NODE_NAME || type == ELEMENT_VALUE;
+                text = holdsText ? new StringBuilder() : null;
+                if (type == ELEMENT_NODE) {
+                    childNodes = new ArrayList<PPSNode>();
+                    parsedNodes = new HashSet<String>();
                 }
-                nodeName = child.getText();
-            } else if (TextUtils.equals(tag, TAG_NODE)) {
-                PPSNode ppsNode = buildPpsNode(child);
-                if (parsedNodes.contains(ppsNode.getName())) {
-                    throw new ParsingException("Duplicate node: " + ppsNode.getName());
+            }
+
+            String getText() {
+                return text.toString().trim();
+            }
+        }
+
+        private final List<Element> mElements = new ArrayList<>();
+        private String mVerDtd = null;    // Used for detecting duplicate VerDTD element.
+        private PasspointConfiguration mConfig = null;
+
+        public PasspointConfiguration getConfig() {
+            return mConfig;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName,
+                Attributes attributes) throws SAXException {
+            try {
+                mElements.add(new Element(getElementType(qName)));
+            } catch (ParsingException e) {
+                throw new SAXException(e);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName)
+                throws SAXException {
+            Element element = mElements.remove(mElements.size() - 1);
+            try {
+                closeElement(element, mElements.isEmpty() ? null
+                        : mElements.get(mElements.size() - 1));
+            } catch (ParsingException e) {
+                throw new SAXException(e);
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            if (mElements.isEmpty()) {
+                return;
+            }
+            Element current = mElements.get(mElements.size() - 1);
+            if (current.text != null) {
+                current.text.append(ch, start, length);
+            }
+        }
+
+        /**
+         * Return the type of a new element from its tag and its parent element.
+         */
+        private int getElementType(String tag) throws ParsingException {
+            if (mElements.isEmpty()) {
+                // Verify root node is a "MgmtTree" node.
+                if (!TextUtils.equals(tag, TAG_MANAGEMENT_TREE)) {
+                    throw new ParsingException("Root is not a MgmtTree");
                 }
-                parsedNodes.add(ppsNode.getName());
-                childNodes.add(ppsNode);
-            } else if (TextUtils.equals(tag, TAG_VALUE)) {
-               if (nodeValue != null) {
-                   throw new ParsingException("Duplicate Value node");
-               }
-               nodeValue = child.getText();
-            } else {
-                throw new ParsingException("Unknown tag: " + tag);
+                return ELEMENT_MANAGEMENT_TREE;
+            }
+            Element parent = mElements.get(mElements.size() - 1);
+            parent.childCount++;
+            switch (parent.type) {
+                case ELEMENT_MANAGEMENT_TREE:
+                    switch (tag) {
+                        case TAG_VER_DTD:
+                            if (mVerDtd != null) {
+                                throw new ParsingException("Duplicate VerDTD element");
+                            }
+                            return ELEMENT_VER_DTD;
+                        case TAG_NODE:
+                            if (mConfig != null) {
+                                throw new ParsingException(
+                                        "Unexpected multiple Node element under MgmtTree");
+                            }
+                            return ELEMENT_PPS;
+                        default:
+                            throw new ParsingException("Unknown node: " + tag);
+                    }
+                case ELEMENT_PPS:
+                    switch (tag) {
+                        case TAG_NODE_NAME:
+                            return ELEMENT_NODE_NAME;
+                        case TAG_NODE:
+                            return ELEMENT_NODE;
+                        case TAG_RT_PROPERTIES:
+                            return ELEMENT_RT_PROPERTIES;
+                        default:
+                            throw new ParsingException("Unknown tag under PPS node: " + tag);
+                    }
+                case ELEMENT_RT_PROPERTIES:
+                    if (parent.childCount != 1) {
+                        throw new ParsingException(
+                                "Expect RTPProperties node to only have one child");
+                    }
+                    if (!TextUtils.equals(tag, TAG_TYPE)) {
+                        throw new ParsingException("Unexpected tag for Type: " + tag);
+                    }
+                    return ELEMENT_TYPE;
+                case ELEMENT_TYPE:
+                    if (parent.childCount != 1) {
+                        throw new ParsingException("Expect Type node to only have one child");
+                    }
+                    if (!TextUtils.equals(tag, TAG_DDF_NAME)) {
+                        throw new ParsingException("Unexpected tag for DDFName: " + tag);
+                    }
+                    return ELEMENT_DDF_NAME;
+                case ELEMENT_DDF_NAME:
+                    throw new ParsingException("Expect DDFName node to have no child");
+                case ELEMENT_NODE:
+                    switch (tag) {
+                        case TAG_NODE_NAME:
+                            return ELEMENT_NODE_NAME;
+                        case TAG_NODE:
+                            return ELEMENT_NODE;
+                        case TAG_VALUE:
+                            return ELEMENT_VALUE;
+                        default:
+                            throw new ParsingException("Unknown tag: " + tag);
+                    }
+                default:
+                    // Only the text of the VerDTD, NodeName and Value elements is used.
+                    return ELEMENT_IGNORED;
             }
         }
 
-        if (nodeName == null) {
-            throw new ParsingException("Invalid node: missing NodeName");
+        /**
+         * Process an element once its end tag is reached.
+         *
+         * @param element the closed element
+         * @param parent the parent of the closed element, null for the root element
+         * @throws ParsingException
+         */
+        private void closeElement(Element element, Element parent) throws ParsingException {
+            switch (element.type) {
+                case ELEMENT_VER_DTD:
+                    mVerDtd = element.getText();
+                    break;
+                case ELEMENT_PPS:
+                    if (element.config != null
+                            && element.updateIdentifier != Integer.MIN_VALUE) {
+                        element.config.setUpdateIdentifier(element.updateIdentifier);
+                    }
+                    mConfig = element.config;
+                    break;
+                case ELEMENT_RT_PROPERTIES:
+                    if (element.childCount != 1) {
+                        throw new ParsingException(
+                                "Expect RTPProperties node to only have one child");
+                    }
+                    // Verify URN stored in the RT (Run Time) Properties.
+                    if (!TextUtils.equals(element.urn, PPS_MO_URN)) {
+                        throw new ParsingException("Unknown URN: " + element.urn);
+                    }
+                    break;
+                case ELEMENT_TYPE:
+                    if (element.childCount != 1) {
+                        throw new ParsingException("Expect Type node to only have one child");
+                    }
+                    parent.urn = element.urn;
+                    break;
+                case ELEMENT_DDF_NAME:
+                    parent.urn = element.getText();
+                    break;
+                case ELEMENT_NODE_NAME:
+                    closeNodeName(element.getText(), parent);
+                    break;
+                case ELEMENT_VALUE:
+                    if (parent.nodeValue != null) {
+                        throw new ParsingException("Duplicate Value node");
+                    }
+                    parent.nodeValue = element.getText();
+                    break;
+                case ELEMENT_NODE:
+                    PPSNode ppsNode = buildPpsNode(element);
+                    if (parent.type == ELEMENT_NODE) {
+                        if (parent.parsedNodes.contains(ppsNode.getName())) {
+                            throw new ParsingException("Duplicate node: " + ppsNode.getName());
+                        }
+                        parent.parsedNodes.add(ppsNode.getName());
+                        parent.childNodes.add(ppsNode);
+                    } else {
+                        parsePpsChildNode(ppsNode, parent);
+                    }
+                    break;
+                default:
+                    break;
+            }
         }
-        if (nodeValue == null && childNodes.size() == 0) {
-            throw new ParsingException("Invalid node: " + nodeName +
-                    " missing both value and children");
+
+        private static void closeNodeName(String nodeName, Element parent)
+                throws ParsingException {
+            if (parent.type == ELEMENT_PPS) {
+                if (parent.nodeName != null) {
+                    throw new ParsingException("Duplicate NodeName: " + nodeName);
+                }
+                parent.nodeName = nodeName;
+                if (!TextUtils.equals(nodeName, NODE_PER_PROVIDER_SUBSCRIPTION)) {
+                    throw new ParsingException("Unexpected NodeName: " + nodeName);
+                }
+            } else {
+                if (parent.nodeName != null) {
+                    throw new ParsingException("Duplicate NodeName node");
+                }
+                parent.nodeName = nodeName;
+            }
         }
-        if (nodeValue != null && childNodes.size() > 0) {
-            throw new ParsingException("Invalid node: " + nodeName +
-                    " contained both value and children");
+
+        /**
+         * Parse a node under the PerProviderSubscription node.  A node can be either an
+         * UpdateIdentifier node or a PerProviderSubscription instance node.
+         */
+        private static void parsePpsChildNode(PPSNode ppsNode, Element pps)
+                throws ParsingException {
+            if (TextUtils.equals(ppsNode.getName(), NODE_UPDATE_IDENTIFIER)) {
+                if (pps.updateIdentifier != Integer.MIN_VALUE) {
+                    throw new ParsingException("Multiple node for UpdateIdentifier");
+                }
+                pps.updateIdentifier = parseInteger(getPpsNodeValue(ppsNode));
+            } else {
+                // Only one PerProviderSubscription instance is expected and allowed.
+                if (pps.config != null) {
+                    throw new ParsingException("Multiple PPS instance");
+                }
+                pps.config = parsePpsInstance(ppsNode);
+            }
         }
 
-        if (nodeValue != null) {
-            return new LeafNode(nodeName, nodeValue);
+        /**
+         * Convert a closed Node element to a PPSNode.
+         */
+        private static PPSNode buildPpsNode(Element node) throws ParsingException {
+            String nodeName = node.nodeName;
+            String nodeValue = node.nodeValue;
+            List<PPSNode> childNodes = node.childNodes;
+            if (nodeName == null) {
+                throw new ParsingException("Invalid node: missing NodeName");
+            }
+            if (nodeValue == null && childNodes.size() == 0) {
+                throw new ParsingException("Invalid node: " + nodeName +
+                        " missing both value and children");
+            }
+            if (nodeValue != null && childNodes.size() > 0) {
+                throw new ParsingException("Invalid node: " + nodeName +
+                        " contained both value and children");
+            }
+
+            if (nodeValue != null) {
+                return new LeafNode(nodeName, nodeValue);
+            }
+            return new InternalNode(nodeName, childNodes);
         }
-        return new InternalNode(nodeName, childNodes);
     }
 
     /**
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.net.wifi.p2p;
+
+import android.annotation.NonNull;
+import android.annotation.SystemApi;
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Describes how the list of p2p peers changed since a given peer list generation. Use
+ * {@link WifiP2pManager#requestPeersDelta(WifiP2pManager.Channel, long,
+ * WifiP2pManager.PeerListDeltaListener)} to retrieve it.
+ *
+ * The generation is incremented each time the peer list changes. If the requested generation is
+ * too old to compute a delta from (or is unknown), {@link #isFullSnapshot()} returns true and
+ * {@link #getUpdatedDevices()} contains all the peers; the caller should then discard its own copy
+ * of the peer list.
+ *
+ * @hide
+ */
+@SystemApi
+public final class WifiP2pDeviceListDelta implements Parcelable {
+    private final long mGeneration;
+    private final boolean mFullSnapshot;
+    private final List<WifiP2pDevice> mUpdatedDevices;
+    private final List<String> mRemovedDeviceAddresses;
+
+    /** @hide */
+    public WifiP2pDeviceListDelta(long generation, boolean fullSnapshot,
+            @NonNull List<WifiP2pDevice> updatedDevices,
+            @NonNull List<String> removedDeviceAddresses) {
+        mGeneration = generation;
+        mFullSnapshot = fullSnapshot;
+        mUpdatedDevices = new ArrayList<>(updatedDevices);
+        mRemovedDeviceAddresses = new ArrayList<>(removedDeviceAddresses);
+    }
+
+    /**
+     * Get the generation of the peer list this delta brings the caller up to. Pass it to the next
+     * {@link WifiP2pManager#requestPeersDelta(WifiP2pManager.Channel, long,
+     * WifiP2pManager.PeerListDeltaListener)} call.
+     */
+    public long getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * Whether this delta contains the full list of peers rather than the changes since the
+     * requested generation.
+     */
+    public boolean isFullSnapshot() {
+        return mFullSnapshot;
+    }
+
+    /**
+     * Get the peers which were found or updated since the requested generation, or all the peers
+     * if {@link #isFullSnapshot()} is true.
+     */
+    @NonNull
+    public List<WifiP2pDevice> getUpdatedDevices() {
+        return Collections.unmodifiableList(mUpdatedDevices);
+    }
+
+    /**
+     * Get the device addresses of the peers which were lost since the requested generation.
+     * Always empty if {@link #isFullSnapshot()} is true.
+     */
+    @NonNull
+    public List<String> getRemovedDeviceAddresses() {
+        return Collections.unmodifiableList(mRemovedDeviceAddresses);
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sbuf = new StringBuilder();
+        sbuf.append("WifiP2pDeviceListDelta{mGeneration=").append(mGeneration)
+                .append(", mFullSnapshot=").append(mFullSnapshot)
+                .append(", mUpdatedDevices.size=").append(mUpdatedDevices.size())
+                .append(", mRemovedDeviceAddresses.size=").append(mRemovedDeviceAddresses.size())
+                .append("}");
+        return sbuf.toString();
+    }
+
+    @Override
+    public void writeToParcel(@NonNull Parcel dest, int flags) {
+        dest.writeLong(mGeneration);
+        dest.writeBoolean(mFullSnapshot);
+        dest.writeTypedList(mUpdatedDevices);
+        dest.writeStringList(mRemovedDeviceAddresses);
+    }
+
+    public static final @NonNull Creator<WifiP2pDeviceListDelta> CREATOR =
+            new Creator<WifiP2pDeviceListDelta>() {
+                @Override
+                public WifiP2pDeviceListDelta createFromParcel(@NonNull Parcel in) {
+                    long generation = in.readLong();
+                    boolean fullSnapshot = in.readBoolean();
+                    List<WifiP2pDevice> updatedDevices = new ArrayList<>();
+                    in.readTypedList(updatedDevices, WifiP2pDevice.CREATOR);
+                    List<String> removedDeviceAddresses = new ArrayList<>();
+                    in.readStringList(removedDeviceAddresses);
+                    return new WifiP2pDeviceListDelta(generation, fullSnapshot, updatedDevices,
+                            removedDeviceAddresses);
+                }
+
+                @Override
+                public WifiP2pDeviceListDelta[] newArray(int size) {
+                    return new WifiP2pDeviceListDelta[size];
+                }
+            };
+}
@@ -352,6 +352,13 @@ public class WifiP2pManager {
     public static final String CALLING_PACKAGE =
             "android.net.wifi.p2p.CALLING_PACKAGE";
 
+    /**
+     * The lookup key for the peer list generation a peers delta is requested since.
+     * @hide
+     */
+    public static final String EXTRA_PEERS_SINCE_GENERATION =
+            "android.net.wifi.p2p.EXTRA_PEERS_SINCE_GENERATION";
+
     /**
      * The lookup key for a calling feature id from WifiP2pManager
      * @hide
@@ -593,6 +600,11 @@ public class WifiP2pManager {
     /** @hide */
     public static final int RESPONSE_DEVICE_INFO                    = BASE + 98;
 
+    /** @hide */
+    public static final int REQUEST_PEERS_DELTA                     = BASE + 99;
+    /** @hide */
+    public static final int RESPONSE_PEERS_DELTA                    = BASE + 100;
+
     /**
      * Create a new WifiP2pManager instance. Applications use
      * {@link android.content.Context#getSystemService Context.getSystemService()} to retrieve
@@ -764,6 +776,20 @@ public class WifiP2pManager {
     }
 
 
+    /**
+     * Interface for callback invocation when a peer list delta is available
+     *
+     * @hide
+     */
+    @SystemApi
+    public interface PeerListDeltaListener {
+        /**
+         * The requested peer list delta is available
+         * @param delta Changes to the peer list since the requested generation
+         */
+        void onPeersDeltaAvailable(@NonNull WifiP2pDeviceListDelta delta);
+    }
+
     /**
      * Interface for callback invocation when stored group info list is available
      *
@@ -1058,6 +1084,12 @@ public class WifiP2pManager {
                                     .onDeviceInfoAvailable((WifiP2pDevice) message.obj);
                         }
                         break;
+                    case RESPONSE_PEERS_DELTA:
+                        if (listener != null) {
+                            ((PeerListDeltaListener) listener)
+                                    .onPeersDeltaAvailable((WifiP2pDeviceListDelta) message.obj);
+                        }
+                        break;
                     default:
                         Log.d(TAG, "Ignored " + message);
                         break;
@@ -1636,6 +1668,31 @@ public class WifiP2pManager {
         c.mAsyncChannel.sendMessage(REQUEST_PEERS, 0, c.putListener(listener));
     }
 
+    /**
+     * Request the changes to the list of peers since the provided peer list generation.
+     *
+     * <p> This avoids fetching the whole peer list with {@link #requestPeers(Channel,
+     * PeerListListener)} on each {@link #WIFI_P2P_PEERS_CHANGED_ACTION} broadcast. Pass the
+     * generation of the previously received {@link WifiP2pDeviceListDelta}, or -1 for the first
+     * request.
+     *
+     * @param c is the channel created at {@link #initialize}
+     * @param sinceGeneration generation of the peer list known by the caller.
+     * @param listener for callback when the peer list delta is available.
+     *
+     * @hide
+     */
+    @SystemApi
+    @RequiresPermission(android.Manifest.permission.NETWORK_SETTINGS)
+    public void requestPeersDelta(@NonNull Channel c, long sinceGeneration,
+            @NonNull PeerListDeltaListener listener) {
+        checkChannel(c);
+        if (listener == null) throw new IllegalArgumentException("This listener cannot be null.");
+        Bundle bundle = new Bundle();
+        bundle.putLong(EXTRA_PEERS_SINCE_GENERATION, sinceGeneration);
+        c.mAsyncChannel.sendMessage(REQUEST_PEERS_DELTA, 0, c.putListener(listener), bundle);
+    }
+
     /**
      * Request device connection info.
      *
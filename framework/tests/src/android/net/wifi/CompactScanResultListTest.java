@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.net.wifi;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.net.wifi.ScanResult.InformationElement;
+import android.os.Parcel;
+
+import androidx.test.filters.SmallTest;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit tests for {@link android.net.wifi.CompactScanResultList}.
+ */
+@SmallTest
+public class CompactScanResultListTest {
+    private static final String TEST_CAPS = "[WPA2-PSK-CCMP][RSN-PSK-CCMP][ESS]";
+    private static final String TEST_IFACE_NAME = "wlan0";
+
+    private static ScanResult createScanResult(int index) {
+        ScanResult result = new ScanResult();
+        result.wifiSsid = WifiSsid.createFromAsciiEncoded("test_ssid" + index);
+        result.SSID = "\"test_ssid" + index + "\"";
+        result.BSSID = String.format("04:ac:fe:45:%02x:%02x", index / 256, index % 256);
+        result.capabilities = TEST_CAPS;
+        result.level = -50 - index % 40;
+        result.frequency = 2412 + 5 * (index % 13);
+        result.timestamp = 1000L * index;
+        result.seen = 2000L * index;
+        result.setWifiStandard(ScanResult.WIFI_STANDARD_11AC);
+        result.ifaceName = TEST_IFACE_NAME;
+        result.informationElements = new InformationElement[] {
+                new InformationElement(InformationElement.EID_SSID, 0,
+                        result.wifiSsid.getOctets()),
+                new InformationElement(InformationElement.EID_SUPPORTED_RATES, 0,
+                        new byte[] {(byte) 0x82, (byte) 0x84, 0x0b, 0x16}),
+                new InformationElement(InformationElement.EID_HT_OPERATION, 0, new byte[22]),
+                new InformationElement(InformationElement.EID_EXTENSION_PRESENT,
+                        InformationElement.EID_EXT_HE_OPERATION, new byte[] {0x44, 0x55, 0x66}),
+        };
+        return result;
+    }
+
+    private static List<ScanResult> createScanResults(int count) {
+        List<ScanResult> results = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            results.add(createScanResult(i));
+        }
+        return results;
+    }
+
+    private static List<ScanResult> parcelReadWrite(List<ScanResult> results) {
+        Parcel parcel = Parcel.obtain();
+        new CompactScanResultList(results).writeToParcel(parcel, 0);
+        parcel.setDataPosition(0);
+        List<ScanResult> readResults =
+                CompactScanResultList.CREATOR.createFromParcel(parcel).getList();
+        parcel.recycle();
+        return readResults;
+    }
+
+    private static void assertScanResultEquals(ScanResult expected, ScanResult actual) {
+        assertEquals(expected.wifiSsid, actual.wifiSsid);
+        assertEquals(expected.SSID, actual.SSID);
+        assertEquals(expected.BSSID, actual.BSSID);
+        assertEquals(expected.capabilities, actual.capabilities);
+        assertEquals(expected.level, actual.level);
+        assertEquals(expected.frequency, actual.frequency);
+        assertEquals(expected.timestamp, actual.timestamp);
+        assertEquals(expected.seen, actual.seen);
+        assertEquals(expected.flags, actual.flags);
+        assertEquals(expected.getWifiStandard(), actual.getWifiStandard());
+        assertEquals(expected.ifaceName, actual.ifaceName);
+        assertArrayEquals(expected.radioChainInfos, actual.radioChainInfos);
+        assertArrayEquals(expected.informationElements, actual.informationElements);
+    }
+
+    /**
+     * Verify parcel read/write for a list of scan results.
+     */
+    @Test
+    public void testParcelReadWrite() {
+        List<ScanResult> results = createScanResults(3);
+        results.get(1).radioChainInfos = new ScanResult.RadioChainInfo[1];
+        results.get(1).radioChainInfos[0] = new ScanResult.RadioChainInfo();
+        results.get(1).radioChainInfos[0].id = 1;
+        results.get(1).radioChainInfos[0].level = -61;
+        results.get(1).setFlag(ScanResult.FLAG_PASSPOINT_NETWORK);
+        results.get(2).informationElements = null;
+        results.get(2).wifiSsid = null;
+        results.get(2).capabilities = null;
+
+        List<ScanResult> readResults = parcelReadWrite(results);
+        assertEquals(results.size(), readResults.size());
+        for (int i = 0; i < results.size(); i++) {
+            assertScanResultEquals(results.get(i), readResults.get(i));
+        }
+        assertNull(readResults.get(2).informationElements);
+    }
+
+    /**
+     * Verify that the information elements are set as soon as the list is unparceled.
+     */
+    @Test
+    public void testInformationElementsSetOnUnparcel() {
+        ScanResult readResult = parcelReadWrite(createScanResults(1)).get(0);
+        assertEquals(4, readResult.informationElements.length);
+        assertEquals(InformationElement.EID_HT_OPERATION,
+                readResult.informationElements[2].id);
+        assertEquals(4, readResult.getInformationElements().size());
+    }
+
+    /**
+     * Verify that an information element without bytes is parceled without bytes.
+     */
+    @Test
+    public void testParcelReadWriteInformationElementWithoutBytes() {
+        List<ScanResult> results = createScanResults(2);
+        results.get(0).informationElements[1].bytes = null;
+
+        List<ScanResult> readResults = parcelReadWrite(results);
+        InformationElement[] ies = readResults.get(0).informationElements;
+        assertEquals(results.get(0).informationElements.length, ies.length);
+        assertEquals(results.get(0).informationElements[1].id, ies[1].id);
+        assertNull(ies[1].bytes);
+        assertArrayEquals(results.get(0).informationElements[2].bytes, ies[2].bytes);
+        assertScanResultEquals(results.get(1), readResults.get(1));
+    }
+
+    /**
+     * Verify that an empty list can be parceled.
+     */
+    @Test
+    public void testParcelReadWriteEmptyList() {
+        assertTrue(parcelReadWrite(new ArrayList<>()).isEmpty());
+    }
+
+    /**
+     * Verify that the compact encoding of a large list of scan results is smaller than the
+     * encoding of the individual scan results.
+     */
+    @Test
+    public void testCompactEncodingSmallerThanTypedList() {
+        List<ScanResult> results = createScanResults(500);
+
+        Parcel typedListParcel = Parcel.obtain();
+        typedListParcel.writeTypedList(results);
+        Parcel compactParcel = Parcel.obtain();
+        new CompactScanResultList(results).writeToParcel(compactParcel, 0);
+
+        assertTrue(compactParcel.dataSize() * 5 < typedListParcel.dataSize() * 4);
+        typedListParcel.recycle();
+        compactParcel.recycle();
+        assertEquals(Arrays.asList(results.get(0).informationElements),
+                parcelReadWrite(results).get(0).getInformationElements());
+    }
+}
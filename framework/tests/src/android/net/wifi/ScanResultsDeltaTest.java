@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.net.wifi;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.os.Parcel;
+
+import androidx.test.filters.SmallTest;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+/**
+ * Unit tests for {@link android.net.wifi.ScanResultsDelta}.
+ */
+@SmallTest
+public class ScanResultsDeltaTest {
+    private static final String TEST_SSID = "\"test_ssid\"";
+    private static final String TEST_BSSID_1 = "04:ac:fe:45:34:10";
+    private static final String TEST_BSSID_2 = "04:ac:fe:45:34:11";
+
+    /**
+     * Verify parcel read/write for ScanResultsDelta.
+     */
+    @Test
+    public void testParcelReadWrite() {
+        ScanResult scanResult = new ScanResult();
+        scanResult.SSID = TEST_SSID;
+        scanResult.BSSID = TEST_BSSID_1;
+        scanResult.frequency = 2412;
+        ScanResultsDelta writeDelta = new ScanResultsDelta(7, false,
+                Arrays.asList(scanResult), Arrays.asList(TEST_BSSID_2));
+
+        Parcel parcel = Parcel.obtain();
+        writeDelta.writeToParcel(parcel, 0);
+        parcel.setDataPosition(0);
+        ScanResultsDelta readDelta = ScanResultsDelta.CREATOR.createFromParcel(parcel);
+        parcel.recycle();
+
+        assertThat(readDelta.getGeneration()).isEqualTo(7);
+        assertThat(readDelta.isFullSnapshot()).isFalse();
+        assertThat(readDelta.getUpdatedResults()).hasSize(1);
+        assertThat(readDelta.getUpdatedResults().get(0).BSSID).isEqualTo(TEST_BSSID_1);
+        assertThat(readDelta.getUpdatedResults().get(0).frequency).isEqualTo(2412);
+        assertThat(readDelta.getRemovedBssids()).containsExactly(TEST_BSSID_2);
+    }
+}
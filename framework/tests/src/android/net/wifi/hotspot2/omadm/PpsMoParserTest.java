@@ -270,4 +270,32 @@ public class PpsMoParserTest {
         assertEquals(null, PpsMoParser.parseMoText(
                 loadResourceFile(PPS_MO_XML_FILE_INVALID_NAME)));
     }
+
+    @Test
+    public void parsePPSMOTreeWithUnknownUrn() throws Exception {
+        String ppsMoTree = loadResourceFile(VALID_PPS_MO_XML_FILE).replace(
+                "urn:wfa:mo:hotspot2dot0-perprovidersubscription:1.0",
+                "urn:wfa:mo:unknown:1.0");
+        assertEquals(null, PpsMoParser.parseMoText(ppsMoTree));
+    }
+
+    @Test
+    public void parsePPSMOTreeWithUnknownRoot() throws Exception {
+        String ppsMoTree = loadResourceFile(VALID_PPS_MO_XML_FILE).replace(
+                "MgmtTree", "Tree");
+        assertEquals(null, PpsMoParser.parseMoText(ppsMoTree));
+    }
+
+    /**
+     * Verify that elements nested within a Value element are ignored, and only the text enclosed
+     * directly within the Value element is used.
+     */
+    @Test
+    public void parsePPSMOTreeIgnoresElementsNestedInValue() throws Exception {
+        String ppsMoTree = loadResourceFile(VALID_PPS_MO_XML_FILE).replace(
+                "<Value>Century House</Value>",
+                "<Value> Century <Ignored>Foo</Ignored>House</Value>");
+        assertTrue(generateConfigurationFromPPSMOTree().equals(
+                PpsMoParser.parseMoText(ppsMoTree)));
+    }
 }
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.net.wifi.p2p;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.os.Parcel;
+
+import androidx.test.filters.SmallTest;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+/**
+ * Unit tests for {@link android.net.wifi.p2p.WifiP2pDeviceListDelta}.
+ */
+@SmallTest
+public class WifiP2pDeviceListDeltaTest {
+    private static final String TEST_DEVICE_NAME = "Android_HelloWorld";
+    private static final String TEST_DEVICE_ADDRESS_1 = "aa:bb:cc:11:22:33";
+    private static final String TEST_DEVICE_ADDRESS_2 = "aa:bb:cc:11:22:34";
+
+    /**
+     * Verify parcel read/write for WifiP2pDeviceListDelta.
+     */
+    @Test
+    public void testParcelReadWrite() {
+        WifiP2pDevice device = new WifiP2pDevice();
+        device.deviceName = TEST_DEVICE_NAME;
+        device.deviceAddress = TEST_DEVICE_ADDRESS_1;
+        WifiP2pDeviceListDelta writeDelta = new WifiP2pDeviceListDelta(5, false,
+                Arrays.asList(device), Arrays.asList(TEST_DEVICE_ADDRESS_2));
+
+        Parcel parcel = Parcel.obtain();
+        writeDelta.writeToParcel(parcel, 0);
+        parcel.setDataPosition(0);
+        WifiP2pDeviceListDelta readDelta =
+                WifiP2pDeviceListDelta.CREATOR.createFromParcel(parcel);
+        parcel.recycle();
+
+        assertThat(readDelta.getGeneration()).isEqualTo(5);
+        assertThat(readDelta.isFullSnapshot()).isFalse();
+        assertThat(readDelta.getUpdatedDevices()).hasSize(1);
+        assertThat(readDelta.getUpdatedDevices().get(0).deviceName).isEqualTo(TEST_DEVICE_NAME);
+        assertThat(readDelta.getUpdatedDevices().get(0).deviceAddress)
+                .isEqualTo(TEST_DEVICE_ADDRESS_1);
+        assertThat(readDelta.getRemovedDeviceAddresses()).containsExactly(TEST_DEVICE_ADDRESS_2);
+    }
+}
@@ -20,6 +20,7 @@ import android.annotation.NonNull;
 import android.net.DhcpInfo;
 import android.net.Network;
 import android.net.wifi.CoexUnsafeChannel;
+import android.net.wifi.CompactScanResultList;
 import android.net.wifi.IActionListener;
 import android.net.wifi.ICoexCallback;
 import android.net.wifi.IDppCallback;
@@ -37,6 +38,7 @@ import android.net.wifi.IWifiConnectedNetworkScorer;
 import android.net.wifi.IWifiManager;
 import android.net.wifi.IWifiVerboseLoggingStatusChangedListener;
 import android.net.wifi.ScanResult;
+import android.net.wifi.ScanResultsDelta;
 import android.net.wifi.SoftApConfiguration;
 import android.net.wifi.WifiAvailableChannel;
 import android.net.wifi.WifiConfiguration;
@@ -212,7 +214,14 @@ public class BaseWifiService extends IWifiManager.Stub {
     }
 
     @Override
-    public List<ScanResult> getScanResults(String callingPackage, String callingFeatureId) {
+    public CompactScanResultList getScanResults(String callingPackage,
+            String callingFeatureId) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ScanResultsDelta getScanResultsDelta(long sinceGeneration, String callingPackage,
+            String callingFeatureId) {
         throw new UnsupportedOperationException();
     }
 
@@ -48,24 +48,38 @@ public class ByteBufferReader {
             throw new IllegalArgumentException("Invalid size " + size);
         }
 
-        // Read the necessary bytes.
-        byte[] octets = new byte[size];
-        payload.get(octets);
+        if (size > payload.remaining()) {
+            throw new BufferUnderflowException();
+        }
 
         // Format the value based on byte order.
         long value = 0;
         if (byteOrder == ByteOrder.LITTLE_ENDIAN) {
-            for (int n = octets.length - 1; n >= 0; n--) {
-                value = (value << Byte.SIZE) | (octets[n] & 0xFF);
+            for (int n = 0; n < size; n++) {
+                value |= (long) (payload.get() & 0xFF) << (Byte.SIZE * n);
             }
         } else {
-            for (byte octet : octets) {
-                value = (value << Byte.SIZE) | (octet & 0xFF);
+            for (int n = 0; n < size; n++) {
+                value = (value << Byte.SIZE) | (payload.get() & 0xFF);
             }
         }
         return value;
     }
 
+    /**
+     * Advance the position of a buffer past the given number of bytes, without reading them.
+     *
+     * @param payload The buffer to advance
+     * @param length Number of bytes to skip
+     * @throws BufferUnderflowException
+     */
+    public static void skip(ByteBuffer payload, int length) {
+        if (length > payload.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        payload.position(payload.position() + length);
+    }
+
     /**
      * Read a string from a buffer. An empty String will be returned for a String with 0 length.
      *
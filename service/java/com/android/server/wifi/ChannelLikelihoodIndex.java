@@ -0,0 +1,246 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi;
+
+import android.annotation.NonNull;
+import android.util.ArrayMap;
+import android.util.SparseArray;
+
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Maintains the channels on which networks have been observed, ordered by how likely a scan on
+ * the channel is to find one of them. The likelihood of a channel is the number of observations
+ * on that channel, with older observations progressively decayed.
+ *
+ * The index is fed incrementally from {@link WifiScoreCard} frequency observations, so the
+ * channels for a partial scan can be fetched in the order of likelihood without sorting the
+ * networks and walking each network's channel history.
+ *
+ * Note: This class is not thread-safe. It needs to be invoked from the main Wifi thread only.
+ */
+public class ChannelLikelihoodIndex {
+    // Once a channel reaches this many observations, all the counts are halved so that recent
+    // observations weigh more than old ones.
+    @VisibleForTesting
+    static final int COUNT_DECAY_THRESHOLD = 1024;
+
+    private static class Observation {
+        public int count;
+        public long lastSeenMs;
+    }
+
+    private static class ChannelEntry {
+        public final int frequency;
+        // Sum of the counts of |observationsBySsid|.
+        public int count;
+        // Position of this entry in |mChannels|.
+        public int position;
+        public final ArrayMap<String, Observation> observationsBySsid = new ArrayMap<>();
+
+        ChannelEntry(int frequency) {
+            this.frequency = frequency;
+        }
+    }
+
+    private final Clock mClock;
+    // All channels, ordered by decreasing count.
+    private final List<ChannelEntry> mChannels = new ArrayList<>();
+    private final SparseArray<ChannelEntry> mChannelsByFrequency = new SparseArray<>();
+
+    public ChannelLikelihoodIndex(@NonNull Clock clock) {
+        mClock = clock;
+    }
+
+    /**
+     * Record that the network with the given SSID was observed on the given frequency.
+     */
+    public void noteFrequency(@NonNull String ssid, int frequency) {
+        noteFrequency(ssid, frequency, mClock.getElapsedSinceBootMillis());
+    }
+
+    /**
+     * Same as {@link #noteFrequency(String, int)}, for an observation made at |lastSeenMs|, e.g.
+     * one restored from persistent storage.
+     */
+    public void noteFrequency(@NonNull String ssid, int frequency, long lastSeenMs) {
+        ChannelEntry entry = mChannelsByFrequency.get(frequency);
+        if (entry == null) {
+            entry = new ChannelEntry(frequency);
+            entry.position = mChannels.size();
+            mChannels.add(entry);
+            mChannelsByFrequency.put(frequency, entry);
+        }
+        Observation observation = entry.observationsBySsid.get(ssid);
+        if (observation == null) {
+            observation = new Observation();
+            entry.observationsBySsid.put(ssid, observation);
+        }
+        observation.count++;
+        observation.lastSeenMs = Math.max(observation.lastSeenMs, lastSeenMs);
+        entry.count++;
+        moveUp(entry);
+        if (entry.count >= COUNT_DECAY_THRESHOLD) {
+            decayCounts();
+        }
+    }
+
+    /**
+     * Remove the observations of the network with the given SSID on the given frequency, once
+     * the frequency is no longer cached for the network.
+     */
+    public void removeFrequency(@NonNull String ssid, int frequency) {
+        ChannelEntry entry = mChannelsByFrequency.get(frequency);
+        if (entry == null) return;
+        Observation observation = entry.observationsBySsid.remove(ssid);
+        if (observation == null) return;
+        entry.count -= observation.count;
+        if (entry.observationsBySsid.isEmpty()) {
+            mChannels.remove(entry.position);
+            mChannelsByFrequency.remove(frequency);
+            for (int i = entry.position; i < mChannels.size(); i++) {
+                mChannels.get(i).position = i;
+            }
+        } else {
+            moveDown(entry);
+        }
+    }
+
+    /**
+     * Remove all the observations of the network with the given SSID.
+     */
+    public void removeNetwork(@NonNull String ssid) {
+        boolean changed = false;
+        for (int i = mChannels.size() - 1; i >= 0; i--) {
+            ChannelEntry entry = mChannels.get(i);
+            Observation observation = entry.observationsBySsid.remove(ssid);
+            if (observation == null) continue;
+            entry.count -= observation.count;
+            changed = true;
+            if (entry.observationsBySsid.isEmpty()) {
+                mChannels.remove(i);
+                mChannelsByFrequency.remove(entry.frequency);
+            }
+        }
+        if (changed) {
+            sortChannels();
+        }
+    }
+
+    /**
+     * Remove all observations.
+     */
+    public void clear() {
+        mChannels.clear();
+        mChannelsByFrequency.clear();
+    }
+
+    /**
+     * Get the most likely channels to find any of the given networks on.
+     * Runs in time proportional to the number of channels returned, plus the number of more
+     * likely channels on which none of the networks were recently observed.
+     *
+     * @param ssids SSIDs of the networks to consider.
+     * @param maxCount Maximum number of channels to return. If equals to 0, means no limit.
+     * @param ageInMillis Only consider observations younger than this value.
+     * @return set of channel frequencies.
+     */
+    public @NonNull Set<Integer> getTopChannels(@NonNull Set<String> ssids, int maxCount,
+            long ageInMillis) {
+        Set<Integer> channels = new HashSet<>();
+        addTopChannels(channels, ssids, maxCount, ageInMillis);
+        return channels;
+    }
+
+    /**
+     * Same as {@link #getTopChannels(Set, int, long)}, but adds the channels to |channels|
+     * until it holds |maxCount| channels.
+     */
+    public void addTopChannels(@NonNull Set<Integer> channels, @NonNull Set<String> ssids,
+            int maxCount, long ageInMillis) {
+        long nowMs = mClock.getElapsedSinceBootMillis();
+        for (ChannelEntry entry : mChannels) {
+            if (maxCount > 0 && channels.size() >= maxCount) break;
+            for (int i = 0; i < entry.observationsBySsid.size(); i++) {
+                if (nowMs - entry.observationsBySsid.valueAt(i).lastSeenMs <= ageInMillis
+                        && ssids.contains(entry.observationsBySsid.keyAt(i))) {
+                    channels.add(entry.frequency);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Dump the channels in order of likelihood.
+     */
+    public void dump(@NonNull PrintWriter pw) {
+        pw.println("ChannelLikelihoodIndex - Log Begin ----");
+        for (ChannelEntry entry : mChannels) {
+            pw.println("  " + entry.frequency + ": count=" + entry.count
+                    + " networks=" + entry.observationsBySsid.size());
+        }
+        pw.println("ChannelLikelihoodIndex - Log End ----");
+    }
+
+    private void moveUp(ChannelEntry entry) {
+        while (entry.position > 0) {
+            ChannelEntry previous = mChannels.get(entry.position - 1);
+            if (previous.count >= entry.count) break;
+            mChannels.set(entry.position, previous);
+            previous.position = entry.position;
+            entry.position--;
+            mChannels.set(entry.position, entry);
+        }
+    }
+
+    private void moveDown(ChannelEntry entry) {
+        while (entry.position < mChannels.size() - 1) {
+            ChannelEntry next = mChannels.get(entry.position + 1);
+            if (next.count <= entry.count) break;
+            mChannels.set(entry.position, next);
+            next.position = entry.position;
+            entry.position++;
+            mChannels.set(entry.position, entry);
+        }
+    }
+
+    private void decayCounts() {
+        for (ChannelEntry entry : mChannels) {
+            entry.count = 0;
+            for (int i = 0; i < entry.observationsBySsid.size(); i++) {
+                Observation observation = entry.observationsBySsid.valueAt(i);
+                observation.count = (observation.count + 1) / 2;
+                entry.count += observation.count;
+            }
+        }
+        sortChannels();
+    }
+
+    private void sortChannels() {
+        mChannels.sort((a, b) -> Integer.compare(b.count, a.count));
+        for (int i = 0; i < mChannels.size(); i++) {
+            mChannels.get(i).position = i;
+        }
+    }
+}
@@ -140,10 +140,19 @@ public class ConfigurationMap {
      * Essentially checks if network config and scan result have the same SSID and encryption type.
      */
     public WifiConfiguration getByScanResultForCurrentUser(ScanResult scanResult) {
-        return mScanResultMatchInfoMapForCurrentUser.get(
+        return getByScanResultMatchInfoForCurrentUser(
                 ScanResultMatchInfo.fromScanResult(scanResult));
     }
 
+    /**
+     * Retrieves the |WifiConfiguration| object matching the provided |scanResultMatchInfo| from
+     * the internal map.
+     */
+    public WifiConfiguration getByScanResultMatchInfoForCurrentUser(
+            ScanResultMatchInfo scanResultMatchInfo) {
+        return mScanResultMatchInfoMapForCurrentUser.get(scanResultMatchInfo);
+    }
+
     public Collection<WifiConfiguration> valuesForAllUsers() {
         return mPerID.values();
     }
@@ -16,6 +16,7 @@
 
 package com.android.server.wifi;
 
+import android.annotation.NonNull;
 import android.net.wifi.AnqpInformationElement;
 import android.net.wifi.ScanResult;
 import android.net.wifi.WifiSsid;
@@ -39,6 +40,12 @@ public class ScanDetail {
     private volatile NetworkDetail mNetworkDetail;
     private long mSeen = 0;
     private byte[] mInformationElementRawData;
+    // Match info of |mScanResult|, along with the SSID and capabilities it was computed from.
+    // Scan results are matched against networks many times per scan, so this is computed once
+    // and only recomputed if the SSID or capabilities of the scan result are replaced.
+    private ScanResultMatchInfo mScanResultMatchInfo;
+    private String mScanResultMatchInfoSsid;
+    private String mScanResultMatchInfoCapabilities;
 
     public ScanDetail(NetworkDetail networkDetail, WifiSsid wifiSsid, String bssid,
             String caps, int level, int frequency, long tsf,
@@ -121,6 +128,25 @@ public class ScanDetail {
         return mScanResult;
     }
 
+    /**
+     * Return the {@link ScanResultMatchInfo} of the scan result, used to match it against
+     * network configurations and suggestions.
+     * Note: The returned object is shared by all callers and must not be modified.
+     */
+    public @NonNull ScanResultMatchInfo getScanResultMatchInfo() {
+        ScanResultMatchInfo matchInfo = mScanResultMatchInfo;
+        String ssid = mScanResult.SSID;
+        String capabilities = mScanResult.capabilities;
+        if (matchInfo == null || ssid != mScanResultMatchInfoSsid
+                || capabilities != mScanResultMatchInfoCapabilities) {
+            matchInfo = ScanResultMatchInfo.fromScanResult(mScanResult);
+            mScanResultMatchInfo = matchInfo;
+            mScanResultMatchInfoSsid = ssid;
+            mScanResultMatchInfoCapabilities = capabilities;
+        }
+        return matchInfo;
+    }
+
     public NetworkDetail getNetworkDetail() {
         return mNetworkDetail;
     }
@@ -21,12 +21,14 @@ import android.net.wifi.ScanResult;
 import android.net.wifi.WifiConfiguration;
 
 import com.android.server.wifi.hotspot2.NetworkDetail;
+import com.android.server.wifi.util.LongHashMap;
+import com.android.server.wifi.util.NativeUtil;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
+import java.util.List;
 
 /**
  * Maps BSSIDs to their individual ScanDetails for a given WifiConfiguration.
@@ -39,7 +41,8 @@ public class ScanDetailCache {
     private final WifiConfiguration mConfig;
     private final int mMaxSize;
     private final int mTrimSize;
-    private final HashMap<String, ScanDetail> mMap;
+    // Keyed by the BSSID packed with NativeUtil#macAddressStringToLong.
+    private final LongHashMap<ScanDetail> mMap;
 
     /**
      * Scan Detail cache associated with each configured network.
@@ -56,7 +59,7 @@ public class ScanDetailCache {
         mConfig = config;
         mMaxSize = maxSize;
         mTrimSize = trimSize;
-        mMap = new HashMap(16, 0.75f);
+        mMap = new LongHashMap<>();
     }
 
     void put(ScanDetail scanDetail) {
@@ -65,7 +68,11 @@ public class ScanDetailCache {
             trim();
         }
 
-        mMap.put(scanDetail.getBSSIDString(), scanDetail);
+        long bssid = NativeUtil.macAddressStringToLong(scanDetail.getBSSIDString());
+        if (bssid == NativeUtil.INVALID_MAC_LONG) {
+            return;
+        }
+        mMap.put(bssid, scanDetail);
     }
 
     /**
@@ -86,11 +93,11 @@ public class ScanDetailCache {
      * @return {@code null} if no match ScanDetail is found.
      */
     public ScanDetail getScanDetail(@NonNull String bssid) {
-        return mMap.get(bssid);
+        return mMap.get(NativeUtil.macAddressStringToLong(bssid));
     }
 
     void remove(@NonNull String bssid) {
-        mMap.remove(bssid);
+        mMap.remove(NativeUtil.macAddressStringToLong(bssid));
     }
 
     int size() {
@@ -102,7 +109,12 @@ public class ScanDetailCache {
     }
 
     Collection<String> keySet() {
-        return mMap.keySet();
+        List<ScanDetail> scanDetails = mMap.values();
+        List<String> bssids = new ArrayList<>(scanDetails.size());
+        for (ScanDetail scanDetail : scanDetails) {
+            bssids.add(scanDetail.getBSSIDString());
+        }
+        return bssids;
     }
 
     Collection<ScanDetail> values() {
@@ -138,7 +150,7 @@ public class ScanDetailCache {
         for (int i = 0; i < currentSize - mTrimSize; i++) {
             // Remove oldest results from scan cache
             ScanDetail result = list.get(i);
-            mMap.remove(result.getBSSIDString());
+            mMap.remove(NativeUtil.macAddressStringToLong(result.getBSSIDString()));
         }
     }
 
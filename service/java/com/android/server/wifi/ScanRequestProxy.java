@@ -26,6 +26,7 @@ import android.content.Context;
 import android.content.Intent;
 import android.net.wifi.IScanResultsCallback;
 import android.net.wifi.ScanResult;
+import android.net.wifi.ScanResultsDelta;
 import android.net.wifi.WifiManager;
 import android.net.wifi.WifiScanner;
 import android.os.Handler;
@@ -35,22 +36,27 @@ import android.os.RemoteException;
 import android.os.UserHandle;
 import android.os.WorkSource;
 import android.util.ArrayMap;
+import android.util.ArraySet;
 import android.util.Log;
 import android.util.Pair;
 
 import com.android.internal.annotations.VisibleForTesting;
 import com.android.modules.utils.build.SdkLevel;
 import com.android.server.wifi.util.ScanResultUtil;
+import com.android.server.wifi.util.VersionedSnapshot;
 import com.android.server.wifi.util.WifiPermissionsUtil;
 import com.android.wifi.resources.R;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.annotation.concurrent.NotThreadSafe;
 
@@ -85,6 +91,9 @@ public class ScanRequestProxy {
     public static final int SCAN_REQUEST_THROTTLE_MAX_IN_TIME_WINDOW_FG_APPS = 4;
     @VisibleForTesting
     public static final int SCAN_REQUEST_THROTTLE_INTERVAL_BG_APPS_MS = 30 * 60 * 1000;
+    // Number of scan result generations a delta can be computed from.
+    @VisibleForTesting
+    public static final int MAX_SCAN_RESULTS_DELTA_HISTORY = 10;
 
     private final Context mContext;
     private final Handler mHandler;
@@ -116,6 +125,13 @@ public class ScanRequestProxy {
     // Stored as a map of bssid -> ScanResult to allow other clients to perform ScanResult lookup
     // for bssid more efficiently.
     private final Map<String, ScanResult> mLastScanResultsMap = new HashMap<>();
+    // Immutable copy of |mLastScanResultsMap| values, republished whenever the map changes so
+    // that binder threads can read the latest scan results without posting to the Wifi thread.
+    private final VersionedSnapshot<List<ScanResult>> mScanResultsSnapshot =
+            new VersionedSnapshot<>(Collections.emptyList());
+    // BSSIDs added, updated or removed by each of the last few published versions of
+    // |mScanResultsSnapshot|, oldest first. Used to compute scan result deltas.
+    private final ArrayDeque<Set<String>> mRecentChangedBssids = new ArrayDeque<>();
     // external ScanResultCallback tracker
     private final RemoteCallbackList<IScanResultsCallback> mRegisteredScanResultsCallbacks;
     // Global scan listener for listening to all scan requests.
@@ -149,8 +165,19 @@ public class ScanRequestProxy {
             // Only process full band scan results.
             if (WifiScanner.isFullBandScan(scanData.getScannedBandsInternal(), false)) {
                 // Store the last scan results & send out the scan completion broadcast.
+                Set<String> changedBssids = new ArraySet<>();
+                Set<String> removedBssids = new ArraySet<>(mLastScanResultsMap.keySet());
+                for (ScanResult scanResult : scanResults) {
+                    removedBssids.remove(scanResult.BSSID);
+                    if (isScanResultChanged(
+                            mLastScanResultsMap.get(scanResult.BSSID), scanResult)) {
+                        changedBssids.add(scanResult.BSSID);
+                    }
+                }
+                changedBssids.addAll(removedBssids);
                 mLastScanResultsMap.clear();
                 Arrays.stream(scanResults).forEach(s -> mLastScanResultsMap.put(s.BSSID, s));
+                publishScanResultsSnapshot(changedBssids);
                 sendScanResultBroadcast(true);
                 sendScanResultsAvailableToCallbacks();
             }
@@ -508,6 +535,80 @@ public class ScanRequestProxy {
         return new ArrayList<>(mLastScanResultsMap.values());
     }
 
+    /**
+     * Return the results of the most recent access point scan as an immutable list.
+     * Unlike the other methods of this class, this may be called from any thread.
+     * @return the list of results
+     */
+    public @NonNull List<ScanResult> getScanResultsSnapshot() {
+        return mScanResultsSnapshot.getValue();
+    }
+
+    private void publishScanResultsSnapshot(@NonNull Set<String> changedBssids) {
+        mScanResultsSnapshot.publish(Collections.unmodifiableList(
+                new ArrayList<>(mLastScanResultsMap.values())));
+        mRecentChangedBssids.addLast(changedBssids);
+        if (mRecentChangedBssids.size() > MAX_SCAN_RESULTS_DELTA_HISTORY) {
+            mRecentChangedBssids.removeFirst();
+        }
+    }
+
+    private static boolean isScanResultChanged(@Nullable ScanResult oldScanResult,
+            @NonNull ScanResult newScanResult) {
+        return oldScanResult == null
+                || oldScanResult.timestamp != newScanResult.timestamp
+                || oldScanResult.level != newScanResult.level
+                || oldScanResult.frequency != newScanResult.frequency;
+    }
+
+    /**
+     * Return the changes to the results of the most recent access point scans since the provided
+     * generation. Generations are the versions of the published scan results snapshot.
+     * If |sinceGeneration| is unknown or too old, all the cached scan results are returned as a
+     * full snapshot instead.
+     *
+     * @param sinceGeneration generation of the scan results held by the caller.
+     * @return the delta from |sinceGeneration| to the current generation.
+     */
+    public @NonNull ScanResultsDelta getScanResultsDelta(long sinceGeneration) {
+        long currentGeneration = mScanResultsSnapshot.getVersion();
+        // Generation of the oldest snapshot we can compute a delta from.
+        long oldestGeneration = currentGeneration - mRecentChangedBssids.size();
+        if (sinceGeneration < oldestGeneration || sinceGeneration > currentGeneration) {
+            return getFullScanResultsDelta();
+        }
+        Set<String> changedBssids = new ArraySet<>();
+        long generation = oldestGeneration;
+        for (Set<String> bssids : mRecentChangedBssids) {
+            generation++;
+            if (generation > sinceGeneration) {
+                changedBssids.addAll(bssids);
+            }
+        }
+        List<ScanResult> updatedResults = new ArrayList<>();
+        List<String> removedBssids = new ArrayList<>();
+        for (String bssid : changedBssids) {
+            ScanResult scanResult = mLastScanResultsMap.get(bssid);
+            if (scanResult != null) {
+                updatedResults.add(scanResult);
+            } else {
+                removedBssids.add(bssid);
+            }
+        }
+        return new ScanResultsDelta(currentGeneration, false, updatedResults, removedBssids);
+    }
+
+    /**
+     * Return all the results of the most recent access point scan as a full snapshot
+     * {@link ScanResultsDelta}. Unlike the other methods of this class, this may be called from
+     * any thread.
+     */
+    public @NonNull ScanResultsDelta getFullScanResultsDelta() {
+        VersionedSnapshot.Snapshot<List<ScanResult>> snapshot = mScanResultsSnapshot.get();
+        return new ScanResultsDelta(snapshot.version, true, snapshot.value,
+                Collections.emptyList());
+    }
+
     /**
      * Return the ScanResult from the most recent access point scan for the provided bssid.
      *
@@ -526,7 +627,9 @@ public class ScanRequestProxy {
      * Clear the stored scan results.
      */
     private void clearScanResults() {
+        Set<String> changedBssids = new ArraySet<>(mLastScanResultsMap.keySet());
         mLastScanResultsMap.clear();
+        publishScanResultsSnapshot(changedBssids);
         mLastScanTimestampForBgApps = 0;
         mLastScanTimestampsForFgApps.clear();
     }
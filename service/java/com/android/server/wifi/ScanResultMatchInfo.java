@@ -64,6 +64,8 @@ public class ScanResultMatchInfo {
         // TODO: This matching algo works only if the scan result contains a string SSID.
         // However, according to our public documentation ths {@link WifiConfiguration#SSID} can
         // either have a hex string or quoted ASCII string SSID.
+        // The SSIDs of the scan results from wificond are pooled by WifiNative, see
+        // ScanResultInterner, so this isn't interned here.
         info.networkSsid = ScanResultUtil.createQuotedSSID(scanResult.SSID);
         info.securityParamsList =
                 ScanResultUtil.generateSecurityParamsListFromScanResult(scanResult);
@@ -230,7 +232,8 @@ public class ScanResultMatchInfo {
 
     @Override
     public int hashCode() {
-        return Objects.hash(networkSsid);
+        // String caches its hash code, avoid the varargs allocation of Objects.hash().
+        return Objects.hashCode(networkSsid);
     }
 
     @Override
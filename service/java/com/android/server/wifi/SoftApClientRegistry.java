@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi;
+
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+import android.net.MacAddress;
+import android.net.wifi.WifiClient;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Clients connected to a soft AP, indexed by MAC address and grouped by AP instance.
+ *
+ * Lookups by MAC address and the total and per instance client counts are O(1), so that
+ * client connection events don't need to copy or walk the client lists. The per instance
+ * client lists are kept in connection order and are passed as is to the soft AP callbacks.
+ */
+class SoftApClientRegistry {
+    private final Map<MacAddress, WifiClient> mClientsByMac = new LinkedHashMap<>();
+    private final Map<String, List<WifiClient>> mClientsByInstance = new HashMap<>();
+
+    /**
+     * Whether the given client is connected to the AP instance of the client.
+     */
+    public boolean contains(@NonNull WifiClient client) {
+        return client.equals(mClientsByMac.get(client.getMacAddress()));
+    }
+
+    /**
+     * Get the connected client with the given MAC address, on any AP instance.
+     */
+    @Nullable
+    public WifiClient getClient(@NonNull MacAddress macAddress) {
+        return mClientsByMac.get(macAddress);
+    }
+
+    /**
+     * Add a connected client. If the client was connected to another AP instance, it is moved
+     * to the AP instance of the given client.
+     *
+     * @return false if the client was already connected to this AP instance.
+     */
+    public boolean add(@NonNull WifiClient client) {
+        WifiClient previous = mClientsByMac.put(client.getMacAddress(), client);
+        if (client.equals(previous)) {
+            return false;
+        }
+        if (previous != null) {
+            removeFromInstance(previous);
+        }
+        addInstance(client.getApInstanceIdentifier()).add(client);
+        return true;
+    }
+
+    /**
+     * Remove a client that was connected to the AP instance of the given client.
+     *
+     * @return false if the client was not connected to this AP instance.
+     */
+    public boolean remove(@NonNull WifiClient client) {
+        if (!contains(client)) {
+            return false;
+        }
+        mClientsByMac.remove(client.getMacAddress());
+        removeFromInstance(client);
+        return true;
+    }
+
+    private void removeFromInstance(@NonNull WifiClient client) {
+        List<WifiClient> clients = mClientsByInstance.get(client.getApInstanceIdentifier());
+        if (clients != null) {
+            clients.remove(client);
+        }
+    }
+
+    /**
+     * Add an AP instance without clients if it isn't known yet.
+     *
+     * @return the clients connected to the AP instance.
+     */
+    @NonNull
+    public List<WifiClient> addInstance(@NonNull String instance) {
+        return mClientsByInstance.computeIfAbsent(instance, k -> new ArrayList<>());
+    }
+
+    /**
+     * Remove an AP instance and all its clients.
+     */
+    public void removeInstance(@NonNull String instance) {
+        List<WifiClient> clients = mClientsByInstance.remove(instance);
+        if (clients == null) return;
+        for (WifiClient client : clients) {
+            mClientsByMac.remove(client.getMacAddress());
+        }
+    }
+
+    /**
+     * Number of clients connected to all AP instances.
+     */
+    public int getCount() {
+        return mClientsByMac.size();
+    }
+
+    /**
+     * Number of clients connected to the given AP instance.
+     */
+    public int getCount(@NonNull String instance) {
+        List<WifiClient> clients = mClientsByInstance.get(instance);
+        return clients == null ? 0 : clients.size();
+    }
+
+    /**
+     * Known AP instances, including the ones without clients.
+     */
+    @NonNull
+    public Set<String> getInstances() {
+        return Collections.unmodifiableSet(mClientsByInstance.keySet());
+    }
+
+    /**
+     * Clients connected to all AP instances, in connection order. This is a view which must
+     * not be used across updates of the registry.
+     */
+    @NonNull
+    public Collection<WifiClient> getClients() {
+        return Collections.unmodifiableCollection(mClientsByMac.values());
+    }
+
+    /**
+     * Clients grouped by AP instance, as reported to the soft AP callbacks. This is a view of
+     * the registry, so receivers which keep it must copy it.
+     */
+    @NonNull
+    public Map<String, List<WifiClient>> getClientsByInstance() {
+        return mClientsByInstance;
+    }
+
+    /**
+     * Remove all AP instances and clients.
+     */
+    public void clear() {
+        mClientsByMac.clear();
+        mClientsByInstance.clear();
+    }
+
+    @Override
+    public String toString() {
+        return mClientsByInstance.toString();
+    }
+}
@@ -62,11 +62,10 @@ import java.io.FileDescriptor;
 import java.io.PrintWriter;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -146,7 +145,7 @@ public class SoftApManager implements ActiveModeManager {
     @NonNull
     private SoftApCapability mCurrentSoftApCapability;
 
-    private Map<String, List<WifiClient>> mConnectedClientWithApInfoMap = new HashMap<>();
+    private final SoftApClientRegistry mConnectedClients = new SoftApClientRegistry();
     @VisibleForTesting
     Map<WifiClient, Integer> mPendingDisconnectClients = new HashMap<>();
 
@@ -475,7 +474,7 @@ public class SoftApManager implements ActiveModeManager {
         pw.println("mCurrentSoftApConfiguration.mBand: " + mCurrentSoftApConfiguration.getBand());
         pw.println("mCurrentSoftApConfiguration.hiddenSSID: "
                 + mCurrentSoftApConfiguration.isHiddenSsid());
-        pw.println("getConnectedClientList().size(): " + getConnectedClientList().size());
+        pw.println("mConnectedClients.getCount(): " + mConnectedClients.getCount());
         pw.println("mTimeoutEnabled: " + mTimeoutEnabled);
         pw.println("mBridgedModeOpportunisticsShutdownTimeoutEnabled: "
                 + mBridgedModeOpportunisticsShutdownTimeoutEnabled);
@@ -677,7 +676,7 @@ public class SoftApManager implements ActiveModeManager {
      * This is usually done just before stopSoftAp().
      */
     private void disconnectAllClients() {
-        for (WifiClient client : getConnectedClientList()) {
+        for (WifiClient client : mConnectedClients.getClients()) {
             mWifiNative.forceClientDisconnect(mApInterfaceName, client.getMacAddress(),
                     SAP_CLIENT_DISCONNECT_REASON_CODE_UNSPECIFIED);
         }
@@ -697,6 +696,10 @@ public class SoftApManager implements ActiveModeManager {
         Log.d(getTag(), "Fail to disconnect client: " + client.getMacAddress()
                 + ", add it into pending list");
         mPendingDisconnectClients.put(client, reason);
+        schedulePendingDisconnection();
+    }
+
+    private void schedulePendingDisconnection() {
         mStateMachine.getHandler().removeMessages(
                 SoftApStateMachine.CMD_FORCE_DISCONNECT_PENDING_CLIENTS);
         mStateMachine.sendMessageDelayed(
@@ -704,12 +707,41 @@ public class SoftApManager implements ActiveModeManager {
                 SOFT_AP_PENDING_DISCONNECTION_CHECK_DELAY_MS);
     }
 
-    private List<WifiClient> getConnectedClientList() {
-        List<WifiClient> connectedClientList = new ArrayList<>();
-        for (List<WifiClient> it : mConnectedClientWithApInfoMap.values()) {
-            connectedClientList.addAll(it);
+    /**
+     * Force disconnect a batch of clients. The clients which fail to disconnect are added into
+     * the pending list, and the pending disconnection is scheduled once for the whole batch.
+     *
+     * @param clientsWithReason the clients to disconnect with their disconnection reason code.
+     */
+    private void forceDisconnectClients(Map<WifiClient, Integer> clientsWithReason) {
+        boolean hasPendingClient = false;
+        for (Map.Entry<WifiClient, Integer> entry : clientsWithReason.entrySet()) {
+            WifiClient client = entry.getKey();
+            if (!mWifiNative.forceClientDisconnect(
+                    mApInterfaceName, client.getMacAddress(), entry.getValue())) {
+                Log.d(getTag(), "Fail to disconnect client: " + client.getMacAddress()
+                        + ", add it into pending list");
+                mPendingDisconnectClients.put(client, entry.getValue());
+                hasPendingClient = true;
+            }
+        }
+        if (hasPendingClient) {
+            schedulePendingDisconnection();
+        }
+    }
+
+    private boolean isClientBlocked(MacAddress clientAddress) {
+        return mBlockedClientList.contains(clientAddress)
+                || (mCurrentSoftApConfiguration.isClientControlByUserEnabled()
+                && !mAllowedClientList.contains(clientAddress));
+    }
+
+    private int getMaxClientCount(SoftApConfiguration config) {
+        int maxConfig = mCurrentSoftApCapability.getMaxSupportedClients();
+        if (config.getMaxNumberOfClients() > 0) {
+            maxConfig = Math.min(maxConfig, config.getMaxNumberOfClients());
         }
-        return connectedClientList;
+        return maxConfig;
     }
 
     private boolean checkSoftApClient(SoftApConfiguration config, WifiClient newClient) {
@@ -741,12 +773,8 @@ public class SoftApManager implements ActiveModeManager {
             }
             return false;
         }
-        int maxConfig = mCurrentSoftApCapability.getMaxSupportedClients();
-        if (config.getMaxNumberOfClients() > 0) {
-            maxConfig = Math.min(maxConfig, config.getMaxNumberOfClients());
-        }
-
-        if (getConnectedClientList().size() >= maxConfig) {
+        int maxConfig = getMaxClientCount(config);
+        if (mConnectedClients.getCount() >= maxConfig) {
             Log.i(getTag(), "No more room for new client:" + newClient);
             if (!mWifiNative.forceClientDisconnect(
                     mApInterfaceName, newClient.getMacAddress(),
@@ -963,7 +991,7 @@ public class SoftApManager implements ActiveModeManager {
                 // Don't trigger bridged mode shutdown timeout when only one active instance
                 // In Dual AP, one instance may already be closed due to LTE coexistence or DFS
                 // restrictions or due to inactivity. i.e. mCurrentSoftApInfoMap.size() is 1)
-                final int connectedClients = getConnectedClientList().size();
+                final int connectedClients = mConnectedClients.getCount();
                 if (isBridgedMode() && mCurrentSoftApInfoMap.size() != 1) {
                     if (mBridgedModeOpportunisticsShutdownTimeoutEnabled
                             && (connectedClients == 0 || getIdleInstances().size() != 0)) {
@@ -1026,9 +1054,8 @@ public class SoftApManager implements ActiveModeManager {
 
             private Set<String> getIdleInstances() {
                 Set<String> idleInstances = new HashSet<String>();
-                for (String instance : mConnectedClientWithApInfoMap.keySet()) {
-                    if (mConnectedClientWithApInfoMap.getOrDefault(
-                            instance, Collections.emptyList()).size() == 0) {
+                for (String instance : mConnectedClients.getInstances()) {
+                    if (mConnectedClients.getCount(instance) == 0) {
                         idleInstances.add(instance);
                     }
                 }
@@ -1055,53 +1082,36 @@ public class SoftApManager implements ActiveModeManager {
                         SoftApCapability.SOFTAP_FEATURE_CLIENT_FORCE_DISCONNECT)) {
                     return;
                 }
-                final int maxAllowedClientsByHardwareAndCarrier =
-                        mCurrentSoftApCapability.getMaxSupportedClients();
-                final int userApConfigMaxClientCount =
-                        mCurrentSoftApConfiguration.getMaxNumberOfClients();
-                int finalMaxClientCount = maxAllowedClientsByHardwareAndCarrier;
-                if (userApConfigMaxClientCount > 0) {
-                    finalMaxClientCount = Math.min(userApConfigMaxClientCount,
-                            maxAllowedClientsByHardwareAndCarrier);
+                int targetDisconnectClientNumber = mConnectedClients.getCount()
+                        - getMaxClientCount(mCurrentSoftApConfiguration);
+                boolean needCheckBlockedClients = !mBlockedClientList.isEmpty()
+                        || mCurrentSoftApConfiguration.isClientControlByUserEnabled();
+                if (!needCheckBlockedClients && targetDisconnectClientNumber <= 0) {
+                    return;
                 }
-                List<WifiClient> currentClients = getConnectedClientList();
-                int targetDisconnectClientNumber = currentClients.size() - finalMaxClientCount;
-                List<WifiClient> allowedConnectedList = new ArrayList<>();
-                Iterator<WifiClient> iterator = currentClients.iterator();
-                while (iterator.hasNext()) {
-                    WifiClient client = iterator.next();
-                    if (mBlockedClientList.contains(client.getMacAddress())
-                              || (mCurrentSoftApConfiguration.isClientControlByUserEnabled()
-                              && !mAllowedClientList.contains(client.getMacAddress()))) {
-                        Log.d(getTag(), "Force disconnect for not allowed client: " + client);
-                        if (!mWifiNative.forceClientDisconnect(
-                                mApInterfaceName, client.getMacAddress(),
-                                WifiManager.SAP_CLIENT_BLOCK_REASON_CODE_BLOCKED_BY_USER)) {
-                            addClientToPendingDisconnectionList(client,
+                Map<WifiClient, Integer> clientsToDisconnect = new LinkedHashMap<>();
+                if (needCheckBlockedClients) {
+                    for (WifiClient client : mConnectedClients.getClients()) {
+                        if (isClientBlocked(client.getMacAddress())) {
+                            Log.d(getTag(), "Force disconnect for not allowed client: " + client);
+                            clientsToDisconnect.put(client,
                                     WifiManager.SAP_CLIENT_BLOCK_REASON_CODE_BLOCKED_BY_USER);
+                            targetDisconnectClientNumber--;
                         }
-                        targetDisconnectClientNumber--;
-                    } else {
-                        allowedConnectedList.add(client);
                     }
                 }
-
                 if (targetDisconnectClientNumber > 0) {
-                    Iterator<WifiClient> allowedClientIterator = allowedConnectedList.iterator();
-                    while (allowedClientIterator.hasNext()) {
+                    for (WifiClient client : mConnectedClients.getClients()) {
                         if (targetDisconnectClientNumber == 0) break;
-                        WifiClient allowedClient = allowedClientIterator.next();
+                        if (clientsToDisconnect.containsKey(client)) continue;
                         Log.d(getTag(), "Force disconnect for client due to no more room: "
-                                + allowedClient);
-                        if (!mWifiNative.forceClientDisconnect(
-                                mApInterfaceName, allowedClient.getMacAddress(),
-                                WifiManager.SAP_CLIENT_BLOCK_REASON_CODE_NO_MORE_STAS)) {
-                            addClientToPendingDisconnectionList(allowedClient,
-                                    WifiManager.SAP_CLIENT_BLOCK_REASON_CODE_NO_MORE_STAS);
-                        }
+                                + client);
+                        clientsToDisconnect.put(client,
+                                WifiManager.SAP_CLIENT_BLOCK_REASON_CODE_NO_MORE_STAS);
                         targetDisconnectClientNumber--;
                     }
                 }
+                forceDisconnectClients(clientsToDisconnect);
             }
 
             /**
@@ -1120,11 +1130,9 @@ public class SoftApManager implements ActiveModeManager {
                 }
 
                 String apInstanceIdentifier = client.getApInstanceIdentifier();
-                List clientList = mConnectedClientWithApInfoMap.computeIfAbsent(
-                        apInstanceIdentifier, k -> new ArrayList<>());
-                int index = clientList.indexOf(client);
+                List<WifiClient> clientList = mConnectedClients.addInstance(apInstanceIdentifier);
 
-                if ((index != -1) == isConnected) {
+                if (mConnectedClients.contains(client) == isConnected) {
                     Log.e(getTag(), "Drop client connection event, client "
                             + client + "isConnected: " + isConnected
                             + " , duplicate event or client is blocked");
@@ -1133,18 +1141,14 @@ public class SoftApManager implements ActiveModeManager {
                 if (isConnected) {
                     boolean isAllow = checkSoftApClient(mCurrentSoftApConfiguration, client);
                     if (isAllow) {
-                        clientList.add(client);
+                        mConnectedClients.add(client);
                     } else {
                         return;
                     }
                 } else {
-                    if (null == clientList.remove(index)) {
-                        Log.e(getTag(), "client doesn't exist in list, it should NOT happen");
-                    }
+                    mConnectedClients.remove(client);
                 }
 
-                // Update clients list.
-                mConnectedClientWithApInfoMap.put(apInstanceIdentifier, clientList);
                 SoftApInfo currentInfoWithClientsChanged = mCurrentSoftApInfoMap
                         .get(apInstanceIdentifier);
                 Log.d(getTag(), "The connected wifi stations have changed with count: "
@@ -1153,15 +1157,15 @@ public class SoftApManager implements ActiveModeManager {
 
                 if (mSoftApCallback != null) {
                     mSoftApCallback.onConnectedClientsOrInfoChanged(mCurrentSoftApInfoMap,
-                            mConnectedClientWithApInfoMap, isBridgedMode());
+                            mConnectedClients.getClientsByInstance(), isBridgedMode());
                 } else {
                     Log.e(getTag(),
                             "SoftApCallback is null. Dropping ConnectedClientsChanged event.");
                 }
 
                 mWifiMetrics.addSoftApNumAssociatedStationsChangedEvent(
-                        getConnectedClientList().size(),
-                        mConnectedClientWithApInfoMap.get(apInstanceIdentifier).size(),
+                        mConnectedClients.getCount(),
+                        mConnectedClients.getCount(apInstanceIdentifier),
                         mOriginalModeConfiguration.getTargetMode(),
                         mCurrentSoftApInfoMap.get(apInstanceIdentifier));
 
@@ -1176,23 +1180,23 @@ public class SoftApManager implements ActiveModeManager {
                 if (apInfo == null) {
                     // Clean up
                     mCurrentSoftApInfoMap.clear();
-                    mConnectedClientWithApInfoMap.clear();
+                    mConnectedClients.clear();
                     mSoftApCallback.onConnectedClientsOrInfoChanged(mCurrentSoftApInfoMap,
-                            mConnectedClientWithApInfoMap, isBridgedMode());
+                            mConnectedClients.getClientsByInstance(), isBridgedMode());
                     return;
                 }
                 String changedInstance = apInfo.getApInstanceIdentifier();
                 if (apInfo.equals(mCurrentSoftApInfoMap.get(changedInstance))) {
                     if (isRemoved) {
                         boolean isClientConnected =
-                                mConnectedClientWithApInfoMap.get(changedInstance).size() > 0;
+                                mConnectedClients.getCount(changedInstance) > 0;
                         mCurrentSoftApInfoMap.remove(changedInstance);
-                        mConnectedClientWithApInfoMap.remove(changedInstance);
+                        mConnectedClients.removeInstance(changedInstance);
                         mSoftApCallback.onConnectedClientsOrInfoChanged(mCurrentSoftApInfoMap,
-                                mConnectedClientWithApInfoMap, isBridgedMode());
+                                mConnectedClients.getClientsByInstance(), isBridgedMode());
                         if (isClientConnected) {
                             mWifiMetrics.addSoftApNumAssociatedStationsChangedEvent(
-                                    getConnectedClientList().size(), 0,
+                                    mConnectedClients.getCount(), 0,
                                     mOriginalModeConfiguration.getTargetMode(), apInfo);
                         }
                         if (isBridgedMode()) {
@@ -1204,10 +1208,7 @@ public class SoftApManager implements ActiveModeManager {
                 }
 
                 // Make sure an empty client list is created when info updated
-                List clientList = mConnectedClientWithApInfoMap.computeIfAbsent(
-                        changedInstance, k -> new ArrayList<>());
-
-                if (clientList.size() != 0) {
+                if (mConnectedClients.addInstance(changedInstance).size() != 0) {
                     Log.e(getTag(), "The info: " + apInfo
                             + " changed when client connected, it should NOT happen!!");
                 }
@@ -1221,7 +1222,7 @@ public class SoftApManager implements ActiveModeManager {
                 mCurrentSoftApInfoMap.put(changedInstance, new SoftApInfo(apInfo));
                 if (!waitForAnotherSoftApInfoInBridgedMode) {
                     mSoftApCallback.onConnectedClientsOrInfoChanged(mCurrentSoftApInfoMap,
-                            mConnectedClientWithApInfoMap, isBridgedMode());
+                            mConnectedClients.getClientsByInstance(), isBridgedMode());
                 }
 
                 // ignore invalid freq and softap disable case for metrics
@@ -1247,10 +1248,10 @@ public class SoftApManager implements ActiveModeManager {
                     mModeListener.onStarted(SoftApManager.this);
                     mWifiMetrics.incrementSoftApStartResult(true, 0);
                     mCurrentSoftApInfoMap.clear();
-                    mConnectedClientWithApInfoMap.clear();
+                    mConnectedClients.clear();
                     if (mSoftApCallback != null) {
                         mSoftApCallback.onConnectedClientsOrInfoChanged(mCurrentSoftApInfoMap,
-                                mConnectedClientWithApInfoMap, isBridgedMode());
+                                mConnectedClients.getClientsByInstance(), isBridgedMode());
                     }
                 } else {
                     // the interface was up, but goes down
@@ -1286,7 +1287,7 @@ public class SoftApManager implements ActiveModeManager {
                 }
                 mSarManager.setSapWifiState(WifiManager.WIFI_AP_STATE_ENABLED);
                 Log.d(getTag(), "Resetting connected clients on start");
-                mConnectedClientWithApInfoMap.clear();
+                mConnectedClients.clear();
                 mPendingDisconnectClients.clear();
                 mEverReportMetricsForMaxClient = false;
                 scheduleTimeoutMessages();
@@ -1300,9 +1301,9 @@ public class SoftApManager implements ActiveModeManager {
                 if (SdkLevel.isAtLeastS()) {
                     mCoexManager.unregisterCoexListener(mCoexListener);
                 }
-                if (getConnectedClientList().size() != 0) {
+                if (mConnectedClients.getCount() != 0) {
                     Log.d(getTag(), "Resetting num stations on stop");
-                    for (List<WifiClient> it : mConnectedClientWithApInfoMap.values()) {
+                    for (List<WifiClient> it : mConnectedClients.getClientsByInstance().values()) {
                         if (it.size() != 0) {
                             mWifiMetrics.addSoftApNumAssociatedStationsChangedEvent(
                                     0, 0, mOriginalModeConfiguration.getTargetMode(),
@@ -1310,10 +1311,10 @@ public class SoftApManager implements ActiveModeManager {
                                             .get(it.get(0).getApInstanceIdentifier()));
                         }
                     }
-                    mConnectedClientWithApInfoMap.clear();
+                    mConnectedClients.clear();
                     if (mSoftApCallback != null) {
                         mSoftApCallback.onConnectedClientsOrInfoChanged(mCurrentSoftApInfoMap,
-                                mConnectedClientWithApInfoMap, isBridgedMode());
+                                mConnectedClients.getClientsByInstance(), isBridgedMode());
                     }
                 }
                 mPendingDisconnectClients.clear();
@@ -1415,7 +1416,7 @@ public class SoftApManager implements ActiveModeManager {
                                     + " Dropping.");
                             break;
                         }
-                        if (getConnectedClientList().size() != 0) {
+                        if (mConnectedClients.getCount() != 0) {
                             Log.wtf(getTag(), "Timeout message received but has clients. "
                                     + "Dropping.");
                             break;
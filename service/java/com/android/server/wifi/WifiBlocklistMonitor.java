@@ -34,6 +34,8 @@ import android.util.Log;
 import android.util.SparseArray;
 
 import com.android.internal.annotations.VisibleForTesting;
+import com.android.server.wifi.util.LongHashMap;
+import com.android.server.wifi.util.NativeUtil;
 import com.android.wifi.resources.R;
 
 import java.io.FileDescriptor;
@@ -128,8 +130,8 @@ public class WifiBlocklistMonitor {
             buildBssidDisableReasons();
     private final SparseArray<DisableReasonInfo> mDisableReasonInfo;
 
-    // Map of bssid to BssidStatus
-    private Map<String, BssidStatus> mBssidStatusMap = new ArrayMap<>();
+    // Map of bssid, packed with NativeUtil#macAddressStringToLong, to BssidStatus
+    private LongHashMap<BssidStatus> mBssidStatusMap = new LongHashMap<>();
     private Set<String> mDisabledSsids = new ArraySet<>();
 
     // Internal logger to make sure imporatant logs do not get lost.
@@ -268,14 +270,15 @@ public class WifiBlocklistMonitor {
      */
     private @NonNull BssidStatus getOrCreateBssidStatus(@NonNull String bssid,
             @NonNull String ssid) {
-        BssidStatus status = mBssidStatusMap.get(bssid);
+        long bssidKey = NativeUtil.macAddressStringToLong(bssid);
+        BssidStatus status = mBssidStatusMap.get(bssidKey);
         if (status == null || !ssid.equals(status.ssid)) {
             if (status != null) {
                 localLog("getOrCreateBssidStatus: BSSID=" + bssid + ", SSID changed from "
                         + status.ssid + " to " + ssid);
             }
             status = new BssidStatus(bssid, ssid);
-            mBssidStatusMap.put(bssid, status);
+            mBssidStatusMap.put(bssidKey, status);
         }
         return status;
     }
@@ -284,6 +287,7 @@ public class WifiBlocklistMonitor {
             @FailureReason int reasonCode) {
         if (bssid == null || ssid == null || WifiManager.UNKNOWN_SSID.equals(ssid)
                 || bssid.equals(ClientModeImpl.SUPPLICANT_BSSID_ANY)
+                || NativeUtil.macAddressStringToLong(bssid) == NativeUtil.INVALID_MAC_LONG
                 || reasonCode < 0 || reasonCode >= NUMBER_REASON_CODES) {
             Log.e(TAG, "Invalid input: BSSID=" + bssid + ", SSID=" + ssid
                     + ", reasonCode=" + reasonCode);
@@ -478,7 +482,7 @@ public class WifiBlocklistMonitor {
                     REASON_FRAMEWORK_DISCONNECT_CONNECTED_SCORE);
         }
 
-        BssidStatus status = mBssidStatusMap.get(bssid);
+        BssidStatus status = mBssidStatusMap.get(NativeUtil.macAddressStringToLong(bssid));
         if (status == null) {
             return;
         }
@@ -501,7 +505,7 @@ public class WifiBlocklistMonitor {
      */
     public void handleNetworkValidationSuccess(@NonNull String bssid, @NonNull String ssid) {
         mWifiScoreCard.resetBssidBlocklistStreak(ssid, bssid, REASON_NETWORK_VALIDATION_FAILURE);
-        BssidStatus status = mBssidStatusMap.get(bssid);
+        BssidStatus status = mBssidStatusMap.get(NativeUtil.macAddressStringToLong(bssid));
         if (status == null) {
             return;
         }
@@ -513,7 +517,7 @@ public class WifiBlocklistMonitor {
          **/
         if (status.isInBlocklist) {
             mBssidBlocklistMonitorLogger.logBssidUnblocked(status, "Network validation success");
-            mBssidStatusMap.remove(bssid);
+            mBssidStatusMap.remove(NativeUtil.macAddressStringToLong(bssid));
         }
     }
 
@@ -522,7 +526,7 @@ public class WifiBlocklistMonitor {
      */
     public void handleDhcpProvisioningSuccess(@NonNull String bssid, @NonNull String ssid) {
         mWifiScoreCard.resetBssidBlocklistStreak(ssid, bssid, REASON_DHCP_FAILURE);
-        BssidStatus status = mBssidStatusMap.get(bssid);
+        BssidStatus status = mBssidStatusMap.get(NativeUtil.macAddressStringToLong(bssid));
         if (status == null) {
             return;
         }
@@ -545,8 +549,7 @@ public class WifiBlocklistMonitor {
      */
     public void clearBssidBlocklistForSsid(@NonNull String ssid) {
         int prevSize = mBssidStatusMap.size();
-        mBssidStatusMap.entrySet().removeIf(e -> {
-            BssidStatus status = e.getValue();
+        mBssidStatusMap.removeIf(status -> {
             if (status.ssid == null) {
                 return false;
             }
@@ -651,7 +654,8 @@ public class WifiBlocklistMonitor {
             if (scanResult == null) {
                 continue;
             }
-            BssidStatus status = mBssidStatusMap.get(scanResult.BSSID);
+            BssidStatus status = mBssidStatusMap.get(
+                    NativeUtil.macAddressStringToLong(scanResult.BSSID));
             if (status == null || !status.isInBlocklist
                     || !isLowRssiSensitiveFailure(status.blockReason)) {
                 continue;
@@ -661,7 +665,7 @@ public class WifiBlocklistMonitor {
                     && scanResult.level - status.lastRssi >= MIN_RSSI_DIFF_TO_UNBLOCK_BSSID) {
                 mBssidBlocklistMonitorLogger.logBssidUnblocked(
                         status, "rssi significantly improved");
-                mBssidStatusMap.remove(status.bssid);
+                mBssidStatusMap.remove(NativeUtil.macAddressStringToLong(status.bssid));
             }
         }
     }
@@ -678,8 +682,7 @@ public class WifiBlocklistMonitor {
     private Stream<BssidStatus> updateAndGetBssidBlocklistInternal() {
         Stream.Builder<BssidStatus> builder = Stream.builder();
         long curTime = mClock.getWallClockMillis();
-        mBssidStatusMap.entrySet().removeIf(e -> {
-            BssidStatus status = e.getValue();
+        mBssidStatusMap.removeIf(status -> {
             if (status.isInBlocklist) {
                 if (status.blocklistEndTimeMs < curTime) {
                     mBssidBlocklistMonitorLogger.logBssidUnblocked(
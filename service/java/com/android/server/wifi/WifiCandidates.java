@@ -508,12 +508,12 @@ public class WifiCandidates {
         if (!validConfigAndScanDetail(config, scanDetail)) return null;
 
         ScanResult scanResult = scanDetail.getScanResult();
-        SecurityParams params = ScanResultMatchInfo.fromScanResult(scanResult)
-                .matchForNetworkSelection(ScanResultMatchInfo.fromWifiConfiguration(config));
+        ScanResultMatchInfo matchInfo = scanDetail.getScanResultMatchInfo();
+        SecurityParams params = matchInfo.matchForNetworkSelection(
+                ScanResultMatchInfo.fromWifiConfiguration(config));
         if (null == params) return null;
         MacAddress bssid = MacAddress.fromString(scanResult.BSSID);
-        return new Key(ScanResultMatchInfo.fromScanResult(scanResult), bssid, config.networkId,
-                params.getSecurityType());
+        return new Key(matchInfo, bssid, config.networkId, params.getSecurityType());
     }
 
     /**
@@ -575,7 +575,7 @@ public class WifiCandidates {
         } catch (RuntimeException e) {
             return failWithException(e);
         }
-        ScanResultMatchInfo key1 = ScanResultMatchInfo.fromScanResult(scanResult);
+        ScanResultMatchInfo key1 = scanDetail.getScanResultMatchInfo();
         if (!config.isPasspoint()) {
             ScanResultMatchInfo key2 = ScanResultMatchInfo.fromWifiConfiguration(config);
             if (!key1.equals(key2)) {
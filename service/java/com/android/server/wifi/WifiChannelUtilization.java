@@ -31,13 +31,13 @@ import com.android.server.wifi.WifiLinkLayerStats.ChannelStats;
 import com.android.server.wifi.util.InformationElementUtil.BssLoad;
 import com.android.wifi.resources.R;
 
-import java.util.ArrayDeque;
-import java.util.Iterator;
+import java.util.Arrays;
 
 /**
  * This class collects channel stats over a Wifi Interface
  * and calculates channel utilization using the latest and cached channel stats.
- * Cache saves previous readings of channel stats in a FIFO.
+ * Cache saves previous readings of channel stats in a FIFO, stored per frequency in fixed size
+ * rings of primitives so that the reference lookup of a frequency doesn't walk whole readings.
  * The cache is updated when a new stats arrives and it has been a long while since the last update.
  * To get more statistically sound channel utilization, for these devices which support
  * mobility state report, the cache update is stopped when the device stays in the stationary state.
@@ -63,6 +63,19 @@ public class WifiChannelUtilization {
     // where each reading corresponds to one link layer stats update.
     @VisibleForTesting
     static final int CHANNEL_STATS_CACHE_SIZE = 5;
+    // The number of utilization ratio estimates saved per frequency.
+    @VisibleForTesting
+    static final int UTILIZATION_HISTORY_SIZE = 16;
+    // Time window over which the utilization ratio estimates are averaged for the throughput
+    // prediction.
+    @VisibleForTesting
+    static final int UTILIZATION_AVERAGE_WINDOW_MS = 60 * 1000;
+    // Time stamp of a cached reading without channel stats for the frequency.
+    private static final long NO_READING = -1;
+    // Results of the reference search which are not in the cache.
+    private static final int REFERENCE_ZERO = -1;
+    private static final int REFERENCE_CURRENT = -2;
+    private static final int INITIAL_CHANNEL_SLOTS = 16;
     private final Clock mClock;
     private final Context mContext;
     private @DeviceMobilityState int mDeviceMobilityState = DEVICE_MOBILITY_STATE_UNKNOWN;
@@ -73,7 +86,23 @@ public class WifiChannelUtilization {
     // where MIN_CHANNEL_UTILIZATION corresponds to ratio 0%
     // and MAX_CHANNEL_UTILIZATION corresponds to ratio 100%
     private SparseIntArray mChannelUtilizationMap = new SparseIntArray();
-    private ArrayDeque<SparseArray<ChannelStats>> mChannelStatsMapCache = new ArrayDeque<>();
+    // Map frequency (key) to the channel slot (value) of the frequency in the following arrays.
+    private final SparseIntArray mChannelSlots = new SparseIntArray();
+    // Channel stats cache, indexed by channelSlot * CHANNEL_STATS_CACHE_SIZE + reading index.
+    // All frequencies share the same reading index, mChannelStatsCacheHead being the latest one.
+    private int[] mCachedRadioOnTimeMs = new int[INITIAL_CHANNEL_SLOTS * CHANNEL_STATS_CACHE_SIZE];
+    private int[] mCachedCcaBusyTimeMs = new int[INITIAL_CHANNEL_SLOTS * CHANNEL_STATS_CACHE_SIZE];
+    private long[] mCachedTimeStampMs = new long[INITIAL_CHANNEL_SLOTS * CHANNEL_STATS_CACHE_SIZE];
+    private int mChannelStatsCacheHead;
+    // Number of frequencies in the latest cached reading.
+    private int mLatestChannelStatsCount;
+    // Utilization ratio estimates, indexed by channelSlot * UTILIZATION_HISTORY_SIZE + index.
+    private int[] mUtilizationHistory = new int[INITIAL_CHANNEL_SLOTS * UTILIZATION_HISTORY_SIZE];
+    private long[] mUtilizationHistoryTimeStampMs =
+            new long[INITIAL_CHANNEL_SLOTS * UTILIZATION_HISTORY_SIZE];
+    // Index of the next estimate and number of estimates, per channel slot.
+    private int[] mUtilizationHistoryNext = new int[INITIAL_CHANNEL_SLOTS];
+    private int[] mUtilizationHistoryCount = new int[INITIAL_CHANNEL_SLOTS];
     private long mLastChannelStatsMapTimeStamp;
     private int mLastChannelStatsMapMobilityState;
 
@@ -96,18 +125,16 @@ public class WifiChannelUtilization {
      */
     public void init(WifiLinkLayerStats wifiLinkLayerStats) {
         mChannelUtilizationMap.clear();
-        mChannelStatsMapCache.clear();
+        mChannelSlots.clear();
+        mChannelStatsCacheHead = 0;
+        mLatestChannelStatsCount = 0;
         mDeviceMobilityState = DEVICE_MOBILITY_STATE_UNKNOWN;
         mLastChannelStatsMapMobilityState = DEVICE_MOBILITY_STATE_UNKNOWN;
-        for (int i = 0; i < (CHANNEL_STATS_CACHE_SIZE - 1); ++i) {
-            mChannelStatsMapCache.addFirst(new SparseArray<>());
-        }
-        if (wifiLinkLayerStats != null) {
-            mChannelStatsMapCache.addFirst(wifiLinkLayerStats.channelStatsMap);
-        } else {
-            mChannelStatsMapCache.addFirst(new SparseArray<>());
-        }
         mLastChannelStatsMapTimeStamp = mClock.getElapsedSinceBootMillis();
+        if (wifiLinkLayerStats != null && wifiLinkLayerStats.channelStatsMap != null) {
+            addChannelStatsToCache(wifiLinkLayerStats.channelStatsMap,
+                    mLastChannelStatsMapTimeStamp);
+        }
         if (sVerboseLoggingEnabled) {
             Log.d(TAG, "initializing");
         }
@@ -142,6 +169,36 @@ public class WifiChannelUtilization {
         return mChannelUtilizationMap.get(frequency, BssLoad.INVALID);
     }
 
+    /**
+     * Get the channel utilization ratio for a given frequency averaged over the recent estimates,
+     * so that a short burst of traffic doesn't swing the throughput prediction.
+     * @param frequency The center frequency of 20MHz WLAN channel
+     * @return the average of the valid estimates of the last UTILIZATION_AVERAGE_WINDOW_MS if
+     *         there are any; the value of {@link #getUtilizationRatio(int)} otherwise
+     */
+    public int getAverageUtilizationRatio(int frequency) {
+        if (mContext.getResources().getBoolean(
+                R.bool.config_wifiChannelUtilizationOverrideEnabled)) {
+            return getUtilizationRatio(frequency);
+        }
+        int slot = mChannelSlots.get(frequency, -1);
+        if (slot < 0) return getUtilizationRatio(frequency);
+        long minTimeStampMs = mClock.getElapsedSinceBootMillis() - UTILIZATION_AVERAGE_WINDOW_MS;
+        int sum = 0;
+        int validCount = 0;
+        int index = mUtilizationHistoryNext[slot] + UTILIZATION_HISTORY_SIZE;
+        for (int i = 0; i < mUtilizationHistoryCount[slot]; i++) {
+            index--;
+            int historyIndex = slot * UTILIZATION_HISTORY_SIZE + index % UTILIZATION_HISTORY_SIZE;
+            if (mUtilizationHistoryTimeStampMs[historyIndex] < minTimeStampMs) break;
+            int utilizationRatio = mUtilizationHistory[historyIndex];
+            if (utilizationRatio == BssLoad.INVALID) continue;
+            sum += utilizationRatio;
+            validCount++;
+        }
+        return validCount > 0 ? sum / validCount : getUtilizationRatio(frequency);
+    }
+
     /**
      * Update device mobility state
      * @param newState the new device mobility state
@@ -184,31 +241,41 @@ public class WifiChannelUtilization {
         if (channelStatsMap == null) {
             return;
         }
+        long currTimeStamp = mClock.getElapsedSinceBootMillis();
         if (frequency != UNKNOWN_FREQ) {
             ChannelStats channelStats = channelStatsMap.get(frequency, null);
-            if (channelStats != null) calculateChannelUtilization(channelStats);
+            if (channelStats != null) calculateChannelUtilization(channelStats, currTimeStamp);
         } else {
             for (int i = 0; i < channelStatsMap.size(); i++) {
                 ChannelStats channelStats = channelStatsMap.valueAt(i);
-                calculateChannelUtilization(channelStats);
+                calculateChannelUtilization(channelStats, currTimeStamp);
             }
         }
-        updateChannelStatsCache(channelStatsMap, frequency);
+        updateChannelStatsCache(channelStatsMap, frequency, currTimeStamp);
     }
 
-    private void calculateChannelUtilization(ChannelStats channelStats) {
+    private void calculateChannelUtilization(ChannelStats channelStats, long currTimeStamp) {
         int freq = channelStats.frequency;
         int ccaBusyTimeMs = channelStats.ccaBusyTimeMs;
         int radioOnTimeMs = channelStats.radioOnTimeMs;
 
-        ChannelStats channelStatsRef = findChanStatsReference(freq, radioOnTimeMs);
-        int busyTimeDiff = ccaBusyTimeMs - channelStatsRef.ccaBusyTimeMs;
-        int radioOnTimeDiff = radioOnTimeMs - channelStatsRef.radioOnTimeMs;
+        int refIndex = findChanStatsReference(freq, radioOnTimeMs);
+        int refCcaBusyTimeMs = 0;
+        int refRadioOnTimeMs = 0;
+        if (refIndex >= 0) {
+            refCcaBusyTimeMs = mCachedCcaBusyTimeMs[refIndex];
+            refRadioOnTimeMs = mCachedRadioOnTimeMs[refIndex];
+        } else if (refIndex == REFERENCE_CURRENT) {
+            refRadioOnTimeMs = radioOnTimeMs;
+        }
+        int busyTimeDiff = ccaBusyTimeMs - refCcaBusyTimeMs;
+        int radioOnTimeDiff = radioOnTimeMs - refRadioOnTimeMs;
         int utilizationRatio = BssLoad.INVALID;
         if (radioOnTimeDiff >= RADIO_ON_TIME_DIFF_MIN_MS && busyTimeDiff >= 0) {
             utilizationRatio = calculateUtilizationRatio(radioOnTimeDiff, busyTimeDiff);
         }
         mChannelUtilizationMap.put(freq, utilizationRatio);
+        addUtilizationRatioToHistory(freq, utilizationRatio, currTimeStamp);
 
         if (sVerboseLoggingEnabled) {
             int utilizationRatioT0 = calculateUtilizationRatio(radioOnTimeMs, ccaBusyTimeMs);
@@ -224,39 +291,34 @@ public class WifiChannelUtilization {
         }
     }
     /**
-     * Find a proper channelStats reference from channelStatsMap cache.
+     * Find a proper channelStats reference from channel stats cache.
      * The search continues until it finds a channelStat at the given frequency with radioOnTime
      * sufficiently smaller than current radioOnTime, or there is no channelStats for the given
      * frequency or it reaches the end of cache.
      * @param freq Frequency of current channel
      * @param radioOnTimeMs The latest radioOnTime of current channel
-     * @return the found channelStat reference if search succeeds,
-     *             or a placeholder channelStats with time zero if channelStats is not found
-     *             for the given frequency,
-     *             or a placeholder channelStats with the latest radioOnTimeMs if it reaches
-     *             the end of cache.
+     * @return the cache index of the found channelStat reference if search succeeds,
+     *             or REFERENCE_ZERO if channelStats is not found for the given frequency,
+     *             or REFERENCE_CURRENT if it reaches the end of cache.
      */
-    private ChannelStats findChanStatsReference(int freq, int radioOnTimeMs) {
-        // A placeholder channelStats with the latest radioOnTimeMs.
-        ChannelStats channelStatsCurrRadioOnTime = new ChannelStats();
-        channelStatsCurrRadioOnTime.radioOnTimeMs = radioOnTimeMs;
-        Iterator iterator = mChannelStatsMapCache.iterator();
-        while (iterator.hasNext()) {
-            SparseArray<ChannelStats> channelStatsMap = (SparseArray<ChannelStats>) iterator.next();
-            // If the freq can't be found in current channelStatsMap, stop search because it won't
+    private int findChanStatsReference(int freq, int radioOnTimeMs) {
+        int slot = mChannelSlots.get(freq, -1);
+        if (slot < 0) return REFERENCE_ZERO;
+        for (int i = 0; i < CHANNEL_STATS_CACHE_SIZE; i++) {
+            int index = slot * CHANNEL_STATS_CACHE_SIZE
+                    + (mChannelStatsCacheHead + i) % CHANNEL_STATS_CACHE_SIZE;
+            // If the freq can't be found in current reading, stop search because it won't
             // appear in older ones either due to the fact that channelStatsMap are accumulated
             // in HW and thus a recent reading should have channels no less than old readings.
-            // Return a placeholder channelStats with zero radioOnTimeMs
-            if (channelStatsMap == null || channelStatsMap.get(freq) == null) {
-                return new ChannelStats();
+            if (mCachedTimeStampMs[index] == NO_READING) {
+                return REFERENCE_ZERO;
             }
-            ChannelStats channelStats = channelStatsMap.get(freq);
-            int radioOnTimeDiff = radioOnTimeMs - channelStats.radioOnTimeMs;
+            int radioOnTimeDiff = radioOnTimeMs - mCachedRadioOnTimeMs[index];
             if (radioOnTimeDiff >= RADIO_ON_TIME_DIFF_MIN_MS) {
-                return channelStats;
+                return index;
             }
         }
-        return channelStatsCurrRadioOnTime;
+        return REFERENCE_CURRENT;
     }
 
     private int calculateUtilizationRatio(int radioOnTimeDiff, int busyTimeDiff) {
@@ -268,28 +330,93 @@ public class WifiChannelUtilization {
         }
     }
 
-    private void updateChannelStatsCache(SparseArray<ChannelStats> channelStatsMap, int freq) {
+    private void updateChannelStatsCache(SparseArray<ChannelStats> channelStatsMap, int freq,
+            long currTimeStamp) {
         // Update cache if it hits one of following conditions
         // 1) it has been a long while since the last update and device doesn't remain stationary
         // 2) cache is empty
         boolean remainStationary =
                 mLastChannelStatsMapMobilityState == DEVICE_MOBILITY_STATE_STATIONARY
                 && mDeviceMobilityState == DEVICE_MOBILITY_STATE_STATIONARY;
-        long currTimeStamp = mClock.getElapsedSinceBootMillis();
         boolean isLongTimeSinceLastUpdate =
                 (currTimeStamp - mLastChannelStatsMapTimeStamp) >= mCacheUpdateIntervalMinMs;
         if ((isLongTimeSinceLastUpdate && !remainStationary) || isChannelStatsMapCacheEmpty(freq)) {
-            mChannelStatsMapCache.addFirst(channelStatsMap);
-            mChannelStatsMapCache.removeLast();
+            addChannelStatsToCache(channelStatsMap, currTimeStamp);
             mLastChannelStatsMapTimeStamp = currTimeStamp;
             mLastChannelStatsMapMobilityState = mDeviceMobilityState;
         }
     }
 
     private boolean isChannelStatsMapCacheEmpty(int freq) {
-        SparseArray<ChannelStats> channelStatsMap = mChannelStatsMapCache.peekFirst();
-        if (channelStatsMap == null || channelStatsMap.size() == 0) return true;
-        if (freq != UNKNOWN_FREQ && channelStatsMap.get(freq) == null) return true;
+        if (mLatestChannelStatsCount == 0) return true;
+        if (freq != UNKNOWN_FREQ) {
+            int slot = mChannelSlots.get(freq, -1);
+            if (slot < 0) return true;
+            return mCachedTimeStampMs[slot * CHANNEL_STATS_CACHE_SIZE + mChannelStatsCacheHead]
+                    == NO_READING;
+        }
         return false;
     }
+
+    /**
+     * Add a reading to the channel stats cache, replacing the oldest one.
+     */
+    private void addChannelStatsToCache(SparseArray<ChannelStats> channelStatsMap,
+            long timeStamp) {
+        mChannelStatsCacheHead = (mChannelStatsCacheHead + CHANNEL_STATS_CACHE_SIZE - 1)
+                % CHANNEL_STATS_CACHE_SIZE;
+        for (int slot = 0; slot < mChannelSlots.size(); slot++) {
+            mCachedTimeStampMs[slot * CHANNEL_STATS_CACHE_SIZE + mChannelStatsCacheHead] =
+                    NO_READING;
+        }
+        for (int i = 0; i < channelStatsMap.size(); i++) {
+            ChannelStats channelStats = channelStatsMap.valueAt(i);
+            int index = getChannelSlot(channelStatsMap.keyAt(i)) * CHANNEL_STATS_CACHE_SIZE
+                    + mChannelStatsCacheHead;
+            mCachedRadioOnTimeMs[index] = channelStats.radioOnTimeMs;
+            mCachedCcaBusyTimeMs[index] = channelStats.ccaBusyTimeMs;
+            mCachedTimeStampMs[index] = timeStamp;
+        }
+        mLatestChannelStatsCount = channelStatsMap.size();
+    }
+
+    private void addUtilizationRatioToHistory(int freq, int utilizationRatio, long timeStamp) {
+        int slot = getChannelSlot(freq);
+        int index = slot * UTILIZATION_HISTORY_SIZE + mUtilizationHistoryNext[slot];
+        mUtilizationHistory[index] = utilizationRatio;
+        mUtilizationHistoryTimeStampMs[index] = timeStamp;
+        mUtilizationHistoryNext[slot] = (mUtilizationHistoryNext[slot] + 1)
+                % UTILIZATION_HISTORY_SIZE;
+        if (mUtilizationHistoryCount[slot] < UTILIZATION_HISTORY_SIZE) {
+            mUtilizationHistoryCount[slot]++;
+        }
+    }
+
+    /**
+     * Get the channel slot of a frequency, allocating an empty one if the frequency is new.
+     */
+    private int getChannelSlot(int freq) {
+        int slot = mChannelSlots.get(freq, -1);
+        if (slot >= 0) return slot;
+        slot = mChannelSlots.size();
+        if (slot == mUtilizationHistoryCount.length) {
+            int numSlots = slot * 2;
+            int cacheLength = numSlots * CHANNEL_STATS_CACHE_SIZE;
+            int historyLength = numSlots * UTILIZATION_HISTORY_SIZE;
+            mCachedRadioOnTimeMs = Arrays.copyOf(mCachedRadioOnTimeMs, cacheLength);
+            mCachedCcaBusyTimeMs = Arrays.copyOf(mCachedCcaBusyTimeMs, cacheLength);
+            mCachedTimeStampMs = Arrays.copyOf(mCachedTimeStampMs, cacheLength);
+            mUtilizationHistory = Arrays.copyOf(mUtilizationHistory, historyLength);
+            mUtilizationHistoryTimeStampMs =
+                    Arrays.copyOf(mUtilizationHistoryTimeStampMs, historyLength);
+            mUtilizationHistoryNext = Arrays.copyOf(mUtilizationHistoryNext, numSlots);
+            mUtilizationHistoryCount = Arrays.copyOf(mUtilizationHistoryCount, numSlots);
+        }
+        Arrays.fill(mCachedTimeStampMs, slot * CHANNEL_STATS_CACHE_SIZE,
+                (slot + 1) * CHANNEL_STATS_CACHE_SIZE, NO_READING);
+        mUtilizationHistoryNext[slot] = 0;
+        mUtilizationHistoryCount[slot] = 0;
+        mChannelSlots.put(freq, slot);
+        return slot;
+    }
 }
@@ -43,10 +43,12 @@ import android.provider.Settings;
 import android.telephony.SubscriptionManager;
 import android.telephony.TelephonyManager;
 import android.text.TextUtils;
+import android.util.ArrayMap;
 import android.util.ArraySet;
 import android.util.LocalLog;
 import android.util.Log;
 import android.util.Pair;
+import android.util.SparseArray;
 
 import com.android.internal.annotations.VisibleForTesting;
 import com.android.net.module.util.MacAddressUtils;
@@ -69,6 +71,7 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -272,10 +275,41 @@ public class WifiConfigManager {
      * Map of configured networks with network id as the key.
      */
     private final ConfigurationMap mConfiguredNetworks;
+    /**
+     * Incremented whenever a field of the configured networks which is visible to external
+     * callers changes. Used to invalidate {@link #mLegacySavedNetworksSnapshots}. The candidate
+     * bookkeeping of network selection is not visible to external callers, and doesn't change it.
+     */
+    private long mConfigGeneration = 0;
+    /**
+     * Cached results of {@link #getLegacySavedNetworksSnapshot(int)}, keyed by the visibility
+     * class of the caller (see {@link #getSnapshotVisibilityKey(int)}), valid for
+     * {@link #mLegacySavedNetworksSnapshotsGeneration}.
+     */
+    private final SparseArray<List<WifiConfiguration>> mLegacySavedNetworksSnapshots =
+            new SparseArray<>();
+    private long mLegacySavedNetworksSnapshotsGeneration = -1;
+    /**
+     * Hidden networks in the order returned by {@link #retrieveHiddenNetworkList()}, rebuilt
+     * only when {@link #mConfigGeneration} has changed since it was last built. Every event
+     * affecting the order (network add/remove/update, connection and network selection status
+     * changes) increments the generation, and candidate scan result changes reset
+     * {@link #mHiddenNetworkListGeneration}.
+     */
+    private final List<WifiScanner.ScanSettings.HiddenNetwork> mHiddenNetworkList =
+            new ArrayList<>();
+    private long mHiddenNetworkListGeneration = -1;
     /**
      * Stores a map of NetworkId to ScanDetailCache.
      */
     private final Map<Integer, ScanDetailCache> mScanDetailCaches;
+    /**
+     * Stores a map of BSSID prefix (first {@link #LINK_CONFIGURATION_BSSID_MATCH_LENGTH} chars,
+     * lower case) to the networkIds whose scan detail cache contained a BSSID with that prefix.
+     * Used to restrict network linking to networks which share AP hardware. Entries are only
+     * removed along with the network, so this may be a superset of the current cache contents.
+     */
+    private final Map<String, Set<Integer>> mNetworkIdsByBssidPrefix = new HashMap<>();
     /**
      * Framework keeps a list of networks that where temporarily disabled by user,
      * framework knows not to autoconnect again even if the app/scorer recommends it.
@@ -547,11 +581,13 @@ public class WifiConfigManager {
         expireDurationMs = Math.min(ENHANCED_MAC_REFRESH_MS_MAX, expireDurationMs);
         internalConfig.randomizedMacExpirationTimeMs = mClock.getWallClockMillis()
                 + expireDurationMs;
+        incrementConfigGeneration();
     }
 
     private void setRandomizedMacAddress(WifiConfiguration config, MacAddress mac) {
         config.setRandomizedMacAddress(mac);
         config.randomizedMacLastModifiedTimeMs = mClock.getWallClockMillis();
+        incrementConfigGeneration();
     }
 
     /**
@@ -738,6 +774,58 @@ public class WifiConfigManager {
         return getConfiguredNetworks(true, true, targetUid);
     }
 
+    /**
+     * Retrieves the list of all saved networks with the passwords masked, converted to legacy
+     * single security type configurations (see
+     * {@link WifiConfigurationUtil#convertMultiTypeConfigsToLegacyConfigs(List)}).
+     *
+     * The list is built once per visibility class of the caller and cached until the configured
+     * networks change, so the returned list and configurations are shared and must not be
+     * modified. This is only meant for {@link WifiServiceImpl}, which parcels them to the caller
+     * without modifying them.
+     *
+     * @param targetUid Target UID for MAC address reading, see {@link #getSavedNetworks(int)}.
+     * @return Unmodifiable list of WifiConfiguration objects representing the networks.
+     */
+    public @NonNull List<WifiConfiguration> getLegacySavedNetworksSnapshot(int targetUid) {
+        if (mLegacySavedNetworksSnapshotsGeneration != mConfigGeneration) {
+            mLegacySavedNetworksSnapshots.clear();
+            mLegacySavedNetworksSnapshotsGeneration = mConfigGeneration;
+        }
+        int key = getSnapshotVisibilityKey(targetUid);
+        List<WifiConfiguration> snapshot = mLegacySavedNetworksSnapshots.get(key);
+        if (snapshot == null) {
+            snapshot = Collections.unmodifiableList(
+                    WifiConfigurationUtil.convertMultiTypeConfigsToLegacyConfigs(
+                            getSavedNetworks(targetUid)));
+            mLegacySavedNetworksSnapshots.put(key, snapshot);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Returns the key of the visibility class of |targetUid| for the cached saved network lists:
+     * privileged (all MAC addresses exposed), carrier app (one class per app) or masked.
+     */
+    private static int getSnapshotVisibilityKey(int targetUid) {
+        if (targetUid == Process.WIFI_UID || targetUid == Process.SYSTEM_UID) {
+            return Process.WIFI_UID;
+        }
+        return targetUid;
+    }
+
+    /**
+     * Returns the current configuration generation, which is incremented whenever the
+     * configured networks change in a way that may be visible to external callers.
+     */
+    public long getConfigGeneration() {
+        return mConfigGeneration;
+    }
+
+    private void incrementConfigGeneration() {
+        mConfigGeneration++;
+    }
+
     /**
      * Retrieves the configured network corresponding to the provided networkId with password
      * masked.
@@ -918,6 +1006,7 @@ public class WifiConfigManager {
      *                WifiManager.CHANGE_REASON_REMOVED, or WifiManager.CHANGE_REASON_CHANGE.
      */
     private void sendConfiguredNetworkChangedBroadcast(int reason) {
+        incrementConfigGeneration();
         Intent intent = new Intent(WifiManager.CONFIGURED_NETWORKS_CHANGED_ACTION);
         intent.addFlags(Intent.FLAG_RECEIVER_REGISTERED_ONLY_BEFORE_BOOT);
         intent.putExtra(WifiManager.EXTRA_MULTIPLE_NETWORKS_CHANGED, true);
@@ -1564,6 +1653,7 @@ public class WifiConfigManager {
         }
         mConfiguredNetworks.remove(config.networkId);
         mScanDetailCaches.remove(config.networkId);
+        removeFromBssidPrefixIndex(config.networkId);
         // Stage the backup of the SettingsProvider package which backs this up.
         mBackupManagerProxy.notifyDataChanged();
         mWifiBlocklistMonitor.handleNetworkRemoved(config.SSID);
@@ -2017,6 +2107,7 @@ public class WifiConfigManager {
             return false;
         }
         config.lastConnectUid = uid;
+        incrementConfigGeneration();
         return true;
     }
 
@@ -2070,6 +2161,7 @@ public class WifiConfigManager {
         WifiConfiguration config = getInternalConfiguredNetwork(networkId);
         if (config != null) {
             config.getNetworkSelectionStatus().setHasNeverDetectedCaptivePortal(false);
+            incrementConfigGeneration();
         }
     }
 
@@ -2116,6 +2208,7 @@ public class WifiConfigManager {
             return false;
         }
         config.defaultGwMacAddress = macAddress;
+        incrementConfigGeneration();
         return true;
     }
 
@@ -2142,6 +2235,8 @@ public class WifiConfigManager {
         config.getNetworkSelectionStatus().setCandidateScore(Integer.MIN_VALUE);
         config.getNetworkSelectionStatus().setSeenInLastQualifiedNetworkSelection(false);
         config.getNetworkSelectionStatus().setCandidateSecurityParams(null);
+        // Only the hidden network order depends on the candidates.
+        mHiddenNetworkListGeneration = -1;
         return true;
     }
 
@@ -2174,6 +2269,8 @@ public class WifiConfigManager {
         config.getNetworkSelectionStatus().setCandidateScore(score);
         config.getNetworkSelectionStatus().setSeenInLastQualifiedNetworkSelection(true);
         config.getNetworkSelectionStatus().setCandidateSecurityParams(params);
+        // Only the hidden network order depends on the candidates.
+        mHiddenNetworkListGeneration = -1;
         return true;
     }
 
@@ -2219,6 +2316,7 @@ public class WifiConfigManager {
         }
         config.numNoInternetAccessReports++;
         config.validatedInternetAccess = false;
+        incrementConfigGeneration();
         return true;
     }
 
@@ -2253,6 +2351,7 @@ public class WifiConfigManager {
             return false;
         }
         config.noInternetAccessExpected = expected;
+        incrementConfigGeneration();
         return true;
     }
 
@@ -2375,6 +2474,46 @@ public class WifiConfigManager {
 
         // Add the scan detail to this network's scan detail cache.
         scanDetailCache.put(scanDetail);
+        addToBssidPrefixIndex(config.networkId, scanResult.BSSID);
+    }
+
+    /**
+     * Returns the key used in {@link #mNetworkIdsByBssidPrefix} for the provided BSSID, or null
+     * if the BSSID is too short to be matched by {@link #shouldNetworksBeLinked}.
+     */
+    private static String getBssidPrefix(String bssid) {
+        if (bssid == null || bssid.length() < LINK_CONFIGURATION_BSSID_MATCH_LENGTH) {
+            return null;
+        }
+        return bssid.substring(0, LINK_CONFIGURATION_BSSID_MATCH_LENGTH).toLowerCase(Locale.ROOT);
+    }
+
+    private void addToBssidPrefixIndex(int networkId, String bssid) {
+        String prefix = getBssidPrefix(bssid);
+        if (prefix == null) return;
+        mNetworkIdsByBssidPrefix.computeIfAbsent(prefix, k -> new ArraySet<>()).add(networkId);
+    }
+
+    private void removeFromBssidPrefixIndex(int networkId) {
+        mNetworkIdsByBssidPrefix.values().removeIf(ids -> ids.remove(networkId) && ids.isEmpty());
+    }
+
+    /**
+     * Retrieves the networkIds of the networks that may share AP hardware with the provided scan
+     * detail cache, i.e. whose scan detail cache contained a BSSID matching one of |cache|.
+     */
+    private Set<Integer> getNetworkIdsSharingBssidPrefix(ScanDetailCache cache) {
+        Set<Integer> networkIds = new ArraySet<>();
+        if (cache == null) return networkIds;
+        for (String bssid : cache.keySet()) {
+            String prefix = getBssidPrefix(bssid);
+            if (prefix == null) continue;
+            Set<Integer> ids = mNetworkIdsByBssidPrefix.get(prefix);
+            if (ids != null) {
+                networkIds.addAll(ids);
+            }
+        }
+        return networkIds;
     }
 
     /**
@@ -2390,7 +2529,8 @@ public class WifiConfigManager {
             Log.e(TAG, "No scan result found in scan detail");
             return null;
         }
-        return getSavedNetworkForScanResult(scanResult);
+        return getSavedNetworkForScanResultMatchInfo(scanResult,
+                scanDetail.getScanResultMatchInfo());
     }
 
     /**
@@ -2401,9 +2541,16 @@ public class WifiConfigManager {
      * null if none exists.
      */
     public WifiConfiguration getSavedNetworkForScanResult(@NonNull ScanResult scanResult) {
+        return getSavedNetworkForScanResultMatchInfo(scanResult,
+                ScanResultMatchInfo.fromScanResult(scanResult));
+    }
+
+    private WifiConfiguration getSavedNetworkForScanResultMatchInfo(
+            @NonNull ScanResult scanResult, @NonNull ScanResultMatchInfo scanResultMatchInfo) {
         WifiConfiguration config = null;
         try {
-            config = mConfiguredNetworks.getByScanResultForCurrentUser(scanResult);
+            config = mConfiguredNetworks.getByScanResultMatchInfoForCurrentUser(
+                    scanResultMatchInfo);
         } catch (IllegalArgumentException e) {
             Log.e(TAG, "Failed to lookup network from config map", e);
         }
@@ -2566,8 +2713,10 @@ public class WifiConfigManager {
             return false;
         }
         if (scanDetailCache1 != null && scanDetailCache2 != null) {
+            // keySet() copies the BSSIDs of the cache, only do it once for the inner loop.
+            Collection<String> bssids2 = scanDetailCache2.keySet();
             for (String abssid : scanDetailCache1.keySet()) {
-                for (String bbssid : scanDetailCache2.keySet()) {
+                for (String bbssid : bssids2) {
                     if (abssid.regionMatches(
                             true, 0, bbssid, 0, LINK_CONFIGURATION_BSSID_MATCH_LENGTH)) {
                         if (mVerboseLoggingEnabled) {
@@ -2604,6 +2753,7 @@ public class WifiConfigManager {
         // public interface changes and need some migration of existing store data.
         network2.linkedConfigurations.put(network1.getProfileKey(), 1);
         network1.linkedConfigurations.put(network2.getProfileKey(), 1);
+        incrementConfigGeneration();
     }
 
     /**
@@ -2620,6 +2770,7 @@ public class WifiConfigManager {
                         + " from " + network2.getProfileKey());
             }
             network2.linkedConfigurations.remove(network1.getProfileKey());
+            incrementConfigGeneration();
         }
         if (network1.linkedConfigurations != null
                 && (network1.linkedConfigurations.get(network2.getProfileKey()) != null)) {
@@ -2628,12 +2779,39 @@ public class WifiConfigManager {
                         + " from " + network1.getProfileKey());
             }
             network1.linkedConfigurations.remove(network2.getProfileKey());
+            incrementConfigGeneration();
         }
     }
 
     /**
-     * This method runs through all the saved networks and checks if the provided network can be
-     * linked with any of them.
+     * Retrieves the saved networks which {@link #shouldNetworksBeLinked} may link with or
+     * needs to unlink from the provided network: the networks sharing a BSSID prefix with it,
+     * the networks with the same default gateway and the networks currently linked with it.
+     */
+    private Collection<WifiConfiguration> getLinkingCandidates(
+            WifiConfiguration config, ScanDetailCache scanDetailCache) {
+        Set<Integer> networkIds = getNetworkIdsSharingBssidPrefix(scanDetailCache);
+        Map<Integer, WifiConfiguration> candidates = new ArrayMap<>();
+        for (WifiConfiguration linkConfig : getInternalConfiguredNetworks()) {
+            if (networkIds.contains(linkConfig.networkId)
+                    || (config.defaultGwMacAddress != null
+                            && config.defaultGwMacAddress.equalsIgnoreCase(
+                                    linkConfig.defaultGwMacAddress))
+                    || (config.linkedConfigurations != null
+                            && config.linkedConfigurations.containsKey(
+                                    linkConfig.getProfileKey()))
+                    || (linkConfig.linkedConfigurations != null
+                            && linkConfig.linkedConfigurations.containsKey(
+                                    config.getProfileKey()))) {
+                candidates.put(linkConfig.networkId, linkConfig);
+            }
+        }
+        return candidates.values();
+    }
+
+    /**
+     * This method runs through the saved networks which may share AP hardware with the provided
+     * network and checks if the provided network can be linked with any of them.
      *
      * @param config WifiConfiguration object corresponding to the network that needs to be
      *               checked for potential links.
@@ -2649,7 +2827,7 @@ public class WifiConfigManager {
                 && scanDetailCache.size() > LINK_CONFIGURATION_MAX_SCAN_CACHE_ENTRIES) {
             return;
         }
-        for (WifiConfiguration linkConfig : getInternalConfiguredNetworks()) {
+        for (WifiConfiguration linkConfig : getLinkingCandidates(config, scanDetailCache)) {
             if (linkConfig.getProfileKey().equals(config.getProfileKey())) {
                 continue;
             }
@@ -2693,16 +2871,27 @@ public class WifiConfigManager {
      * @return list of networks in the order of priority.
      */
     public List<WifiScanner.ScanSettings.HiddenNetwork> retrieveHiddenNetworkList() {
-        List<WifiScanner.ScanSettings.HiddenNetwork> hiddenList = new ArrayList<>();
-        List<WifiConfiguration> networks = getConfiguredNetworks();
-        // Remove any non hidden networks.
-        networks.removeIf(config -> !config.hiddenSSID);
+        if (mHiddenNetworkListGeneration != mConfigGeneration) {
+            updateHiddenNetworkList();
+        }
+        return new ArrayList<>(mHiddenNetworkList);
+    }
+
+    private void updateHiddenNetworkList() {
+        List<WifiConfiguration> networks = new ArrayList<>();
+        // Only keep the hidden networks, no need to copy the internal configurations for sorting.
+        for (WifiConfiguration config : getInternalConfiguredNetworks()) {
+            if (config.hiddenSSID) {
+                networks.add(config);
+            }
+        }
         networks.sort(mScanListComparator);
+        mHiddenNetworkList.clear();
         // The most frequently connected network has the highest priority now.
         for (WifiConfiguration config : networks) {
-            hiddenList.add(new WifiScanner.ScanSettings.HiddenNetwork(config.SSID));
+            mHiddenNetworkList.add(new WifiScanner.ScanSettings.HiddenNetwork(config.SSID));
         }
-        return hiddenList;
+        mHiddenNetworkListGeneration = mConfigGeneration;
     }
 
     /**
@@ -2894,6 +3083,7 @@ public class WifiConfigManager {
                 }
             }
         }
+        incrementConfigGeneration();
     }
 
     /**
@@ -2961,6 +3151,7 @@ public class WifiConfigManager {
             Log.w(TAG, "User switch before store is read!");
             mConfiguredNetworks.setNewUser(userId);
             mCurrentUserId = userId;
+            incrementConfigGeneration();
             // Reset any state from previous user unlock.
             mDeferredUserUnlockRead = false;
             // Cannot read data from new user's CE store file before they log-in.
@@ -2974,6 +3165,7 @@ public class WifiConfigManager {
         Set<Integer> removedNetworkIds = clearInternalDataForCurrentUser();
         mConfiguredNetworks.setNewUser(userId);
         mCurrentUserId = userId;
+        incrementConfigGeneration();
 
         if (mUserManager.isUserUnlockingOrUnlocked(UserHandle.of(mCurrentUserId))) {
             handleUserUnlockOrSwitch(mCurrentUserId);
@@ -3042,10 +3234,12 @@ public class WifiConfigManager {
     private void clearInternalData() {
         localLog("clearInternalData: Clearing all internal data");
         mConfiguredNetworks.clear();
+        incrementConfigGeneration();
         mUserTemporarilyDisabledList.clear();
         mNonCarrierMergedNetworksStatusTracker.clear();
         mRandomizedMacAddressMapping.clear();
         mScanDetailCaches.clear();
+        mNetworkIdsByBssidPrefix.clear();
         clearLastSelectedNetwork();
     }
 
@@ -3084,6 +3278,7 @@ public class WifiConfigManager {
         mUserTemporarilyDisabledList.clear();
         mNonCarrierMergedNetworksStatusTracker.clear();
         mScanDetailCaches.clear();
+        mNetworkIdsByBssidPrefix.clear();
         clearLastSelectedNetwork();
         return removedNetworkIds;
     }
@@ -3327,6 +3522,8 @@ public class WifiConfigManager {
      * @return Whether the write was successful or not, this is applicable only for force writes.
      */
     public boolean saveToStore(boolean forceWrite) {
+        // Most changes to the configured networks are followed by a store write.
+        incrementConfigGeneration();
         if (mPendingStoreRead) {
             Log.e(TAG, "Cannot save to store before store is read!");
             return false;
@@ -3499,6 +3696,7 @@ public class WifiConfigManager {
             return;
         }
         config.recentFailure.clear();
+        incrementConfigGeneration();
     }
 
     /**
@@ -3614,11 +3812,13 @@ public class WifiConfigManager {
     private void clearConnectChoiceInternal(WifiConfiguration config) {
         config.getNetworkSelectionStatus().setConnectChoice(null);
         config.getNetworkSelectionStatus().setConnectChoiceRssi(0);
+        incrementConfigGeneration();
     }
 
     private void setConnectChoiceInternal(WifiConfiguration config, String key, int rssi) {
         config.getNetworkSelectionStatus().setConnectChoice(key);
         config.getNetworkSelectionStatus().setConnectChoiceRssi(rssi);
+        incrementConfigGeneration();
         localLog("Add connect choice key: " + key + " rssi: " + rssi + " to "
                 + WifiNetworkSelector.toNetworkString(config));
     }
@@ -3703,6 +3903,7 @@ public class WifiConfigManager {
                 && config.isSecurityType(WifiConfiguration.SECURITY_TYPE_OWE)) {
             config.setSecurityParamsEnabled(WifiConfiguration.SECURITY_TYPE_OPEN, false);
         }
+        incrementConfigGeneration();
         return true;
     }
 
@@ -3735,6 +3936,7 @@ public class WifiConfigManager {
             return;
         }
         internalConfig.linkedConfigurations = new HashMap<>();
+        incrementConfigGeneration();
         attemptNetworkLinking(internalConfig);
     }
 
@@ -3773,5 +3975,6 @@ public class WifiConfigManager {
             return;
         }
         internalConfig.enableFils(isFilsSha256Supported, isFilsSha384Supported);
+        incrementConfigGeneration();
     }
 }
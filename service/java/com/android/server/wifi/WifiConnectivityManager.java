@@ -47,6 +47,7 @@ import android.os.PowerManager;
 import android.os.Process;
 import android.os.WorkSource;
 import android.util.ArrayMap;
+import android.util.ArraySet;
 import android.util.LocalLog;
 import android.util.Log;
 
@@ -1559,6 +1560,8 @@ public class WifiConnectivityManager {
 
     /**
      * Fetch channel set for all saved and suggestion non-passpoint network for partial scan.
+     * The channels of the most recently connected network are picked first, followed by the
+     * channels on which these networks were most often observed.
      */
     @VisibleForTesting
     public Set<Integer> fetchChannelSetForPartialScan(int maxCount, long ageInMillis) {
@@ -1567,17 +1570,19 @@ public class WifiConnectivityManager {
             return null;
         }
 
-        // Sort the networks with the most frequent ones at the front of the network list.
-        Collections.sort(networks, mConfigManager.getScanListComparator());
-
         Set<Integer> channelSet = new HashSet<>();
+        WifiConfiguration mostRecentNetwork =
+                Collections.min(networks, mConfigManager.getScanListComparator());
+        if (!addChannelFromWifiScoreCard(channelSet, mostRecentNetwork, maxCount, ageInMillis)) {
+            return channelSet;
+        }
 
+        Set<String> ssids = new ArraySet<>();
         for (WifiConfiguration config : networks) {
-            if (!addChannelFromWifiScoreCard(channelSet, config, maxCount, ageInMillis)) {
-                return channelSet;
-            }
+            ssids.add(config.SSID);
         }
-
+        mWifiScoreCard.getChannelLikelihoodIndex().addTopChannels(channelSet, ssids, maxCount,
+                ageInMillis);
         return channelSet;
     }
 
@@ -287,6 +287,8 @@ public class WifiInjector {
         mWifiP2pMetrics = new WifiP2pMetrics(mClock);
         mDppMetrics = new DppMetrics();
         mWifiMonitor = new WifiMonitor();
+        mWifiMonitor.setCoalesceSupplicantStateChangeEvents(mContext.getResources().getBoolean(
+                R.bool.config_wifiCoalesceSupplicantStateChangeEvents));
         mWifiMetrics = new WifiMetrics(mContext, mFrameworkFacade, mClock, wifiLooper,
                 awareMetrics, rttMetrics, new WifiPowerMetrics(mBatteryStats), mWifiP2pMetrics,
                 mDppMetrics, mWifiMonitor);
@@ -505,7 +507,8 @@ public class WifiInjector {
                 mWifiConfigStore, mWifiNetworkSuggestionsManager, mWifiMetrics.getWakeupMetrics(),
                 this, mFrameworkFacade, mClock, mActiveModeWarden);
         mLockManager = new WifiLockManager(mContext, mBatteryStats, mActiveModeWarden,
-                mFrameworkFacade, wifiHandler, mClock, mWifiMetrics);
+                mFrameworkFacade, wifiHandler,
+                new Handler(mWifiDiagnosticsHandlerThread.getLooper()), mClock, mWifiMetrics);
         mSelfRecovery = new SelfRecovery(mContext, mActiveModeWarden, mClock, mWifiNative);
         mWifiMulticastLockManager = new WifiMulticastLockManager(mActiveModeWarden, mBatteryStats);
 
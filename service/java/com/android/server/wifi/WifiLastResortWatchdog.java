@@ -31,16 +31,17 @@ import android.util.LruCache;
 import android.util.Pair;
 
 import com.android.internal.annotations.VisibleForTesting;
+import com.android.server.wifi.util.LongHashSet;
+import com.android.server.wifi.util.NativeUtil;
 import com.android.wifi.resources.R;
 
 import java.io.FileDescriptor;
 import java.io.PrintWriter;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * This Class is a Work-In-Progress, intended behavior is as follows:
@@ -89,18 +90,27 @@ public class WifiLastResortWatchdog {
     /**
      * Cached WifiConfigurations of available networks seen within MAX_BSSID_AGE scan results
      * Key:BSSID, Value:Counters of failure types
+     * Ordered by the scan in which the network was last seen, so that the networks timing out are
+     * found at the head without walking the whole map.
      */
-    private Map<String, AvailableNetworkFailureCount> mRecentAvailableNetworks = new HashMap<>();
+    private final Map<String, AvailableNetworkFailureCount> mRecentAvailableNetworks =
+            new LinkedHashMap<>();
 
     /**
-     * Map of SSID to <FailureCount, AP count>, used to count failures & number of access points
+     * Map of SSID to failure count & AP count, used to count failures & number of access points
      * belonging to an SSID.
      */
-    private Map<String, Pair<AvailableNetworkFailureCount, Integer>> mSsidFailureCount =
-            new HashMap<>();
+    private final Map<String, SsidFailureCount> mSsidFailureCount = new HashMap<>();
 
-    /* List of failure BSSID */
-    private final Set<String> mBssidFailureList = new HashSet<>();
+    // Number of updateAvailableNetworks() calls, used to age the recent available networks.
+    private int mScanCount = 0;
+    // Number of SSIDs in mSsidFailureCount which are over FAILURE_THRESHOLD.
+    private int mNumSsidsOverFailureThreshold = 0;
+    // Number of networks in mRecentAvailableNetworks which have ever connected.
+    private int mNumEverConnectedNetworks = 0;
+
+    /* List of failure BSSID, packed with NativeUtil#macAddressStringToLong */
+    private final LongHashSet mBssidFailureList = new LongHashSet();
 
     // Is Watchdog allowed to trigger now? Set to false after triggering. Set to true after
     // successfully connecting or a new network (SSID) becomes available to connect to.
@@ -239,6 +249,7 @@ public class WifiLastResortWatchdog {
      */
     public void updateAvailableNetworks(
             List<Pair<ScanDetail, WifiConfiguration>> availableNetworks) {
+        mScanCount++;
         // Add new networks to mRecentAvailableNetworks
         if (availableNetworks != null) {
             if (mVerboseLoggingEnabled) {
@@ -254,21 +265,21 @@ public class WifiLastResortWatchdog {
                 if (mVerboseLoggingEnabled) {
                     Log.v(TAG, " " + bssid + ": " + scanDetail.getSSID());
                 }
-                // Cache the scanResult & WifiConfig
+                // Cache the scanResult & WifiConfig, moving it to the tail of the recently seen
+                // networks
                 AvailableNetworkFailureCount availableNetworkFailureCount =
-                        mRecentAvailableNetworks.get(bssid);
+                        mRecentAvailableNetworks.remove(bssid);
                 if (availableNetworkFailureCount == null) {
                     // New network is available
-                    availableNetworkFailureCount = new AvailableNetworkFailureCount(config);
+                    availableNetworkFailureCount = new AvailableNetworkFailureCount(null);
                     availableNetworkFailureCount.ssid = ssid;
 
                     // Count AP for this SSID
-                    Pair<AvailableNetworkFailureCount, Integer> ssidFailsAndApCount =
-                            mSsidFailureCount.get(ssid);
+                    SsidFailureCount ssidFailsAndApCount = mSsidFailureCount.get(ssid);
                     if (ssidFailsAndApCount == null) {
-                        // This is a new SSID, create new FailureCount for it and set AP count to 1
-                        ssidFailsAndApCount = Pair.create(new AvailableNetworkFailureCount(config),
-                                1);
+                        // This is a new SSID, create new FailureCount for it
+                        ssidFailsAndApCount = new SsidFailureCount(config);
+                        mSsidFailureCount.put(ssid, ssidFailsAndApCount);
                         // Do not re-enable Watchdog in LAST_TRIGGER_TIMEOUT_MILLIS
                         // after last time Watchdog be triggered
                         if (!mWatchdogAllowedToTrigger && (mTimeLastTrigger == 0
@@ -277,53 +288,64 @@ public class WifiLastResortWatchdog {
                             localLog("updateAvailableNetworks: setWatchdogTriggerEnabled to true");
                             setWatchdogTriggerEnabled(true);
                         }
-                    } else {
-                        final Integer numberOfAps = ssidFailsAndApCount.second;
-                        // This is not a new SSID, increment the AP count for it
-                        ssidFailsAndApCount = Pair.create(ssidFailsAndApCount.first,
-                                numberOfAps + 1);
                     }
-                    mSsidFailureCount.put(ssid, ssidFailsAndApCount);
+                    ssidFailsAndApCount.apCount++;
                 }
                 // refresh config if it is not null
                 if (config != null) {
-                    availableNetworkFailureCount.config = config;
+                    setConfig(availableNetworkFailureCount, config);
                 }
-                // If we saw a network, set its Age to -1 here, aging iteration will set it to 0
-                availableNetworkFailureCount.age = -1;
+                availableNetworkFailureCount.lastSeenScanCount = mScanCount;
                 mRecentAvailableNetworks.put(bssid, availableNetworkFailureCount);
             }
         }
 
-        // Iterate through available networks updating timeout counts & removing networks.
-        Iterator<Map.Entry<String, AvailableNetworkFailureCount>> it =
-                mRecentAvailableNetworks.entrySet().iterator();
+        // Remove the networks which have timed out, which are the least recently seen ones.
+        Iterator<AvailableNetworkFailureCount> it = mRecentAvailableNetworks.values().iterator();
         while (it.hasNext()) {
-            Map.Entry<String, AvailableNetworkFailureCount> entry = it.next();
-            if (entry.getValue().age < MAX_BSSID_AGE - 1) {
-                entry.getValue().age++;
-            } else {
-                // Decrement this SSID : AP count
-                String ssid = entry.getValue().ssid;
-                Pair<AvailableNetworkFailureCount, Integer> ssidFails =
-                            mSsidFailureCount.get(ssid);
-                if (ssidFails != null) {
-                    Integer apCount = ssidFails.second - 1;
-                    if (apCount > 0) {
-                        ssidFails = Pair.create(ssidFails.first, apCount);
-                        mSsidFailureCount.put(ssid, ssidFails);
-                    } else {
-                        mSsidFailureCount.remove(ssid);
+            AvailableNetworkFailureCount availableNetworkFailureCount = it.next();
+            if (mScanCount - availableNetworkFailureCount.lastSeenScanCount < MAX_BSSID_AGE) {
+                break;
+            }
+            if (availableNetworkFailureCount.hasEverConnected) {
+                mNumEverConnectedNetworks--;
+            }
+            // Decrement this SSID : AP count
+            String ssid = availableNetworkFailureCount.ssid;
+            SsidFailureCount ssidFails = mSsidFailureCount.get(ssid);
+            if (ssidFails != null) {
+                ssidFails.apCount--;
+                if (ssidFails.apCount <= 0) {
+                    if (isOverFailureThreshold(ssidFails.failureCount)) {
+                        mNumSsidsOverFailureThreshold--;
                     }
-                } else {
-                    Log.d(TAG, "updateAvailableNetworks: SSID to AP count mismatch for " + ssid);
+                    mSsidFailureCount.remove(ssid);
                 }
-                it.remove();
+            } else {
+                Log.d(TAG, "updateAvailableNetworks: SSID to AP count mismatch for " + ssid);
             }
+            it.remove();
         }
         if (mVerboseLoggingEnabled) Log.v(TAG, toString());
     }
 
+    /**
+     * Set the config of an available network, keeping track of the number of available networks
+     * which have ever connected.
+     */
+    private void setConfig(AvailableNetworkFailureCount availableNetworkFailureCount,
+            WifiConfiguration config) {
+        if (availableNetworkFailureCount.hasEverConnected) {
+            mNumEverConnectedNetworks--;
+        }
+        availableNetworkFailureCount.config = config;
+        availableNetworkFailureCount.hasEverConnected = config != null
+                && config.getNetworkSelectionStatus().hasEverConnected();
+        if (availableNetworkFailureCount.hasEverConnected) {
+            mNumEverConnectedNetworks++;
+        }
+    }
+
     /**
      * Increments the failure reason count for the given bssid. Performs a check to see if we have
      * exceeded a failure threshold for all available networks, and executes the last resort restart
@@ -409,7 +431,8 @@ public class WifiLastResortWatchdog {
      * which is in BSSID failure list after watchdog trigger.
      */
     private boolean checkIfConnectedBssidHasEverFailed(@NonNull WifiInfo wifiInfo) {
-        return mBssidFailureList.contains(wifiInfo.getBSSID());
+        long bssid = NativeUtil.macAddressStringToLong(wifiInfo.getBSSID());
+        return bssid != NativeUtil.INVALID_MAC_LONG && mBssidFailureList.contains(bssid);
     }
 
     /**
@@ -453,7 +476,10 @@ public class WifiLastResortWatchdog {
             // Bssid count is actually unused except for logging purposes
             // SSID count is incremented within the BSSID counting method
             incrementBssidFailureCount(ssid, bssid, reason);
-            mBssidFailureList.add(bssid);
+            long bssidKey = NativeUtil.macAddressStringToLong(bssid);
+            if (bssidKey != NativeUtil.INVALID_MAC_LONG) {
+                mBssidFailureList.add(bssidKey);
+            }
         }
     }
 
@@ -463,13 +489,17 @@ public class WifiLastResortWatchdog {
      * @param reason the failure type to increment count for
      */
     private void incrementSsidFailureCount(String ssid, int reason) {
-        Pair<AvailableNetworkFailureCount, Integer> ssidFails = mSsidFailureCount.get(ssid);
+        SsidFailureCount ssidFails = mSsidFailureCount.get(ssid);
         if (ssidFails == null) {
             Log.d(TAG, "updateFailureCountForNetwork: No networks for ssid = " + ssid);
             return;
         }
-        AvailableNetworkFailureCount failureCount = ssidFails.first;
+        AvailableNetworkFailureCount failureCount = ssidFails.failureCount;
+        boolean wasOverFailureThreshold = isOverFailureThreshold(failureCount);
         failureCount.incrementFailureCount(reason);
+        if (!wasOverFailureThreshold && isOverFailureThreshold(failureCount)) {
+            mNumSsidsOverFailureThreshold++;
+        }
     }
 
     /**
@@ -535,12 +565,12 @@ public class WifiLastResortWatchdog {
             return false;
         }
         String ssid = availableNetworkFailureCount.ssid;
-        Pair<AvailableNetworkFailureCount, Integer> ssidFails = mSsidFailureCount.get(ssid);
+        SsidFailureCount ssidFails = mSsidFailureCount.get(ssid);
         if (ssidFails == null) {
             Log.d(TAG, "isOnlyBssidAvailable: Could not find SSID count for " + ssid);
             return false;
         }
-        if (ssidFails.second != 1) {
+        if (ssidFails.apCount != 1) {
             return false;
         }
         return true;
@@ -567,30 +597,22 @@ public class WifiLastResortWatchdog {
         // Don't check Watchdog trigger if trigger is not enabled
         if (!mWatchdogAllowedToTrigger) return false;
 
-        for (Map.Entry<String, AvailableNetworkFailureCount> entry
-                : mRecentAvailableNetworks.entrySet()) {
-            if (!isOverFailureThreshold(entry.getKey())) {
-                // This available network is not over failure threshold, meaning we still have a
-                // network to try connecting to
-                return false;
-            }
+        // Failures are counted per SSID, so every available network is over failure threshold
+        // when every SSID is.
+        if (mNumSsidsOverFailureThreshold < mSsidFailureCount.size()) {
+            // An available network is not over failure threshold, meaning we still have a
+            // network to try connecting to
+            return false;
         }
         // We have met the failure count for every available network.
         // Trigger restart if there exists at-least one network that we have previously connected.
         boolean atleastOneNetworkHasEverConnected = checkIfAtleastOneNetworkHasEverConnected();
         logv("checkTriggerCondition: return = " + atleastOneNetworkHasEverConnected);
-        return checkIfAtleastOneNetworkHasEverConnected();
+        return atleastOneNetworkHasEverConnected;
     }
 
     private boolean checkIfAtleastOneNetworkHasEverConnected() {
-        for (Map.Entry<String, AvailableNetworkFailureCount> entry
-                : mRecentAvailableNetworks.entrySet()) {
-            if (entry.getValue().config != null
-                    && entry.getValue().config.getNetworkSelectionStatus().hasEverConnected()) {
-                return true;
-            }
-        }
-        return false;
+        return mNumEverConnectedNetworks > 0;
     }
 
     /**
@@ -606,16 +628,16 @@ public class WifiLastResortWatchdog {
         int badAssoc = 0;
         int badDhcp = 0;
         int badSum = 0;
-        for (Map.Entry<String, Pair<AvailableNetworkFailureCount, Integer>> entry
-                : mSsidFailureCount.entrySet()) {
-            badSum = entry.getValue().first.associationRejection
-                    + entry.getValue().first.authenticationFailure
-                    + entry.getValue().first.dhcpFailure;
+        for (SsidFailureCount ssidFails : mSsidFailureCount.values()) {
+            final AvailableNetworkFailureCount failureCount = ssidFails.failureCount;
+            badSum = failureCount.associationRejection
+                    + failureCount.authenticationFailure
+                    + failureCount.dhcpFailure;
             // count as contributor if over half of badSum.
             if (badSum >= FAILURE_THRESHOLD) {
-                badAssoc += (entry.getValue().first.associationRejection >= badSum / 2) ? 1 : 0;
-                badAuth += (entry.getValue().first.authenticationFailure >= badSum / 2) ? 1 : 0;
-                badDhcp += (entry.getValue().first.dhcpFailure >= badSum / 2) ? 1 : 0;
+                badAssoc += (failureCount.associationRejection >= badSum / 2) ? 1 : 0;
+                badAuth += (failureCount.authenticationFailure >= badSum / 2) ? 1 : 0;
+                badDhcp += (failureCount.dhcpFailure >= badSum / 2) ? 1 : 0;
             }
         }
         if (badAuth > 0) {
@@ -642,18 +664,22 @@ public class WifiLastResortWatchdog {
             final AvailableNetworkFailureCount failureCount = entry.getValue();
             failureCount.resetCounts();
         }
-        for (Map.Entry<String, Pair<AvailableNetworkFailureCount, Integer>> entry
-                : mSsidFailureCount.entrySet()) {
-            final AvailableNetworkFailureCount failureCount = entry.getValue().first;
-            failureCount.resetCounts();
+        for (SsidFailureCount ssidFails : mSsidFailureCount.values()) {
+            ssidFails.failureCount.resetCounts();
         }
+        mNumSsidsOverFailureThreshold = 0;
         mBssidFailureList.clear();
     }
     /**
-     * Gets the buffer of recently available networks
+     * Gets the buffer of recently available networks, with their age refreshed
      */
     @VisibleForTesting
     Map<String, AvailableNetworkFailureCount> getRecentAvailableNetworks() {
+        for (AvailableNetworkFailureCount availableNetworkFailureCount
+                : mRecentAvailableNetworks.values()) {
+            availableNetworkFailureCount.age =
+                    mScanCount - availableNetworkFailureCount.lastSeenScanCount;
+        }
         return mRecentAvailableNetworks;
     }
 
@@ -682,13 +708,12 @@ public class WifiLastResortWatchdog {
         for (Map.Entry<String, AvailableNetworkFailureCount> entry
                 : mRecentAvailableNetworks.entrySet()) {
             sb.append("\n ").append(entry.getKey()).append(": ").append(entry.getValue())
-                .append(", Age: ").append(entry.getValue().age);
+                .append(", Age: ").append(mScanCount - entry.getValue().lastSeenScanCount);
         }
         sb.append("\nmSsidFailureCount:");
-        for (Map.Entry<String, Pair<AvailableNetworkFailureCount, Integer>> entry :
-                mSsidFailureCount.entrySet()) {
-            final AvailableNetworkFailureCount failureCount = entry.getValue().first;
-            final Integer apCount = entry.getValue().second;
+        for (Map.Entry<String, SsidFailureCount> entry : mSsidFailureCount.entrySet()) {
+            final AvailableNetworkFailureCount failureCount = entry.getValue().failureCount;
+            final int apCount = entry.getValue().apCount;
             sb.append("\n").append(entry.getKey()).append(": ").append(apCount).append(",")
                     .append(failureCount.toString());
         }
@@ -706,6 +731,11 @@ public class WifiLastResortWatchdog {
                 + getFailureCount(bssid, FAILURE_CODE_DHCP)) >= FAILURE_THRESHOLD;
     }
 
+    private static boolean isOverFailureThreshold(AvailableNetworkFailureCount failureCount) {
+        return (failureCount.associationRejection + failureCount.authenticationFailure
+                + failureCount.dhcpFailure) >= FAILURE_THRESHOLD;
+    }
+
     /**
      * Get the failure count for a specific bssid. This actually checks the ssid attached to the
      * BSSID and returns the SSID count
@@ -719,12 +749,12 @@ public class WifiLastResortWatchdog {
             return 0;
         }
         String ssid = availableNetworkFailureCount.ssid;
-        Pair<AvailableNetworkFailureCount, Integer> ssidFails = mSsidFailureCount.get(ssid);
+        SsidFailureCount ssidFails = mSsidFailureCount.get(ssid);
         if (ssidFails == null) {
             Log.d(TAG, "getFailureCount: Could not find SSID count for " + ssid);
             return 0;
         }
-        final AvailableNetworkFailureCount failCount = ssidFails.first;
+        final AvailableNetworkFailureCount failCount = ssidFails.failureCount;
         switch (reason) {
             case FAILURE_CODE_ASSOCIATION:
                 return failCount.associationRejection;
@@ -794,9 +824,18 @@ public class WifiLastResortWatchdog {
          */
         public int dhcpFailure = 0;
         /**
-         * Number of scanResults since this network was last seen
+         * Number of scanResults since this network was last seen. Only refreshed when the
+         * recent available networks are read for testing.
          */
         public int age = 0;
+        /**
+         * Value of the scan count when this network was last seen
+         */
+        int lastSeenScanCount = 0;
+        /**
+         * Whether the config of this network has ever connected
+         */
+        boolean hasEverConnected = false;
 
         AvailableNetworkFailureCount(WifiConfiguration configParam) {
             this.config = configParam;
@@ -840,6 +879,18 @@ public class WifiLastResortWatchdog {
         }
     }
 
+    /**
+     * Failure counts and number of access points of an SSID.
+     */
+    private static class SsidFailureCount {
+        public final AvailableNetworkFailureCount failureCount;
+        public int apCount = 0;
+
+        SsidFailureCount(WifiConfiguration config) {
+            failureCount = new AvailableNetworkFailureCount(config);
+        }
+    }
+
     /**
      * Helper function for logging into local log buffer.
      */
@@ -44,7 +44,9 @@ import com.android.server.wifi.util.WorkSourceUtil;
 
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 
 /**
@@ -71,11 +73,17 @@ public class WifiLockManager {
     private final ActiveModeWarden mActiveModeWarden;
     private final ActivityManager mActivityManager;
     private final Handler mHandler;
+    private final Handler mStatsHandler;
     private final WifiMetrics mWifiMetrics;
 
-    private final List<WifiLock> mWifiLocks = new ArrayList<>();
+    // map binders to the locks they hold
+    private final Map<IBinder, WifiLock> mWifiLocks = new LinkedHashMap<>();
     // map UIDs to their corresponding records (for low-latency locks)
     private final SparseArray<UidRec> mLowLatencyUidWatchList = new SparseArray<>();
+    // number of UIDs in the low-latency watch list running in foreground
+    private int mNumFgLowLatencyUids = 0;
+    // lock state changes not reported yet to battery stats and statsd, in order
+    private final List<BlameEvent> mPendingBlameEvents = new ArrayList<>();
     /** the current op mode of the primary ClientModeManager */
     private int mCurrentOpMode = WifiManager.WIFI_MODE_NO_LOCKS_HELD;
     private boolean mScreenOn = false;
@@ -95,13 +103,14 @@ public class WifiLockManager {
 
     WifiLockManager(Context context, BatteryStatsManager batteryStats,
             ActiveModeWarden activeModeWarden, FrameworkFacade frameworkFacade,
-            Handler handler, Clock clock, WifiMetrics wifiMetrics) {
+            Handler handler, Handler statsHandler, Clock clock, WifiMetrics wifiMetrics) {
         mContext = context;
         mBatteryStats = batteryStats;
         mActiveModeWarden = activeModeWarden;
         mFrameworkFacade = frameworkFacade;
         mActivityManager = (ActivityManager) mContext.getSystemService(Context.ACTIVITY_SERVICE);
         mHandler = handler;
+        mStatsHandler = statsHandler;
         mClock = clock;
         mWifiMetrics = wifiMetrics;
 
@@ -188,7 +197,7 @@ public class WifiLockManager {
                         return; // already at correct state
                     }
 
-                    uidRec.mIsFg = newModeIsFg;
+                    setUidRecFg(uidRec, newModeIsFg);
                     updateOpMode();
 
                     // If conditions for lock activation are met,
@@ -255,7 +264,7 @@ public class WifiLockManager {
             return WifiManager.WIFI_MODE_FULL_LOW_LATENCY;
         }
 
-        if (mScreenOn && countFgLowLatencyUids() > 0) {
+        if (mScreenOn && mNumFgLowLatencyUids > 0) {
             return WifiManager.WIFI_MODE_FULL_LOW_LATENCY;
         }
 
@@ -271,7 +280,7 @@ public class WifiLockManager {
      */
     public synchronized WorkSource createMergedWorkSource() {
         WorkSource mergedWS = new WorkSource();
-        for (WifiLock lock : mWifiLocks) {
+        for (WifiLock lock : mWifiLocks.values()) {
             mergedWS.add(lock.getWorkSource());
         }
         return mergedWS;
@@ -410,7 +419,7 @@ public class WifiLockManager {
     }
 
     private synchronized void setBlameHiPerfLocks(boolean shouldBlame) {
-        for (WifiLock lock : mWifiLocks) {
+        for (WifiLock lock : mWifiLocks.values()) {
             if (lock.mMode == WifiManager.WIFI_MODE_FULL_HIGH_PERF) {
                 setBlameHiPerfWs(lock.getWorkSource(), shouldBlame);
             }
@@ -444,7 +453,7 @@ public class WifiLockManager {
 
             // Now check if the uid is running in foreground
             if (mFrameworkFacade.isAppForeground(mContext, uid)) {
-                uidRec.mIsFg = true;
+                setUidRecFg(uidRec, true);
             }
 
             if (canActivateLowLatencyLock(0, uidRec)) {
@@ -468,6 +477,9 @@ public class WifiLockManager {
         }
         if (uidRec.mLockCount == 0) {
             mLowLatencyUidWatchList.remove(uid);
+            if (uidRec.mIsFg) {
+                mNumFgLowLatencyUids--;
+            }
 
             // Remove blame for this UID if it was alerady set
             // Note that blame needs to be stopped only if it was started before
@@ -524,7 +536,7 @@ public class WifiLockManager {
             return false;
         }
 
-        mWifiLocks.add(lock);
+        mWifiLocks.put(lock.getBinder(), lock);
 
         switch(lock.mMode) {
             case WifiManager.WIFI_MODE_FULL_HIGH_PERF:
@@ -550,9 +562,8 @@ public class WifiLockManager {
     }
 
     private synchronized WifiLock removeLock(IBinder binder) {
-        WifiLock lock = findLockByBinder(binder);
+        WifiLock lock = mWifiLocks.remove(binder);
         if (lock != null) {
-            mWifiLocks.remove(lock);
             lock.unlinkDeathRecipient();
         }
         return lock;
@@ -768,61 +779,56 @@ public class WifiLockManager {
     }
 
     private synchronized WifiLock findLockByBinder(IBinder binder) {
-        for (WifiLock lock : mWifiLocks) {
-            if (lock.getBinder() == binder) {
-                return lock;
-            }
-        }
-        return null;
+        return mWifiLocks.get(binder);
     }
 
-    private int countFgLowLatencyUids() {
-        int uidCount = 0;
-        int listSize = mLowLatencyUidWatchList.size();
-        for (int idx = 0; idx < listSize; idx++) {
-            UidRec uidRec = mLowLatencyUidWatchList.valueAt(idx);
-            if (uidRec.mIsFg) {
-                uidCount++;
-            }
+    private void setUidRecFg(UidRec uidRec, boolean isFg) {
+        if (uidRec.mIsFg == isFg) {
+            return;
+        }
+        uidRec.mIsFg = isFg;
+        if (isFg) {
+            mNumFgLowLatencyUids++;
+        } else {
+            mNumFgLowLatencyUids--;
         }
-        return uidCount;
     }
 
     private void setBlameHiPerfWs(WorkSource ws, boolean shouldBlame) {
-        long ident = Binder.clearCallingIdentity();
-        Pair<int[], String[]> uidsAndTags = WorkSourceUtil.getUidsAndTagsForWs(ws);
-        try {
-            if (shouldBlame) {
-                mBatteryStats.reportFullWifiLockAcquiredFromSource(ws);
-                WifiStatsLog.write(WifiStatsLog.WIFI_LOCK_STATE_CHANGED,
-                        uidsAndTags.first, uidsAndTags.second,
-                        WifiStatsLog.WIFI_LOCK_STATE_CHANGED__STATE__ON,
-                        WifiStatsLog.WIFI_LOCK_STATE_CHANGED__MODE__WIFI_MODE_FULL_HIGH_PERF);
-            } else {
-                mBatteryStats.reportFullWifiLockReleasedFromSource(ws);
-                WifiStatsLog.write(WifiStatsLog.WIFI_LOCK_STATE_CHANGED,
-                        uidsAndTags.first, uidsAndTags.second,
-                        WifiStatsLog.WIFI_LOCK_STATE_CHANGED__STATE__OFF,
-                        WifiStatsLog.WIFI_LOCK_STATE_CHANGED__MODE__WIFI_MODE_FULL_HIGH_PERF);
+        queueBlameEvent(new BlameEvent(ws, WifiManager.WIFI_MODE_FULL_HIGH_PERF, shouldBlame));
+    }
+
+    private void setBlameLowLatencyUid(int uid, boolean shouldBlame) {
+        queueBlameEvent(new BlameEvent(new WorkSource(uid),
+                WifiManager.WIFI_MODE_FULL_LOW_LATENCY, shouldBlame));
+    }
+
+    /**
+     * Queue a lock state change to report to battery stats and statsd. The changes are reported
+     * in order on the stats handler, so that acquiring and releasing locks doesn't wait for the
+     * reports.
+     */
+    private void queueBlameEvent(BlameEvent event) {
+        synchronized (mPendingBlameEvents) {
+            mPendingBlameEvents.add(event);
+            if (mPendingBlameEvents.size() > 1) {
+                // The pending events are already scheduled to be reported.
+                return;
             }
-        } finally {
-            Binder.restoreCallingIdentity(ident);
         }
+        mStatsHandler.post(this::reportPendingBlameEvents);
     }
 
-    private void setBlameLowLatencyUid(int uid, boolean shouldBlame) {
+    private void reportPendingBlameEvents() {
+        List<BlameEvent> events;
+        synchronized (mPendingBlameEvents) {
+            events = new ArrayList<>(mPendingBlameEvents);
+            mPendingBlameEvents.clear();
+        }
         long ident = Binder.clearCallingIdentity();
         try {
-            if (shouldBlame) {
-                mBatteryStats.reportFullWifiLockAcquiredFromSource(new WorkSource(uid));
-                WifiStatsLog.write_non_chained(WifiStatsLog.WIFI_LOCK_STATE_CHANGED, uid, null,
-                        WifiStatsLog.WIFI_LOCK_STATE_CHANGED__STATE__ON,
-                        WifiStatsLog.WIFI_LOCK_STATE_CHANGED__MODE__WIFI_MODE_FULL_LOW_LATENCY);
-            } else {
-                mBatteryStats.reportFullWifiLockReleasedFromSource(new WorkSource(uid));
-                WifiStatsLog.write_non_chained(WifiStatsLog.WIFI_LOCK_STATE_CHANGED, uid, null,
-                        WifiStatsLog.WIFI_LOCK_STATE_CHANGED__STATE__OFF,
-                        WifiStatsLog.WIFI_LOCK_STATE_CHANGED__MODE__WIFI_MODE_FULL_LOW_LATENCY);
+            for (BlameEvent event : events) {
+                event.report();
             }
         } finally {
             Binder.restoreCallingIdentity(ident);
@@ -851,7 +857,7 @@ public class WifiLockManager {
 
         pw.println();
         pw.println("Locks held:");
-        for (WifiLock lock : mWifiLocks) {
+        for (WifiLock lock : mWifiLocks.values()) {
             pw.print("    ");
             pw.println(lock);
         }
@@ -922,6 +928,39 @@ public class WifiLockManager {
         }
     }
 
+    private class BlameEvent {
+        final WorkSource mWorkSource;
+        final int mMode;
+        final boolean mShouldBlame;
+
+        BlameEvent(WorkSource ws, int mode, boolean shouldBlame) {
+            mWorkSource = ws;
+            mMode = mode;
+            mShouldBlame = shouldBlame;
+        }
+
+        void report() {
+            if (mShouldBlame) {
+                mBatteryStats.reportFullWifiLockAcquiredFromSource(mWorkSource);
+            } else {
+                mBatteryStats.reportFullWifiLockReleasedFromSource(mWorkSource);
+            }
+            int state = mShouldBlame ? WifiStatsLog.WIFI_LOCK_STATE_CHANGED__STATE__ON
+                    : WifiStatsLog.WIFI_LOCK_STATE_CHANGED__STATE__OFF;
+            if (mMode == WifiManager.WIFI_MODE_FULL_LOW_LATENCY) {
+                WifiStatsLog.write_non_chained(WifiStatsLog.WIFI_LOCK_STATE_CHANGED,
+                        mWorkSource.getUid(0), null, state,
+                        WifiStatsLog.WIFI_LOCK_STATE_CHANGED__MODE__WIFI_MODE_FULL_LOW_LATENCY);
+            } else {
+                Pair<int[], String[]> uidsAndTags =
+                        WorkSourceUtil.getUidsAndTagsForWs(mWorkSource);
+                WifiStatsLog.write(WifiStatsLog.WIFI_LOCK_STATE_CHANGED,
+                        uidsAndTags.first, uidsAndTags.second, state,
+                        WifiStatsLog.WIFI_LOCK_STATE_CHANGED__MODE__WIFI_MODE_FULL_HIGH_PERF);
+            }
+        }
+    }
+
     private class UidRec {
         final int mUid;
         // Count of locks owned or co-owned by this UID
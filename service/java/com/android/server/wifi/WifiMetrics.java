@@ -3436,7 +3436,7 @@ public class WifiMetrics {
                     supporting80211mcAps++;
                 }
 
-                ScanResultMatchInfo matchInfo = ScanResultMatchInfo.fromScanResult(scanResult);
+                ScanResultMatchInfo matchInfo = scanDetail.getScanResultMatchInfo();
                 List<Pair<PasspointProvider, PasspointMatch>> matchedProviders = null;
                 if (networkDetail.isInterworking()) {
                     // Try to match provider, but do not allow new ANQP messages. Use cached data.
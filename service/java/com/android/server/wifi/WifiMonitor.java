@@ -23,7 +23,8 @@ import android.net.wifi.WifiManager;
 import android.net.wifi.WifiSsid;
 import android.os.Handler;
 import android.os.Message;
-import android.util.ArraySet;
+import android.os.SystemClock;
+import android.util.ArrayMap;
 import android.util.Log;
 import android.util.SparseArray;
 
@@ -35,11 +36,14 @@ import com.android.server.wifi.hotspot2.AnqpEvent;
 import com.android.server.wifi.hotspot2.IconEvent;
 import com.android.server.wifi.hotspot2.WnmData;
 
+import java.io.PrintWriter;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Set;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Listen for events from the wpa_supplicant & wificond and broadcast them on
@@ -146,19 +150,24 @@ public class WifiMonitor {
         mVerboseLoggingEnabled = verbose;
     }
 
-    private final Map<String, SparseArray<Set<Handler>>> mHandlerMap = new HashMap<>();
+    private static final Handler[] NO_HANDLERS = new Handler[0];
+
+    /**
+     * Registered handlers per iface and event. The map and its arrays are never modified once
+     * published; registration changes (which are rare) replace the whole map, so that events
+     * arriving on the HAL callback threads can be dispatched without locking or iterating sets.
+     */
+    private volatile Map<String, SparseArray<Handler[]>> mHandlerMap = new ArrayMap<>();
+
     public synchronized void registerHandler(String iface, int what, Handler handler) {
-        SparseArray<Set<Handler>> ifaceHandlers = mHandlerMap.get(iface);
-        if (ifaceHandlers == null) {
-            ifaceHandlers = new SparseArray<>();
-            mHandlerMap.put(iface, ifaceHandlers);
-        }
-        Set<Handler> ifaceWhatHandlers = ifaceHandlers.get(what);
-        if (ifaceWhatHandlers == null) {
-            ifaceWhatHandlers = new ArraySet<>();
-            ifaceHandlers.put(what, ifaceWhatHandlers);
+        Handler[] handlers = getHandlers(mHandlerMap, iface, what);
+        for (Handler h : handlers) {
+            if (h == handler) return;
         }
-        ifaceWhatHandlers.add(handler);
+        Handler[] newHandlers = new Handler[handlers.length + 1];
+        System.arraycopy(handlers, 0, newHandlers, 0, handlers.length);
+        newHandlers[handlers.length] = handler;
+        publishHandlers(iface, what, newHandlers);
     }
 
     /**
@@ -168,15 +177,79 @@ public class WifiMonitor {
      * @param handler
      */
     public synchronized void deregisterHandler(String iface, int what, Handler handler) {
-        SparseArray<Set<Handler>> ifaceHandlers = mHandlerMap.get(iface);
-        if (ifaceHandlers == null) {
+        Handler[] handlers = getHandlers(mHandlerMap, iface, what);
+        for (int i = 0; i < handlers.length; i++) {
+            if (handlers[i] != handler) continue;
+            Handler[] newHandlers = new Handler[handlers.length - 1];
+            System.arraycopy(handlers, 0, newHandlers, 0, i);
+            System.arraycopy(handlers, i + 1, newHandlers, i, handlers.length - i - 1);
+            publishHandlers(iface, what, newHandlers);
             return;
         }
-        Set<Handler> ifaceWhatHandlers = ifaceHandlers.get(what);
-        if (ifaceWhatHandlers == null) {
-            return;
+    }
+
+    private static Handler[] getHandlers(
+            Map<String, SparseArray<Handler[]>> handlerMap, String iface, int what) {
+        SparseArray<Handler[]> ifaceHandlers = handlerMap.get(iface);
+        if (ifaceHandlers == null) return NO_HANDLERS;
+        return ifaceHandlers.get(what, NO_HANDLERS);
+    }
+
+    /** Copy the registry with the handlers for (|iface|, |what|) replaced and publish it. */
+    private void publishHandlers(String iface, int what, Handler[] handlers) {
+        Map<String, SparseArray<Handler[]>> handlerMap = new ArrayMap<>(mHandlerMap);
+        SparseArray<Handler[]> ifaceHandlers = handlerMap.get(iface);
+        ifaceHandlers = ifaceHandlers == null ? new SparseArray<>() : ifaceHandlers.clone();
+        ifaceHandlers.put(what, handlers);
+        handlerMap.put(iface, ifaceHandlers);
+        mHandlerMap = handlerMap;
+    }
+
+    /**
+     * Whether to drop a {@link #SUPPLICANT_STATE_CHANGE_EVENT} identical to the previous event
+     * sent for the same iface, with no other event sent in between.
+     */
+    private volatile boolean mCoalesceSupplicantStateChangeEvents = false;
+    /** Last supplicant state change sent per iface, used for coalescing. */
+    private final Map<String, StateChangeResult> mLastStateChangeResults =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Enable/Disable coalescing of repeated identical supplicant state change events.
+     */
+    public void setCoalesceSupplicantStateChangeEvents(boolean enabled) {
+        mCoalesceSupplicantStateChangeEvents = enabled;
+        mLastStateChangeResults.clear();
+    }
+
+    /**
+     * Aggregated dispatch statistics for a single event type.
+     */
+    private static class DispatchStats {
+        public final AtomicLong count = new AtomicLong();
+        public final AtomicLong coalescedCount = new AtomicLong();
+        public final AtomicLong totalDispatchNanos = new AtomicLong();
+        public final AtomicLong maxDispatchNanos = new AtomicLong();
+
+        void addDispatch(long dispatchNanos) {
+            count.incrementAndGet();
+            totalDispatchNanos.addAndGet(dispatchNanos);
+            maxDispatchNanos.accumulateAndGet(dispatchNanos, Math::max);
         }
-        ifaceWhatHandlers.remove(handler);
+
+        @Override
+        public String toString() {
+            long c = count.get();
+            return "count=" + c + " coalesced=" + coalescedCount.get()
+                    + " avgDispatchUs=" + (c == 0 ? 0 : totalDispatchNanos.get() / c / 1000)
+                    + " maxDispatchUs=" + maxDispatchNanos.get() / 1000;
+        }
+    }
+
+    private final Map<Integer, DispatchStats> mDispatchStats = new ConcurrentHashMap<>();
+
+    private DispatchStats getDispatchStats(int what) {
+        return mDispatchStats.computeIfAbsent(what, k -> new DispatchStats());
     }
 
     private final Map<String, Boolean> mMonitoringMap = new HashMap<>();
@@ -208,6 +281,7 @@ public class WifiMonitor {
     public synchronized void startMonitoring(String iface) {
         if (mVerboseLoggingEnabled) Log.d(TAG, "startMonitoring(" + iface + ")");
         setMonitoring(iface, true);
+        mLastStateChangeResults.remove(iface);
     }
 
     /**
@@ -219,6 +293,7 @@ public class WifiMonitor {
         if (mVerboseLoggingEnabled) Log.d(TAG, "stopMonitoring(" + iface + ")");
         setMonitoring(iface, true);
         setMonitoring(iface, false);
+        mLastStateChangeResults.remove(iface);
     }
 
 
@@ -248,16 +323,22 @@ public class WifiMonitor {
     }
 
     private void sendMessage(String iface, Message message) {
-        SparseArray<Set<Handler>> ifaceHandlers = mHandlerMap.get(iface);
+        long startNanos = SystemClock.elapsedRealtimeNanos();
+        DispatchStats stats = getDispatchStats(message.what);
+        if (shouldCoalesce(iface, message)) {
+            if (mVerboseLoggingEnabled) {
+                Log.d(TAG, "Dropping repeated supplicant state change event on " + iface);
+            }
+            stats.coalescedCount.incrementAndGet();
+            message.recycle();
+            return;
+        }
+        Map<String, SparseArray<Handler[]>> handlerMap = mHandlerMap;
+        SparseArray<Handler[]> ifaceHandlers = handlerMap.get(iface);
         if (iface != null && ifaceHandlers != null) {
             if (isMonitoring(iface)) {
-                Set<Handler> ifaceWhatHandlers = ifaceHandlers.get(message.what);
-                if (ifaceWhatHandlers != null) {
-                    for (Handler handler : ifaceWhatHandlers) {
-                        if (handler != null) {
-                            sendMessage(iface, handler, Message.obtain(message));
-                        }
-                    }
+                for (Handler handler : ifaceHandlers.get(message.what, NO_HANDLERS)) {
+                    sendMessage(iface, handler, Message.obtain(message));
                 }
             } else {
                 if (mVerboseLoggingEnabled) {
@@ -268,21 +349,37 @@ public class WifiMonitor {
             if (mVerboseLoggingEnabled) {
                 Log.d(TAG, "Sending to all monitors because there's no matching iface");
             }
-            for (Map.Entry<String, SparseArray<Set<Handler>>> entry : mHandlerMap.entrySet()) {
+            for (Map.Entry<String, SparseArray<Handler[]>> entry : handlerMap.entrySet()) {
                 iface = entry.getKey();
                 if (isMonitoring(iface)) {
-                    Set<Handler> ifaceWhatHandlers = entry.getValue().get(message.what);
-                    if (ifaceWhatHandlers == null) continue;
-                    for (Handler handler : ifaceWhatHandlers) {
-                        if (handler != null) {
-                            sendMessage(iface, handler, Message.obtain(message));
-                        }
+                    for (Handler handler : entry.getValue().get(message.what, NO_HANDLERS)) {
+                        sendMessage(iface, handler, Message.obtain(message));
                     }
                 }
             }
         }
 
         message.recycle();
+        stats.addDispatch(SystemClock.elapsedRealtimeNanos() - startNanos);
+    }
+
+    /**
+     * Returns true if |message| repeats the last supplicant state change sent for |iface| and
+     * coalescing is enabled. Any other event sent for |iface| resets the coalescing.
+     */
+    private boolean shouldCoalesce(String iface, Message message) {
+        if (!mCoalesceSupplicantStateChangeEvents || iface == null) return false;
+        if (message.what != SUPPLICANT_STATE_CHANGE_EVENT) {
+            mLastStateChangeResults.remove(iface);
+            return false;
+        }
+        StateChangeResult result = (StateChangeResult) message.obj;
+        StateChangeResult lastResult = mLastStateChangeResults.put(iface, result);
+        return lastResult != null
+                && lastResult.networkId == result.networkId
+                && lastResult.state == result.state
+                && Objects.equals(lastResult.wifiSsid, result.wifiSsid)
+                && Objects.equals(lastResult.bssid, result.bssid);
     }
 
     private void sendMessage(String iface, Handler handler, Message message) {
@@ -594,4 +691,15 @@ public class WifiMonitor {
     public void broadcastNetworkNotFoundEvent(String iface, String ssid) {
         sendMessage(iface, NETWORK_NOT_FOUND_EVENT, ssid);
     }
+
+    /**
+     * Dump the event dispatch statistics.
+     */
+    public void dump(PrintWriter pw) {
+        pw.println("Dump of WifiMonitor");
+        pw.println("mCoalesceSupplicantStateChangeEvents=" + mCoalesceSupplicantStateChangeEvents);
+        for (Map.Entry<Integer, DispatchStats> entry : mDispatchStats.entrySet()) {
+            pw.println("  event " + (entry.getKey() - BASE) + ": " + entry.getValue());
+        }
+    }
 }
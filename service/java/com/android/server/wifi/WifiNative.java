@@ -54,6 +54,7 @@ import com.android.server.wifi.util.InformationElementUtil;
 import com.android.server.wifi.util.NativeUtil;
 import com.android.server.wifi.util.NetdWrapper;
 import com.android.server.wifi.util.NetdWrapper.NetdEventObserver;
+import com.android.server.wifi.util.ScanResultInterner;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
@@ -103,6 +104,7 @@ public class WifiNative {
     private CountryCodeChangeListenerInternal mCountryCodeChangeListener;
     private boolean mUseFakeScanDetails;
     private final ArrayList<ScanDetail> mFakeScanDetails = new ArrayList<>();
+    private final ScanResultInterner mScanResultInterner = new ScanResultInterner();
 
     public WifiNative(WifiVendorHal vendorHal,
                       SupplicantStaIfaceHal staIfaceHal, HostapdHal hostapdHal,
@@ -135,6 +137,13 @@ public class WifiNative {
         mWifiVendorHal.enableVerboseLogging(mVerboseLoggingEnabled);
     }
 
+    /**
+     * Dump the state of WifiNative.
+     */
+    public void dump(PrintWriter pw) {
+        mScanResultInterner.dump(pw);
+    }
+
     /**
      * Callbacks for SoftAp interface.
      */
@@ -1687,20 +1696,22 @@ public class WifiNative {
             List<NativeScanResult> nativeResults) {
         ArrayList<ScanDetail> results = new ArrayList<>();
         for (NativeScanResult result : nativeResults) {
-            WifiSsid wifiSsid = WifiSsid.createFromByteArray(result.getSsid());
+            // The same BSSIDs, SSIDs and capabilities are seen in every scan, share a single
+            // copy of each across scans.
+            WifiSsid wifiSsid = mScanResultInterner.internWifiSsid(result.getSsid());
             MacAddress bssidMac = result.getBssid();
             if (bssidMac == null) {
                 Log.e(TAG, "Invalid MAC (BSSID) for SSID " + wifiSsid);
                 continue;
             }
-            String bssid = bssidMac.toString();
+            String bssid = mScanResultInterner.internBssid(bssidMac);
             ScanResult.InformationElement[] ies =
                     InformationElementUtil.parseInformationElements(result.getInformationElements());
             InformationElementUtil.Capabilities capabilities =
                     new InformationElementUtil.Capabilities();
             capabilities.from(ies, result.getCapabilities(), mIsEnhancedOpenSupported,
                               result.getFrequencyMhz());
-            String flags = capabilities.generateCapabilitiesString();
+            String flags = mScanResultInterner.intern(capabilities.generateCapabilitiesString());
             NetworkDetail networkDetail;
             try {
                 networkDetail = new NetworkDetail(bssid, ies, null, result.getFrequencyMhz());
@@ -1713,6 +1724,11 @@ public class WifiNative {
                     result.getSignalMbm() / 100, result.getFrequencyMhz(), result.getTsf(), ies,
                     null, result.getInformationElements());
             ScanResult scanResult = scanDetail.getScanResult();
+            scanResult.SSID = mScanResultInterner.intern(scanResult.SSID);
+            scanResult.setSecurityFlags(capabilities.generateSecurityFlags());
+            // Match info is needed for every scan result, compute it once up front.
+            ScanResultMatchInfo matchInfo = scanDetail.getScanResultMatchInfo();
+            matchInfo.networkSsid = mScanResultInterner.intern(matchInfo.networkSsid);
             scanResult.setWifiStandard(wifiModeToWifiStandard(networkDetail.getWifiMode()));
             scanResult.ifaceName = ifaceName;
 
@@ -1181,7 +1181,7 @@ public class WifiNetworkSelector {
         int channelUtilizationLinkLayerStats = BssLoad.INVALID;
         if (mWifiChannelUtilization != null) {
             channelUtilizationLinkLayerStats =
-                    mWifiChannelUtilization.getUtilizationRatio(
+                    mWifiChannelUtilization.getAverageUtilizationRatio(
                             scanDetail.getScanResult().frequency);
         }
         ClientModeManager primaryManager =
@@ -385,6 +385,13 @@ public class WifiNetworkSuggestionsManager {
      * Map of package name of an app to the set of active network suggestions provided by the app.
      */
     private final Map<String, PerAppInfo> mActiveNetworkSuggestionsPerApp = new HashMap<>();
+    /**
+     * Active hidden network suggestions (without passpoint), in the order of priority for hidden
+     * network scans: the most recently connected suggestion first, the others in the order they
+     * were added.
+     */
+    private final List<ExtendedWifiNetworkSuggestion> mActiveHiddenNetworkSuggestions =
+            new ArrayList<>();
     /**
      * Map of package name of an app to the app ops changed listener for the app.
      */
@@ -551,6 +558,7 @@ public class WifiNetworkSuggestionsManager {
             mActiveNetworkSuggestionsPerApp.clear();
             mActiveScanResultMatchInfoWithBssid.clear();
             mActiveScanResultMatchInfoWithNoBssid.clear();
+            mActiveHiddenNetworkSuggestions.clear();
             mPasspointInfo.clear();
         }
 
@@ -729,10 +737,20 @@ public class WifiNetworkSuggestionsManager {
         }
         extNetworkSuggestionsForScanResultMatchInfo.remove(extNetworkSuggestion);
         extNetworkSuggestionsForScanResultMatchInfo.add(extNetworkSuggestion);
+        // Keep the priority of updated hidden network suggestions.
+        int hiddenIndex = mActiveHiddenNetworkSuggestions.indexOf(extNetworkSuggestion);
+        if (!extNetworkSuggestion.wns.wifiConfiguration.hiddenSSID) {
+            if (hiddenIndex >= 0) mActiveHiddenNetworkSuggestions.remove(hiddenIndex);
+        } else if (hiddenIndex >= 0) {
+            mActiveHiddenNetworkSuggestions.set(hiddenIndex, extNetworkSuggestion);
+        } else {
+            mActiveHiddenNetworkSuggestions.add(extNetworkSuggestion);
+        }
     }
 
     private void removeFromScanResultMatchInfoMapAndRemoveRelatedScoreCard(
             @NonNull ExtendedWifiNetworkSuggestion extNetworkSuggestion) {
+        mActiveHiddenNetworkSuggestions.remove(extNetworkSuggestion);
         ScanResultMatchInfo scanResultMatchInfo =
                 ScanResultMatchInfo.fromWifiConfiguration(
                         extNetworkSuggestion.wns.wifiConfiguration);
@@ -1720,10 +1738,8 @@ public class WifiNetworkSuggestionsManager {
         }
         Set<ExtendedWifiNetworkSuggestion> extNetworkSuggestions = null;
         try {
-            ScanResultMatchInfo scanResultMatchInfo =
-                    ScanResultMatchInfo.fromScanResult(scanResult);
             extNetworkSuggestions = getNetworkSuggestionsForScanResultMatchInfo(
-                    scanResultMatchInfo,  MacAddress.fromString(scanResult.BSSID));
+                    scanDetail.getScanResultMatchInfo(), MacAddress.fromString(scanResult.BSSID));
         } catch (IllegalArgumentException e) {
             Log.e(TAG, "Failed to lookup network from scan result match info map", e);
         }
@@ -1903,16 +1919,12 @@ public class WifiNetworkSuggestionsManager {
      */
     public List<WifiScanner.ScanSettings.HiddenNetwork> retrieveHiddenNetworkList() {
         List<WifiScanner.ScanSettings.HiddenNetwork> hiddenNetworks = new ArrayList<>();
-        for (PerAppInfo appInfo : mActiveNetworkSuggestionsPerApp.values()) {
-            if (!appInfo.hasUserApproved) continue;
-            for (ExtendedWifiNetworkSuggestion ewns : appInfo.extNetworkSuggestions.values()) {
-                if (!ewns.wns.wifiConfiguration.hiddenSSID) continue;
-                hiddenNetworks.add(
-                        new WifiScanner.ScanSettings.HiddenNetwork(
-                                ewns.wns.wifiConfiguration.SSID));
-                if (hiddenNetworks.size() >= NUMBER_OF_HIDDEN_NETWORK_FOR_ONE_SCAN) {
-                    return hiddenNetworks;
-                }
+        for (ExtendedWifiNetworkSuggestion ewns : mActiveHiddenNetworkSuggestions) {
+            if (!ewns.perAppInfo.hasUserApproved) continue;
+            hiddenNetworks.add(
+                    new WifiScanner.ScanSettings.HiddenNetwork(ewns.wns.wifiConfiguration.SSID));
+            if (hiddenNetworks.size() >= NUMBER_OF_HIDDEN_NETWORK_FOR_ONE_SCAN) {
+                return hiddenNetworks;
             }
         }
         return hiddenNetworks;
@@ -2005,6 +2017,12 @@ public class WifiNetworkSuggestionsManager {
         }
 
         mWifiMetrics.incrementNetworkSuggestionApiNumConnectSuccess();
+        // Prioritize the connected hidden networks for the next hidden network scans.
+        for (ExtendedWifiNetworkSuggestion ewns : matchingExtNetworkSuggestionsFromTargetApp) {
+            if (mActiveHiddenNetworkSuggestions.remove(ewns)) {
+                mActiveHiddenNetworkSuggestions.add(0, ewns);
+            }
+        }
         // Find subset of network suggestions have set |isAppInteractionRequired|.
         Set<ExtendedWifiNetworkSuggestion> matchingExtNetworkSuggestionsWithReqAppInteraction =
                 matchingExtNetworkSuggestionsFromTargetApp.stream()
@@ -67,6 +67,7 @@ import com.android.server.wifi.proto.WifiScoreCardProto.Signal;
 import com.android.server.wifi.proto.WifiScoreCardProto.UnivariateStatistic;
 import com.android.server.wifi.proto.nano.WifiMetricsProto.BandwidthEstimatorStats;
 import com.android.server.wifi.util.IntHistogram;
+import com.android.server.wifi.util.LongHashMap;
 import com.android.server.wifi.util.LruList;
 import com.android.server.wifi.util.NativeUtil;
 import com.android.server.wifi.util.RssiUtil;
@@ -83,7 +84,6 @@ import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -124,6 +124,7 @@ public class WifiScoreCard {
     private static final int MAX_TRAFFIC_STATS_POLL_TIME_DELTA_MS = 6_000;
 
     private final Clock mClock;
+    private final ChannelLikelihoodIndex mChannelLikelihoodIndex;
     private final String mL2KeySeed;
     private MemoryStore mMemoryStore;
     private final DeviceConfigFacade mDeviceConfigFacade;
@@ -277,6 +278,7 @@ public class WifiScoreCard {
     public WifiScoreCard(Clock clock, String l2KeySeed, DeviceConfigFacade deviceConfigFacade,
             FrameworkFacade frameworkFacade, Context context) {
         mClock = clock;
+        mChannelLikelihoodIndex = new ChannelLikelihoodIndex(clock);
         mContext = context;
         mL2KeySeed = l2KeySeed;
         mPlaceholderPerBssid = new PerBssid("", MacAddress.fromString(DEFAULT_MAC_ADDRESS));
@@ -652,9 +654,7 @@ public class WifiScoreCard {
      * Clear the blocklist streak count for all APs that belong to this SSID.
      */
     public void resetBssidBlocklistStreakForSsid(@NonNull String ssid) {
-        Iterator<Map.Entry<MacAddress, PerBssid>> it = mApForBssid.entrySet().iterator();
-        while (it.hasNext()) {
-            PerBssid perBssid = it.next().getValue();
+        for (PerBssid perBssid : mApForBssid.values()) {
             if (!ssid.equals(perBssid.ssid)) {
                 continue;
             }
@@ -1272,8 +1272,14 @@ public class WifiScoreCard {
          * Will evict the least recently added frequency if the cache is full.
          */
         void addFrequency(int frequency) {
-            mFrequencyList.add(frequency);
+            Integer evictedFrequency = mFrequencyList.add(frequency);
             mFreqTimestamp.put(frequency, mClock.getElapsedSinceBootMillis());
+            if (!ssid.isEmpty()) {
+                mChannelLikelihoodIndex.noteFrequency(ssid, frequency);
+                if (evictedFrequency != null) {
+                    mChannelLikelihoodIndex.removeFrequency(ssid, evictedFrequency);
+                }
+            }
         }
 
         /**
@@ -1864,11 +1870,26 @@ public class WifiScoreCard {
                 // This merge assumes that whatever data is in memory is more recent that what's
                 // in store
                 List<Integer> mergedFrequencyList = mFrequencyList.getEntries();
+                final int numFrequenciesInMemory = mergedFrequencyList.size();
                 mergedFrequencyList.addAll(ns.getFrequenciesList());
                 mFrequencyList = new LruList<>(MAX_FREQUENCIES_PER_SSID);
                 for (int i = mergedFrequencyList.size() - 1; i >= 0; i--) {
                     mFrequencyList.add(mergedFrequencyList.get(i));
                 }
+                if (!ssid.isEmpty()) {
+                    for (int i = 0; i < mergedFrequencyList.size(); i++) {
+                        Integer frequency = mergedFrequencyList.get(i);
+                        if (mFrequencyList.indexOf(frequency) < 0) {
+                            mChannelLikelihoodIndex.removeFrequency(ssid, frequency);
+                        } else if (i >= numFrequenciesInMemory
+                                && mergedFrequencyList.indexOf(frequency) == i) {
+                            // Only the frequencies in memory were noted so far. The ones from
+                            // the store keep the timestamp they have in getFrequencies().
+                            mChannelLikelihoodIndex.noteFrequency(ssid, frequency,
+                                    mFreqTimestamp.get(frequency, 0L));
+                        }
+                    }
+                }
             }
             if (ns.hasBandwidthStatsAll()) {
                 mergeBandwidthStatsAll(ns.getBandwidthStatsAll(),
@@ -2121,32 +2142,31 @@ public class WifiScoreCard {
         mLocalLog.log(string);
     }
 
+    private static final long DEFAULT_MAC_ADDRESS_LONG =
+            NativeUtil.macAddressStringToLong(DEFAULT_MAC_ADDRESS);
+
     // Returned by lookupBssid when the BSSID is not available,
     // for instance when we are not associated.
     private final PerBssid mPlaceholderPerBssid;
 
-    private final Map<MacAddress, PerBssid> mApForBssid = new ArrayMap<>();
+    // Keyed by the BSSID packed with NativeUtil#macAddressStringToLong.
+    private final LongHashMap<PerBssid> mApForBssid = new LongHashMap<>();
     private int mApForBssidTargetSize = TARGET_IN_MEMORY_ENTRIES;
     private int mApForBssidReferenced = 0;
 
     // TODO should be private, but WifiCandidates needs it
     @NonNull PerBssid lookupBssid(String ssid, String bssid) {
-        MacAddress mac;
         if (ssid == null || WifiManager.UNKNOWN_SSID.equals(ssid) || bssid == null) {
             return mPlaceholderPerBssid;
         }
-        try {
-            mac = MacAddress.fromString(bssid);
-        } catch (IllegalArgumentException e) {
-            return mPlaceholderPerBssid;
-        }
-        if (mac.equals(mPlaceholderPerBssid.bssid)) {
+        long key = NativeUtil.macAddressStringToLong(bssid);
+        if (key == NativeUtil.INVALID_MAC_LONG || key == DEFAULT_MAC_ADDRESS_LONG) {
             return mPlaceholderPerBssid;
         }
-        PerBssid ans = mApForBssid.get(mac);
+        PerBssid ans = mApForBssid.get(key);
         if (ans == null || !ans.ssid.equals(ssid)) {
-            ans = new PerBssid(ssid, mac);
-            PerBssid old = mApForBssid.put(mac, ans);
+            ans = new PerBssid(ssid, MacAddress.fromString(bssid));
+            PerBssid old = mApForBssid.put(key, ans);
             if (old != null) {
                 Log.i(TAG, "Discarding stats for score card (ssid changed) ID: " + old.id);
                 if (old.referenced) mApForBssidReferenced--;
@@ -2180,6 +2200,13 @@ public class WifiScoreCard {
     // for instance when we are not associated.
     private final PerNetwork mPlaceholderPerNetwork;
     private final Map<String, PerNetwork> mApForNetwork = new ArrayMap<>();
+    /**
+     * Get the index of the channels networks were observed on, ordered by likelihood.
+     */
+    @NonNull ChannelLikelihoodIndex getChannelLikelihoodIndex() {
+        return mChannelLikelihoodIndex;
+    }
+
     @NonNull PerNetwork lookupNetwork(String ssid) {
         if (ssid == null || WifiManager.UNKNOWN_SSID.equals(ssid)) {
             return mPlaceholderPerNetwork;
@@ -2203,7 +2230,8 @@ public class WifiScoreCard {
             return;
         }
         mApForNetwork.remove(ssid);
-        mApForBssid.entrySet().removeIf(entry -> ssid.equals(entry.getValue().ssid));
+        mChannelLikelihoodIndex.removeNetwork(ssid);
+        mApForBssid.removeIf(perBssid -> ssid.equals(perBssid.ssid));
         if (mMemoryStore == null) return;
         mMemoryStore.removeCluster(groupHintFromSsid(ssid));
     }
@@ -2285,16 +2313,14 @@ public class WifiScoreCard {
         if (mApForBssidReferenced >= mApForBssidTargetSize) {
             doWritesBssid(); // Do not want to evict changed items
             // Evict the unreferenced ones, and clear all the referenced bits for the next round.
-            Iterator<Map.Entry<MacAddress, PerBssid>> it = mApForBssid.entrySet().iterator();
-            while (it.hasNext()) {
-                PerBssid perBssid = it.next().getValue();
+            mApForBssid.removeIf(perBssid -> {
                 if (perBssid.referenced) {
                     perBssid.referenced = false;
-                } else {
-                    it.remove();
-                    if (mVerboseLoggingEnabled) Log.v(TAG, "Evict " + perBssid.id);
+                    return false;
                 }
-            }
+                if (mVerboseLoggingEnabled) Log.v(TAG, "Evict " + perBssid.id);
+                return true;
+            });
             mApForBssidReferenced = 0;
         }
     }
@@ -2354,7 +2380,7 @@ public class WifiScoreCard {
 
     @VisibleForTesting
     PerBssid fetchByBssid(MacAddress mac) {
-        return mApForBssid.get(mac);
+        return mApForBssid.get(NativeUtil.macAddressToLong(mac.toByteArray()));
     }
 
     @VisibleForTesting
@@ -2597,6 +2623,7 @@ public class WifiScoreCard {
     public void clear() {
         mApForBssid.clear();
         mApForNetwork.clear();
+        mChannelLikelihoodIndex.clear();
         resetAllConnectionStatesInternal();
     }
 
@@ -2691,6 +2718,7 @@ public class WifiScoreCard {
             }
         }
         pw.println();
+        mChannelLikelihoodIndex.dump(pw);
     }
 
     private void printValues(int[] values, PrintWriter pw) {
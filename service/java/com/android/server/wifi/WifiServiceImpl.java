@@ -62,6 +62,7 @@ import android.net.NetworkStack;
 import android.net.Uri;
 import android.net.ip.IpClientUtil;
 import android.net.wifi.CoexUnsafeChannel;
+import android.net.wifi.CompactScanResultList;
 import android.net.wifi.IActionListener;
 import android.net.wifi.ICoexCallback;
 import android.net.wifi.IDppCallback;
@@ -78,6 +79,7 @@ import android.net.wifi.ITrafficStateCallback;
 import android.net.wifi.IWifiConnectedNetworkScorer;
 import android.net.wifi.IWifiVerboseLoggingStatusChangedListener;
 import android.net.wifi.ScanResult;
+import android.net.wifi.ScanResultsDelta;
 import android.net.wifi.SoftApCapability;
 import android.net.wifi.SoftApConfiguration;
 import android.net.wifi.SoftApInfo;
@@ -2493,12 +2495,12 @@ public class WifiServiceImpl extends BaseWifiService {
             targetConfigUid = callingUid; // expose only those configs created by the Carrier App
         }
         int finalTargetConfigUid = targetConfigUid;
+        // The snapshot is shared between callers of the same visibility class, it is only parceled.
         List<WifiConfiguration> configs = mWifiThreadRunner.call(
-                () -> mWifiConfigManager.getSavedNetworks(finalTargetConfigUid),
-                Collections.emptyList());
+                () -> mWifiConfigManager.getLegacySavedNetworksSnapshot(finalTargetConfigUid),
+                Collections.emptyList(), "getConfiguredNetworks");
         if (isTargetSdkLessThanQOrPrivileged && !callerNetworksOnly) {
-            return new ParceledListSlice<>(
-                    WifiConfigurationUtil.convertMultiTypeConfigsToLegacyConfigs(configs));
+            return new ParceledListSlice<>(configs);
         }
         // Should only get its own configs
         List<WifiConfiguration> creatorConfigs = new ArrayList<>();
@@ -2507,8 +2509,7 @@ public class WifiServiceImpl extends BaseWifiService {
                 creatorConfigs.add(config);
             }
         }
-        return new ParceledListSlice<>(
-                WifiConfigurationUtil.convertMultiTypeConfigsToLegacyConfigs(creatorConfigs));
+        return new ParceledListSlice<>(creatorConfigs);
     }
 
     /**
@@ -2540,7 +2541,7 @@ public class WifiServiceImpl extends BaseWifiService {
         }
         List<WifiConfiguration> configs = mWifiThreadRunner.call(
                 () -> mWifiConfigManager.getConfiguredNetworksWithPasswords(),
-                Collections.emptyList());
+                Collections.emptyList(), "getPrivilegedConfiguredNetworks");
         return new ParceledListSlice<>(
                 WifiConfigurationUtil.convertMultiTypeConfigsToLegacyConfigs(configs));
     }
@@ -3159,7 +3160,7 @@ public class WifiServiceImpl extends BaseWifiService {
             WifiInfo wifiInfo = mWifiThreadRunner.call(
                     () -> getClientModeManagerIfSecondaryCmmRequestedByCallerPresent(
                             uid, callingPackage)
-                            .syncRequestConnectionInfo(), new WifiInfo());
+                            .syncRequestConnectionInfo(), new WifiInfo(), "getConnectionInfo");
             long redactions = wifiInfo.getApplicableRedactions();
             if (mWifiPermissionsUtil.checkLocalMacAddressPermission(uid)) {
                 if (isVerboseLoggingEnabled()) {
@@ -3204,7 +3205,8 @@ public class WifiServiceImpl extends BaseWifiService {
      * @return the list of results
      */
     @Override
-    public List<ScanResult> getScanResults(String callingPackage, String callingFeatureId) {
+    public CompactScanResultList getScanResults(String callingPackage,
+            String callingFeatureId) {
         enforceAccessPermission();
         int uid = Binder.getCallingUid();
         long ident = Binder.clearCallingIdentity();
@@ -3214,13 +3216,48 @@ public class WifiServiceImpl extends BaseWifiService {
         try {
             mWifiPermissionsUtil.enforceCanAccessScanResults(callingPackage, callingFeatureId,
                     uid, null);
-            List<ScanResult> scanResults = mWifiThreadRunner.call(
-                    mScanRequestProxy::getScanResults, Collections.emptyList());
-            return scanResults;
+            // Read the snapshot published by the Wifi thread instead of blocking on it.
+            return new CompactScanResultList(
+                    new ArrayList<>(mScanRequestProxy.getScanResultsSnapshot()));
         } catch (SecurityException e) {
             Log.w(TAG, "Permission violation - getScanResults not allowed for uid="
                     + uid + ", packageName=" + callingPackage + ", reason=" + e);
-            return new ArrayList<>();
+            return new CompactScanResultList(new ArrayList<>());
+        } finally {
+            Binder.restoreCallingIdentity(ident);
+        }
+    }
+
+    /**
+     * Return the changes to the results of the most recent access point scans since the provided
+     * generation.
+     * @param sinceGeneration generation of the scan results held by the caller.
+     * @return the delta since |sinceGeneration|, or all the scan results if the delta cannot be
+     * computed.
+     */
+    @Override
+    public ScanResultsDelta getScanResultsDelta(long sinceGeneration, String callingPackage,
+            String callingFeatureId) {
+        enforceNetworkSettingsPermission();
+        int uid = Binder.getCallingUid();
+        long ident = Binder.clearCallingIdentity();
+        if (isVerboseLoggingEnabled()) {
+            mLog.info("getScanResultsDelta uid=% sinceGeneration=%").c(uid).c(sinceGeneration)
+                    .flush();
+        }
+        try {
+            mWifiPermissionsUtil.enforceCanAccessScanResults(callingPackage, callingFeatureId,
+                    uid, null);
+            ScanResultsDelta delta = mWifiThreadRunner.call(
+                    () -> mScanRequestProxy.getScanResultsDelta(sinceGeneration), null,
+                    "getScanResultsDelta");
+            // Only fall back to the published snapshot if the Wifi thread timed out.
+            return delta != null ? delta : mScanRequestProxy.getFullScanResultsDelta();
+        } catch (SecurityException e) {
+            Log.w(TAG, "Permission violation - getScanResultsDelta not allowed for uid="
+                    + uid + ", packageName=" + callingPackage + ", reason=" + e);
+            return new ScanResultsDelta(-1, true, Collections.emptyList(),
+                    Collections.emptyList());
         } finally {
             Binder.restoreCallingIdentity(ident);
         }
@@ -3902,6 +3939,12 @@ public class WifiServiceImpl extends BaseWifiService {
             mWifiInjector.getWifiGlobals().dump(fd, pw, args);
             mWifiInjector.getSarManager().dump(fd, pw, args);
             pw.println();
+            mWifiThreadRunner.dump(pw);
+            pw.println();
+            mWifiInjector.getWifiMonitor().dump(pw);
+            pw.println();
+            mWifiNative.dump(pw);
+            pw.println();
             mLastCallerInfoManager.dump(pw);
             pw.println();
             mWifiInjector.getLinkProbeManager().dump(fd, pw, args);
@@ -558,7 +558,7 @@ public class WifiShellCommand extends BasicShellCommandHandler {
                     return 0;
                 case "list-scan-results":
                     List<ScanResult> scanResults =
-                            mWifiService.getScanResults(SHELL_PACKAGE_NAME, null);
+                            mWifiService.getScanResults(SHELL_PACKAGE_NAME, null).getList();
                     if (scanResults.isEmpty()) {
                         pw.println("No scan results");
                     } else {
@@ -1251,7 +1251,7 @@ public class WifiShellCommand extends BasicShellCommandHandler {
         // So, find scan result with the best rssi level to set in the request.
         if (bssid == null) {
             ScanResult matchingScanResult =
-                    mWifiService.getScanResults(SHELL_PACKAGE_NAME, null)
+                    mWifiService.getScanResults(SHELL_PACKAGE_NAME, null).getList()
                             .stream()
                             .filter(s -> s.SSID.equals(ssid))
                             .max(Comparator.comparingInt(s -> s.level))
@@ -21,13 +21,17 @@ import android.annotation.Nullable;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.SystemClock;
+import android.util.ArrayMap;
 import android.util.Log;
 
 import com.android.internal.annotations.VisibleForTesting;
 import com.android.server.wifi.util.GeneralUtil.Mutable;
 
+import java.io.PrintWriter;
+import java.util.Map;
 import java.util.function.Supplier;
 
+import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 
 /**
@@ -49,6 +53,33 @@ public class WifiThreadRunner {
 
     private final Handler mHandler;
 
+    /**
+     * Time spent by blocking calls waiting in the Wifi thread queue, keyed by task name.
+     */
+    @GuardedBy("mQueueWaitStats")
+    private final Map<String, QueueWaitStats> mQueueWaitStats = new ArrayMap<>();
+
+    /**
+     * Aggregated queue wait time for a single named task.
+     */
+    private static class QueueWaitStats {
+        public int count;
+        public long totalWaitMs;
+        public long maxWaitMs;
+
+        void add(long waitMs) {
+            count++;
+            totalWaitMs += waitMs;
+            maxWaitMs = Math.max(maxWaitMs, waitMs);
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count + " avgWaitMs=" + (count == 0 ? 0 : totalWaitMs / count)
+                    + " maxWaitMs=" + maxWaitMs;
+        }
+    }
+
     public WifiThreadRunner(Handler handler) {
         mHandler = handler;
     }
@@ -75,10 +106,22 @@ public class WifiThreadRunner {
      */
     @Nullable
     public <T> T call(@NonNull Supplier<T> supplier, T valueToReturnOnTimeout) {
+        return call(supplier, valueToReturnOnTimeout, null);
+    }
+
+    /**
+     * Same as {@link #call(Supplier, Object)}, but also records the time the call spent waiting
+     * in the Wifi thread queue under |taskName|. See {@link #dump(PrintWriter)}.
+     *
+     * @param taskName name used to aggregate queue wait time, or null to skip recording.
+     */
+    @Nullable
+    public <T> T call(@NonNull Supplier<T> supplier, T valueToReturnOnTimeout,
+            @Nullable String taskName) {
         Mutable<T> result = new Mutable<>();
         boolean runWithScissorsSuccess = runWithScissors(mHandler,
                 () -> result.value = supplier.get(),
-                RUN_WITH_SCISSORS_TIMEOUT_MILLIS);
+                RUN_WITH_SCISSORS_TIMEOUT_MILLIS, taskName);
         if (runWithScissorsSuccess) {
             return result.value;
         } else {
@@ -103,8 +146,18 @@ public class WifiThreadRunner {
      * @return true if the runnable executed successfully, false otherwise
      */
     public boolean run(@NonNull Runnable runnable) {
+        return run(runnable, null);
+    }
+
+    /**
+     * Same as {@link #run(Runnable)}, but also records the time the runnable spent waiting in the
+     * Wifi thread queue under |taskName|. See {@link #dump(PrintWriter)}.
+     *
+     * @param taskName name used to aggregate queue wait time, or null to skip recording.
+     */
+    public boolean run(@NonNull Runnable runnable, @Nullable String taskName) {
         boolean runWithScissorsSuccess =
-                runWithScissors(mHandler, runnable, RUN_WITH_SCISSORS_TIMEOUT_MILLIS);
+                runWithScissors(mHandler, runnable, RUN_WITH_SCISSORS_TIMEOUT_MILLIS, taskName);
         if (runWithScissorsSuccess) {
             return true;
         } else {
@@ -149,6 +202,30 @@ public class WifiThreadRunner {
         });
     }
 
+    /**
+     * Dump the queue wait time recorded for named blocking calls.
+     */
+    public void dump(PrintWriter pw) {
+        pw.println("Dump of WifiThreadRunner");
+        synchronized (mQueueWaitStats) {
+            for (Map.Entry<String, QueueWaitStats> entry : mQueueWaitStats.entrySet()) {
+                pw.println("  " + entry.getKey() + ": " + entry.getValue());
+            }
+        }
+    }
+
+    private void recordQueueWait(@Nullable String taskName, long waitMs) {
+        if (taskName == null) return;
+        synchronized (mQueueWaitStats) {
+            QueueWaitStats stats = mQueueWaitStats.get(taskName);
+            if (stats == null) {
+                stats = new QueueWaitStats();
+                mQueueWaitStats.put(taskName, stats);
+            }
+            stats.add(waitMs);
+        }
+    }
+
     /**
      * Asynchronously runs a Runnable on the main Wifi thread.
      *
@@ -213,6 +290,7 @@ public class WifiThreadRunner {
      *
      * @param r The Runnable that will be executed synchronously.
      * @param timeout The timeout in milliseconds, or 0 to wait indefinitely.
+     * @param taskName Name used to record queue wait time, or null to skip recording.
      *
      * @return Returns true if the Runnable was successfully executed.
      *         Returns false on failure, usually because the
@@ -223,7 +301,7 @@ public class WifiThreadRunner {
      * less funny like runUnsafe().
      */
     private boolean runWithScissors(@NonNull Handler handler, @NonNull Runnable r,
-            long timeout) {
+            long timeout, @Nullable String taskName) {
         if (r == null) {
             throw new IllegalArgumentException("runnable must not be null");
         }
@@ -241,20 +319,24 @@ public class WifiThreadRunner {
             return true;
         }
 
-        BlockingRunnable br = new BlockingRunnable(r);
+        BlockingRunnable br = new BlockingRunnable(r, taskName);
         return br.postAndWait(handler, timeout);
     }
 
-    private static final class BlockingRunnable implements Runnable {
+    private final class BlockingRunnable implements Runnable {
         private final Runnable mTask;
+        private final String mTaskName;
+        private long mPostTimeMs;
         private boolean mDone;
 
-        BlockingRunnable(Runnable task) {
+        BlockingRunnable(Runnable task, String taskName) {
             mTask = task;
+            mTaskName = taskName;
         }
 
         @Override
         public void run() {
+            recordQueueWait(mTaskName, SystemClock.uptimeMillis() - mPostTimeMs);
             try {
                 mTask.run();
             } finally {
@@ -266,6 +348,7 @@ public class WifiThreadRunner {
         }
 
         public boolean postAndWait(Handler handler, long timeout) {
+            mPostTimeMs = SystemClock.uptimeMillis();
             if (!handler.post(this)) {
                 return false;
             }
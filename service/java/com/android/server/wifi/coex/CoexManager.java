@@ -23,18 +23,6 @@ import static android.net.wifi.WifiManager.COEX_RESTRICTION_WIFI_DIRECT;
 import static android.net.wifi.WifiScanner.WIFI_BAND_24_GHZ;
 import static android.net.wifi.WifiScanner.WIFI_BAND_5_GHZ;
 import static android.telephony.TelephonyManager.NETWORK_TYPE_LTE;
-import static android.telephony.TelephonyManager.NETWORK_TYPE_NR;
-
-import static com.android.server.wifi.coex.CoexUtils.CHANNEL_SET_5_GHZ;
-import static com.android.server.wifi.coex.CoexUtils.CHANNEL_SET_5_GHZ_160_MHZ;
-import static com.android.server.wifi.coex.CoexUtils.CHANNEL_SET_5_GHZ_20_MHZ;
-import static com.android.server.wifi.coex.CoexUtils.CHANNEL_SET_5_GHZ_40_MHZ;
-import static com.android.server.wifi.coex.CoexUtils.CHANNEL_SET_5_GHZ_80_MHZ;
-import static com.android.server.wifi.coex.CoexUtils.NUM_24_GHZ_CHANNELS;
-import static com.android.server.wifi.coex.CoexUtils.get2gHarmonicCoexUnsafeChannels;
-import static com.android.server.wifi.coex.CoexUtils.get5gHarmonicCoexUnsafeChannels;
-import static com.android.server.wifi.coex.CoexUtils.getIntermodCoexUnsafeChannels;
-import static com.android.server.wifi.coex.CoexUtils.getNeighboringCoexUnsafeChannels;
 
 import android.annotation.NonNull;
 import android.annotation.Nullable;
@@ -77,11 +65,9 @@ import java.io.FileNotFoundException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
@@ -228,10 +214,8 @@ public class CoexManager {
     private final List<CoexUnsafeChannel> mCurrentCoexUnsafeChannels = new ArrayList<>();
     private int mCoexRestrictions;
 
-    @NonNull
-    private final SparseArray<Entry> mLteTableEntriesByBand = new SparseArray<>();
-    @NonNull
-    private final SparseArray<Entry> mNrTableEntriesByBand = new SparseArray<>();
+    @Nullable
+    private CompiledCoexTable mCoexTable;
 
     @NonNull
     private final Set<CoexListener> mListeners = new HashSet<>();
@@ -412,236 +396,37 @@ public class CoexManager {
         if (mVerboseLoggingEnabled) {
             Log.v(TAG, "updateCoexUnsafeChannels called with cell channels: " + cellChannels);
         }
-        int numUnsafe2gChannels = 0;
-        int numUnsafe5gChannels = 0;
         int default2gChannel = Integer.MAX_VALUE;
         int default5gChannel = Integer.MAX_VALUE;
         int coexRestrictions = 0;
-        Map<Pair<Integer, Integer>, CoexUnsafeChannel> coexUnsafeChannelsByBandChannelPair =
-                new HashMap<>();
-        // Gather all of the CoexUnsafeChannels calculated from each cell channel.
+        final CompiledCoexTable.UnsafeChannels unsafeChannels =
+                new CompiledCoexTable.UnsafeChannels();
+        // Gather all of the unsafe channels calculated from each cell channel.
         for (CoexUtils.CoexCellChannel cellChannel : cellChannels) {
-            final Entry entry;
-            switch (cellChannel.getRat()) {
-                case NETWORK_TYPE_LTE:
-                    entry = mLteTableEntriesByBand.get(cellChannel.getBand());
-                    break;
-                case NETWORK_TYPE_NR:
-                    entry = mNrTableEntriesByBand.get(cellChannel.getBand());
-                    break;
-                default:
-                    entry = null;
-            }
-            final List<CoexUnsafeChannel> currentBandUnsafeChannels = new ArrayList<>();
+            final CompiledCoexTable.CompiledEntry entry = mCoexTable == null
+                    ? null : mCoexTable.getEntry(cellChannel.getRat(), cellChannel.getBand());
             if (entry != null) {
-                final int powerCapDbm;
-                if (entry.hasPowerCapDbm()) {
-                    powerCapDbm = entry.getPowerCapDbm();
-                    if (mVerboseLoggingEnabled) {
-                        Log.v(TAG, cellChannel + " sets wifi power cap " + powerCapDbm);
-                    }
-                } else {
-                    powerCapDbm = POWER_CAP_NONE;
+                final long[] bitmap = entry.getUnsafeChannels(cellChannel, cellChannels);
+                if (mVerboseLoggingEnabled) {
+                    Log.v(TAG, cellChannel + " sets unsafe channels "
+                            + CompiledCoexTable.bitmapToString(bitmap)
+                            + " with wifi power cap " + entry.getPowerCapDbm());
                 }
-                final Params params = entry.getParams();
-                final Override override = entry.getOverride();
-                if (params != null) {
-                    // Add all of the CoexUnsafeChannels calculated with the given parameters.
-                    final int downlinkFreqKhz = cellChannel.getDownlinkFreqKhz();
-                    final int downlinkBandwidthKhz = cellChannel.getDownlinkBandwidthKhz();
-                    final int uplinkFreqKhz = cellChannel.getUplinkFreqKhz();
-                    final int uplinkBandwidthKhz = cellChannel.getUplinkBandwidthKhz();
-                    final NeighborThresholds neighborThresholds = params.getNeighborThresholds();
-                    final HarmonicParams harmonicParams2g = params.getHarmonicParams2g();
-                    final HarmonicParams harmonicParams5g = params.getHarmonicParams5g();
-                    final IntermodParams intermodParams2g = params.getIntermodParams2g();
-                    final IntermodParams intermodParams5g = params.getIntermodParams2g();
-                    final DefaultChannels defaultChannels = params.getDefaultChannels();
-                    // Calculate interference from cell downlink.
-                    if (downlinkFreqKhz >= 0 && downlinkBandwidthKhz > 0) {
-                        if (neighborThresholds != null && neighborThresholds.hasCellVictimMhz()) {
-                            final List<CoexUnsafeChannel> neighboringChannels =
-                                    getNeighboringCoexUnsafeChannels(
-                                            downlinkFreqKhz,
-                                            downlinkBandwidthKhz,
-                                            neighborThresholds.getCellVictimMhz() * 1000,
-                                            powerCapDbm);
-                            if (!neighboringChannels.isEmpty()) {
-                                if (mVerboseLoggingEnabled) {
-                                    Log.v(TAG, cellChannel + " is neighboring victim of "
-                                            + neighboringChannels);
-                                }
-                                currentBandUnsafeChannels.addAll(neighboringChannels);
-                            }
-                        }
-                    }
-                    // Calculate interference from cell uplink
-                    if (uplinkFreqKhz >= 0 && uplinkBandwidthKhz > 0) {
-                        if (neighborThresholds != null && neighborThresholds.hasWifiVictimMhz()) {
-                            final List<CoexUnsafeChannel> neighboringChannels =
-                                    getNeighboringCoexUnsafeChannels(
-                                            uplinkFreqKhz,
-                                            uplinkBandwidthKhz,
-                                            neighborThresholds.getWifiVictimMhz() * 1000,
-                                            powerCapDbm);
-                            if (!neighboringChannels.isEmpty()) {
-                                if (mVerboseLoggingEnabled) {
-                                    Log.v(TAG, cellChannel + " is neighboring aggressor to "
-                                            + neighboringChannels);
-                                }
-                                currentBandUnsafeChannels.addAll(neighboringChannels);
-                            }
-                        }
-                        if (harmonicParams2g != null) {
-                            final List<CoexUnsafeChannel> harmonicChannels2g =
-                                    get2gHarmonicCoexUnsafeChannels(
-                                            uplinkFreqKhz,
-                                            uplinkBandwidthKhz,
-                                            harmonicParams2g.getN(),
-                                            harmonicParams2g.getOverlap(),
-                                            powerCapDbm);
-                            if (!harmonicChannels2g.isEmpty()) {
-                                if (mVerboseLoggingEnabled) {
-                                    Log.v(TAG, cellChannel + " has harmonic interference with "
-                                            + harmonicChannels2g);
-                                }
-                                currentBandUnsafeChannels.addAll(harmonicChannels2g);
-                            }
-                        }
-                        if (harmonicParams5g != null) {
-                            final List<CoexUnsafeChannel> harmonicChannels5g =
-                                    get5gHarmonicCoexUnsafeChannels(
-                                            uplinkFreqKhz,
-                                            uplinkBandwidthKhz,
-                                            harmonicParams5g.getN(),
-                                            harmonicParams5g.getOverlap(),
-                                            powerCapDbm);
-                            if (!harmonicChannels5g.isEmpty()) {
-                                if (mVerboseLoggingEnabled) {
-                                    Log.v(TAG, cellChannel + " has harmonic interference with "
-                                            + harmonicChannels5g);
-                                }
-                                currentBandUnsafeChannels.addAll(harmonicChannels5g);
-                            }
-                        }
-
-                        if (intermodParams2g != null) {
-                            for (CoexUtils.CoexCellChannel victimCellChannel : cellChannels) {
-                                if (victimCellChannel.getDownlinkFreqKhz() >= 0
-                                        && victimCellChannel.getDownlinkBandwidthKhz() > 0) {
-                                    final List<CoexUnsafeChannel> intermodChannels2g =
-                                            getIntermodCoexUnsafeChannels(
-                                                    uplinkFreqKhz,
-                                                    uplinkBandwidthKhz,
-                                                    victimCellChannel.getDownlinkFreqKhz(),
-                                                    victimCellChannel.getDownlinkBandwidthKhz(),
-                                                    intermodParams2g.getN(),
-                                                    intermodParams2g.getM(),
-                                                    intermodParams2g.getOverlap(),
-                                                    WIFI_BAND_24_GHZ,
-                                                    powerCapDbm);
-                                    if (!intermodChannels2g.isEmpty()) {
-                                        if (mVerboseLoggingEnabled) {
-                                            Log.v(TAG, cellChannel + " and " + intermodChannels2g
-                                                    + " have intermod interference on "
-                                                    + victimCellChannel);
-                                        }
-                                        currentBandUnsafeChannels.addAll(intermodChannels2g);
-                                    }
-                                }
-                            }
-                        }
-                        if (intermodParams5g != null) {
-                            for (CoexUtils.CoexCellChannel victimCellChannel : cellChannels) {
-                                if (victimCellChannel.getDownlinkFreqKhz() >= 0
-                                        && victimCellChannel.getDownlinkBandwidthKhz() > 0) {
-                                    final List<CoexUnsafeChannel> intermodChannels5g =
-                                            getIntermodCoexUnsafeChannels(
-                                                    uplinkFreqKhz,
-                                                    uplinkBandwidthKhz,
-                                                    victimCellChannel.getDownlinkFreqKhz(),
-                                                    victimCellChannel.getDownlinkBandwidthKhz(),
-                                                    intermodParams5g.getN(),
-                                                    intermodParams5g.getM(),
-                                                    intermodParams5g.getOverlap(),
-                                                    WIFI_BAND_5_GHZ,
-                                                    powerCapDbm);
-                                    if (!intermodChannels5g.isEmpty()) {
-                                        if (mVerboseLoggingEnabled) {
-                                            Log.v(TAG, cellChannel + " and " + intermodChannels5g
-                                                    + " have intermod interference on "
-                                                    + victimCellChannel);
-                                        }
-                                        currentBandUnsafeChannels.addAll(intermodChannels5g);
-                                    }
-                                }
-                            }
+                unsafeChannels.add(bitmap, entry.getPowerCapDbm());
+                // Collect the lowest number default channel for each band to extract from
+                // calculated set of CoexUnsafeChannels later.
+                final DefaultChannels defaultChannels = entry.getDefaultChannels();
+                if (defaultChannels != null) {
+                    if (defaultChannels.hasDefault2g()) {
+                        int channel = defaultChannels.getDefault2g();
+                        if (channel < default2gChannel) {
+                            default2gChannel = channel;
                         }
                     }
-                    // Collect the lowest number default channel for each band to extract from
-                    // calculated set of CoexUnsafeChannels later.
-                    if (defaultChannels != null) {
-                        if (defaultChannels.hasDefault2g()) {
-                            int channel = defaultChannels.getDefault2g();
-                            if (channel < default2gChannel) {
-                                default2gChannel = channel;
-                            }
-                        }
-                        if (defaultChannels.hasDefault5g()) {
-                            int channel = defaultChannels.getDefault5g();
-                            if (channel < default5gChannel) {
-                                default5gChannel = channel;
-                            }
-                        }
-                    }
-                } else if (override != null) {
-                    // Add all of the CoexUnsafeChannels defined by the override lists.
-                    final Override2g override2g = override.getOverride2g();
-                    if (override2g != null) {
-                        final List<Integer> channelList2g = override2g.getChannel();
-                        for (OverrideCategory2g category : override2g.getCategory()) {
-                            if (OverrideCategory2g.all.equals(category)) {
-                                for (int i = 1; i <= 14; i++) {
-                                    channelList2g.add(i);
-                                }
-                            }
-                        }
-                        if (!channelList2g.isEmpty()) {
-                            if (mVerboseLoggingEnabled) {
-                                Log.v(TAG, cellChannel + " sets override 2g channels "
-                                        + channelList2g);
-                            }
-                            for (int channel : channelList2g) {
-                                currentBandUnsafeChannels.add(new CoexUnsafeChannel(
-                                        WIFI_BAND_24_GHZ, channel, powerCapDbm));
-                            }
-                        }
-                    }
-                    final Override5g override5g = override.getOverride5g();
-                    if (override5g != null) {
-                        final List<Integer> channelList5g = override5g.getChannel();
-                        for (OverrideCategory5g category : override5g.getCategory()) {
-                            if (OverrideCategory5g._20Mhz.equals(category)) {
-                                channelList5g.addAll(CHANNEL_SET_5_GHZ_20_MHZ);
-                            } else if (OverrideCategory5g._40Mhz.equals(category)) {
-                                channelList5g.addAll(CHANNEL_SET_5_GHZ_40_MHZ);
-                            } else if (OverrideCategory5g._80Mhz.equals(category)) {
-                                channelList5g.addAll(CHANNEL_SET_5_GHZ_80_MHZ);
-                            } else if (OverrideCategory5g._160Mhz.equals(category)) {
-                                channelList5g.addAll(CHANNEL_SET_5_GHZ_160_MHZ);
-                            } else if (OverrideCategory5g.all.equals(category)) {
-                                channelList5g.addAll(CHANNEL_SET_5_GHZ);
-                            }
-                        }
-                        if (!channelList5g.isEmpty()) {
-                            if (mVerboseLoggingEnabled) {
-                                Log.v(TAG, cellChannel + " sets override 5g channels "
-                                        + channelList5g);
-                            }
-                            for (int channel : channelList5g) {
-                                currentBandUnsafeChannels.add(new CoexUnsafeChannel(
-                                        WIFI_BAND_5_GHZ, channel, powerCapDbm));
-                            }
+                    if (defaultChannels.hasDefault5g()) {
+                        int channel = defaultChannels.getDefault5g();
+                        if (channel < default5gChannel) {
+                            default5gChannel = channel;
                         }
                     }
                 }
@@ -654,10 +439,7 @@ public class CoexManager {
                 final boolean avoid5gWifiDirect =
                         mAvoid5gWifiDirectForLaaPerSubId.get(cellChannel.getSubId());
                 if (avoid5gSoftAp || avoid5gWifiDirect) {
-                    for (int channel : CHANNEL_SET_5_GHZ) {
-                        currentBandUnsafeChannels.add(
-                                new CoexUnsafeChannel(WIFI_BAND_5_GHZ, channel));
-                    }
+                    unsafeChannels.add(CompiledCoexTable.getAll5gChannels(), POWER_CAP_NONE);
                     if (avoid5gSoftAp) {
                         if (mVerboseLoggingEnabled) {
                             Log.v(TAG, "Avoiding 5g softap due to LAA channel " + cellChannel);
@@ -672,58 +454,26 @@ public class CoexManager {
                     }
                 }
             }
-            // Add all of the CoexUnsafeChannels calculated from this cell channel to the total.
-            // If the total already contains a CoexUnsafeChannel for the same band and channel,
-            // keep the one that has the lower power cap.
-            for (CoexUnsafeChannel unsafeChannel : currentBandUnsafeChannels) {
-                final int band = unsafeChannel.getBand();
-                final int channel = unsafeChannel.getChannel();
-                final Pair<Integer, Integer> bandChannelPair = new Pair<>(band, channel);
-                final CoexUnsafeChannel existingUnsafeChannel =
-                        coexUnsafeChannelsByBandChannelPair.get(bandChannelPair);
-                if (existingUnsafeChannel != null) {
-                    if (unsafeChannel.getPowerCapDbm() == POWER_CAP_NONE) {
-                        continue;
-                    }
-                    final int existingPowerCapDbm = existingUnsafeChannel.getPowerCapDbm();
-                    if (existingPowerCapDbm != POWER_CAP_NONE
-                            && existingPowerCapDbm < unsafeChannel.getPowerCapDbm()) {
-                        continue;
-                    }
-                } else {
-                    // Count the number of unsafe channels for each band to determine if we need to
-                    // remove the default channels before returning.
-                    if (band == WIFI_BAND_24_GHZ) {
-                        numUnsafe2gChannels++;
-                    } else if (band == WIFI_BAND_5_GHZ) {
-                        numUnsafe5gChannels++;
-                    }
-                }
-                coexUnsafeChannelsByBandChannelPair.put(bandChannelPair, unsafeChannel);
-            }
         }
         // Omit the default channel from each band if the entire band is unsafe and there are
         // no coex restrictions set.
         if (coexRestrictions == 0) {
-            if (numUnsafe2gChannels == NUM_24_GHZ_CHANNELS) {
+            if (unsafeChannels.isBandUnsafe(WIFI_BAND_24_GHZ)) {
                 if (mVerboseLoggingEnabled) {
                     Log.v(TAG, "Omitting default 2g channel " + default2gChannel
                             + " from unsafe set.");
                 }
-                coexUnsafeChannelsByBandChannelPair.remove(
-                        new Pair<>(WIFI_BAND_24_GHZ, default2gChannel));
+                unsafeChannels.remove(WIFI_BAND_24_GHZ, default2gChannel);
             }
-            if (numUnsafe5gChannels == CHANNEL_SET_5_GHZ.size()) {
+            if (unsafeChannels.isBandUnsafe(WIFI_BAND_5_GHZ)) {
                 if (mVerboseLoggingEnabled) {
                     Log.v(TAG, "Omitting default 5g channel " + default5gChannel
                             + " from unsafe set.");
                 }
-                coexUnsafeChannelsByBandChannelPair.remove(
-                        new Pair<>(WIFI_BAND_5_GHZ, default5gChannel));
+                unsafeChannels.remove(WIFI_BAND_5_GHZ, default5gChannel);
             }
         }
-        setCoexUnsafeChannels(
-                new ArrayList<>(coexUnsafeChannelsByBandChannelPair.values()), coexRestrictions);
+        setCoexUnsafeChannels(unsafeChannels.toList(), coexRestrictions);
     }
 
     /**
@@ -764,15 +514,7 @@ public class CoexManager {
         }
         final File file = new File(filepath);
         try (InputStream str = new BufferedInputStream(new FileInputStream(file))) {
-            mLteTableEntriesByBand.clear();
-            mNrTableEntriesByBand.clear();
-            for (Entry entry : XmlParser.readTable(str).getEntry()) {
-                if (RatType.LTE.equals(entry.getRat())) {
-                    mLteTableEntriesByBand.put(entry.getBand(), entry);
-                } else if (RatType.NR.equals(entry.getRat())) {
-                    mNrTableEntriesByBand.put(entry.getBand(), entry);
-                }
-            }
+            mCoexTable = new CompiledCoexTable(XmlParser.readTable(str).getEntry());
             Log.i(TAG, "Successfully read coex table from file");
             return true;
         } catch (FileNotFoundException e) {
@@ -0,0 +1,476 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi.coex;
+
+import static android.net.wifi.CoexUnsafeChannel.POWER_CAP_NONE;
+import static android.net.wifi.WifiScanner.WIFI_BAND_24_GHZ;
+import static android.net.wifi.WifiScanner.WIFI_BAND_5_GHZ;
+import static android.telephony.TelephonyManager.NETWORK_TYPE_LTE;
+import static android.telephony.TelephonyManager.NETWORK_TYPE_NR;
+
+import static com.android.server.wifi.coex.CoexUtils.CHANNEL_SET_5_GHZ;
+import static com.android.server.wifi.coex.CoexUtils.CHANNEL_SET_5_GHZ_160_MHZ;
+import static com.android.server.wifi.coex.CoexUtils.CHANNEL_SET_5_GHZ_20_MHZ;
+import static com.android.server.wifi.coex.CoexUtils.CHANNEL_SET_5_GHZ_40_MHZ;
+import static com.android.server.wifi.coex.CoexUtils.CHANNEL_SET_5_GHZ_80_MHZ;
+import static com.android.server.wifi.coex.CoexUtils.NUM_24_GHZ_CHANNELS;
+import static com.android.server.wifi.coex.CoexUtils.get2gHarmonicCoexUnsafeChannels;
+import static com.android.server.wifi.coex.CoexUtils.get5gHarmonicCoexUnsafeChannels;
+import static com.android.server.wifi.coex.CoexUtils.getIntermodCoexUnsafeChannels;
+import static com.android.server.wifi.coex.CoexUtils.getNeighboringCoexUnsafeChannels;
+
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+import android.net.wifi.CoexUnsafeChannel;
+import android.util.Log;
+import android.util.SparseArray;
+
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Coex table compiled for the lookup of the Wi-Fi channels made unsafe by cell channels.
+ *
+ * Unsafe Wi-Fi channels are represented as bitmaps over the 2.4GHz and 5GHz channel numbers.
+ * Each entry of the parsed coex table is compiled once:
+ * <ul>
+ * <li>Override entries are compiled to the bitmap of their unsafe channels.</li>
+ * <li>Params entries keep their parameters, and cache the bitmaps computed for the frequencies
+ * of the cell channels they have seen, so that repeated physical channel updates become
+ * lookups.</li>
+ * </ul>
+ */
+class CompiledCoexTable {
+    private static final String TAG = "WifiCoexManager";
+
+    // 2.4GHz channels 1 to 14 use the first word, 5GHz channels up to 191 use the next three.
+    private static final int BITMAP_5G_OFFSET = 64;
+    @VisibleForTesting
+    static final int BITMAP_LENGTH = 4;
+    private static final int BITMAP_BITS = BITMAP_LENGTH * Long.SIZE;
+
+    // Number of frequency combinations cached per entry before the cache is reset.
+    @VisibleForTesting
+    static final int MAX_CACHED_FREQUENCIES = 64;
+
+    private static final long[] BITMAP_ALL_2G = createBitmap(WIFI_BAND_24_GHZ, range(1, 14));
+    private static final long[] BITMAP_ALL_5G = createBitmap(WIFI_BAND_5_GHZ, CHANNEL_SET_5_GHZ);
+    private static final long[] BITMAP_5G_20_MHZ =
+            createBitmap(WIFI_BAND_5_GHZ, CHANNEL_SET_5_GHZ_20_MHZ);
+    private static final long[] BITMAP_5G_40_MHZ =
+            createBitmap(WIFI_BAND_5_GHZ, CHANNEL_SET_5_GHZ_40_MHZ);
+    private static final long[] BITMAP_5G_80_MHZ =
+            createBitmap(WIFI_BAND_5_GHZ, CHANNEL_SET_5_GHZ_80_MHZ);
+    private static final long[] BITMAP_5G_160_MHZ =
+            createBitmap(WIFI_BAND_5_GHZ, CHANNEL_SET_5_GHZ_160_MHZ);
+
+    @NonNull
+    private final SparseArray<CompiledEntry> mLteEntriesByBand = new SparseArray<>();
+    @NonNull
+    private final SparseArray<CompiledEntry> mNrEntriesByBand = new SparseArray<>();
+
+    /**
+     * Compile the given entries of a parsed coex table.
+     */
+    CompiledCoexTable(@NonNull List<Entry> entries) {
+        for (Entry entry : entries) {
+            if (RatType.LTE.equals(entry.getRat())) {
+                mLteEntriesByBand.put(entry.getBand(), new CompiledEntry(entry));
+            } else if (RatType.NR.equals(entry.getRat())) {
+                mNrEntriesByBand.put(entry.getBand(), new CompiledEntry(entry));
+            }
+        }
+    }
+
+    /**
+     * Returns the compiled entry for the given RAT and band, or null if there is none.
+     */
+    @Nullable
+    public CompiledEntry getEntry(int rat, int band) {
+        switch (rat) {
+            case NETWORK_TYPE_LTE:
+                return mLteEntriesByBand.get(band);
+            case NETWORK_TYPE_NR:
+                return mNrEntriesByBand.get(band);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Entry of the coex table compiled for a RAT and band.
+     */
+    static class CompiledEntry {
+        private final int mPowerCapDbm;
+        @Nullable private final Params mParams;
+        @Nullable private final long[] mOverrideBitmap;
+        private final Map<FrequencyKey, long[]> mCachedBitmaps = new HashMap<>();
+        private final Map<FrequencyKey, long[]> mCachedIntermodBitmaps = new HashMap<>();
+
+        CompiledEntry(@NonNull Entry entry) {
+            mPowerCapDbm = entry.hasPowerCapDbm() ? entry.getPowerCapDbm() : POWER_CAP_NONE;
+            mParams = entry.getParams();
+            final Override override = entry.getOverride();
+            mOverrideBitmap = mParams == null && override != null
+                    ? compileOverride(override) : null;
+        }
+
+        /** Returns the power cap applied to the unsafe channels of this entry. */
+        public int getPowerCapDbm() {
+            return mPowerCapDbm;
+        }
+
+        /** Returns the default channels of this entry, or null if there are none. */
+        @Nullable
+        public DefaultChannels getDefaultChannels() {
+            return mParams == null ? null : mParams.getDefaultChannels();
+        }
+
+        /**
+         * Returns the bitmap of the Wi-Fi channels made unsafe by the given cell channel of this
+         * entry. The downlinks of all the cell channels are considered for intermod interference.
+         * The returned bitmap must not be modified.
+         */
+        @NonNull
+        public long[] getUnsafeChannels(@NonNull CoexUtils.CoexCellChannel cellChannel,
+                @NonNull List<CoexUtils.CoexCellChannel> cellChannels) {
+            if (mParams == null) {
+                return mOverrideBitmap != null ? mOverrideBitmap : new long[BITMAP_LENGTH];
+            }
+            final int uplinkFreqKhz = cellChannel.getUplinkFreqKhz();
+            final int uplinkBandwidthKhz = cellChannel.getUplinkBandwidthKhz();
+            final FrequencyKey key = new FrequencyKey(cellChannel.getDownlinkFreqKhz(),
+                    cellChannel.getDownlinkBandwidthKhz(), uplinkFreqKhz, uplinkBandwidthKhz);
+            long[] bitmap = mCachedBitmaps.get(key);
+            if (bitmap == null) {
+                bitmap = computeUnsafeChannels(key);
+                cache(mCachedBitmaps, key, bitmap);
+            }
+            if (!(uplinkFreqKhz >= 0 && uplinkBandwidthKhz > 0)
+                    || (mParams.getIntermodParams2g() == null
+                    && mParams.getIntermodParams5g() == null)) {
+                return bitmap;
+            }
+            // Intermod interference depends on the downlinks of all the cell channels.
+            final long[] result = bitmap.clone();
+            for (CoexUtils.CoexCellChannel victimCellChannel : cellChannels) {
+                final int victimFreqKhz = victimCellChannel.getDownlinkFreqKhz();
+                final int victimBandwidthKhz = victimCellChannel.getDownlinkBandwidthKhz();
+                if (victimFreqKhz < 0 || victimBandwidthKhz <= 0) {
+                    continue;
+                }
+                final FrequencyKey intermodKey = new FrequencyKey(uplinkFreqKhz,
+                        uplinkBandwidthKhz, victimFreqKhz, victimBandwidthKhz);
+                long[] intermodBitmap = mCachedIntermodBitmaps.get(intermodKey);
+                if (intermodBitmap == null) {
+                    intermodBitmap = computeIntermodUnsafeChannels(intermodKey);
+                    cache(mCachedIntermodBitmaps, intermodKey, intermodBitmap);
+                }
+                or(result, intermodBitmap);
+            }
+            return result;
+        }
+
+        private static void cache(Map<FrequencyKey, long[]> cache, FrequencyKey key,
+                long[] bitmap) {
+            if (cache.size() >= MAX_CACHED_FREQUENCIES) {
+                cache.clear();
+            }
+            cache.put(key, bitmap);
+        }
+
+        /**
+         * Computes the neighboring and harmonic unsafe channels of a cell channel with the
+         * downlink and uplink of the given key.
+         */
+        private long[] computeUnsafeChannels(FrequencyKey key) {
+            final long[] bitmap = new long[BITMAP_LENGTH];
+            final int downlinkFreqKhz = key.mFreqKhz1;
+            final int downlinkBandwidthKhz = key.mBandwidthKhz1;
+            final int uplinkFreqKhz = key.mFreqKhz2;
+            final int uplinkBandwidthKhz = key.mBandwidthKhz2;
+            final NeighborThresholds neighborThresholds = mParams.getNeighborThresholds();
+            final HarmonicParams harmonicParams2g = mParams.getHarmonicParams2g();
+            final HarmonicParams harmonicParams5g = mParams.getHarmonicParams5g();
+            // Calculate interference from cell downlink.
+            if (downlinkFreqKhz >= 0 && downlinkBandwidthKhz > 0) {
+                if (neighborThresholds != null && neighborThresholds.hasCellVictimMhz()) {
+                    addToBitmap(bitmap, getNeighboringCoexUnsafeChannels(downlinkFreqKhz,
+                            downlinkBandwidthKhz, neighborThresholds.getCellVictimMhz() * 1000,
+                            mPowerCapDbm));
+                }
+            }
+            // Calculate interference from cell uplink
+            if (uplinkFreqKhz >= 0 && uplinkBandwidthKhz > 0) {
+                if (neighborThresholds != null && neighborThresholds.hasWifiVictimMhz()) {
+                    addToBitmap(bitmap, getNeighboringCoexUnsafeChannels(uplinkFreqKhz,
+                            uplinkBandwidthKhz, neighborThresholds.getWifiVictimMhz() * 1000,
+                            mPowerCapDbm));
+                }
+                if (harmonicParams2g != null) {
+                    addToBitmap(bitmap, get2gHarmonicCoexUnsafeChannels(uplinkFreqKhz,
+                            uplinkBandwidthKhz, harmonicParams2g.getN(),
+                            harmonicParams2g.getOverlap(), mPowerCapDbm));
+                }
+                if (harmonicParams5g != null) {
+                    addToBitmap(bitmap, get5gHarmonicCoexUnsafeChannels(uplinkFreqKhz,
+                            uplinkBandwidthKhz, harmonicParams5g.getN(),
+                            harmonicParams5g.getOverlap(), mPowerCapDbm));
+                }
+            }
+            return bitmap;
+        }
+
+        /**
+         * Computes the intermod unsafe channels of a cell channel uplink and a victim cell channel
+         * downlink of the given key.
+         */
+        private long[] computeIntermodUnsafeChannels(FrequencyKey key) {
+            final long[] bitmap = new long[BITMAP_LENGTH];
+            final IntermodParams intermodParams2g = mParams.getIntermodParams2g();
+            final IntermodParams intermodParams5g = mParams.getIntermodParams5g();
+            if (intermodParams2g != null) {
+                addToBitmap(bitmap, getIntermodCoexUnsafeChannels(key.mFreqKhz1,
+                        key.mBandwidthKhz1, key.mFreqKhz2, key.mBandwidthKhz2,
+                        intermodParams2g.getN(), intermodParams2g.getM(),
+                        intermodParams2g.getOverlap(), WIFI_BAND_24_GHZ, mPowerCapDbm));
+            }
+            if (intermodParams5g != null) {
+                addToBitmap(bitmap, getIntermodCoexUnsafeChannels(key.mFreqKhz1,
+                        key.mBandwidthKhz1, key.mFreqKhz2, key.mBandwidthKhz2,
+                        intermodParams5g.getN(), intermodParams5g.getM(),
+                        intermodParams5g.getOverlap(), WIFI_BAND_5_GHZ, mPowerCapDbm));
+            }
+            return bitmap;
+        }
+
+        private static long[] compileOverride(@NonNull Override override) {
+            final long[] bitmap = new long[BITMAP_LENGTH];
+            final Override2g override2g = override.getOverride2g();
+            if (override2g != null) {
+                for (int channel : override2g.getChannel()) {
+                    setChannel(bitmap, WIFI_BAND_24_GHZ, channel);
+                }
+                for (OverrideCategory2g category : override2g.getCategory()) {
+                    if (OverrideCategory2g.all.equals(category)) {
+                        or(bitmap, BITMAP_ALL_2G);
+                    }
+                }
+            }
+            final Override5g override5g = override.getOverride5g();
+            if (override5g != null) {
+                for (int channel : override5g.getChannel()) {
+                    setChannel(bitmap, WIFI_BAND_5_GHZ, channel);
+                }
+                for (OverrideCategory5g category : override5g.getCategory()) {
+                    if (OverrideCategory5g._20Mhz.equals(category)) {
+                        or(bitmap, BITMAP_5G_20_MHZ);
+                    } else if (OverrideCategory5g._40Mhz.equals(category)) {
+                        or(bitmap, BITMAP_5G_40_MHZ);
+                    } else if (OverrideCategory5g._80Mhz.equals(category)) {
+                        or(bitmap, BITMAP_5G_80_MHZ);
+                    } else if (OverrideCategory5g._160Mhz.equals(category)) {
+                        or(bitmap, BITMAP_5G_160_MHZ);
+                    } else if (OverrideCategory5g.all.equals(category)) {
+                        or(bitmap, BITMAP_ALL_5G);
+                    }
+                }
+            }
+            return bitmap;
+        }
+    }
+
+    /**
+     * Frequencies and bandwidths of two cell links, used as a cache key.
+     */
+    private static class FrequencyKey {
+        final int mFreqKhz1;
+        final int mBandwidthKhz1;
+        final int mFreqKhz2;
+        final int mBandwidthKhz2;
+
+        FrequencyKey(int freqKhz1, int bandwidthKhz1, int freqKhz2, int bandwidthKhz2) {
+            mFreqKhz1 = freqKhz1;
+            mBandwidthKhz1 = bandwidthKhz1;
+            mFreqKhz2 = freqKhz2;
+            mBandwidthKhz2 = bandwidthKhz2;
+        }
+
+        @java.lang.Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof FrequencyKey)) return false;
+            FrequencyKey that = (FrequencyKey) o;
+            return mFreqKhz1 == that.mFreqKhz1 && mBandwidthKhz1 == that.mBandwidthKhz1
+                    && mFreqKhz2 == that.mFreqKhz2 && mBandwidthKhz2 == that.mBandwidthKhz2;
+        }
+
+        @java.lang.Override
+        public int hashCode() {
+            return Objects.hash(mFreqKhz1, mBandwidthKhz1, mFreqKhz2, mBandwidthKhz2);
+        }
+    }
+
+    /**
+     * Unsafe channels gathered from the bitmaps of several cell channels. When a channel is made
+     * unsafe by several cell channels, the lowest power cap is kept.
+     */
+    static class UnsafeChannels {
+        private final long[] mBitmap = new long[BITMAP_LENGTH];
+        private final int[] mPowerCapsDbm = new int[BITMAP_BITS];
+
+        /**
+         * Adds the channels of the given bitmap with the given power cap.
+         */
+        public void add(@NonNull long[] bitmap, int powerCapDbm) {
+            for (int i = 0; i < BITMAP_LENGTH; i++) {
+                long bits = bitmap[i];
+                while (bits != 0) {
+                    final int bit = Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    final int index = i * Long.SIZE + bit;
+                    if ((mBitmap[i] & (1L << bit)) == 0 || powerCapDbm < mPowerCapsDbm[index]) {
+                        mPowerCapsDbm[index] = powerCapDbm;
+                    }
+                }
+                mBitmap[i] |= bitmap[i];
+            }
+        }
+
+        /**
+         * Removes the given channel.
+         */
+        public void remove(int band, int channel) {
+            final int index = getIndex(band, channel);
+            if (index >= 0) {
+                mBitmap[index / Long.SIZE] &= ~(1L << (index % Long.SIZE));
+            }
+        }
+
+        /**
+         * Returns whether all the channels of the given band are unsafe.
+         */
+        public boolean isBandUnsafe(int band) {
+            if (band == WIFI_BAND_24_GHZ) {
+                return Long.bitCount(mBitmap[0]) == NUM_24_GHZ_CHANNELS;
+            }
+            int count = 0;
+            for (int i = BITMAP_5G_OFFSET / Long.SIZE; i < BITMAP_LENGTH; i++) {
+                count += Long.bitCount(mBitmap[i]);
+            }
+            return count == CHANNEL_SET_5_GHZ.size();
+        }
+
+        /**
+         * Returns the unsafe channels as a list of CoexUnsafeChannels.
+         */
+        @NonNull
+        public List<CoexUnsafeChannel> toList() {
+            final List<CoexUnsafeChannel> unsafeChannels = new ArrayList<>();
+            for (int i = 0; i < BITMAP_LENGTH; i++) {
+                long bits = mBitmap[i];
+                while (bits != 0) {
+                    final int index = i * Long.SIZE + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    if (index < BITMAP_5G_OFFSET) {
+                        unsafeChannels.add(new CoexUnsafeChannel(
+                                WIFI_BAND_24_GHZ, index, mPowerCapsDbm[index]));
+                    } else {
+                        unsafeChannels.add(new CoexUnsafeChannel(WIFI_BAND_5_GHZ,
+                                index - BITMAP_5G_OFFSET, mPowerCapsDbm[index]));
+                    }
+                }
+            }
+            return unsafeChannels;
+        }
+    }
+
+    /**
+     * Returns the bitmap of all the 5GHz channels.
+     */
+    @NonNull
+    static long[] getAll5gChannels() {
+        return BITMAP_ALL_5G;
+    }
+
+    private static int getIndex(int band, int channel) {
+        if (band == WIFI_BAND_24_GHZ && channel >= 1 && channel <= NUM_24_GHZ_CHANNELS) {
+            return channel;
+        }
+        if (band == WIFI_BAND_5_GHZ && channel >= 0 && channel < BITMAP_BITS - BITMAP_5G_OFFSET) {
+            return BITMAP_5G_OFFSET + channel;
+        }
+        return -1;
+    }
+
+    private static void setChannel(long[] bitmap, int band, int channel) {
+        final int index = getIndex(band, channel);
+        if (index < 0) {
+            Log.e(TAG, "Ignoring invalid channel " + channel + " for band " + band);
+            return;
+        }
+        bitmap[index / Long.SIZE] |= 1L << (index % Long.SIZE);
+    }
+
+    private static void addToBitmap(long[] bitmap, List<CoexUnsafeChannel> unsafeChannels) {
+        for (CoexUnsafeChannel unsafeChannel : unsafeChannels) {
+            setChannel(bitmap, unsafeChannel.getBand(), unsafeChannel.getChannel());
+        }
+    }
+
+    private static void or(long[] bitmap, long[] other) {
+        for (int i = 0; i < BITMAP_LENGTH; i++) {
+            bitmap[i] |= other[i];
+        }
+    }
+
+    private static long[] createBitmap(int band, Iterable<Integer> channels) {
+        final long[] bitmap = new long[BITMAP_LENGTH];
+        for (int channel : channels) {
+            setChannel(bitmap, band, channel);
+        }
+        return bitmap;
+    }
+
+    private static List<Integer> range(int first, int last) {
+        final List<Integer> values = new ArrayList<>();
+        for (int i = first; i <= last; i++) {
+            values.add(i);
+        }
+        return values;
+    }
+
+    /**
+     * Returns a readable representation of the given bitmap for logging.
+     */
+    @NonNull
+    static String bitmapToString(@NonNull long[] bitmap) {
+        final UnsafeChannels unsafeChannels = new UnsafeChannels();
+        unsafeChannels.add(bitmap, POWER_CAP_NONE);
+        final List<String> channels = new ArrayList<>();
+        for (CoexUnsafeChannel unsafeChannel : unsafeChannels.toList()) {
+            channels.add((unsafeChannel.getBand() == WIFI_BAND_24_GHZ ? "2g:" : "5g:")
+                    + unsafeChannel.getChannel());
+        }
+        return channels.toString();
+    }
+}
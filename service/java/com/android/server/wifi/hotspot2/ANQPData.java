@@ -40,6 +40,8 @@ public class ANQPData {
     private final Clock mClock;
     private final Map<Constants.ANQPElementType, ANQPElement> mANQPElements;
     private long mExpiryTime;
+    // Number of times the elements were updated after the entry was created.
+    private int mUpdateCount;
 
     public ANQPData(Clock clock, Map<Constants.ANQPElementType, ANQPElement> anqpElements) {
         mClock = clock;
@@ -74,6 +76,17 @@ public class ANQPData {
     public void update(Map<Constants.ANQPElementType, ANQPElement> anqpElements) {
         mANQPElements.putAll(anqpElements);
         mExpiryTime = mClock.getElapsedSinceBootMillis() + DATA_LIFETIME_MILLISECONDS;
+        mUpdateCount++;
+    }
+
+    /**
+     * Return the number of times the elements were updated, to detect changes to the elements of
+     * this entry.
+     *
+     * @return the update count
+     */
+    public int getUpdateCount() {
+        return mUpdateCount;
     }
 
     /**
@@ -21,13 +21,10 @@ import android.text.TextUtils;
 import com.android.server.wifi.IMSIParameter;
 import com.android.server.wifi.hotspot2.anqp.CellularNetwork;
 import com.android.server.wifi.hotspot2.anqp.DomainNameElement;
-import com.android.server.wifi.hotspot2.anqp.NAIRealmData;
 import com.android.server.wifi.hotspot2.anqp.NAIRealmElement;
 import com.android.server.wifi.hotspot2.anqp.RoamingConsortiumElement;
 import com.android.server.wifi.hotspot2.anqp.ThreeGPPNetworkElement;
 
-import java.util.List;
-
 /**
  * Utility class for providing matching functions against ANQP elements.
  */
@@ -86,9 +83,8 @@ public class ANQPMatcher {
         if (providerOIs == null) {
             return false;
         }
-        List<Long> rcOIs = element.getOIs();
         for (long oi : providerOIs) {
-            if (rcOIs.contains(oi)) {
+            if (element.containsOI(oi)) {
                 if (!matchAll) {
                     return true;
                 }
@@ -108,12 +104,13 @@ public class ANQPMatcher {
      * @return true if there is a NAI Realm match, false otherwise
      */
     public static boolean matchNAIRealm(NAIRealmElement element, String realm) {
-        if (element == null || element.getRealmDataList().isEmpty()) {
+        if (element == null) {
             return false;
         }
 
-        for (NAIRealmData realmData : element.getRealmDataList()) {
-            if (matchNAIRealmData(realmData, realm)) {
+        // Only the realms are needed for the match, the EAP methods are not decoded.
+        for (String realmStr : element.getRealms()) {
+            if (DomainMatcher.arg2SubdomainOfArg1(realm, realmStr)) {
                 return true;
             }
         }
@@ -142,23 +139,6 @@ public class ANQPMatcher {
         return false;
     }
 
-    /**
-     * Match the given NAI Realm data against the realm and authentication method of a provider.
-     *
-     * @param realmData The NAI Realm data
-     * @param realm The realm of the provider's credential
-     * @return true if a match is found
-     */
-    private static boolean matchNAIRealmData(NAIRealmData realmData, String realm) {
-        // Check for realm domain name match.
-        for (String realmStr : realmData.getRealms()) {
-            if (DomainMatcher.arg2SubdomainOfArg1(realm, realmStr)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
     /**
      * Match a cellular network information in the 3GPP Network ANQP element against the SIM
      * credential of a provider.
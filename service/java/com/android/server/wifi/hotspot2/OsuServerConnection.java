@@ -55,6 +55,12 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLContext;
@@ -71,6 +77,9 @@ public class OsuServerConnection {
     private static final String TAG = "PasspointOsuServerConnection";
 
     private static final int DNS_NAME = 2;
+    // Maximum number of trust root certificates retrieved at the same time.
+    private static final int MAX_PARALLEL_CERT_FETCHES = 3;
+    private static final long CERT_FETCH_THREAD_KEEP_ALIVE_SECONDS = 30;
 
     private SSLSocketFactory mSocketFactory;
     private URL mUrl;
@@ -85,6 +94,7 @@ public class OsuServerConnection {
     private boolean mSetupComplete = false;
     private boolean mVerboseLoggingEnabled = false;
     private Looper mLooper;
+    private Executor mCertFetchExecutor;
 
     public static final int TRUST_CERT_TYPE_AAA = 1;
     public static final int TRUST_CERT_TYPE_REMEDIATION = 2;
@@ -92,7 +102,13 @@ public class OsuServerConnection {
 
     @VisibleForTesting
     /* package */ OsuServerConnection(Looper looper) {
+        this(looper, null);
+    }
+
+    @VisibleForTesting
+    /* package */ OsuServerConnection(Looper looper, Executor certFetchExecutor) {
         mLooper = looper;
+        mCertFetchExecutor = certFetchExecutor;
     }
 
     /**
@@ -144,6 +160,16 @@ public class OsuServerConnection {
             mLooper = mOsuServerHandlerThread.getLooper();
         }
         mHandler = new Handler(mLooper);
+
+        // If mCertFetchExecutor is already set by unit test, don't overwrite it.
+        if (mCertFetchExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_PARALLEL_CERT_FETCHES,
+                    MAX_PARALLEL_CERT_FETCHES, CERT_FETCH_THREAD_KEEP_ALIVE_SECONDS,
+                    TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    r -> new Thread(r, "OsuServerCertFetch"));
+            executor.allowCoreThreadTimeOut(true);
+            mCertFetchExecutor = executor;
+        }
     }
 
     /**
@@ -340,7 +366,8 @@ public class OsuServerConnection {
             mServiceConnection.disconnect();
         }
 
-        mServiceConnection = getServiceConnection(mUrl, mNetwork);
+        mHttpsTransport = HttpsTransport.createInstance(mNetwork, mUrl);
+        mServiceConnection = getServiceConnection(mHttpsTransport);
         if (mServiceConnection == null) {
             Log.e(TAG, "ServiceConnection for https is null");
             if (mOsuServerCallbacks != null) {
@@ -393,7 +420,8 @@ public class OsuServerConnection {
             }
             return;
         } finally {
-            mServiceConnection.disconnect();
+            // Keep the connection alive for the next SOAP message to the OSU server.
+            mServiceConnection.release();
             mServiceConnection = null;
         }
         if (mOsuServerCallbacks != null) {
@@ -408,6 +436,18 @@ public class OsuServerConnection {
         // the type.
         Map<Integer, List<X509Certificate>> trustRootCertificates = new HashMap<>();
 
+        // The certificates are independent of each other, so retrieve them in parallel. The
+        // results are checked in order below. Key: Cert url, Value: the pending certificate.
+        Map<String, CompletableFuture<X509Certificate>> pendingCertificates = new HashMap<>();
+        for (Map<String, byte[]> certInfoForType : trustCertsInfo.values()) {
+            for (Map.Entry<String, byte[]> certInfo : certInfoForType.entrySet()) {
+                if (certInfo.getValue() == null) break;
+                pendingCertificates.computeIfAbsent(certInfo.getKey(),
+                        certUrl -> CompletableFuture.supplyAsync(() -> getCert(certUrl),
+                                mCertFetchExecutor));
+            }
+        }
+
         for (Map.Entry<Integer, Map<String, byte[]>> certInfoPerType : trustCertsInfo.entrySet()) {
             List<X509Certificate> certificates = new ArrayList<>();
 
@@ -421,7 +461,8 @@ public class OsuServerConnection {
                     trustRootCertificates.clear();
                     break;
                 }
-                X509Certificate certificate = getCert(certInfo.getKey());
+                X509Certificate certificate = waitForCert(certInfo.getKey(),
+                        pendingCertificates.get(certInfo.getKey()));
 
                 if (certificate == null) {
                     // In case of an invalid cert, clear all of retrieved CA certs so that
@@ -461,7 +502,30 @@ public class OsuServerConnection {
     }
 
     /**
-     * Retrieves a X.509 Certificate from server.
+     * Waits for a X.509 Certificate retrieved by {@link #getCert(String)}.
+     *
+     * @return {@link X509Certificate} in success, {@code null} otherwise.
+     */
+    private X509Certificate waitForCert(@NonNull String certUrl,
+            CompletableFuture<X509Certificate> pendingCertificate) {
+        if (pendingCertificate == null) {
+            return null;
+        }
+        try {
+            return pendingCertificate.get();
+        } catch (InterruptedException e) {
+            Log.e(TAG, "Interrupted while getting the certificate from " + certUrl);
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            Log.e(TAG, "Failed to get the certificate from " + certUrl + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Retrieves a X.509 Certificate from server. This may be called from several cert fetch
+     * threads at the same time.
      *
      * @param certUrl url to retrieve a X.509 Certificate
      * @return {@link X509Certificate} in success, {@code null} otherwise.
@@ -472,27 +536,26 @@ public class OsuServerConnection {
             return null;
         }
 
+        HttpsServiceConnection serviceConnection = null;
         try {
             URL serverUrl = new URL(certUrl);
             CertificateFactory certFactory = CertificateFactory.getInstance("X.509");
-            if (mServiceConnection != null) {
-                mServiceConnection.disconnect();
-            }
-            mServiceConnection = getServiceConnection(serverUrl, mNetwork);
-            if (mServiceConnection == null) {
+            serviceConnection = getServiceConnection(
+                    HttpsTransport.createInstance(mNetwork, serverUrl));
+            if (serviceConnection == null) {
                 return null;
             }
-            mServiceConnection.setRequestMethod("GET");
-            mServiceConnection.setRequestProperty("Accept-Encoding", "gzip");
+            serviceConnection.setRequestMethod("GET");
+            serviceConnection.setRequestProperty("Accept-Encoding", "gzip");
 
-            if (mServiceConnection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+            if (serviceConnection.getResponseCode() != HttpURLConnection.HTTP_OK) {
                 Log.e(TAG, "The response code of the HTTPS GET to " + certUrl
-                        + " is not OK, but " + mServiceConnection.getResponseCode());
+                        + " is not OK, but " + serviceConnection.getResponseCode());
                 return null;
             }
             boolean bPkcs7 = false;
             boolean bBase64 = false;
-            List<HeaderProperty> properties = mServiceConnection.getResponseProperties();
+            List<HeaderProperty> properties = serviceConnection.getResponseProperties();
             for (HeaderProperty property : properties) {
                 if (property == null || property.getKey() == null || property.getValue() == null) {
                     continue;
@@ -523,7 +586,7 @@ public class OsuServerConnection {
                 Log.e(TAG, "no X509Certificate found in the HTTPS response");
                 return null;
             }
-            InputStream in = mServiceConnection.openInputStream();
+            InputStream in = serviceConnection.openInputStream();
             ByteArrayOutputStream bos = new ByteArrayOutputStream();
             byte[] buf = new byte[8192];
             while (true) {
@@ -533,7 +596,6 @@ public class OsuServerConnection {
                 }
                 bos.write(buf, 0, rd);
             }
-            in.close();
             bos.flush();
             byte[] byteArray = bos.toByteArray();
             if (bBase64) {
@@ -554,24 +616,29 @@ public class OsuServerConnection {
         } catch (IllegalArgumentException e) {
             Log.e(TAG, "Failed to decode the data: " + e);
         } finally {
-            mServiceConnection.disconnect();
-            mServiceConnection = null;
+            if (serviceConnection != null) {
+                // Keep the connection alive for the other requests to the server.
+                serviceConnection.release();
+            }
         }
         return null;
     }
 
     /**
-     * Gets the HTTPS service connection used for SOAP message exchange.
+     * Gets the HTTPS service connection of a transport. All the connections use the same
+     * socket factory, so that the TLS sessions and the keep-alive connections to a server are
+     * reused by the following requests.
      *
      * @return {@link HttpsServiceConnection}
      */
-    private HttpsServiceConnection getServiceConnection(@NonNull URL url,
-            @NonNull Network network) {
+    private HttpsServiceConnection getServiceConnection(HttpsTransport httpsTransport) {
+        if (httpsTransport == null) {
+            return null;
+        }
         HttpsServiceConnection serviceConnection;
         try {
             // Creates new HTTPS connection.
-            mHttpsTransport = HttpsTransport.createInstance(network, url);
-            serviceConnection = (HttpsServiceConnection) mHttpsTransport.getServiceConnection();
+            serviceConnection = (HttpsServiceConnection) httpsTransport.getServiceConnection();
             if (serviceConnection != null) {
                 serviceConnection.setSSLSocketFactory(mSocketFactory);
             }
@@ -134,6 +134,29 @@ public class PasspointManager {
     private final Clock mClock;
     private final WifiPermissionsUtil mWifiPermissionsUtil;
 
+    /**
+     * OSU providers computed from the OSU Providers ANQP element of an ANQP entry.
+     */
+    private static class OsuProvidersCacheEntry {
+        // ANQP entry the providers were computed from, and its update count at that time.
+        public final ANQPData anqpData;
+        public final int anqpDataUpdateCount;
+        public final List<OsuProvider> osuProviders;
+
+        OsuProvidersCacheEntry(ANQPData anqpData, List<OsuProvider> osuProviders) {
+            this.anqpData = anqpData;
+            this.anqpDataUpdateCount = anqpData.getUpdateCount();
+            this.osuProviders = osuProviders;
+        }
+    }
+
+    /**
+     * OSU providers of each ANQP entry. An entry is only valid as long as the ANQP entry it was
+     * computed from is still in |mAnqpCache| and was not updated.
+     */
+    private final Map<ANQPNetworkKey, OsuProvidersCacheEntry> mOsuProvidersCache =
+            new HashMap<>();
+
     /**
      * Map of package name of an app to the app ops changed listener for the app.
      */
@@ -960,6 +983,8 @@ public class PasspointManager {
      */
     public void sweepCache() {
         mAnqpCache.sweep();
+        mOsuProvidersCache.entrySet().removeIf(
+                entry -> !isOsuProvidersCacheEntryValid(entry.getKey(), entry.getValue()));
     }
 
     /**
@@ -1003,24 +1028,82 @@ public class PasspointManager {
      * @return Map of ANQP elements
      */
     public Map<Constants.ANQPElementType, ANQPElement> getANQPElements(ScanResult scanResult) {
+        ANQPNetworkKey anqpKey = getAnqpNetworkKey(scanResult);
+        if (anqpKey == null) {
+            return new HashMap<>();
+        }
+        ANQPData anqpEntry = mAnqpCache.getEntry(anqpKey);
+        if (anqpEntry != null) {
+            return anqpEntry.getElements();
+        }
+        return new HashMap<>();
+    }
+
+    /**
+     * Build the key of the ANQP data of the AP associated with the given scan result.
+     *
+     * @param scanResult The scan result associated with the AP
+     * @return the {@link ANQPNetworkKey}, or null if the scan result has an invalid BSSID
+     */
+    private ANQPNetworkKey getAnqpNetworkKey(ScanResult scanResult) {
         // Retrieve the Hotspot 2.0 Vendor Specific IE.
         InformationElementUtil.Vsa vsa =
                 InformationElementUtil.getHS2VendorSpecificIE(scanResult.informationElements);
 
-        // Lookup ANQP data in the cache.
         long bssid;
         try {
             bssid = Utils.parseMac(scanResult.BSSID);
         } catch (IllegalArgumentException e) {
             Log.e(TAG, "Invalid BSSID provided in the scan result: " + scanResult.BSSID);
-            return new HashMap<>();
+            return null;
         }
-        ANQPData anqpEntry = mAnqpCache.getEntry(ANQPNetworkKey.buildKey(
-                scanResult.SSID, bssid, scanResult.hessid, vsa.anqpDomainID));
-        if (anqpEntry != null) {
-            return anqpEntry.getElements();
+        return ANQPNetworkKey.buildKey(scanResult.SSID, bssid, scanResult.hessid,
+                vsa.anqpDomainID);
+    }
+
+    private boolean isOsuProvidersCacheEntryValid(ANQPNetworkKey anqpKey,
+            OsuProvidersCacheEntry cacheEntry) {
+        return mAnqpCache.getEntry(anqpKey) == cacheEntry.anqpData
+                && cacheEntry.anqpData.getUpdateCount() == cacheEntry.anqpDataUpdateCount;
+    }
+
+    /**
+     * Get the OSU providers advertised by the AP associated with the given scan result, computing
+     * them from its OSU Providers ANQP element only if the ANQP entry changed since the last call.
+     *
+     * @param scanResult The scan result associated with the AP
+     * @return List of {@link OsuProvider}, empty if the ANQP element is not available
+     */
+    private List<OsuProvider> getOsuProviders(ScanResult scanResult) {
+        ANQPNetworkKey anqpKey = getAnqpNetworkKey(scanResult);
+        if (anqpKey == null) {
+            return Collections.emptyList();
         }
-        return new HashMap<>();
+        OsuProvidersCacheEntry cacheEntry = mOsuProvidersCache.get(anqpKey);
+        if (cacheEntry != null && isOsuProvidersCacheEntryValid(anqpKey, cacheEntry)) {
+            return cacheEntry.osuProviders;
+        }
+        ANQPData anqpEntry = mAnqpCache.getEntry(anqpKey);
+        if (anqpEntry == null) {
+            mOsuProvidersCache.remove(anqpKey);
+            return Collections.emptyList();
+        }
+        HSOsuProvidersElement element = (HSOsuProvidersElement) anqpEntry.getElements().get(
+                Constants.ANQPElementType.HSOSUProviders);
+        List<OsuProvider> osuProviders = new ArrayList<>();
+        if (element != null) {
+            for (OsuProviderInfo info : element.getProviders()) {
+                // Set null for OSU-SSID in the class because OSU-SSID is a factor for hotspot
+                // operator rather than service provider, which means it can be different for
+                // each hotspot operators.
+                osuProviders.add(new OsuProvider((WifiSsid) null, info.getFriendlyNames(),
+                        info.getServiceDescription(), info.getServerUri(),
+                        info.getNetworkAccessIdentifier(), info.getMethodList()));
+            }
+        }
+        osuProviders = Collections.unmodifiableList(osuProviders);
+        mOsuProvidersCache.put(anqpKey, new OsuProvidersCacheEntry(anqpEntry, osuProviders));
+        return osuProviders;
     }
 
     /**
@@ -1081,21 +1164,7 @@ public class PasspointManager {
         for (ScanResult scanResult : scanResults) {
             if (!scanResult.isPasspointNetwork()) continue;
 
-            // Lookup OSU Providers ANQP element.
-            Map<Constants.ANQPElementType, ANQPElement> anqpElements = getANQPElements(scanResult);
-            if (!anqpElements.containsKey(Constants.ANQPElementType.HSOSUProviders)) {
-                continue;
-            }
-            HSOsuProvidersElement element =
-                    (HSOsuProvidersElement) anqpElements.get(
-                            Constants.ANQPElementType.HSOSUProviders);
-            for (OsuProviderInfo info : element.getProviders()) {
-                // Set null for OSU-SSID in the class because OSU-SSID is a factor for hotspot
-                // operator rather than service provider, which means it can be different for
-                // each hotspot operators.
-                OsuProvider provider = new OsuProvider((WifiSsid) null, info.getFriendlyNames(),
-                        info.getServiceDescription(), info.getServerUri(),
-                        info.getNetworkAccessIdentifier(), info.getMethodList());
+            for (OsuProvider provider : getOsuProviders(scanResult)) {
                 List<ScanResult> matchingScanResults = osuProviders.get(provider);
                 if (matchingScanResults == null) {
                     matchingScanResults = new ArrayList<>();
@@ -1376,6 +1445,7 @@ public class PasspointManager {
     public void clearAnqpRequestsAndFlushCache() {
         mAnqpRequestManager.clear();
         mAnqpCache.flush();
+        mOsuProvidersCache.clear();
         mProviders.values().stream().forEach(p -> p.clearProviderBlock());
     }
 
@@ -19,6 +19,7 @@ package com.android.server.wifi.hotspot2.anqp;
 import android.util.Log;
 
 import com.android.internal.annotations.VisibleForTesting;
+import com.android.server.wifi.ByteBufferReader;
 
 import java.net.ProtocolException;
 import java.nio.BufferUnderflowException;
@@ -107,6 +108,33 @@ public class CellularNetwork {
         return new CellularNetwork(plmnList);
     }
 
+    /**
+     * Validate a CellularNetwork in the given buffer and advance the buffer past it, without
+     * decoding its PLMNs.  The same checks as {@link #parse} are applied.
+     *
+     * @param payload The byte buffer to read from
+     * @throws ProtocolException
+     * @throws BufferUnderflowException
+     */
+    public static void skip(ByteBuffer payload) throws ProtocolException {
+        int ieiType = payload.get() & 0xFF;
+        int ieiSize = payload.get() & IEI_CONTENT_LENGTH_MASK;
+
+        // Skip this IEI if it is an unsupported type.
+        if (ieiType != IEI_TYPE_PLMN_LIST) {
+            payload.position(payload.position() + ieiSize);
+            return;
+        }
+
+        // Verify IEI size with PLMN count.
+        int plmnCount = payload.get() & 0xFF;
+        if (ieiSize != (plmnCount * PLMN_DATA_BYTES + 1)) {
+            throw new ProtocolException("IEI size and PLMN count mismatched: IEI Size=" + ieiSize
+                    + " PLMN Count=" + plmnCount);
+        }
+        ByteBufferReader.skip(payload, plmnCount * PLMN_DATA_BYTES);
+    }
+
     public List<String> getPlmns() {
         return Collections.unmodifiableList(mPlmnList);
     }
@@ -90,6 +90,61 @@ public class NAIRealmData {
         return new NAIRealmData(realmList, eapMethodList);
     }
 
+    /**
+     * Validate a NAIRealmData in the given buffer and advance the buffer past it, without
+     * decoding it.  The same checks as {@link #parse} are applied.
+     *
+     * @param payload The byte buffer to read from
+     * @throws BufferUnderflowException
+     * @throws ProtocolException
+     */
+    public static void skip(ByteBuffer payload) throws ProtocolException {
+        // Verify the length field.
+        int length = (int) ByteBufferReader.readInteger(payload, ByteOrder.LITTLE_ENDIAN, 2)
+                & 0xFFFF;
+        if (length > payload.remaining()) {
+            throw new ProtocolException("Invalid data length: " + length);
+        }
+
+        payload.get();     // Skip the encoding field
+        ByteBufferReader.skip(payload, payload.get() & 0xFF);
+        skipEAPMethods(payload);
+    }
+
+    /**
+     * Parse only the realms of a NAIRealmData from the given buffer, skipping its EAP methods.
+     *
+     * @param payload The byte buffer to read from
+     * @return List of realms
+     * @throws BufferUnderflowException
+     * @throws ProtocolException
+     */
+    public static List<String> parseRealms(ByteBuffer payload) throws ProtocolException {
+        // Read and verify the length field.
+        int length = (int) ByteBufferReader.readInteger(payload, ByteOrder.LITTLE_ENDIAN, 2)
+                & 0xFFFF;
+        if (length > payload.remaining()) {
+            throw new ProtocolException("Invalid data length: " + length);
+        }
+
+        // Read the encoding field.
+        boolean utf8 = (payload.get() & NAI_ENCODING_UTF8_MASK) != 0;
+
+        // Read the realm string.
+        String realm = ByteBufferReader.readStringWithByteLength(
+                payload, utf8 ? StandardCharsets.UTF_8 : StandardCharsets.US_ASCII);
+        skipEAPMethods(payload);
+        return Arrays.asList(realm.split(NAI_REALM_STRING_SEPARATOR));
+    }
+
+    private static void skipEAPMethods(ByteBuffer payload) throws ProtocolException {
+        int methodCount = payload.get() & 0xFF;
+        while (methodCount > 0) {
+            EAPMethod.skip(payload);
+            methodCount--;
+        }
+    }
+
     public List<String> getRealms() {
         return Collections.unmodifiableList(mRealms);
     }
@@ -16,6 +16,8 @@
 
 package com.android.server.wifi.hotspot2.anqp;
 
+import android.util.Log;
+
 import com.android.internal.annotations.VisibleForTesting;
 import com.android.server.wifi.ByteBufferReader;
 
@@ -36,16 +38,33 @@ import java.util.List;
  *             2                         variable
  */
 public class NAIRealmElement extends ANQPElement {
-    private final List<NAIRealmData> mRealmDataList;
+    private static final String TAG = "NAIRealmElement";
+
+    /**
+     * Raw NAI Realm data of a parsed element, which is only decoded when needed.  Null for an
+     * element created from a list of NAI Realm data.
+     */
+    private final ByteBuffer mPayload;
+    // Decoded lazily, and possibly on several threads. Decoding twice is harmless, since the
+    // decoded lists are never modified once published.
+    private volatile List<NAIRealmData> mRealmDataList;
+    private volatile List<String> mRealms;
 
     @VisibleForTesting
     public NAIRealmElement(List<NAIRealmData> realmDataList) {
         super(Constants.ANQPElementType.ANQPNAIRealm);
+        mPayload = null;
         mRealmDataList = realmDataList;
     }
 
+    private NAIRealmElement(ByteBuffer payload) {
+        super(Constants.ANQPElementType.ANQPNAIRealm);
+        mPayload = payload;
+    }
+
     /**
-     * Parse a NAIRealmElement from the given buffer.
+     * Parse a NAIRealmElement from the given buffer.  The payload is only validated here, the
+     * NAI Realm data is decoded from it when it is needed.
      *
      * @param payload The byte buffer to read from
      * @return {@link NAIRealmElement}
@@ -53,20 +72,93 @@ public class NAIRealmElement extends ANQPElement {
      */
     public static NAIRealmElement parse(ByteBuffer payload)
             throws ProtocolException {
-        List<NAIRealmData> realmDataList = new ArrayList<>();
+        int start = payload.position();
+        int end = start;
         if (payload.hasRemaining()) {
             int count = (int) ByteBufferReader.readInteger(payload, ByteOrder.LITTLE_ENDIAN, 2)
                     & 0xFFFF;
             while (count > 0) {
-                realmDataList.add(NAIRealmData.parse(payload));
+                int dataStart = payload.position();
+                NAIRealmData.skip(payload);
+                // The length of a NAI Realm data is only verified against the remaining bytes,
+                // so keep all the bytes it covers, even past the fields that were read.
+                int dataLength = (payload.get(dataStart) & 0xFF)
+                        | ((payload.get(dataStart + 1) & 0xFF) << 8);
+                end = Math.max(end, dataStart + 2 + dataLength);
                 count--;
             }
         }
-        return new NAIRealmElement(realmDataList);
+        end = Math.max(end, payload.position());
+        ByteBuffer data = payload.duplicate();
+        data.position(start);
+        data.limit(end);
+        return new NAIRealmElement(data.slice().asReadOnlyBuffer());
     }
 
     public List<NAIRealmData> getRealmDataList() {
-        return Collections.unmodifiableList(mRealmDataList);
+        return Collections.unmodifiableList(getRealmDataListInternal());
+    }
+
+    /**
+     * Get the realms of all NAI Realm data in the element.  For a parsed element, only the
+     * realms are decoded, the EAP methods are skipped.
+     *
+     * @return List of realms
+     */
+    public List<String> getRealms() {
+        List<String> cachedRealms = mRealms;
+        if (cachedRealms == null) {
+            List<String> realms = new ArrayList<>();
+            if (mPayload == null) {
+                for (NAIRealmData realmData : mRealmDataList) {
+                    realms.addAll(realmData.getRealms());
+                }
+            } else {
+                ByteBuffer payload = mPayload.duplicate();
+                try {
+                    if (payload.hasRemaining()) {
+                        int count = (int) ByteBufferReader.readInteger(
+                                payload, ByteOrder.LITTLE_ENDIAN, 2) & 0xFFFF;
+                        while (count > 0) {
+                            realms.addAll(NAIRealmData.parseRealms(payload));
+                            count--;
+                        }
+                    }
+                } catch (ProtocolException | BufferUnderflowException e) {
+                    // Not expected, the payload is validated when the element is parsed.
+                    Log.e(TAG, "Failed to decode the realms: " + e);
+                    realms.clear();
+                }
+            }
+            cachedRealms = Collections.unmodifiableList(realms);
+            mRealms = cachedRealms;
+        }
+        return cachedRealms;
+    }
+
+    private List<NAIRealmData> getRealmDataListInternal() {
+        List<NAIRealmData> cachedRealmDataList = mRealmDataList;
+        if (cachedRealmDataList == null) {
+            List<NAIRealmData> realmDataList = new ArrayList<>();
+            ByteBuffer payload = mPayload.duplicate();
+            try {
+                if (payload.hasRemaining()) {
+                    int count = (int) ByteBufferReader.readInteger(
+                            payload, ByteOrder.LITTLE_ENDIAN, 2) & 0xFFFF;
+                    while (count > 0) {
+                        realmDataList.add(NAIRealmData.parse(payload));
+                        count--;
+                    }
+                }
+            } catch (ProtocolException | BufferUnderflowException e) {
+                // Not expected, the payload is validated when the element is parsed.
+                Log.e(TAG, "Failed to decode the NAI Realm data: " + e);
+                realmDataList.clear();
+            }
+            cachedRealmDataList = realmDataList;
+            mRealmDataList = cachedRealmDataList;
+        }
+        return cachedRealmDataList;
     }
 
     @Override
@@ -78,16 +170,16 @@ public class NAIRealmElement extends ANQPElement {
             return false;
         }
         NAIRealmElement that = (NAIRealmElement) thatObject;
-        return mRealmDataList.equals(that.mRealmDataList);
+        return getRealmDataListInternal().equals(that.getRealmDataListInternal());
     }
 
     @Override
     public int hashCode() {
-        return mRealmDataList.hashCode();
+        return getRealmDataListInternal().hashCode();
     }
 
     @Override
     public String toString() {
-        return "NAIRealmElement{mRealmDataList=" + mRealmDataList + "}";
+        return "NAIRealmElement{mRealmDataList=" + getRealmDataListInternal() + "}";
     }
 }
@@ -31,16 +31,31 @@ public class RoamingConsortiumElement extends ANQPElement {
     @VisibleForTesting
     public static final int MAXIMUM_OI_LENGTH = Long.BYTES;
 
-    private final List<Long> mOIs;
+    /**
+     * Raw OI duples of a parsed element, which are only decoded when needed.  Null for an
+     * element created from a list of OIs.
+     */
+    private final ByteBuffer mPayload;
+    // Decoded lazily, and possibly on several threads. Decoding twice is harmless, since the
+    // decoded list is never modified once published.
+    private volatile List<Long> mOIs;
 
     @VisibleForTesting
     public RoamingConsortiumElement(List<Long> ois) {
         super(Constants.ANQPElementType.ANQPRoamingConsortium);
+        mPayload = null;
         mOIs = ois;
     }
 
+    private RoamingConsortiumElement(ByteBuffer payload) {
+        super(Constants.ANQPElementType.ANQPRoamingConsortium);
+        mPayload = payload;
+        mOIs = null;
+    }
+
     /**
-     * Parse a VenueNameElement from the given payload.
+     * Parse a VenueNameElement from the given payload.  The payload is only validated here,
+     * the OIs are read from it when they are needed.
      *
      * @param payload The byte buffer to read from
      * @return {@link RoamingConsortiumElement}
@@ -49,19 +64,58 @@ public class RoamingConsortiumElement extends ANQPElement {
      */
     public static RoamingConsortiumElement parse(ByteBuffer payload)
             throws ProtocolException {
-        List<Long> OIs = new ArrayList<Long>();
+        int start = payload.position();
+        ByteBuffer data = payload.slice();
         while (payload.hasRemaining()) {
             int length = payload.get() & 0xFF;
             if (length < MINIMUM_OI_LENGTH || length > MAXIMUM_OI_LENGTH) {
                 throw new ProtocolException("Bad OI length: " + length);
             }
-            OIs.add(ByteBufferReader.readInteger(payload, ByteOrder.BIG_ENDIAN, length));
+            ByteBufferReader.skip(payload, length);
         }
-        return new RoamingConsortiumElement(OIs);
+        data.limit(payload.position() - start);
+        return new RoamingConsortiumElement(data.asReadOnlyBuffer());
     }
 
     public List<Long> getOIs() {
-        return Collections.unmodifiableList(mOIs);
+        return Collections.unmodifiableList(getOIList());
+    }
+
+    /**
+     * Check if the element contains the given OI, reading the raw OI duples of a parsed element
+     * without decoding the whole OI list.
+     *
+     * @param oi The OI to look for
+     * @return true if the element contains the OI
+     */
+    public boolean containsOI(long oi) {
+        List<Long> ois = mOIs;
+        if (ois != null) {
+            return ois.contains(oi);
+        }
+        ByteBuffer payload = mPayload.duplicate();
+        while (payload.hasRemaining()) {
+            int length = payload.get() & 0xFF;
+            if (ByteBufferReader.readInteger(payload, ByteOrder.BIG_ENDIAN, length) == oi) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<Long> getOIList() {
+        List<Long> ois = mOIs;
+        if (ois == null) {
+            ois = new ArrayList<Long>();
+            // The OI lengths are validated when the element is parsed, so this can't underflow.
+            ByteBuffer payload = mPayload.duplicate();
+            while (payload.hasRemaining()) {
+                int length = payload.get() & 0xFF;
+                ois.add(ByteBufferReader.readInteger(payload, ByteOrder.BIG_ENDIAN, length));
+            }
+            mOIs = ois;
+        }
+        return ois;
     }
 
     @Override
@@ -73,16 +127,16 @@ public class RoamingConsortiumElement extends ANQPElement {
             return false;
         }
         RoamingConsortiumElement that = (RoamingConsortiumElement) thatObject;
-        return mOIs.equals(that.mOIs);
+        return getOIList().equals(that.getOIList());
     }
 
     @Override
     public int hashCode() {
-        return mOIs.hashCode();
+        return getOIList().hashCode();
     }
 
     @Override
     public String toString() {
-        return "RoamingConsortium{mOis=[" + Utils.roamingConsortiumsToString(mOIs) + "]}";
+        return "RoamingConsortium{mOis=[" + Utils.roamingConsortiumsToString(getOIList()) + "]}";
     }
 }
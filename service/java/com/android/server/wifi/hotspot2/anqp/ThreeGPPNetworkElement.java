@@ -16,6 +16,8 @@
 
 package com.android.server.wifi.hotspot2.anqp;
 
+import android.util.Log;
+
 import com.android.internal.annotations.VisibleForTesting;
 
 import java.net.ProtocolException;
@@ -38,22 +40,38 @@ import java.util.List;
  *
  */
 public class ThreeGPPNetworkElement extends ANQPElement {
+    private static final String TAG = "ThreeGPPNetworkElement";
+
     /**
      * The expected protocol version number of the Generic container User Data (GUD).
      */
     @VisibleForTesting
     public static final int GUD_VERSION_1 = 0;
 
-    private final List<CellularNetwork> mNetworks;
+    /**
+     * Raw IEIs of a parsed element, which are only decoded when needed.  Null for an element
+     * created from a list of cellular networks.
+     */
+    private final ByteBuffer mPayload;
+    // Decoded lazily, and possibly on several threads. Decoding twice is harmless, since the
+    // decoded list is never modified once published.
+    private volatile List<CellularNetwork> mNetworks;
 
     @VisibleForTesting
     public ThreeGPPNetworkElement(List<CellularNetwork> networks) {
         super(Constants.ANQPElementType.ANQP3GPPNetwork);
+        mPayload = null;
         mNetworks = networks;
     }
 
+    private ThreeGPPNetworkElement(ByteBuffer payload) {
+        super(Constants.ANQPElementType.ANQP3GPPNetwork);
+        mPayload = payload;
+    }
+
     /**
-     * Parse a ThreeGPPNetworkElement from the given buffer.
+     * Parse a ThreeGPPNetworkElement from the given buffer.  The payload is only validated
+     * here, the cellular networks are decoded from it when they are needed.
      *
      * @param payload The byte buffer to read from
      * @return {@link ThreeGPPNetworkElement}
@@ -75,19 +93,39 @@ public class ThreeGPPNetworkElement extends ANQPElement {
                     + " bufferSize=" + payload.remaining());
         }
 
-        // Parse each IEI (Information Element Identity) content.
-        List<CellularNetwork> networks = new ArrayList<>();
+        // Verify each IEI (Information Element Identity) content.
+        ByteBuffer data = payload.slice();
+        data.limit(length);
         while (payload.hasRemaining()) {
-            CellularNetwork network = CellularNetwork.parse(payload);
-            if (network != null) {
-                networks.add(network);
-            }
+            CellularNetwork.skip(payload);
         }
-        return new ThreeGPPNetworkElement(networks);
+        return new ThreeGPPNetworkElement(data.asReadOnlyBuffer());
     }
 
     public List<CellularNetwork> getNetworks() {
-        return Collections.unmodifiableList(mNetworks);
+        return Collections.unmodifiableList(getNetworkList());
+    }
+
+    private List<CellularNetwork> getNetworkList() {
+        List<CellularNetwork> networks = mNetworks;
+        if (networks == null) {
+            networks = new ArrayList<>();
+            ByteBuffer payload = mPayload.duplicate();
+            try {
+                while (payload.hasRemaining()) {
+                    CellularNetwork network = CellularNetwork.parse(payload);
+                    if (network != null) {
+                        networks.add(network);
+                    }
+                }
+            } catch (ProtocolException | BufferUnderflowException e) {
+                // Not expected, the payload is validated when the element is parsed.
+                Log.e(TAG, "Failed to decode the cellular networks: " + e);
+                networks.clear();
+            }
+            mNetworks = networks;
+        }
+        return networks;
     }
 
     @Override
@@ -99,17 +137,17 @@ public class ThreeGPPNetworkElement extends ANQPElement {
             return false;
         }
         ThreeGPPNetworkElement that = (ThreeGPPNetworkElement) thatObject;
-        return mNetworks.equals(that.mNetworks);
+        return getNetworkList().equals(that.getNetworkList());
 
     }
 
     @Override
     public int hashCode() {
-        return mNetworks.hashCode();
+        return getNetworkList().hashCode();
     }
 
     @Override
     public String toString() {
-        return "ThreeGPPNetwork{mNetworks=" + mNetworks + "}";
+        return "ThreeGPPNetwork{mNetworks=" + getNetworkList() + "}";
     }
 }
@@ -17,6 +17,7 @@
 package com.android.server.wifi.hotspot2.anqp.eap;
 
 import com.android.internal.annotations.VisibleForTesting;
+import com.android.server.wifi.ByteBufferReader;
 
 import java.net.ProtocolException;
 import java.nio.BufferUnderflowException;
@@ -105,6 +106,67 @@ public class EAPMethod {
         }
     }
 
+    /**
+     * Validate a EAPMethod in the given buffer and advance the buffer past it, without decoding
+     * its authentication parameters.  The same checks as {@link #parse} are applied.
+     *
+     * @param payload The byte buffer to read from
+     * @throws ProtocolException
+     * @throws BufferUnderflowException
+     */
+    public static void skip(ByteBuffer payload) throws ProtocolException {
+        // Read and verify the length field.
+        int length = payload.get() & 0xFF;
+        if (length > payload.remaining()) {
+            throw new ProtocolException("Invalid data length: " + length);
+        }
+
+        payload.get();     // Skip the EAP method ID
+        int authCount = payload.get() & 0xFF;
+        while (authCount > 0) {
+            skipAuthParam(payload);
+            authCount--;
+        }
+    }
+
+    /**
+     * Validate a AuthParam in the given buffer and advance the buffer past it.
+     *
+     * @param payload The byte buffer to read from
+     * @throws BufferUnderflowException
+     * @throws ProtocolException
+     */
+    private static void skipAuthParam(ByteBuffer payload) throws ProtocolException {
+        int authID = payload.get() & 0xFF;
+        int length = payload.get() & 0xFF;
+        int expectedLength;
+        switch (authID) {
+            case AuthParam.PARAM_TYPE_EXPANDED_EAP_METHOD:
+            case AuthParam.PARAM_TYPE_EXPANDED_INNER_EAP_METHOD:
+                expectedLength = ExpandedEAPMethod.EXPECTED_LENGTH_VALUE;
+                break;
+            case AuthParam.PARAM_TYPE_NON_EAP_INNER_AUTH_TYPE:
+                expectedLength = NonEAPInnerAuth.EXPECTED_LENGTH_VALUE;
+                break;
+            case AuthParam.PARAM_TYPE_INNER_AUTH_EAP_METHOD_TYPE:
+                expectedLength = InnerAuthEAP.EXPECTED_LENGTH_VALUE;
+                break;
+            case AuthParam.PARAM_TYPE_CREDENTIAL_TYPE:
+            case AuthParam.PARAM_TYPE_TUNNELED_EAP_METHOD_CREDENTIAL_TYPE:
+                expectedLength = CredentialType.EXPECTED_LENGTH_VALUE;
+                break;
+            case AuthParam.PARAM_TYPE_VENDOR_SPECIFIC:
+                expectedLength = length;
+                break;
+            default:
+                throw new ProtocolException("Unknow Auth Type ID: " + authID);
+        }
+        if (length != expectedLength) {
+            throw new ProtocolException("Invalid length: " + length);
+        }
+        ByteBufferReader.skip(payload, length);
+    }
+
     /**
      * Add an AuthParam to a map of authentication parameters.  It is possible to have
      * multiple authentication parameters for the same type.
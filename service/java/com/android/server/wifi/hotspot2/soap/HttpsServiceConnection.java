@@ -41,7 +41,11 @@ import javax.net.ssl.SSLSocketFactory;
 public class HttpsServiceConnection implements ServiceConnection {
     // TODO(117906601): find an optimal value for a connection timeout
     public static final int DEFAULT_TIMEOUT_MS  = 5000; // 5 seconds
+    // Maximum number of unread response bytes read when releasing the connection. If there are
+    // more, the socket is closed rather than kept alive.
+    private static final int MAX_DRAIN_BYTES = 64 * 1024;
     private HttpsURLConnection mConnection;
+    private InputStream mResponseStream;
 
     public HttpsServiceConnection(Network network, URL url) throws IOException {
         mConnection = (HttpsURLConnection) network.openConnection(url);
@@ -109,12 +113,43 @@ public class HttpsServiceConnection implements ServiceConnection {
 
     @Override
     public InputStream openInputStream() throws IOException {
-        return mConnection.getInputStream();
+        mResponseStream = mConnection.getInputStream();
+        return mResponseStream;
     }
 
     @Override
     public InputStream getErrorStream() {
-        return mConnection.getErrorStream();
+        mResponseStream = mConnection.getErrorStream();
+        return mResponseStream;
+    }
+
+    /**
+     * Releases the connection once the exchange is done. Unlike {@link #disconnect()}, this lets
+     * the underlying keep-alive socket and its TLS session be reused by the next request to the
+     * same server: the rest of the response body is read and closed, which returns the socket to
+     * the connection pool. The connection is only disconnected if the response couldn't be fully
+     * read.
+     */
+    public void release() {
+        boolean fullyRead = false;
+        if (mResponseStream != null) {
+            try {
+                byte[] buf = new byte[8192];
+                int drained = 0;
+                int rd = 0;
+                while (drained < MAX_DRAIN_BYTES && (rd = mResponseStream.read(buf)) != -1) {
+                    drained += rd;
+                }
+                fullyRead = rd == -1;
+                mResponseStream.close();
+            } catch (IOException e) {
+                fullyRead = false;
+            }
+            mResponseStream = null;
+        }
+        if (!fullyRead) {
+            mConnection.disconnect();
+        }
     }
 
     @Override
@@ -54,6 +54,7 @@ import android.net.wifi.p2p.IWifiP2pManager;
 import android.net.wifi.p2p.WifiP2pConfig;
 import android.net.wifi.p2p.WifiP2pDevice;
 import android.net.wifi.p2p.WifiP2pDeviceList;
+import android.net.wifi.p2p.WifiP2pDeviceListDelta;
 import android.net.wifi.p2p.WifiP2pGroup;
 import android.net.wifi.p2p.WifiP2pGroupList;
 import android.net.wifi.p2p.WifiP2pGroupList.GroupDeleteListener;
@@ -80,6 +81,7 @@ import android.os.UserManager;
 import android.os.WorkSource;
 import android.provider.Settings;
 import android.text.TextUtils;
+import android.util.ArraySet;
 import android.util.Log;
 import android.util.SparseArray;
 import android.view.KeyEvent;
@@ -119,13 +121,16 @@ import java.net.InetAddress;
 import java.net.NetworkInterface;
 import java.net.SocketException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
@@ -278,6 +283,18 @@ public class WifiP2pServiceImpl extends IWifiP2pManager.Stub {
 
     private static final int UPDATE_P2P_DISALLOWED_CHANNELS =   BASE + 36;
 
+    // Delayed message to end the peers changed broadcast rate limiting window
+    private static final int PEERS_CHANGED_BROADCAST_WINDOW_ENDED = BASE + 37;
+
+    // Minimum interval between two peers changed broadcasts triggered by peer discovery. Peers
+    // found or lost within this interval are reported together in the next broadcast.
+    @VisibleForTesting
+    static final int PEERS_CHANGED_BROADCAST_MIN_INTERVAL_MS = 1000;
+
+    // Number of peer list generations for which the changed peers are kept to compute deltas.
+    @VisibleForTesting
+    static final int MAX_PEERS_DELTA_HISTORY = 16;
+
     public static final int ENABLED                         = 1;
     public static final int DISABLED                        = 0;
 
@@ -465,6 +482,7 @@ public class WifiP2pServiceImpl extends IWifiP2pManager.Stub {
                 case WifiP2pManager.REQUEST_NETWORK_INFO:
                 case WifiP2pManager.UPDATE_CHANNEL_INFO:
                 case WifiP2pManager.REQUEST_DEVICE_INFO:
+                case WifiP2pManager.REQUEST_PEERS_DELTA:
                     mP2pStateMachine.sendMessage(Message.obtain(msg));
                     break;
                 default:
@@ -834,7 +852,16 @@ public class WifiP2pServiceImpl extends IWifiP2pManager.Stub {
 
         private WifiP2pNative mWifiNative = mWifiInjector.getWifiP2pNative();
         private WifiP2pMonitor mWifiMonitor = mWifiInjector.getWifiP2pMonitor();
-        private final WifiP2pDeviceList mPeers = new WifiP2pDeviceList();
+        private final PeerList mPeers = new PeerList();
+        // Generation of |mPeers|, incremented each time a change to the peers is published.
+        private long mPeersGeneration = 0;
+        // Addresses of the peers changed by each of the last generations, oldest first.
+        private final ArrayDeque<Set<String>> mRecentChangedPeerAddresses = new ArrayDeque<>();
+        // Whether a peers changed broadcast was sent less than
+        // |PEERS_CHANGED_BROADCAST_MIN_INTERVAL_MS| ago.
+        private boolean mPeersChangedBroadcastWindowActive = false;
+        // Whether a peers changed broadcast was deferred until the end of the current window.
+        private boolean mPeersChangedBroadcastPending = false;
         private String mInterfaceName;
 
         private List<CoexUnsafeChannel> mCoexUnsafeChannels = new ArrayList<>();
@@ -1371,6 +1398,29 @@ public class WifiP2pServiceImpl extends IWifiP2pManager.Stub {
                         replyToMessage(message, WifiP2pManager.RESPONSE_DEVICE_INFO,
                                 maybeEraseOwnDeviceAddress(mThisDevice, message.sendingUid));
                         break;
+                    case WifiP2pManager.REQUEST_PEERS_DELTA:
+                        if (!mWifiPermissionsUtil.checkNetworkSettingsPermission(
+                                message.sendingUid)) {
+                            loge("Permission violation - no NETWORK_SETTING permission,"
+                                    + " uid = " + message.sendingUid);
+                            replyToMessage(message, WifiP2pManager.RESPONSE_PEERS_DELTA,
+                                    new WifiP2pDeviceListDelta(-1, true, new ArrayList<>(),
+                                            new ArrayList<>()));
+                            break;
+                        }
+                        long sinceGeneration = message.obj instanceof Bundle
+                                ? ((Bundle) message.obj).getLong(
+                                        WifiP2pManager.EXTRA_PEERS_SINCE_GENERATION, -1)
+                                : -1;
+                        replyToMessage(message, WifiP2pManager.RESPONSE_PEERS_DELTA,
+                                getPeersDelta(sinceGeneration));
+                        break;
+                    case PEERS_CHANGED_BROADCAST_WINDOW_ENDED:
+                        mPeersChangedBroadcastWindowActive = false;
+                        if (mPeersChangedBroadcastPending) {
+                            sendPeersChangedBroadcast();
+                        }
+                        break;
                     default:
                         loge("Unhandled message " + message);
                         return NOT_HANDLED;
@@ -1788,7 +1838,7 @@ public class WifiP2pServiceImpl extends IWifiP2pManager.Stub {
                         WifiP2pDevice device = (WifiP2pDevice) message.obj;
                         if (mThisDevice.deviceAddress.equals(device.deviceAddress)) break;
                         mPeers.updateSupplicantDetails(device);
-                        sendPeersChangedBroadcast();
+                        schedulePeersChangedBroadcast();
                         break;
                     case WifiP2pMonitor.P2P_DEVICE_LOST_EVENT:
                         if (message.obj == null) {
@@ -1799,7 +1849,7 @@ public class WifiP2pServiceImpl extends IWifiP2pManager.Stub {
                         // Gets current details for the one removed
                         device = mPeers.remove(device.deviceAddress);
                         if (device != null) {
-                            sendPeersChangedBroadcast();
+                            schedulePeersChangedBroadcast();
                         }
                         break;
                     case WifiP2pManager.ADD_LOCAL_SERVICE:
@@ -3248,6 +3298,7 @@ public class WifiP2pServiceImpl extends IWifiP2pManager.Stub {
             pw.println("mGroup " + mGroup);
             pw.println("mSavedPeerConfig " + mSavedPeerConfig);
             pw.println("mGroups" + mGroups);
+            pw.println("mPeersGeneration " + mPeersGeneration);
             pw.println();
         }
 
@@ -3301,13 +3352,82 @@ public class WifiP2pServiceImpl extends IWifiP2pManager.Stub {
             sendBroadcastMultiplePermissions(intent);
         }
 
+        /**
+         * Send the peers changed broadcast, unless one was sent less than
+         * |PEERS_CHANGED_BROADCAST_MIN_INTERVAL_MS| ago, in which case it is sent at the end of
+         * that interval. Used for peer discovery events, which may come in bursts.
+         */
+        private void schedulePeersChangedBroadcast() {
+            if (mPeersChangedBroadcastWindowActive) {
+                mPeersChangedBroadcastPending = true;
+                return;
+            }
+            sendPeersChangedBroadcast();
+        }
+
         private void sendPeersChangedBroadcast() {
+            publishPeersGeneration();
+            mPeersChangedBroadcastPending = false;
+            if (!mPeersChangedBroadcastWindowActive) {
+                mPeersChangedBroadcastWindowActive = true;
+                sendMessageDelayed(PEERS_CHANGED_BROADCAST_WINDOW_ENDED,
+                        PEERS_CHANGED_BROADCAST_MIN_INTERVAL_MS);
+            }
             final Intent intent = new Intent(WifiP2pManager.WIFI_P2P_PEERS_CHANGED_ACTION);
             intent.putExtra(WifiP2pManager.EXTRA_P2P_DEVICE_LIST, new WifiP2pDeviceList(mPeers));
             intent.addFlags(Intent.FLAG_RECEIVER_REGISTERED_ONLY_BEFORE_BOOT);
             sendBroadcastMultiplePermissions(intent);
         }
 
+        /**
+         * Start a new peer list generation if the peers changed since the last one.
+         */
+        private void publishPeersGeneration() {
+            Set<String> changedAddresses = mPeers.takeChangedAddresses();
+            if (changedAddresses == null) return;
+            mPeersGeneration++;
+            mRecentChangedPeerAddresses.addLast(changedAddresses);
+            if (mRecentChangedPeerAddresses.size() > MAX_PEERS_DELTA_HISTORY) {
+                mRecentChangedPeerAddresses.removeFirst();
+            }
+        }
+
+        /**
+         * Get the changes to the peers since |sinceGeneration|, or all the peers if the changes
+         * since that generation are not known anymore.
+         */
+        private WifiP2pDeviceListDelta getPeersDelta(long sinceGeneration) {
+            publishPeersGeneration();
+            long oldestKnownGeneration = mPeersGeneration - mRecentChangedPeerAddresses.size();
+            if (sinceGeneration < oldestKnownGeneration || sinceGeneration > mPeersGeneration) {
+                List<WifiP2pDevice> devices = new ArrayList<>();
+                for (WifiP2pDevice device : mPeers.getDeviceList()) {
+                    devices.add(new WifiP2pDevice(device));
+                }
+                return new WifiP2pDeviceListDelta(mPeersGeneration, true, devices,
+                        new ArrayList<>());
+            }
+            Set<String> changedAddresses = new ArraySet<>();
+            long generation = mPeersGeneration;
+            Iterator<Set<String>> it = mRecentChangedPeerAddresses.descendingIterator();
+            while (generation > sinceGeneration && it.hasNext()) {
+                changedAddresses.addAll(it.next());
+                generation--;
+            }
+            List<WifiP2pDevice> updatedDevices = new ArrayList<>();
+            List<String> removedAddresses = new ArrayList<>();
+            for (String address : changedAddresses) {
+                WifiP2pDevice device = mPeers.get(address);
+                if (device != null) {
+                    updatedDevices.add(new WifiP2pDevice(device));
+                } else {
+                    removedAddresses.add(address);
+                }
+            }
+            return new WifiP2pDeviceListDelta(mPeersGeneration, false, updatedDevices,
+                    removedAddresses);
+        }
+
         private void sendP2pConnectionChangedBroadcast() {
             if (mVerboseLoggingEnabled) logd("sending p2p connection changed broadcast");
             Intent intent = new Intent(WifiP2pManager.WIFI_P2P_CONNECTION_CHANGED_ACTION);
@@ -4624,6 +4744,117 @@ public class WifiP2pServiceImpl extends IWifiP2pManager.Stub {
         }
     }
 
+    /**
+     * Peer list which records the addresses of the peers changed through it, so that the changes
+     * can be published without comparing every peer with its previously published state.
+     */
+    private static class PeerList extends WifiP2pDeviceList {
+        // Addresses of the peers changed since the last call to takeChangedAddresses().
+        private Set<String> mChangedAddresses = new ArraySet<>();
+
+        /**
+         * Returns the addresses of the peers added, updated or removed since the last call, or
+         * null if there are none.
+         */
+        public Set<String> takeChangedAddresses() {
+            if (mChangedAddresses.isEmpty()) return null;
+            Set<String> changedAddresses = mChangedAddresses;
+            mChangedAddresses = new ArraySet<>();
+            return changedAddresses;
+        }
+
+        @Override
+        public boolean clear() {
+            for (WifiP2pDevice device : getDeviceList()) {
+                mChangedAddresses.add(device.deviceAddress);
+            }
+            return super.clear();
+        }
+
+        @Override
+        public void update(WifiP2pDevice device) {
+            WifiP2pDevice d = find(device);
+            int oldStatus = d != null ? d.status : WifiP2pDevice.UNAVAILABLE;
+            // Records the change of the other details, if any.
+            super.update(device);
+            if (d != null && d.status != oldStatus) {
+                mChangedAddresses.add(device.deviceAddress);
+            }
+        }
+
+        @Override
+        public void updateSupplicantDetails(WifiP2pDevice device) {
+            WifiP2pDevice d = find(device);
+            boolean changed = d == null || !hasSameSupplicantDetails(d, device);
+            super.updateSupplicantDetails(device);
+            if (changed) {
+                mChangedAddresses.add(device.deviceAddress);
+            }
+        }
+
+        @Override
+        public void updateGroupCapability(String deviceAddress, int groupCapab) {
+            WifiP2pDevice d = TextUtils.isEmpty(deviceAddress) ? null : get(deviceAddress);
+            super.updateGroupCapability(deviceAddress, groupCapab);
+            if (d != null && d.groupCapability != groupCapab) {
+                mChangedAddresses.add(deviceAddress);
+            }
+        }
+
+        @Override
+        public void updateStatus(String deviceAddress, int status) {
+            WifiP2pDevice d = TextUtils.isEmpty(deviceAddress) ? null : get(deviceAddress);
+            int oldStatus = d != null ? d.status : status;
+            super.updateStatus(deviceAddress, status);
+            if (oldStatus != status) {
+                mChangedAddresses.add(deviceAddress);
+            }
+        }
+
+        @Override
+        public boolean remove(WifiP2pDevice device) {
+            boolean removed = super.remove(device);
+            if (removed) {
+                mChangedAddresses.add(device.deviceAddress);
+            }
+            return removed;
+        }
+
+        @Override
+        public WifiP2pDevice remove(String deviceAddress) {
+            WifiP2pDevice removed = super.remove(deviceAddress);
+            if (removed != null) {
+                mChangedAddresses.add(deviceAddress);
+            }
+            return removed;
+        }
+
+        private WifiP2pDevice find(WifiP2pDevice device) {
+            if (device == null || TextUtils.isEmpty(device.deviceAddress)) return null;
+            return get(device.deviceAddress);
+        }
+
+        private static boolean hasSameSupplicantDetails(WifiP2pDevice d1, WifiP2pDevice d2) {
+            return Objects.equals(d1.deviceName, d2.deviceName)
+                    && Objects.equals(d1.primaryDeviceType, d2.primaryDeviceType)
+                    && Objects.equals(d1.secondaryDeviceType, d2.secondaryDeviceType)
+                    && d1.wpsConfigMethodsSupported == d2.wpsConfigMethodsSupported
+                    && d1.deviceCapability == d2.deviceCapability
+                    && d1.groupCapability == d2.groupCapability
+                    && hasSameWfdInfo(d1.wfdInfo, d2.wfdInfo);
+        }
+
+        private static boolean hasSameWfdInfo(WifiP2pWfdInfo info1, WifiP2pWfdInfo info2) {
+            if (info1 == info2) return true;
+            if (info1 == null || info2 == null) return false;
+            return info1.isEnabled() == info2.isEnabled()
+                    && info1.getDeviceInfo() == info2.getDeviceInfo()
+                    && info1.getR2DeviceInfo() == info2.getR2DeviceInfo()
+                    && info1.getControlPort() == info2.getControlPort()
+                    && info1.getMaxThroughput() == info2.getMaxThroughput();
+        }
+    }
+
     /**
      * Information about a particular client and we track the service discovery requests
      * and the local services registered by the client.
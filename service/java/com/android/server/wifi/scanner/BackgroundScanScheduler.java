@@ -55,6 +55,11 @@ import java.util.Set;
  * <p>Finally, the scheduler creates a WifiNative.ScanSettings from the list of buckets which may be
  * passed through the Wifi HAL.</p>
  *
+ * <p>When a single request is added or removed, {@link #updateScheduleForAddedRequest} and
+ * {@link #updateScheduleForRemovedRequest} try to update the existing buckets in place and only
+ * fall back to rebuilding the whole schedule if the change cannot be applied locally (e.g. the
+ * request needs a new bucket, or the last full build hit the hardware bucket/channel limits).</p>
+ *
  * <p>This class is not thread safe.</p>
  */
 public class BackgroundScanScheduler {
@@ -365,6 +370,20 @@ public class BackgroundScanScheduler {
     // This keeps track of the settings to the max time period bucket to which it was scheduled.
     private final Map<ScanSettings, Bucket> mSettingsToScheduledBucket = new HashMap<>();
 
+    // State used to apply single request changes to the current schedule without rebuilding it.
+    // The buckets backing the current schedule, in schedule order.
+    private List<Bucket> mScheduledBuckets = new ArrayList<>();
+    // Requests that were split across multiple buckets by the last full build. Their pieces are
+    // copies, so they can't be removed in place.
+    private final Set<ScanSettings> mSplitSettings = new ArraySet<>();
+    // Whether the current buckets can be updated in place. This is false if the last full build
+    // had to compact or split buckets to fit the hardware limits, or was explicitly invalidated.
+    private boolean mIncrementalUpdateAllowed = false;
+    // ChannelHelper#getChannelsVersion() at the time of the last full build.
+    private int mChannelsVersion;
+    private int mFullUpdateCount = 0;
+    private int mIncrementalUpdateCount = 0;
+
     public BackgroundScanScheduler(ChannelHelper channelHelper) {
         mChannelHelper = channelHelper;
         createSchedule(new ArrayList<Bucket>(), getMaxChannelsPerBucket());
@@ -374,20 +393,162 @@ public class BackgroundScanScheduler {
      * Updates the schedule from the given set of requests.
      */
     public void updateSchedule(@NonNull Collection<ScanSettings> requests) {
+        mFullUpdateCount++;
+        mSplitSettings.clear();
+        mChannelsVersion = mChannelHelper.getChannelsVersion();
+
         // create initial schedule
         mBuckets.clearAll();
         for (ScanSettings request : requests) {
             addScanToBuckets(request);
         }
 
-        compactBuckets(getMaxBuckets());
+        boolean compacted = compactBuckets(getMaxBuckets());
 
         List<Bucket> bucketList = optimizeBuckets();
+        // Must be checked before fixBuckets() since it shrinks the channels of split buckets.
+        boolean exceedsMaxChannels =
+                exceedsMaxChannelsPerBucket(bucketList, getMaxChannelsPerBucket());
 
         List<Bucket> fixedBucketList =
                 fixBuckets(bucketList, getMaxBuckets(), getMaxChannelsPerBucket());
 
         createSchedule(fixedBucketList, getMaxChannelsPerBucket());
+
+        mScheduledBuckets = fixedBucketList;
+        mIncrementalUpdateAllowed = !compacted && !exceedsMaxChannels
+                && !mBuckets.isActive(EXPONENTIAL_BACK_OFF_BUCKET_IDX);
+    }
+
+    /**
+     * Updates the schedule after |addedRequest| was added to the set of requests. If the request
+     * is fully covered by an existing bucket scanning at least as often as requested, the
+     * request is added to that bucket in place, otherwise the schedule is rebuilt from
+     * |requests|.
+     *
+     * @param addedRequest the newly added request.
+     * @param requests all requests, including |addedRequest|.
+     */
+    public void updateScheduleForAddedRequest(@NonNull ScanSettings addedRequest,
+            @NonNull Collection<ScanSettings> requests) {
+        Bucket targetBucket = null;
+        if (canUpdateIncrementally() && !isExponentialBackOffRequest(addedRequest)) {
+            int requestedPeriod = getRegularBucketPeriod(addedRequest);
+            for (Bucket bucket : mScheduledBuckets) {
+                if (bucket.period <= requestedPeriod
+                        && (targetBucket == null || bucket.period < targetBucket.period)
+                        && bucket.getChannelCollection().containsSettings(addedRequest)) {
+                    targetBucket = bucket;
+                }
+            }
+        }
+        if (targetBucket == null) {
+            updateSchedule(requests);
+            return;
+        }
+        mIncrementalUpdateCount++;
+        // The bucket already contains all the channels of the request, so the channel collection
+        // and hence the bucket layout is unchanged.
+        targetBucket.addSettings(addedRequest);
+        mSettingsToScheduledBucket.put(addedRequest, targetBucket);
+        createSchedule(mScheduledBuckets, getMaxChannelsPerBucket());
+    }
+
+    /**
+     * Updates the schedule after |removedRequest| was removed from the set of requests. If the
+     * request can be removed without changing the channels or the period of any bucket it is
+     * removed in place, otherwise the schedule is rebuilt from |requests|.
+     *
+     * @param removedRequest the request that was removed.
+     * @param requests all remaining requests.
+     */
+    public void updateScheduleForRemovedRequest(@NonNull ScanSettings removedRequest,
+            @NonNull Collection<ScanSettings> requests) {
+        if (!canUpdateIncrementally() || mSplitSettings.contains(removedRequest)
+                || !mSettingsToScheduledBucket.containsKey(removedRequest)) {
+            updateSchedule(requests);
+            return;
+        }
+        // A request may have been merged into more than one bucket. Make sure that it can be
+        // removed from all of them before modifying any.
+        List<Bucket> affectedBuckets = new ArrayList<>();
+        for (Bucket bucket : mScheduledBuckets) {
+            if (!bucket.getSettingsList().contains(removedRequest)) continue;
+            ChannelCollection remainingChannels = mChannelHelper.createChannelCollection();
+            // Requests may have been merged into this bucket from slower buckets, so the bucket
+            // must keep scanning at its period only if a remaining request asks for it.
+            boolean periodStillRequested = false;
+            for (ScanSettings settings : bucket.getSettingsList()) {
+                if (settings != removedRequest) {
+                    remainingChannels.addChannels(settings);
+                    if (getRegularBucketPeriod(settings) <= bucket.period) {
+                        periodStillRequested = true;
+                    }
+                }
+            }
+            if (!periodStillRequested || remainingChannels.isEmpty()
+                    || !remainingChannels.containsSettings(removedRequest)) {
+                updateSchedule(requests);
+                return;
+            }
+            affectedBuckets.add(bucket);
+        }
+        mIncrementalUpdateCount++;
+        for (Bucket bucket : affectedBuckets) {
+            bucket.removeSettings(removedRequest);
+        }
+        mSettingsToScheduledBucket.remove(removedRequest);
+        createSchedule(mScheduledBuckets, getMaxChannelsPerBucket());
+    }
+
+    /**
+     * Forces the next update to rebuild the whole schedule. Should be called if the requests
+     * passed to the last update were not actually scheduled.
+     */
+    public void invalidateIncrementalState() {
+        mIncrementalUpdateAllowed = false;
+    }
+
+    /**
+     * Returns the number of times the schedule was rebuilt from scratch.
+     */
+    public int getFullUpdateCount() {
+        return mFullUpdateCount;
+    }
+
+    /**
+     * Returns the number of times the schedule was updated in place.
+     */
+    public int getIncrementalUpdateCount() {
+        return mIncrementalUpdateCount;
+    }
+
+    private boolean canUpdateIncrementally() {
+        return mIncrementalUpdateAllowed
+                && mChannelsVersion == mChannelHelper.getChannelsVersion();
+    }
+
+    /**
+     * Returns the period of the regular bucket that |settings| would be assigned to by a full
+     * build of the schedule.
+     */
+    private static int getRegularBucketPeriod(ScanSettings settings) {
+        return PREDEFINED_BUCKET_PERIODS[
+                findBestRegularBucketIndex(settings.periodInMs, NUM_OF_REGULAR_BUCKETS)];
+    }
+
+    private static boolean isExponentialBackOffRequest(ScanSettings settings) {
+        return settings.maxPeriodInMs != 0 && settings.maxPeriodInMs != settings.periodInMs;
+    }
+
+    private static boolean exceedsMaxChannelsPerBucket(List<Bucket> bucketList,
+            int maxChannelsPerBucket) {
+        for (Bucket bucket : bucketList) {
+            if (bucket.getChannelCollection().getChannelSet().size() > maxChannelsPerBucket) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -492,7 +653,7 @@ public class BackgroundScanScheduler {
     private void addScanToBuckets(ScanSettings settings) {
         int bucketIndex;
 
-        if (settings.maxPeriodInMs != 0 && settings.maxPeriodInMs != settings.periodInMs) {
+        if (isExponentialBackOffRequest(settings)) {
             // exponential back off scan has a dedicated bucket
             bucketIndex = EXPONENTIAL_BACK_OFF_BUCKET_IDX;
         } else {
@@ -526,8 +687,10 @@ public class BackgroundScanScheduler {
     /**
      * Reduce the number of required buckets by reassigning lower priority buckets to the next
      * closest period bucket.
+     * @return true if any bucket had to be reassigned.
      */
-    private void compactBuckets(int maxBuckets) {
+    private boolean compactBuckets(int maxBuckets) {
+        boolean compacted = false;
         int maxRegularBuckets = maxBuckets;
 
         // reserve one bucket for exponential back off scan if there is
@@ -543,8 +706,10 @@ public class BackgroundScanScheduler {
                     mBuckets.getOrCreate(newBucketIndex).addSettings(scanRequest);
                 }
                 mBuckets.clear(i);
+                compacted = true;
             }
         }
+        return compacted;
     }
 
     /**
@@ -658,6 +823,7 @@ public class BackgroundScanScheduler {
                             createSplitSettings(remainingSplitSettings, targetBucketChannelCol);
                 }
                 targetBucket.addSettings(splitSettings.second);
+                mSplitSettings.add(originalSettings);
                 // Update the |remainingSplitSettings| to keep track of the remaining scan settings.
                 // The original settings could be split across multiple buckets.
                 remainingSplitSettings = splitSettings.first;
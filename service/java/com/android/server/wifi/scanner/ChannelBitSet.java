@@ -0,0 +1,359 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi.scanner;
+
+import android.annotation.NonNull;
+import android.util.ArraySet;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A set of channel frequencies stored as a dense bitset, with one bit per frequency slot in the
+ * 2.4, 5, 6 and 60 GHz bands. Union, intersection and containment operate a word at a time and do
+ * not allocate.
+ *
+ * Slots are laid out as follows:
+ * - 2.4 GHz: one slot per MHz from 2400 to 2500 MHz.
+ * - 5 GHz: one slot per 5 MHz from 4900 to 5900 MHz.
+ * - 6 GHz: one slot per 5 MHz from 5925 to 7125 MHz.
+ * - 60 GHz: one slot per 2160 MHz channel from 58320 to 69120 MHz.
+ * Frequencies that don't map to a slot are kept in a separate (rarely used) set, so any frequency
+ * may be stored.
+ *
+ * This class is not thread safe.
+ */
+public class ChannelBitSet {
+    private static final int BAND_24_GHZ_FIRST_FREQ = 2400;
+    private static final int BAND_24_GHZ_LAST_FREQ = 2500;
+    private static final int BAND_24_GHZ_STEP = 1;
+    private static final int BAND_5_GHZ_FIRST_FREQ = 4900;
+    private static final int BAND_5_GHZ_LAST_FREQ = 5900;
+    private static final int BAND_5_GHZ_STEP = 5;
+    private static final int BAND_6_GHZ_FIRST_FREQ = 5925;
+    private static final int BAND_6_GHZ_LAST_FREQ = 7125;
+    private static final int BAND_6_GHZ_STEP = 5;
+    private static final int BAND_60_GHZ_FIRST_FREQ = 58320;
+    private static final int BAND_60_GHZ_LAST_FREQ = 69120;
+    private static final int BAND_60_GHZ_STEP = 2160;
+
+    private static final int BAND_24_GHZ_FIRST_SLOT = 0;
+    private static final int BAND_5_GHZ_FIRST_SLOT = BAND_24_GHZ_FIRST_SLOT
+            + (BAND_24_GHZ_LAST_FREQ - BAND_24_GHZ_FIRST_FREQ) / BAND_24_GHZ_STEP + 1;
+    private static final int BAND_6_GHZ_FIRST_SLOT = BAND_5_GHZ_FIRST_SLOT
+            + (BAND_5_GHZ_LAST_FREQ - BAND_5_GHZ_FIRST_FREQ) / BAND_5_GHZ_STEP + 1;
+    private static final int BAND_60_GHZ_FIRST_SLOT = BAND_6_GHZ_FIRST_SLOT
+            + (BAND_6_GHZ_LAST_FREQ - BAND_6_GHZ_FIRST_FREQ) / BAND_6_GHZ_STEP + 1;
+    private static final int NUM_SLOTS = BAND_60_GHZ_FIRST_SLOT
+            + (BAND_60_GHZ_LAST_FREQ - BAND_60_GHZ_FIRST_FREQ) / BAND_60_GHZ_STEP + 1;
+    private static final int NUM_WORDS = (NUM_SLOTS + Long.SIZE - 1) / Long.SIZE;
+
+    private final long[] mWords = new long[NUM_WORDS];
+    // Frequencies which don't map to a slot. Allocated on first use.
+    private ArraySet<Integer> mOtherChannels = null;
+    // Read only view of this set returned by asSet(). Allocated on first use.
+    private Set<Integer> mSetView = null;
+
+    /**
+     * Returns the slot for the given frequency or -1 if the frequency doesn't map to a slot.
+     */
+    static int frequencyToSlot(int frequency) {
+        if (frequency >= BAND_24_GHZ_FIRST_FREQ && frequency <= BAND_24_GHZ_LAST_FREQ) {
+            return BAND_24_GHZ_FIRST_SLOT + (frequency - BAND_24_GHZ_FIRST_FREQ);
+        }
+        if (frequency >= BAND_5_GHZ_FIRST_FREQ && frequency <= BAND_5_GHZ_LAST_FREQ) {
+            int offset = frequency - BAND_5_GHZ_FIRST_FREQ;
+            if (offset % BAND_5_GHZ_STEP != 0) return -1;
+            return BAND_5_GHZ_FIRST_SLOT + offset / BAND_5_GHZ_STEP;
+        }
+        if (frequency >= BAND_6_GHZ_FIRST_FREQ && frequency <= BAND_6_GHZ_LAST_FREQ) {
+            int offset = frequency - BAND_6_GHZ_FIRST_FREQ;
+            if (offset % BAND_6_GHZ_STEP != 0) return -1;
+            return BAND_6_GHZ_FIRST_SLOT + offset / BAND_6_GHZ_STEP;
+        }
+        if (frequency >= BAND_60_GHZ_FIRST_FREQ && frequency <= BAND_60_GHZ_LAST_FREQ) {
+            int offset = frequency - BAND_60_GHZ_FIRST_FREQ;
+            if (offset % BAND_60_GHZ_STEP != 0) return -1;
+            return BAND_60_GHZ_FIRST_SLOT + offset / BAND_60_GHZ_STEP;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the frequency stored in the given slot.
+     */
+    static int slotToFrequency(int slot) {
+        if (slot >= BAND_60_GHZ_FIRST_SLOT) {
+            return BAND_60_GHZ_FIRST_FREQ + (slot - BAND_60_GHZ_FIRST_SLOT) * BAND_60_GHZ_STEP;
+        } else if (slot >= BAND_6_GHZ_FIRST_SLOT) {
+            return BAND_6_GHZ_FIRST_FREQ + (slot - BAND_6_GHZ_FIRST_SLOT) * BAND_6_GHZ_STEP;
+        } else if (slot >= BAND_5_GHZ_FIRST_SLOT) {
+            return BAND_5_GHZ_FIRST_FREQ + (slot - BAND_5_GHZ_FIRST_SLOT) * BAND_5_GHZ_STEP;
+        } else {
+            return BAND_24_GHZ_FIRST_FREQ + (slot - BAND_24_GHZ_FIRST_SLOT) * BAND_24_GHZ_STEP;
+        }
+    }
+
+    /**
+     * Add a frequency to the set.
+     */
+    public void add(int frequency) {
+        int slot = frequencyToSlot(frequency);
+        if (slot >= 0) {
+            mWords[slot / Long.SIZE] |= 1L << (slot % Long.SIZE);
+        } else {
+            if (mOtherChannels == null) {
+                mOtherChannels = new ArraySet<>();
+            }
+            mOtherChannels.add(frequency);
+        }
+    }
+
+    /**
+     * @return true if the set contains the frequency.
+     */
+    public boolean contains(int frequency) {
+        int slot = frequencyToSlot(frequency);
+        if (slot >= 0) {
+            return (mWords[slot / Long.SIZE] & (1L << (slot % Long.SIZE))) != 0;
+        }
+        return mOtherChannels != null && mOtherChannels.contains(frequency);
+    }
+
+    /**
+     * Adds all the frequencies of |other| to this set.
+     */
+    public void addAll(@NonNull ChannelBitSet other) {
+        for (int i = 0; i < NUM_WORDS; i++) {
+            mWords[i] |= other.mWords[i];
+        }
+        if (other.mOtherChannels != null && !other.mOtherChannels.isEmpty()) {
+            if (mOtherChannels == null) {
+                mOtherChannels = new ArraySet<>();
+            }
+            mOtherChannels.addAll(other.mOtherChannels);
+        }
+    }
+
+    /**
+     * Removes all the frequencies which are not in |other| from this set.
+     */
+    public void retainAll(@NonNull ChannelBitSet other) {
+        for (int i = 0; i < NUM_WORDS; i++) {
+            mWords[i] &= other.mWords[i];
+        }
+        if (mOtherChannels != null) {
+            if (other.mOtherChannels == null) {
+                mOtherChannels.clear();
+            } else {
+                mOtherChannels.retainAll(other.mOtherChannels);
+            }
+        }
+    }
+
+    /**
+     * @return true if this set contains all the frequencies of |other|.
+     */
+    public boolean containsAll(@NonNull ChannelBitSet other) {
+        for (int i = 0; i < NUM_WORDS; i++) {
+            if ((other.mWords[i] & ~mWords[i]) != 0) {
+                return false;
+            }
+        }
+        if (other.mOtherChannels == null || other.mOtherChannels.isEmpty()) {
+            return true;
+        }
+        return mOtherChannels != null && mOtherChannels.containsAll(other.mOtherChannels);
+    }
+
+    /**
+     * @return true if this set and |other| have at least one frequency in common.
+     */
+    public boolean intersects(@NonNull ChannelBitSet other) {
+        for (int i = 0; i < NUM_WORDS; i++) {
+            if ((other.mWords[i] & mWords[i]) != 0) {
+                return true;
+            }
+        }
+        if (mOtherChannels == null || other.mOtherChannels == null) {
+            return false;
+        }
+        for (int i = 0; i < other.mOtherChannels.size(); i++) {
+            if (mOtherChannels.contains(other.mOtherChannels.valueAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Remove all frequencies from the set.
+     */
+    public void clear() {
+        Arrays.fill(mWords, 0);
+        if (mOtherChannels != null) {
+            mOtherChannels.clear();
+        }
+    }
+
+    /**
+     * @return true if the set contains no frequencies.
+     */
+    public boolean isEmpty() {
+        for (int i = 0; i < NUM_WORDS; i++) {
+            if (mWords[i] != 0) {
+                return false;
+            }
+        }
+        return mOtherChannels == null || mOtherChannels.isEmpty();
+    }
+
+    /**
+     * @return the number of frequencies in the set.
+     */
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < NUM_WORDS; i++) {
+            size += Long.bitCount(mWords[i]);
+        }
+        if (mOtherChannels != null) {
+            size += mOtherChannels.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return the frequencies in the set, in increasing order.
+     */
+    public @NonNull int[] toArray() {
+        int[] frequencies = new int[size()];
+        int index = 0;
+        for (int i = 0; i < NUM_WORDS; i++) {
+            long word = mWords[i];
+            while (word != 0) {
+                int bit = Long.numberOfTrailingZeros(word);
+                frequencies[index++] = slotToFrequency(i * Long.SIZE + bit);
+                word &= word - 1;
+            }
+        }
+        if (mOtherChannels != null && !mOtherChannels.isEmpty()) {
+            for (int i = 0; i < mOtherChannels.size(); i++) {
+                frequencies[index++] = mOtherChannels.valueAt(i);
+            }
+            Arrays.sort(frequencies);
+        }
+        return frequencies;
+    }
+
+    /**
+     * @return a new Set containing the frequencies in this set.
+     */
+    public @NonNull Set<Integer> toSet() {
+        int[] frequencies = toArray();
+        ArraySet<Integer> set = new ArraySet<>(frequencies.length);
+        for (int frequency : frequencies) {
+            set.add(frequency);
+        }
+        return set;
+    }
+
+    /**
+     * @return a read only Set view of the frequencies in this set, which reflects later changes
+     * to this set. Unlike {@link #toSet()}, this does not copy the frequencies.
+     */
+    public @NonNull Set<Integer> asSet() {
+        if (mSetView == null) {
+            mSetView = new SetView();
+        }
+        return mSetView;
+    }
+
+    private class SetView extends AbstractSet<Integer> {
+        @Override
+        public int size() {
+            return ChannelBitSet.this.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return ChannelBitSet.this.isEmpty();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Integer && ChannelBitSet.this.contains((Integer) o);
+        }
+
+        @Override
+        public Iterator<Integer> iterator() {
+            return new Iterator<Integer>() {
+                private int mWordIndex = 0;
+                private long mWord = mWords[0];
+                private int mOtherIndex = 0;
+
+                @Override
+                public boolean hasNext() {
+                    while (mWord == 0 && mWordIndex < NUM_WORDS - 1) {
+                        mWord = mWords[++mWordIndex];
+                    }
+                    return mWord != 0
+                            || (mOtherChannels != null && mOtherIndex < mOtherChannels.size());
+                }
+
+                @Override
+                public Integer next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    if (mWord != 0) {
+                        int bit = Long.numberOfTrailingZeros(mWord);
+                        mWord &= mWord - 1;
+                        return slotToFrequency(mWordIndex * Long.SIZE + bit);
+                    }
+                    return mOtherChannels.valueAt(mOtherIndex++);
+                }
+            };
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ChannelBitSet)) return false;
+        ChannelBitSet other = (ChannelBitSet) o;
+        return containsAll(other) && other.containsAll(this);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = Arrays.hashCode(mWords);
+        if (mOtherChannels != null) {
+            for (int i = 0; i < mOtherChannels.size(); i++) {
+                hash += mOtherChannels.valueAt(i);
+            }
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
@@ -89,6 +89,16 @@ public abstract class ChannelHelper {
         // default implementation does nothing
     }
 
+    /**
+     * Returns a value that changes whenever the channel information held by this object changes
+     * as a result of {@link #updateChannels()}. Callers caching state derived from a
+     * {@link ChannelCollection} can use this to detect that the state must be recomputed.
+     */
+    public int getChannelsVersion() {
+        // default implementation never changes channels
+        return 0;
+    }
+
     /**
      * Object that supports accumulation of channels and bands
      */
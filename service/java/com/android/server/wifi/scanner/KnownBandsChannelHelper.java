@@ -41,6 +41,7 @@ import com.android.server.wifi.proto.WifiStatsLog;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -64,9 +65,13 @@ public class KnownBandsChannelHelper extends ChannelHelper {
     public static final int BAND_6_GHZ_HIGH_END_FREQ = ScanResult.BAND_6_GHZ_END_FREQ_MHZ;
 
     private WifiScanner.ChannelSpec[][] mBandsToChannels;
+    // Same channels as |mBandsToChannels|, used for fast lookups and set operations.
+    private ChannelBitSet[] mBandsToChannelBits;
+    private int mChannelsVersion = 0;
 
     protected void setBandChannels(int[] channels2G, int[] channels5G, int[] channelsDfs,
             int[] channels6G, int[] channels60G) {
+        WifiScanner.ChannelSpec[][] previousBandsToChannels = mBandsToChannels;
         mBandsToChannels = new WifiScanner.ChannelSpec[WIFI_BAND_COUNT][];
 
         for (int i = 0; i < WIFI_BAND_COUNT; i++) {
@@ -112,6 +117,39 @@ public class KnownBandsChannelHelper extends ChannelHelper {
         } else {
             mBandsToChannels[WIFI_BAND_INDEX_60_GHZ] = NO_CHANNELS;
         }
+
+        mBandsToChannelBits = new ChannelBitSet[WIFI_BAND_COUNT];
+        for (int i = 0; i < WIFI_BAND_COUNT; i++) {
+            mBandsToChannelBits[i] = new ChannelBitSet();
+            for (WifiScanner.ChannelSpec channel : mBandsToChannels[i]) {
+                mBandsToChannelBits[i].add(channel.frequency);
+            }
+        }
+
+        if (!sameBandChannels(previousBandsToChannels, mBandsToChannels)) {
+            mChannelsVersion++;
+        }
+    }
+
+    private static boolean sameBandChannels(WifiScanner.ChannelSpec[][] bandsToChannels1,
+            WifiScanner.ChannelSpec[][] bandsToChannels2) {
+        if (bandsToChannels1 == null || bandsToChannels2 == null) {
+            return bandsToChannels1 == bandsToChannels2;
+        }
+        for (int i = 0; i < WIFI_BAND_COUNT; i++) {
+            if (bandsToChannels1[i].length != bandsToChannels2[i].length) return false;
+            for (int j = 0; j < bandsToChannels1[i].length; j++) {
+                if (bandsToChannels1[i][j].frequency != bandsToChannels2[i][j].frequency) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int getChannelsVersion() {
+        return mChannelsVersion;
     }
 
     private static void copyChannels(
@@ -174,13 +212,7 @@ public class KnownBandsChannelHelper extends ChannelHelper {
     }
 
     private boolean isDfsChannel(int frequency) {
-        for (WifiScanner.ChannelSpec dfsChannel :
-                mBandsToChannels[WIFI_BAND_INDEX_5_GHZ_DFS_ONLY]) {
-            if (frequency == dfsChannel.frequency) {
-                return true;
-            }
-        }
-        return false;
+        return mBandsToChannelBits[WIFI_BAND_INDEX_5_GHZ_DFS_ONLY].contains(frequency);
     }
 
     // TODO this should be rewritten to be based on the input data instead of hardcoded ranges
@@ -221,28 +253,23 @@ public class KnownBandsChannelHelper extends ChannelHelper {
 
     @Override
     public boolean settingsContainChannel(WifiScanner.ScanSettings settings, int channel) {
-        WifiScanner.ChannelSpec[] settingsChannels;
-        @WifiBandBasic int band;
         // If band is not specified in settings, limit check on channels in settings
         if (settings.band == WIFI_BAND_UNSPECIFIED) {
-            settingsChannels = settings.channels;
-        } else {
-            // Get the proper band for this channel
-            band = getBandFromChannel(channel);
-            // Check if this band is included in band specified in settings
-            if ((settings.band & band) == WIFI_BAND_UNSPECIFIED) {
-                return false;
+            WifiScanner.ChannelSpec[] settingsChannels = settings.channels;
+            for (int i = 0; i < settingsChannels.length; ++i) {
+                if (settingsChannels[i].frequency == channel) {
+                    return true;
+                }
             }
-
-            settingsChannels = mBandsToChannels[getIndexForBand(band)];
+            return false;
         }
-        // Now search for the channel
-        for (int i = 0; i < settingsChannels.length; ++i) {
-            if (settingsChannels[i].frequency == channel) {
-                return true;
-            }
+        // Get the proper band for this channel
+        @WifiBandBasic int band = getBandFromChannel(channel);
+        // Check if this band is included in band specified in settings
+        if ((settings.band & band) == WIFI_BAND_UNSPECIFIED) {
+            return false;
         }
-        return false;
+        return mBandsToChannelBits[getIndexForBand(band)].contains(channel);
     }
 
     /**
@@ -286,7 +313,7 @@ public class KnownBandsChannelHelper extends ChannelHelper {
         /**
          * Stores all channels, including those that belong to added bands.
          */
-        private final ArraySet<Integer> mChannels = new ArraySet<Integer>();
+        private final ChannelBitSet mChannels = new ChannelBitSet();
         /**
          * Contains only the bands that were explicitly added as bands.
          */
@@ -307,10 +334,9 @@ public class KnownBandsChannelHelper extends ChannelHelper {
         public void addBand(int band) {
             mExactBands |= band;
             mAllBands |= band;
-            WifiScanner.ChannelSpec[][] bandChannels = getAvailableScanChannels(band);
-            for (int i = 0; i < bandChannels.length; ++i) {
-                for (int j = 0; j < bandChannels[i].length; ++j) {
-                    mChannels.add(bandChannels[i][j].frequency);
+            for (@WifiBandIndex int i = 0; i < WIFI_BAND_COUNT; i++) {
+                if ((band & (1 << i)) != 0) {
+                    mChannels.addAll(mBandsToChannelBits[i]);
                 }
             }
         }
@@ -322,13 +348,9 @@ public class KnownBandsChannelHelper extends ChannelHelper {
 
         @Override
         public boolean containsBand(int band) {
-            WifiScanner.ChannelSpec[][] bandChannels = getAvailableScanChannels(band);
-
-            for (int i = 0; i < bandChannels.length; ++i) {
-                for (int j = 0; j < bandChannels[i].length; ++j) {
-                    if (!mChannels.contains(bandChannels[i][j].frequency)) {
-                        return false;
-                    }
+            for (@WifiBandIndex int i = 0; i < WIFI_BAND_COUNT; i++) {
+                if ((band & (1 << i)) != 0 && !mChannels.containsAll(mBandsToChannelBits[i])) {
+                    return false;
                 }
             }
             return true;
@@ -336,12 +358,9 @@ public class KnownBandsChannelHelper extends ChannelHelper {
 
         @Override
         public boolean partiallyContainsBand(int band) {
-            WifiScanner.ChannelSpec[][] bandChannels = getAvailableScanChannels(band);
-            for (int i = 0; i < bandChannels.length; ++i) {
-                for (int j = 0; j < bandChannels[i].length; ++j) {
-                    if (mChannels.contains(bandChannels[i][j].frequency)) {
-                        return true;
-                    }
+            for (@WifiBandIndex int i = 0; i < WIFI_BAND_COUNT; i++) {
+                if ((band & (1 << i)) != 0 && mChannels.intersects(mBandsToChannelBits[i])) {
+                    return true;
                 }
             }
             return false;
@@ -395,21 +414,18 @@ public class KnownBandsChannelHelper extends ChannelHelper {
         @Override
         public Set<Integer> getChannelSet() {
             if (!isEmpty() && mAllBands != mExactBands) {
-                return mChannels;
+                return mChannels.asSet();
             } else {
-                return new ArraySet<>();
+                return Collections.emptySet();
             }
         }
 
         @Override
         public void add6GhzPscChannels() {
-            Set<Integer> missingChannels = getMissingChannelsFromBand(WIFI_BAND_6_GHZ);
-            if (missingChannels.isEmpty()) {
-                return;
-            }
-            for (int freq : missingChannels) {
-                if (ScanResult.is6GHzPsc(freq)) {
-                    mChannels.add(freq);
+            for (WifiScanner.ChannelSpec channel : mBandsToChannels[WIFI_BAND_INDEX_6_GHZ]) {
+                if (ScanResult.is6GHzPsc(channel.frequency)
+                        && !mChannels.contains(channel.frequency)) {
+                    mChannels.add(channel.frequency);
                     mAllBands |= WIFI_BAND_6_GHZ;
                 }
             }
@@ -417,17 +433,19 @@ public class KnownBandsChannelHelper extends ChannelHelper {
 
         @Override
         public void fillBucketSettings(WifiNative.BucketSettings bucketSettings, int maxChannels) {
-            if ((mChannels.size() > maxChannels || mAllBands == mExactBands) && mAllBands != 0) {
+            int numChannels = mChannels.size();
+            if ((numChannels > maxChannels || mAllBands == mExactBands) && mAllBands != 0) {
                 bucketSettings.band = mAllBands;
                 bucketSettings.num_channels = 0;
                 bucketSettings.channels = null;
             } else {
+                int[] channels = mChannels.toArray();
                 bucketSettings.band = WIFI_BAND_UNSPECIFIED;
-                bucketSettings.num_channels = mChannels.size();
-                bucketSettings.channels = new WifiNative.ChannelSettings[mChannels.size()];
-                for (int i = 0; i < mChannels.size(); ++i) {
+                bucketSettings.num_channels = numChannels;
+                bucketSettings.channels = new WifiNative.ChannelSettings[numChannels];
+                for (int i = 0; i < numChannels; ++i) {
                     WifiNative.ChannelSettings channelSettings = new WifiNative.ChannelSettings();
-                    channelSettings.frequency = mChannels.valueAt(i);
+                    channelSettings.frequency = channels[i];
                     bucketSettings.channels[i] = channelSettings;
                 }
             }
@@ -438,12 +456,12 @@ public class KnownBandsChannelHelper extends ChannelHelper {
             if (mExactBands == WIFI_BAND_ALL) {
                 return null;
             } else {
-                return new ArraySet<Integer>(mChannels);
+                return mChannels.toSet();
             }
         }
 
         public Set<Integer> getAllChannels() {
-            return new ArraySet<Integer>(mChannels);
+            return mChannels.toSet();
         }
     }
 
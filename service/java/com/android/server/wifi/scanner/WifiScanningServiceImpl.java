@@ -1725,16 +1725,31 @@ public class WifiScanningServiceImpl extends IWifiScanner.Stub {
             mWifiMetrics.getScanMetrics().setWorkSource(workSource);
             mActiveBackgroundScans.addRequest(ci, handler, workSource, settings);
 
-            if (updateSchedule()) {
+            if (updateSchedule(settings, null)) {
                 return true;
             } else {
                 mActiveBackgroundScans.removeRequest(ci, handler);
+                // The scheduler still holds the failed request, make sure it is dropped on the
+                // next update.
+                if (mBackgroundScheduler != null) {
+                    mBackgroundScheduler.invalidateIncrementalState();
+                }
                 localLog("Failing scan request because failed to reset scan");
                 return false;
             }
         }
 
         private boolean updateSchedule() {
+            return updateSchedule(null, null);
+        }
+
+        /**
+         * Updates the background scan schedule. If exactly one request was added or removed since
+         * the last update, it should be passed in so that the scheduler can update the existing
+         * schedule in place instead of rebuilding it.
+         */
+        private boolean updateSchedule(@Nullable ScanSettings addedSettings,
+                @Nullable ScanSettings removedSettings) {
             if (mChannelHelper == null || mBackgroundScheduler == null || mScannerImpl == null) {
                 loge("Failed to update schedule because WifiScanningService is not initialized");
                 return false;
@@ -1742,7 +1757,13 @@ public class WifiScanningServiceImpl extends IWifiScanner.Stub {
             mChannelHelper.updateChannels();
             Collection<ScanSettings> settings = mActiveBackgroundScans.getAllSettings();
 
-            mBackgroundScheduler.updateSchedule(settings);
+            if (addedSettings != null) {
+                mBackgroundScheduler.updateScheduleForAddedRequest(addedSettings, settings);
+            } else if (removedSettings != null) {
+                mBackgroundScheduler.updateScheduleForRemovedRequest(removedSettings, settings);
+            } else {
+                mBackgroundScheduler.updateSchedule(settings);
+            }
             WifiNative.ScanSettings schedule = mBackgroundScheduler.getSchedule();
 
             if (ScanScheduleUtil.scheduleEquals(mPreviousSchedule, schedule)) {
@@ -1800,7 +1821,7 @@ public class WifiScanningServiceImpl extends IWifiScanner.Stub {
             if (ci != null) {
                 ScanSettings settings = mActiveBackgroundScans.removeRequest(ci, handler);
                 logScanRequest("removeBackgroundScanRequest", ci, handler, null, settings, null);
-                updateSchedule();
+                updateSchedule(null, settings);
             }
         }
 
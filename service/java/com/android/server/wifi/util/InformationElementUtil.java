@@ -1489,6 +1489,111 @@ public class InformationElementUtil {
             capWpa2.append("]");
             return capWpa2.toString();
         }
+
+        /**
+         * Build the security flags of the ScanResult, which are checked by {@link ScanResultUtil}
+         * instead of searching the ScanResult.capabilities String.
+         *
+         * @return security flags matching the tokens of {@link #generateCapabilitiesString()}
+         */
+        public long generateSecurityFlags() {
+            long flags = 0;
+            if (protocol.isEmpty() && isPrivacy) {
+                flags |= ScanResultUtil.SECURITY_FLAG_WEP;
+            }
+            for (int i = 0; i < protocol.size(); i++) {
+                flags |= protocolToSecurityFlags(protocol.get(i));
+                if (i < keyManagement.size()) {
+                    for (int akm : keyManagement.get(i)) {
+                        flags |= keyManagementToSecurityFlags(akm);
+                    }
+                }
+                if (i < pairwiseCipher.size()) {
+                    for (int cipher : pairwiseCipher.get(i)) {
+                        flags |= cipherToSecurityFlags(cipher);
+                    }
+                }
+            }
+            if (!groupManagementCipher.isEmpty()) {
+                if (isManagementFrameProtectionRequired) {
+                    flags |= ScanResultUtil.SECURITY_FLAG_PMF_REQUIRED;
+                }
+                if (isManagementFrameProtectionCapable) {
+                    flags |= ScanResultUtil.SECURITY_FLAG_PMF_CAPABLE;
+                }
+            }
+            return flags;
+        }
+
+        private static long protocolToSecurityFlags(@Protocol int protocol) {
+            switch (protocol) {
+                case ScanResult.PROTOCOL_RSN:
+                    return ScanResultUtil.SECURITY_FLAG_PROTOCOL_RSN;
+                case ScanResult.PROTOCOL_NONE:
+                case ScanResult.PROTOCOL_WPA:
+                case ScanResult.PROTOCOL_OSEN:
+                case ScanResult.PROTOCOL_WAPI:
+                    return 0;
+                default:
+                    return ScanResultUtil.SECURITY_FLAG_UNKNOWN;
+            }
+        }
+
+        private static long keyManagementToSecurityFlags(@KeyMgmt int akm) {
+            switch (akm) {
+                case ScanResult.KEY_MGMT_NONE:
+                case ScanResult.KEY_MGMT_OSEN:
+                    return 0;
+                case ScanResult.KEY_MGMT_PSK:
+                case ScanResult.KEY_MGMT_FT_PSK:
+                case ScanResult.KEY_MGMT_PSK_SHA256:
+                    return ScanResultUtil.SECURITY_FLAG_PSK;
+                case ScanResult.KEY_MGMT_EAP:
+                    return ScanResultUtil.SECURITY_FLAG_EAP_SHA1;
+                case ScanResult.KEY_MGMT_FT_EAP:
+                    return ScanResultUtil.SECURITY_FLAG_FT_EAP;
+                case ScanResult.KEY_MGMT_EAP_SHA256:
+                    return ScanResultUtil.SECURITY_FLAG_EAP_SHA256;
+                case ScanResult.KEY_MGMT_OWE:
+                    return ScanResultUtil.SECURITY_FLAG_OWE;
+                case ScanResult.KEY_MGMT_OWE_TRANSITION:
+                    return ScanResultUtil.SECURITY_FLAG_OWE
+                            | ScanResultUtil.SECURITY_FLAG_OWE_TRANSITION;
+                case ScanResult.KEY_MGMT_SAE:
+                case ScanResult.KEY_MGMT_FT_SAE:
+                    return ScanResultUtil.SECURITY_FLAG_SAE;
+                case ScanResult.KEY_MGMT_EAP_SUITE_B_192:
+                    return ScanResultUtil.SECURITY_FLAG_EAP_SUITE_B_192;
+                case ScanResult.KEY_MGMT_WAPI_PSK:
+                    // "WAPI-PSK" is also a PSK AKM as far as the capabilities String goes.
+                    return ScanResultUtil.SECURITY_FLAG_WAPI_PSK
+                            | ScanResultUtil.SECURITY_FLAG_PSK;
+                case ScanResult.KEY_MGMT_WAPI_CERT:
+                    return ScanResultUtil.SECURITY_FLAG_WAPI_CERT;
+                case ScanResult.KEY_MGMT_FILS_SHA256:
+                    return ScanResultUtil.SECURITY_FLAG_EAP_FILS
+                            | ScanResultUtil.SECURITY_FLAG_FILS_SHA256;
+                case ScanResult.KEY_MGMT_FILS_SHA384:
+                    return ScanResultUtil.SECURITY_FLAG_EAP_FILS
+                            | ScanResultUtil.SECURITY_FLAG_FILS_SHA384;
+                default:
+                    return ScanResultUtil.SECURITY_FLAG_UNKNOWN;
+            }
+        }
+
+        private static long cipherToSecurityFlags(@Cipher int cipher) {
+            switch (cipher) {
+                case ScanResult.CIPHER_TKIP:
+                    return ScanResultUtil.SECURITY_FLAG_CIPHER_TKIP;
+                case ScanResult.CIPHER_NONE:
+                case ScanResult.CIPHER_CCMP:
+                case ScanResult.CIPHER_GCMP_256:
+                case ScanResult.CIPHER_SMS4:
+                    return 0;
+                default:
+                    return ScanResultUtil.SECURITY_FLAG_UNKNOWN;
+            }
+        }
     }
 
 
@@ -0,0 +1,293 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi.util;
+
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Map from primitive long keys, such as MAC addresses packed with
+ * {@link NativeUtil#macAddressStringToLong(String)}, to non-null values.
+ *
+ * Entries are stored in parallel key and value arrays using open addressing with linear probing,
+ * so that neither the keys nor the entries are boxed. This costs about 12 bytes per slot, versus
+ * a node, a boxed key or a String key per entry in a {@link java.util.HashMap}. Removals shift the
+ * following entries back instead of leaving tombstones, so lookups stay short on maps with a high
+ * churn. Iteration order is unspecified, and this class is not thread safe.
+ * @param <V> the type of the values
+ */
+public class LongHashMap<V> {
+    private static final int MIN_CAPACITY = 8;
+
+    private long[] mKeys;
+    // A slot is free if and only if its value is null.
+    private Object[] mValues;
+    private int mSize;
+
+    /**
+     * Creates an empty map.
+     */
+    public LongHashMap() {
+        this(0);
+    }
+
+    /**
+     * Creates an empty map which can hold |expectedSize| entries without growing.
+     */
+    public LongHashMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * Returns the value mapped to the key, or null if there is none.
+     */
+    @Nullable
+    public V get(long key) {
+        int slot = findSlot(key);
+        return slot < 0 ? null : valueAt(slot);
+    }
+
+    /**
+     * Returns true if there is a value mapped to the key.
+     */
+    public boolean containsKey(long key) {
+        return findSlot(key) >= 0;
+    }
+
+    /**
+     * Maps the key to the value.
+     * @return the value previously mapped to the key, or null if there was none.
+     */
+    @Nullable
+    public V put(long key, @NonNull V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("null value");
+        }
+        int mask = mKeys.length - 1;
+        int slot = hash(key) & mask;
+        while (mValues[slot] != null) {
+            if (mKeys[slot] == key) {
+                V old = valueAt(slot);
+                mValues[slot] = value;
+                return old;
+            }
+            slot = (slot + 1) & mask;
+        }
+        mKeys[slot] = key;
+        mValues[slot] = value;
+        mSize++;
+        // Keep the load factor at or below 3/4.
+        if (mSize > mKeys.length - (mKeys.length >> 2)) {
+            rehash(mKeys.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     * Removes the value mapped to the key.
+     * @return the removed value, or null if there was none.
+     */
+    @Nullable
+    public V remove(long key) {
+        int slot = findSlot(key);
+        if (slot < 0) {
+            return null;
+        }
+        V old = valueAt(slot);
+        removeAt(slot);
+        return old;
+    }
+
+    /**
+     * Removes all the entries whose value matches the filter.
+     * @return true if any entry was removed.
+     */
+    public boolean removeIf(@NonNull Predicate<? super V> filter) {
+        // Removing shifts entries back across the wrap-around of the table, so collect the keys
+        // to remove first instead of removing while scanning.
+        long[] removed = null;
+        int numRemoved = 0;
+        for (int i = 0; i < mValues.length; i++) {
+            if (mValues[i] != null && filter.test(valueAt(i))) {
+                if (removed == null) {
+                    removed = new long[mSize];
+                }
+                removed[numRemoved++] = mKeys[i];
+            }
+        }
+        for (int i = 0; i < numRemoved; i++) {
+            removeAt(findSlot(removed[i]));
+        }
+        return numRemoved > 0;
+    }
+
+    /**
+     * Returns the number of entries.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Returns true if there are no entries.
+     */
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    /**
+     * Removes all the entries, and releases the memory held for them.
+     */
+    public void clear() {
+        allocate(MIN_CAPACITY);
+        mSize = 0;
+    }
+
+    /**
+     * Returns a copy of the keys.
+     */
+    @NonNull
+    public long[] keys() {
+        long[] keys = new long[mSize];
+        int index = 0;
+        for (int i = 0; i < mValues.length; i++) {
+            if (mValues[i] != null) {
+                keys[index++] = mKeys[i];
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Returns a copy of the values, which can be iterated while modifying the map.
+     */
+    @NonNull
+    public List<V> values() {
+        List<V> values = new ArrayList<>(mSize);
+        for (int i = 0; i < mValues.length; i++) {
+            if (mValues[i] != null) {
+                values.add(valueAt(i));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Returns the number of slots in the table, for estimating the memory used by the map.
+     */
+    public int capacity() {
+        return mKeys.length;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V valueAt(int slot) {
+        return (V) mValues[slot];
+    }
+
+    private int findSlot(long key) {
+        int mask = mKeys.length - 1;
+        int slot = hash(key) & mask;
+        while (mValues[slot] != null) {
+            if (mKeys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void removeAt(int slot) {
+        int mask = mKeys.length - 1;
+        int gap = slot;
+        int next = (slot + 1) & mask;
+        while (mValues[next] != null) {
+            // The entry can fill the gap unless its home slot is cyclically after the gap.
+            int home = hash(mKeys[next]) & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                mKeys[gap] = mKeys[next];
+                mValues[gap] = mValues[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        mKeys[gap] = 0;
+        mValues[gap] = null;
+        mSize--;
+    }
+
+    private void rehash(int capacity) {
+        long[] keys = mKeys;
+        Object[] values = mValues;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null) {
+                continue;
+            }
+            int slot = hash(keys[i]) & mask;
+            while (mValues[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            mKeys[slot] = keys[i];
+            mValues[slot] = values[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        mKeys = new long[capacity];
+        mValues = new Object[capacity];
+    }
+
+    /**
+     * Returns the smallest power of two table size which holds |expectedSize| entries within the
+     * maximum load factor.
+     */
+    static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity - (capacity >> 2) < expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * Spreads the key over the low bits used to index the table. MAC addresses from the same
+     * vendor only differ in their low bits, and are often consecutive.
+     */
+    static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < mValues.length; i++) {
+            if (mValues[i] != null) {
+                if (sb.length() > 1) {
+                    sb.append(", ");
+                }
+                sb.append(mKeys[i]).append('=').append(mValues[i]);
+            }
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi.util;
+
+import android.annotation.NonNull;
+
+/**
+ * Set of primitive long values, such as MAC addresses packed with
+ * {@link NativeUtil#macAddressStringToLong(String)}.
+ *
+ * Values are stored in a single array using open addressing with linear probing, in the same way
+ * as {@link LongHashMap}. Free slots hold 0, so whether 0 itself is in the set is tracked
+ * separately. Iteration order is unspecified, and this class is not thread safe.
+ */
+public class LongHashSet {
+    private static final long FREE = 0;
+
+    private long[] mValues;
+    // Number of non zero values in |mValues|.
+    private int mSize;
+    private boolean mContainsFree;
+
+    /**
+     * Creates an empty set.
+     */
+    public LongHashSet() {
+        this(0);
+    }
+
+    /**
+     * Creates an empty set which can hold |expectedSize| values without growing.
+     */
+    public LongHashSet(int expectedSize) {
+        mValues = new long[LongHashMap.capacityFor(expectedSize)];
+    }
+
+    /**
+     * Adds the value to the set.
+     * @return true if the value was not already in the set.
+     */
+    public boolean add(long value) {
+        if (value == FREE) {
+            boolean added = !mContainsFree;
+            mContainsFree = true;
+            return added;
+        }
+        int mask = mValues.length - 1;
+        int slot = LongHashMap.hash(value) & mask;
+        while (mValues[slot] != FREE) {
+            if (mValues[slot] == value) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        mValues[slot] = value;
+        mSize++;
+        // Keep the load factor at or below 3/4.
+        if (mSize > mValues.length - (mValues.length >> 2)) {
+            rehash(mValues.length << 1);
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if the value is in the set.
+     */
+    public boolean contains(long value) {
+        if (value == FREE) {
+            return mContainsFree;
+        }
+        return findSlot(value) >= 0;
+    }
+
+    /**
+     * Removes the value from the set.
+     * @return true if the value was in the set.
+     */
+    public boolean remove(long value) {
+        if (value == FREE) {
+            boolean removed = mContainsFree;
+            mContainsFree = false;
+            return removed;
+        }
+        int slot = findSlot(value);
+        if (slot < 0) {
+            return false;
+        }
+        int mask = mValues.length - 1;
+        int gap = slot;
+        int next = (slot + 1) & mask;
+        while (mValues[next] != FREE) {
+            // The value can fill the gap unless its home slot is cyclically after the gap.
+            int home = LongHashMap.hash(mValues[next]) & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                mValues[gap] = mValues[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        mValues[gap] = FREE;
+        mSize--;
+        return true;
+    }
+
+    /**
+     * Returns the number of values in the set.
+     */
+    public int size() {
+        return mContainsFree ? mSize + 1 : mSize;
+    }
+
+    /**
+     * Returns true if the set is empty.
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Removes all the values, and releases the memory held for them.
+     */
+    public void clear() {
+        mValues = new long[LongHashMap.capacityFor(0)];
+        mSize = 0;
+        mContainsFree = false;
+    }
+
+    /**
+     * Returns a copy of the values.
+     */
+    @NonNull
+    public long[] values() {
+        long[] values = new long[size()];
+        int index = 0;
+        if (mContainsFree) {
+            values[index++] = FREE;
+        }
+        for (long value : mValues) {
+            if (value != FREE) {
+                values[index++] = value;
+            }
+        }
+        return values;
+    }
+
+    private int findSlot(long value) {
+        int mask = mValues.length - 1;
+        int slot = LongHashMap.hash(value) & mask;
+        while (mValues[slot] != FREE) {
+            if (mValues[slot] == value) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void rehash(int capacity) {
+        long[] values = mValues;
+        mValues = new long[capacity];
+        int mask = capacity - 1;
+        for (long value : values) {
+            if (value == FREE) {
+                continue;
+            }
+            int slot = LongHashMap.hash(value) & mask;
+            while (mValues[slot] != FREE) {
+                slot = (slot + 1) & mask;
+            }
+            mValues[slot] = value;
+        }
+    }
+}
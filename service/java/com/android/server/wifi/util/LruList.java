@@ -17,6 +17,7 @@
 package com.android.server.wifi.util;
 
 import android.annotation.NonNull;
+import android.annotation.Nullable;
 
 import java.util.ArrayList;
 import java.util.LinkedList;
@@ -46,19 +47,22 @@ public class LruList<E> {
      * If this operation makes the LruList exceed the max allowed size, then the least recently
      * added entry will be removed.
      * @param entry
+     * @return the entry which was removed to stay within the max allowed size, or null if none.
      */
-    public void add(@NonNull E entry) {
+    public @Nullable E add(@NonNull E entry) {
         if (entry == null) {
-            return;
+            return null;
         }
         int index = mLinkedList.indexOf(entry);
         if (index >= 0) {
             mLinkedList.remove(index);
         }
         mLinkedList.addFirst(entry);
+        E evicted = null;
         while (mLinkedList.size() > mSize) {
-            mLinkedList.removeLast();
+            evicted = mLinkedList.removeLast();
         }
+        return evicted;
     }
 
     /**
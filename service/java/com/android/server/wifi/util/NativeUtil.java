@@ -42,6 +42,8 @@ public class NativeUtil {
     private static final int MAC_OUI_LENGTH = 3;
     private static final int MAC_STR_LENGTH = MAC_LENGTH * 2 + 5;
     private static final int SSID_BYTES_MAX_LEN = 32;
+    /** Returned by {@link #macAddressStringToLong(String)} for malformed MAC addresses. */
+    public static final long INVALID_MAC_LONG = -1;
 
     /**
      * Convert the string to byte array list.
@@ -188,6 +190,38 @@ public class NativeUtil {
         }
     }
 
+    /**
+     * Converts a MAC address string with format: "XX:XX:XX:XX:XX:XX", where X is any
+     * hexadecimal digit in either case, to a long representing the MAC address. Unlike
+     * {@link #macAddressToByteArray(String)}, this does not allocate, so that it can be used to
+     * look up BSSIDs in {@link LongHashMap} and {@link LongHashSet} on hot paths.
+     *
+     * @param macStr string of HexEncoded MAC address.
+     * @return long value of the MAC address, or {@link #INVALID_MAC_LONG} for malformed inputs.
+     */
+    public static long macAddressStringToLong(String macStr) {
+        if (macStr == null || macStr.length() != MAC_STR_LENGTH) {
+            return INVALID_MAC_LONG;
+        }
+        long mac = 0;
+        for (int i = 0; i < MAC_STR_LENGTH; i++) {
+            char c = macStr.charAt(i);
+            if (i % 3 == 2) {
+                if (c != ':') {
+                    return INVALID_MAC_LONG;
+                }
+                continue;
+            }
+            // Only accept ASCII hexadecimal digits.
+            int nibble = c <= 'f' ? Character.digit(c, 16) : -1;
+            if (nibble < 0) {
+                return INVALID_MAC_LONG;
+            }
+            mac = (mac << 4) | nibble;
+        }
+        return mac;
+    }
+
     /**
      * Remove enclosing quotes from the provided string.
      *
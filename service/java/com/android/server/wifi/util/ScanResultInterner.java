@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi.util;
+
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+import android.net.MacAddress;
+import android.net.wifi.WifiSsid;
+import android.util.LruCache;
+
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+
+/**
+ * Interning pools for the values repeated in the scan results of the same environment: BSSIDs,
+ * SSIDs and capabilities strings.
+ *
+ * Scan results are ingested through these pools so that successive scans share a single copy of
+ * each value instead of allocating and retaining identical ones. BSSIDs are looked up by their
+ * packed long value, so the BSSID string is only created the first time an AP is seen. Each pool
+ * is a LRU cache, so the pools stay bounded on devices with long uptime in busy RF environments.
+ *
+ * The pooled values are shared by all the scan results which have them. Strings are immutable,
+ * but a {@link WifiSsid} is not: its public octets stream must never be modified, since the change
+ * would show in the other scan results and in the pool.
+ */
+public class ScanResultInterner {
+    @VisibleForTesting
+    public static final int MAX_BSSIDS = 1024;
+    @VisibleForTesting
+    public static final int MAX_SSIDS = 512;
+    @VisibleForTesting
+    public static final int MAX_STRINGS = 1024;
+
+    // Approximate heap size of a String (object and value array headers), excluding the content.
+    private static final int STRING_OVERHEAD_BYTES = 32;
+    // Approximate heap size of a WifiSsid, including its internal byte buffer.
+    private static final int WIFI_SSID_BYTES = 96;
+
+    private final LruCache<Long, String> mBssids = new LruCache<>(MAX_BSSIDS);
+    private final LruCache<ByteBuffer, WifiSsid> mWifiSsids = new LruCache<>(MAX_SSIDS);
+    private final LruCache<String, String> mStrings = new LruCache<>(MAX_STRINGS);
+
+    private long mHitCount;
+    private long mMissCount;
+    // Approximate number of bytes which were not allocated or retained thanks to the pools.
+    private long mSavedBytes;
+
+    /**
+     * Get the pooled string representation of a BSSID.
+     */
+    @NonNull
+    public synchronized String internBssid(@NonNull MacAddress bssid) {
+        Long key = NativeUtil.macAddressToLong(bssid.toByteArray());
+        String pooled = mBssids.get(key);
+        if (pooled != null) {
+            onHit(STRING_OVERHEAD_BYTES + pooled.length());
+            return pooled;
+        }
+        mMissCount++;
+        pooled = bssid.toString();
+        mBssids.put(key, pooled);
+        return pooled;
+    }
+
+    /**
+     * Get the pooled {@link WifiSsid} with the given raw SSID bytes. The given array must not be
+     * modified afterwards, since it is kept as the key of the pool. The returned WifiSsid is
+     * shared and must not be modified either.
+     */
+    @NonNull
+    public synchronized WifiSsid internWifiSsid(@Nullable byte[] ssidBytes) {
+        if (ssidBytes == null) {
+            return WifiSsid.createFromByteArray(null);
+        }
+        ByteBuffer key = ByteBuffer.wrap(ssidBytes);
+        WifiSsid pooled = mWifiSsids.get(key);
+        if (pooled != null) {
+            onHit(WIFI_SSID_BYTES + ssidBytes.length);
+            return pooled;
+        }
+        mMissCount++;
+        pooled = WifiSsid.createFromByteArray(ssidBytes);
+        mWifiSsids.put(key, pooled);
+        return pooled;
+    }
+
+    /**
+     * Get the pooled copy of a string, such as a SSID or a capabilities string.
+     */
+    @Nullable
+    public synchronized String intern(@Nullable String value) {
+        if (value == null) {
+            return null;
+        }
+        String pooled = mStrings.get(value);
+        if (pooled != null) {
+            if (pooled != value) {
+                onHit(STRING_OVERHEAD_BYTES + value.length());
+            }
+            return pooled;
+        }
+        mMissCount++;
+        mStrings.put(value, value);
+        return value;
+    }
+
+    private void onHit(int savedBytes) {
+        mHitCount++;
+        mSavedBytes += savedBytes;
+    }
+
+    /**
+     * Remove all pooled values.
+     */
+    public synchronized void clear() {
+        mBssids.evictAll();
+        mWifiSsids.evictAll();
+        mStrings.evictAll();
+    }
+
+    /**
+     * Dump the pool sizes and the approximate heap saved by the pools.
+     */
+    public synchronized void dump(PrintWriter pw) {
+        pw.println("Dump of ScanResultInterner");
+        pw.println("bssids=" + mBssids.size() + " ssids=" + mWifiSsids.size()
+                + " strings=" + mStrings.size());
+        pw.println("hits=" + mHitCount + " misses=" + mMissCount
+                + " approximate saved bytes=" + mSavedBytes);
+    }
+}
@@ -54,12 +54,88 @@ public class ScanResultUtil {
         return new ScanDetail(scanResult, networkDetail);
     }
 
+    // Security flags of a scan result, see getSecurityFlags(). Each flag is set if the
+    // |capabilities| string of the scan result contains the corresponding token, or, for scan
+    // results parsed from IEs, if the token would be generated for the parsed security.
+    /** Any PSK based AKM: PSK, FT/PSK, PSK-SHA256 or WAPI-PSK. */
+    static final long SECURITY_FLAG_PSK = 1L << 0;
+    static final long SECURITY_FLAG_WAPI_PSK = 1L << 1;
+    static final long SECURITY_FLAG_WAPI_CERT = 1L << 2;
+    static final long SECURITY_FLAG_EAP_SHA1 = 1L << 3;
+    static final long SECURITY_FLAG_EAP_SHA256 = 1L << 4;
+    static final long SECURITY_FLAG_FT_EAP = 1L << 5;
+    /** FILS SHA256 or FILS SHA384 AKM. */
+    static final long SECURITY_FLAG_EAP_FILS = 1L << 6;
+    static final long SECURITY_FLAG_FILS_SHA256 = 1L << 7;
+    static final long SECURITY_FLAG_FILS_SHA384 = 1L << 8;
+    static final long SECURITY_FLAG_EAP_SUITE_B_192 = 1L << 9;
+    /** SAE or FT/SAE AKM. */
+    static final long SECURITY_FLAG_SAE = 1L << 10;
+    /** OWE or OWE transition AKM. */
+    static final long SECURITY_FLAG_OWE = 1L << 11;
+    static final long SECURITY_FLAG_OWE_TRANSITION = 1L << 12;
+    /** Unknown protocol, AKM or pairwise cipher. */
+    static final long SECURITY_FLAG_UNKNOWN = 1L << 13;
+    static final long SECURITY_FLAG_PROTOCOL_RSN = 1L << 14;
+    static final long SECURITY_FLAG_WEP = 1L << 15;
+    static final long SECURITY_FLAG_CIPHER_TKIP = 1L << 16;
+    static final long SECURITY_FLAG_PMF_REQUIRED = 1L << 17;
+    static final long SECURITY_FLAG_PMF_CAPABLE = 1L << 18;
+
+    private static final long SECURITY_FLAGS_EAP = SECURITY_FLAG_EAP_SHA1
+            | SECURITY_FLAG_EAP_SHA256 | SECURITY_FLAG_FT_EAP | SECURITY_FLAG_EAP_FILS;
+    private static final long SECURITY_FLAGS_WPA3_ENTERPRISE_EXCLUDED = SECURITY_FLAG_WEP
+            | SECURITY_FLAG_CIPHER_TKIP;
+
+    private static final String[] SECURITY_FLAG_TOKENS = {
+            "PSK", "WAPI-PSK", "WAPI-CERT", "EAP/SHA1", "EAP/SHA256", "FT/EAP", "EAP-FILS",
+            "FILS-SHA256", "FILS-SHA384", "SUITE_B_192", "SAE", "OWE", "OWE_TRANSITION", "?",
+            "RSN", "WEP", "TKIP", "[MFPR]", "[MFPC]"};
+
+    /**
+     * Parse the security flags from a |capabilities| string. This is only needed for scan
+     * results which were not parsed from IEs by {@link InformationElementUtil.Capabilities}.
+     */
+    @VisibleForTesting
+    static long parseSecurityFlags(@Nullable String capabilities) {
+        long flags = 0;
+        if (capabilities == null) return flags;
+        for (int i = 0; i < SECURITY_FLAG_TOKENS.length; i++) {
+            if (capabilities.contains(SECURITY_FLAG_TOKENS[i])) {
+                flags |= 1L << i;
+            }
+        }
+        return flags;
+    }
+
+    /**
+     * Get the security flags of the provided |scanResult|. They are set when the scan result is
+     * parsed from IEs, and otherwise parsed from the capabilities string once.
+     */
+    private static long getSecurityFlags(ScanResult scanResult) {
+        long flags = scanResult.getSecurityFlags();
+        if (flags != ScanResult.INVALID_SECURITY_FLAGS) {
+            return flags;
+        }
+        flags = parseSecurityFlags(scanResult.capabilities);
+        scanResult.setSecurityFlags(flags);
+        return flags;
+    }
+
+    private static boolean hasAnySecurityFlag(long flags, long mask) {
+        return (flags & mask) != 0;
+    }
+
+    private static boolean hasAllSecurityFlags(long flags, long mask) {
+        return (flags & mask) == mask;
+    }
+
     /**
      * Helper method to check if the provided |scanResult| corresponds to a PSK network or not.
      * This checks if the provided capabilities string contains PSK encryption type or not.
      */
     public static boolean isScanResultForPskNetwork(ScanResult scanResult) {
-        return scanResult.capabilities.contains("PSK");
+        return hasAnySecurityFlag(getSecurityFlags(scanResult), SECURITY_FLAG_PSK);
     }
 
     /**
@@ -67,7 +143,7 @@ public class ScanResultUtil {
      * This checks if the provided capabilities string contains PSK encryption type or not.
      */
     public static boolean isScanResultForWapiPskNetwork(ScanResult scanResult) {
-        return scanResult.capabilities.contains("WAPI-PSK");
+        return hasAnySecurityFlag(getSecurityFlags(scanResult), SECURITY_FLAG_WAPI_PSK);
     }
 
     /**
@@ -76,7 +152,7 @@ public class ScanResultUtil {
      * This checks if the provided capabilities string contains PSK encryption type or not.
      */
     public static boolean isScanResultForWapiCertNetwork(ScanResult scanResult) {
-        return scanResult.capabilities.contains("WAPI-CERT");
+        return hasAnySecurityFlag(getSecurityFlags(scanResult), SECURITY_FLAG_WAPI_CERT);
     }
 
     /**
@@ -87,20 +163,13 @@ public class ScanResultUtil {
      * - Not a WPA3 Enterprise transition network.
      */
     public static boolean isScanResultForEapNetwork(ScanResult scanResult) {
-        return (scanResult.capabilities.contains("EAP/SHA1")
-                        || scanResult.capabilities.contains("EAP/SHA256")
-                        || scanResult.capabilities.contains("FT/EAP")
-                        || scanResult.capabilities.contains("EAP-FILS"))
-                && !isScanResultForWpa3EnterpriseOnlyNetwork(scanResult)
-                && !isScanResultForWpa3EnterpriseTransitionNetwork(scanResult);
-    }
-
-    private static boolean isScanResultForPmfMandatoryNetwork(ScanResult scanResult) {
-        return scanResult.capabilities.contains("[MFPR]");
+        return isEapNetwork(getSecurityFlags(scanResult));
     }
 
-    private static boolean isScanResultForPmfCapableNetwork(ScanResult scanResult) {
-        return scanResult.capabilities.contains("[MFPC]");
+    private static boolean isEapNetwork(long flags) {
+        return hasAnySecurityFlag(flags, SECURITY_FLAGS_EAP)
+                && !isWpa3EnterpriseOnlyNetwork(flags)
+                && !isWpa3EnterpriseTransitionNetwork(flags);
     }
 
     /**
@@ -130,12 +199,13 @@ public class ScanResultUtil {
      * - PMF is mandatory.
      */
     public static boolean isScanResultForPasspointR3Network(ScanResult scanResult) {
-        if (!isScanResultForEapNetwork(scanResult)
-                && !isScanResultForWpa3EnterpriseOnlyNetwork(scanResult)
-                && !isScanResultForEapSuiteBNetwork(scanResult)) {
+        long flags = getSecurityFlags(scanResult);
+        if (!isEapNetwork(flags)
+                && !isWpa3EnterpriseOnlyNetwork(flags)
+                && !isEapSuiteBNetwork(flags)) {
             return false;
         }
-        if (!isScanResultForPmfMandatoryNetwork(scanResult)) return false;
+        if (!hasAnySecurityFlag(flags, SECURITY_FLAG_PMF_REQUIRED)) return false;
 
         ScanDetail detail = toScanDetail(scanResult);
         if (!detail.getNetworkDetail().isInterworking()) return false;
@@ -153,13 +223,14 @@ public class ScanResultUtil {
      * - Management Frame Protection Required is not set.
      */
     public static boolean isScanResultForWpa3EnterpriseTransitionNetwork(ScanResult scanResult) {
-        return scanResult.capabilities.contains("EAP/SHA1")
-                && scanResult.capabilities.contains("EAP/SHA256")
-                && scanResult.capabilities.contains("RSN")
-                && !scanResult.capabilities.contains("WEP")
-                && !scanResult.capabilities.contains("TKIP")
-                && !isScanResultForPmfMandatoryNetwork(scanResult)
-                && isScanResultForPmfCapableNetwork(scanResult);
+        return isWpa3EnterpriseTransitionNetwork(getSecurityFlags(scanResult));
+    }
+
+    private static boolean isWpa3EnterpriseTransitionNetwork(long flags) {
+        return hasAllSecurityFlags(flags, SECURITY_FLAG_EAP_SHA1 | SECURITY_FLAG_EAP_SHA256
+                        | SECURITY_FLAG_PROTOCOL_RSN | SECURITY_FLAG_PMF_CAPABLE)
+                && !hasAnySecurityFlag(flags, SECURITY_FLAGS_WPA3_ENTERPRISE_EXCLUDED
+                        | SECURITY_FLAG_PMF_REQUIRED);
     }
 
     /**
@@ -174,13 +245,14 @@ public class ScanResultUtil {
      * - Management Frame Protection Required is set.
      */
     public static boolean isScanResultForWpa3EnterpriseOnlyNetwork(ScanResult scanResult) {
-        return scanResult.capabilities.contains("EAP/SHA256")
-                && !scanResult.capabilities.contains("EAP/SHA1")
-                && scanResult.capabilities.contains("RSN")
-                && !scanResult.capabilities.contains("WEP")
-                && !scanResult.capabilities.contains("TKIP")
-                && isScanResultForPmfMandatoryNetwork(scanResult)
-                && isScanResultForPmfCapableNetwork(scanResult);
+        return isWpa3EnterpriseOnlyNetwork(getSecurityFlags(scanResult));
+    }
+
+    private static boolean isWpa3EnterpriseOnlyNetwork(long flags) {
+        return hasAllSecurityFlags(flags, SECURITY_FLAG_EAP_SHA256 | SECURITY_FLAG_PROTOCOL_RSN
+                        | SECURITY_FLAG_PMF_REQUIRED | SECURITY_FLAG_PMF_CAPABLE)
+                && !hasAnySecurityFlag(flags, SECURITY_FLAGS_WPA3_ENTERPRISE_EXCLUDED
+                        | SECURITY_FLAG_EAP_SHA1);
     }
 
     /**
@@ -193,11 +265,13 @@ public class ScanResultUtil {
      * - Management Frame Protection Required is set.
      */
     public static boolean isScanResultForEapSuiteBNetwork(ScanResult scanResult) {
-        return scanResult.capabilities.contains("SUITE_B_192")
-                && scanResult.capabilities.contains("RSN")
-                && !scanResult.capabilities.contains("WEP")
-                && !scanResult.capabilities.contains("TKIP")
-                && isScanResultForPmfMandatoryNetwork(scanResult);
+        return isEapSuiteBNetwork(getSecurityFlags(scanResult));
+    }
+
+    private static boolean isEapSuiteBNetwork(long flags) {
+        return hasAllSecurityFlags(flags, SECURITY_FLAG_EAP_SUITE_B_192
+                        | SECURITY_FLAG_PROTOCOL_RSN | SECURITY_FLAG_PMF_REQUIRED)
+                && !hasAnySecurityFlag(flags, SECURITY_FLAGS_WPA3_ENTERPRISE_EXCLUDED);
     }
 
     /**
@@ -205,7 +279,7 @@ public class ScanResultUtil {
      * This checks if the provided capabilities string contains WEP encryption type or not.
      */
     public static boolean isScanResultForWepNetwork(ScanResult scanResult) {
-        return scanResult.capabilities.contains("WEP");
+        return hasAnySecurityFlag(getSecurityFlags(scanResult), SECURITY_FLAG_WEP);
     }
 
     /**
@@ -213,7 +287,7 @@ public class ScanResultUtil {
      * This checks if the provided capabilities string contains OWE or not.
      */
     public static boolean isScanResultForOweNetwork(ScanResult scanResult) {
-        return scanResult.capabilities.contains("OWE");
+        return hasAnySecurityFlag(getSecurityFlags(scanResult), SECURITY_FLAG_OWE);
     }
 
     /**
@@ -221,7 +295,7 @@ public class ScanResultUtil {
      * This checks if the provided capabilities string contains OWE_TRANSITION or not.
      */
     public static boolean isScanResultForOweTransitionNetwork(ScanResult scanResult) {
-        return scanResult.capabilities.contains("OWE_TRANSITION");
+        return hasAnySecurityFlag(getSecurityFlags(scanResult), SECURITY_FLAG_OWE_TRANSITION);
     }
 
     /**
@@ -229,7 +303,7 @@ public class ScanResultUtil {
      * This checks if the provided capabilities string contains SAE or not.
      */
     public static boolean isScanResultForSaeNetwork(ScanResult scanResult) {
-        return scanResult.capabilities.contains("SAE");
+        return hasAnySecurityFlag(getSecurityFlags(scanResult), SECURITY_FLAG_SAE);
     }
 
     /**
@@ -237,7 +311,8 @@ public class ScanResultUtil {
      * network. This checks if the provided capabilities string contains both PSK and SAE or not.
      */
     public static boolean isScanResultForPskSaeTransitionNetwork(ScanResult scanResult) {
-        return scanResult.capabilities.contains("PSK") && scanResult.capabilities.contains("SAE");
+        return hasAllSecurityFlags(getSecurityFlags(scanResult),
+                SECURITY_FLAG_PSK | SECURITY_FLAG_SAE);
     }
 
     /**
@@ -245,7 +320,7 @@ public class ScanResultUtil {
      * This checks if the provided capabilities string contains FILS-SHA256 or not.
      */
     public static boolean isScanResultForFilsSha256Network(ScanResult scanResult) {
-        return scanResult.capabilities.contains("FILS-SHA256");
+        return hasAnySecurityFlag(getSecurityFlags(scanResult), SECURITY_FLAG_FILS_SHA256);
     }
 
     /**
@@ -253,7 +328,7 @@ public class ScanResultUtil {
      * This checks if the provided capabilities string contains FILS-SHA384 or not.
      */
     public static boolean isScanResultForFilsSha384Network(ScanResult scanResult) {
-        return scanResult.capabilities.contains("FILS-SHA384");
+        return hasAnySecurityFlag(getSecurityFlags(scanResult), SECURITY_FLAG_FILS_SHA384);
     }
 
     /**
@@ -261,7 +336,7 @@ public class ScanResultUtil {
      *  This checks if the provided capabilities string contains ? or not.
      */
     public static boolean isScanResultForUnknownAkmNetwork(ScanResult scanResult) {
-        return scanResult.capabilities.contains("?");
+        return hasAnySecurityFlag(getSecurityFlags(scanResult), SECURITY_FLAG_UNKNOWN);
     }
 
     /**
@@ -270,14 +345,14 @@ public class ScanResultUtil {
      * EAP, or unknown encryption types or not.
      */
     public static boolean isScanResultForOpenNetwork(ScanResult scanResult) {
-        return (!(isScanResultForWepNetwork(scanResult) || isScanResultForPskNetwork(scanResult)
-                || isScanResultForEapNetwork(scanResult) || isScanResultForSaeNetwork(scanResult)
-                || isScanResultForWpa3EnterpriseTransitionNetwork(scanResult)
-                || isScanResultForWpa3EnterpriseOnlyNetwork(scanResult)
-                || isScanResultForWapiPskNetwork(scanResult)
-                || isScanResultForWapiCertNetwork(scanResult)
-                || isScanResultForEapSuiteBNetwork(scanResult)
-                || isScanResultForUnknownAkmNetwork(scanResult)));
+        long flags = getSecurityFlags(scanResult);
+        return !(hasAnySecurityFlag(flags, SECURITY_FLAG_WEP | SECURITY_FLAG_PSK
+                        | SECURITY_FLAG_SAE | SECURITY_FLAG_WAPI_PSK | SECURITY_FLAG_WAPI_CERT
+                        | SECURITY_FLAG_UNKNOWN)
+                || isEapNetwork(flags)
+                || isWpa3EnterpriseTransitionNetwork(flags)
+                || isWpa3EnterpriseOnlyNetwork(flags)
+                || isEapSuiteBNetwork(flags));
     }
 
     /**
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi.util;
+
+import android.annotation.NonNull;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Holds the most recently published immutable value of some piece of state owned by the main
+ * Wifi thread, so that binder threads can read it without posting to the Wifi thread.
+ *
+ * The owning thread is the only writer and calls {@link #publish(Object)} whenever the state
+ * changes. Readers call {@link #get()} from any thread; the read is a single volatile load and
+ * never blocks. Published values must not be modified after publication.
+ *
+ * @param <T> type of the published value
+ */
+@ThreadSafe
+public class VersionedSnapshot<T> {
+    /**
+     * A published value along with the version it was published at. Versions are strictly
+     * increasing for each {@link VersionedSnapshot}.
+     */
+    public static final class Snapshot<T> {
+        public final long version;
+        public final T value;
+
+        Snapshot(long version, T value) {
+            this.version = version;
+            this.value = value;
+        }
+    }
+
+    private volatile Snapshot<T> mCurrent;
+
+    /**
+     * Creates a new VersionedSnapshot with |initialValue| published at version 0.
+     */
+    public VersionedSnapshot(@NonNull T initialValue) {
+        mCurrent = new Snapshot<>(0, initialValue);
+    }
+
+    /**
+     * Publish a new value. Must only be called from the thread owning the underlying state.
+     *
+     * @param value immutable value to publish.
+     * @return the version of the newly published value.
+     */
+    public long publish(@NonNull T value) {
+        long version = mCurrent.version + 1;
+        mCurrent = new Snapshot<>(version, value);
+        return version;
+    }
+
+    /**
+     * Returns the latest published snapshot. Safe to call from any thread.
+     */
+    @NonNull
+    public Snapshot<T> get() {
+        return mCurrent;
+    }
+
+    /**
+     * Returns the latest published value. Safe to call from any thread.
+     */
+    @NonNull
+    public T getValue() {
+        return mCurrent.value;
+    }
+
+    /**
+     * Returns the version of the latest published value. Safe to call from any thread.
+     */
+    public long getVersion() {
+        return mCurrent.version;
+    }
+}
@@ -18,6 +18,7 @@ package com.android.server.wifi;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import androidx.test.filters.SmallTest;
 
@@ -167,4 +168,24 @@ public class ByteBufferReaderTest extends WifiBaseTest {
                 ByteBufferReader.readStringWithByteLength(buffer, StandardCharsets.US_ASCII);
         assertEquals(expectedValue, actualValue);
     }
+
+    /**
+     * Verify that skipping bytes advances the buffer position, and that skipping past the end of
+     * the buffer throws BufferUnderflowException without moving the buffer position.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void skip() throws Exception {
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[] {0x11, 0x22, 0x33});
+        ByteBufferReader.skip(buffer, 2);
+        assertEquals(2, buffer.position());
+        try {
+            ByteBufferReader.skip(buffer, 2);
+            fail("Expected BufferUnderflowException");
+        } catch (BufferUnderflowException e) {
+            assertEquals(2, buffer.position());
+        }
+        assertEquals(0x33, ByteBufferReader.readInteger(buffer, ByteOrder.BIG_ENDIAN, 1));
+    }
 }
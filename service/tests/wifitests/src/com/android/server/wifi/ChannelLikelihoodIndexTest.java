@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+import androidx.test.filters.SmallTest;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Set;
+
+/**
+ * Unit tests for {@link ChannelLikelihoodIndex}.
+ */
+@SmallTest
+public class ChannelLikelihoodIndexTest extends WifiBaseTest {
+    private static final String TEST_SSID_1 = "\"ssid1\"";
+    private static final String TEST_SSID_2 = "\"ssid2\"";
+    private static final int TEST_FREQ_1 = 2412;
+    private static final int TEST_FREQ_2 = 5180;
+    private static final int TEST_FREQ_3 = 5745;
+    private static final long TEST_AGE_MS = 60_000;
+
+    @Mock private Clock mClock;
+    private ChannelLikelihoodIndex mIndex;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        when(mClock.getElapsedSinceBootMillis()).thenReturn(1000L);
+        mIndex = new ChannelLikelihoodIndex(mClock);
+    }
+
+    private void noteFrequency(String ssid, int frequency, int count) {
+        for (int i = 0; i < count; i++) {
+            mIndex.noteFrequency(ssid, frequency);
+        }
+    }
+
+    /**
+     * Verify that the channels with the most observations are returned first.
+     */
+    @Test
+    public void testTopChannelsOrderedByLikelihood() {
+        noteFrequency(TEST_SSID_1, TEST_FREQ_1, 1);
+        noteFrequency(TEST_SSID_1, TEST_FREQ_2, 3);
+        noteFrequency(TEST_SSID_2, TEST_FREQ_3, 2);
+
+        Set<String> ssids = Set.of(TEST_SSID_1, TEST_SSID_2);
+        assertEquals(Set.of(TEST_FREQ_2), mIndex.getTopChannels(ssids, 1, TEST_AGE_MS));
+        assertEquals(Set.of(TEST_FREQ_2, TEST_FREQ_3),
+                mIndex.getTopChannels(ssids, 2, TEST_AGE_MS));
+        // 0 means no limit.
+        assertEquals(Set.of(TEST_FREQ_1, TEST_FREQ_2, TEST_FREQ_3),
+                mIndex.getTopChannels(ssids, 0, TEST_AGE_MS));
+    }
+
+    /**
+     * Verify that only channels on which the requested networks were observed are returned.
+     */
+    @Test
+    public void testTopChannelsFilteredBySsid() {
+        noteFrequency(TEST_SSID_1, TEST_FREQ_1, 1);
+        noteFrequency(TEST_SSID_2, TEST_FREQ_2, 5);
+
+        assertEquals(Set.of(TEST_FREQ_1),
+                mIndex.getTopChannels(Set.of(TEST_SSID_1), 1, TEST_AGE_MS));
+    }
+
+    /**
+     * Verify that channels without recent observations are skipped.
+     */
+    @Test
+    public void testTopChannelsFilteredByAge() {
+        noteFrequency(TEST_SSID_1, TEST_FREQ_1, 5);
+        when(mClock.getElapsedSinceBootMillis()).thenReturn(1000L + TEST_AGE_MS);
+        noteFrequency(TEST_SSID_1, TEST_FREQ_2, 1);
+        when(mClock.getElapsedSinceBootMillis()).thenReturn(2000L + TEST_AGE_MS);
+
+        assertEquals(Set.of(TEST_FREQ_2),
+                mIndex.getTopChannels(Set.of(TEST_SSID_1), 0, TEST_AGE_MS));
+    }
+
+    /**
+     * Verify that an observation noted with an explicit timestamp ages from that timestamp.
+     */
+    @Test
+    public void testNoteFrequencyWithTimestamp() {
+        mIndex.noteFrequency(TEST_SSID_1, TEST_FREQ_1, 0L);
+        mIndex.noteFrequency(TEST_SSID_1, TEST_FREQ_2, 1000L);
+        when(mClock.getElapsedSinceBootMillis()).thenReturn(1000L + TEST_AGE_MS);
+
+        assertEquals(Set.of(TEST_FREQ_2),
+                mIndex.getTopChannels(Set.of(TEST_SSID_1), 0, TEST_AGE_MS));
+        assertEquals(Set.of(TEST_FREQ_1, TEST_FREQ_2),
+                mIndex.getTopChannels(Set.of(TEST_SSID_1), 0, Long.MAX_VALUE));
+    }
+
+    /**
+     * Verify that removing a network removes its observations.
+     */
+    @Test
+    public void testRemoveNetwork() {
+        noteFrequency(TEST_SSID_1, TEST_FREQ_1, 5);
+        noteFrequency(TEST_SSID_2, TEST_FREQ_1, 1);
+        noteFrequency(TEST_SSID_2, TEST_FREQ_2, 2);
+
+        mIndex.removeNetwork(TEST_SSID_1);
+        Set<String> ssids = Set.of(TEST_SSID_1, TEST_SSID_2);
+        // TEST_FREQ_1 now only has 1 observation.
+        assertEquals(Set.of(TEST_FREQ_2), mIndex.getTopChannels(ssids, 1, TEST_AGE_MS));
+
+        mIndex.removeNetwork(TEST_SSID_2);
+        assertTrue(mIndex.getTopChannels(ssids, 0, TEST_AGE_MS).isEmpty());
+    }
+
+    /**
+     * Verify that removing a frequency of a network only removes its observations on that
+     * channel, and reorders the channels.
+     */
+    @Test
+    public void testRemoveFrequency() {
+        noteFrequency(TEST_SSID_1, TEST_FREQ_1, 3);
+        noteFrequency(TEST_SSID_2, TEST_FREQ_1, 1);
+        noteFrequency(TEST_SSID_2, TEST_FREQ_2, 2);
+        noteFrequency(TEST_SSID_1, TEST_FREQ_3, 1);
+        Set<String> ssids = Set.of(TEST_SSID_1, TEST_SSID_2);
+        assertEquals(Set.of(TEST_FREQ_1), mIndex.getTopChannels(ssids, 1, TEST_AGE_MS));
+
+        mIndex.removeFrequency(TEST_SSID_1, TEST_FREQ_1);
+        // TEST_FREQ_1 now only has 1 observation.
+        assertEquals(Set.of(TEST_FREQ_2), mIndex.getTopChannels(ssids, 1, TEST_AGE_MS));
+        assertEquals(Set.of(TEST_FREQ_3), mIndex.getTopChannels(Set.of(TEST_SSID_1), 0,
+                TEST_AGE_MS));
+
+        mIndex.removeFrequency(TEST_SSID_2, TEST_FREQ_1);
+        mIndex.removeFrequency(TEST_SSID_2, TEST_FREQ_3);
+        assertEquals(Set.of(TEST_FREQ_2, TEST_FREQ_3),
+                mIndex.getTopChannels(ssids, 0, TEST_AGE_MS));
+    }
+
+    /**
+     * Verify that counts are decayed so that recent observations can overtake old ones.
+     */
+    @Test
+    public void testCountsDecay() {
+        noteFrequency(TEST_SSID_1, TEST_FREQ_1, ChannelLikelihoodIndex.COUNT_DECAY_THRESHOLD - 1);
+        noteFrequency(TEST_SSID_1, TEST_FREQ_2, ChannelLikelihoodIndex.COUNT_DECAY_THRESHOLD / 2);
+        Set<String> ssids = Set.of(TEST_SSID_1);
+        assertEquals(Set.of(TEST_FREQ_1), mIndex.getTopChannels(ssids, 1, TEST_AGE_MS));
+
+        // Triggers the decay: TEST_FREQ_1 goes to half the threshold, TEST_FREQ_2 to a quarter.
+        noteFrequency(TEST_SSID_1, TEST_FREQ_1, 1);
+        noteFrequency(TEST_SSID_1, TEST_FREQ_2,
+                ChannelLikelihoodIndex.COUNT_DECAY_THRESHOLD / 4 + 1);
+        assertEquals(Set.of(TEST_FREQ_2), mIndex.getTopChannels(ssids, 1, TEST_AGE_MS));
+    }
+
+    /**
+     * Verify that clear removes all observations.
+     */
+    @Test
+    public void testClear() {
+        noteFrequency(TEST_SSID_1, TEST_FREQ_1, 1);
+        mIndex.clear();
+        assertTrue(mIndex.getTopChannels(Set.of(TEST_SSID_1), 0, TEST_AGE_MS).isEmpty());
+    }
+}
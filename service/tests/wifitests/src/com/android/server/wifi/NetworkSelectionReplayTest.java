@@ -0,0 +1,308 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyBoolean;
+import static org.mockito.Mockito.anyInt;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.validateMockitoUsage;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import android.content.Context;
+import android.net.wifi.ScanResult;
+import android.net.wifi.WifiConfiguration;
+import android.net.wifi.WifiInfo;
+import android.net.wifi.nl80211.DeviceWiphyCapabilities;
+import android.os.SystemClock;
+import android.util.LocalLog;
+import android.util.Log;
+
+import androidx.test.filters.LargeTest;
+
+import com.android.dx.mockito.inline.extended.ExtendedMockito;
+import com.android.server.wifi.WifiNetworkSelector.ClientModeManagerState;
+import com.android.server.wifi.util.WifiPermissionsUtil;
+import com.android.wifi.resources.R;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.MockitoSession;
+import org.mockito.Spy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Replays recorded scan traces through {@link WifiNetworkSelector} with the real
+ * {@link SavedNetworkNominator}, {@link ThroughputPredictor} and {@link ThroughputScorer}, and
+ * reports the latency of each stage of network selection.
+ *
+ * The report is written to logcat under the "NetworkSelectionReplay" tag, so changes to the
+ * network selection path can be compared on the same traces. This is a benchmark rather than a
+ * unit test, so it is excluded from the small test runs.
+ */
+@LargeTest
+public class NetworkSelectionReplayTest extends WifiBaseTest {
+    private static final String TAG = "NetworkSelectionReplay";
+    private static final String TEST_IFACE_NAME = "wlan0";
+    private static final String[] TRACES = {"assets/scan_trace_office.txt"};
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int ITERATIONS = 20;
+
+    @Mock private Context mContext;
+    @Mock private WifiConfigManager mWifiConfigManager;
+    @Mock private WifiScoreCard mWifiScoreCard;
+    @Mock private WifiScoreCard.PerBssid mPerBssid;
+    @Mock private WifiMetrics mWifiMetrics;
+    @Mock private WifiInjector mWifiInjector;
+    @Mock private ActiveModeWarden mActiveModeWarden;
+    @Mock private ClientModeManager mClientModeManager;
+    @Mock private DeviceWiphyCapabilities mDeviceCapabilities;
+    @Mock private Clock mClock;
+    @Mock private WifiChannelUtilization mWifiChannelUtilization;
+    @Mock private WifiGlobals mWifiGlobals;
+    @Mock private ScanRequestProxy mScanRequestProxy;
+    @Mock private PasspointNetworkNominateHelper mPasspointNetworkNominateHelper;
+    @Mock private WifiCarrierInfoManager mWifiCarrierInfoManager;
+    @Mock private WifiPermissionsUtil mWifiPermissionsUtil;
+    @Mock private WifiNetworkSuggestionsManager mWifiNetworkSuggestionsManager;
+    // For simulating the resources, we use a Spy on a MockResource
+    // (which is really more of a stub than a mock, in spite if its name).
+    // This is so that we get errors on any calls that we have not explicitly set up.
+    @Spy private MockResources mResource = new MockResources();
+
+    private MockitoSession mSession;
+    private WifiNetworkSelector mWifiNetworkSelector;
+
+    /**
+     * Latency of a stage of network selection, over all the iterations.
+     */
+    private static class StageStats {
+        private final String mName;
+        private final List<Long> mLatenciesNs = new ArrayList<>();
+
+        StageStats(String name) {
+            mName = name;
+        }
+
+        void add(long latencyNs) {
+            mLatenciesNs.add(latencyNs);
+        }
+
+        @Override
+        public String toString() {
+            if (mLatenciesNs.isEmpty()) return mName + ": n/a";
+            List<Long> sorted = new ArrayList<>(mLatenciesNs);
+            Collections.sort(sorted);
+            return mName + ": latency(us) min=" + sorted.get(0) / 1000
+                    + " median=" + sorted.get(sorted.size() / 2) / 1000
+                    + " max=" + sorted.get(sorted.size() - 1) / 1000;
+        }
+    }
+
+    /** Sets up test. */
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        // static mocking
+        mSession = ExtendedMockito.mockitoSession()
+                .mockStatic(WifiInjector.class, withSettings().lenient())
+                .startMocking();
+        when(WifiInjector.getInstance()).thenReturn(mWifiInjector);
+        when(mWifiInjector.getActiveModeWarden()).thenReturn(mActiveModeWarden);
+        when(mWifiInjector.getWifiGlobals()).thenReturn(mWifiGlobals);
+        when(mActiveModeWarden.getPrimaryClientModeManager()).thenReturn(mClientModeManager);
+        when(mClientModeManager.getDeviceWiphyCapabilities()).thenReturn(mDeviceCapabilities);
+        setupDeviceCapabilities();
+        setupResources();
+        when(mContext.getResources()).thenReturn(mResource);
+        when(mClock.getElapsedSinceBootMillis()).thenReturn(SystemClock.elapsedRealtime());
+        when(mWifiScoreCard.lookupBssid(any(), any())).thenReturn(mPerBssid);
+        when(mPasspointNetworkNominateHelper.getPasspointNetworkCandidates(any(), anyBoolean()))
+                .thenReturn(new ArrayList<>());
+        when(mWifiConfigManager.getLastSelectedNetwork())
+                .thenReturn(WifiConfiguration.INVALID_NETWORK_ID);
+
+        ScoringParams scoringParams = new ScoringParams();
+        LocalLog localLog = new LocalLog(512);
+        mWifiNetworkSelector = new WifiNetworkSelector(
+                mContext,
+                mWifiScoreCard,
+                scoringParams,
+                mWifiConfigManager, mClock,
+                localLog,
+                mWifiMetrics,
+                mWifiInjector,
+                new ThroughputPredictor(mContext),
+                mWifiChannelUtilization,
+                mWifiGlobals,
+                mScanRequestProxy);
+        mWifiNetworkSelector.registerNetworkNominator(new SavedNetworkNominator(
+                mWifiConfigManager, mPasspointNetworkNominateHelper, localLog,
+                mWifiCarrierInfoManager, mWifiPermissionsUtil, mWifiNetworkSuggestionsManager));
+        mWifiNetworkSelector.registerCandidateScorer(new ThroughputScorer(scoringParams));
+    }
+
+    /** Cleans up test. */
+    @After
+    public void cleanup() {
+        validateMockitoUsage();
+        if (mSession != null) {
+            mSession.finishMocking();
+        }
+    }
+
+    private void setupDeviceCapabilities() {
+        when(mDeviceCapabilities.isWifiStandardSupported(ScanResult.WIFI_STANDARD_11N))
+                .thenReturn(true);
+        when(mDeviceCapabilities.isWifiStandardSupported(ScanResult.WIFI_STANDARD_11AC))
+                .thenReturn(true);
+        when(mDeviceCapabilities.isWifiStandardSupported(ScanResult.WIFI_STANDARD_11AX))
+                .thenReturn(false);
+        when(mDeviceCapabilities.isChannelWidthSupported(ScanResult.CHANNEL_WIDTH_40MHZ))
+                .thenReturn(true);
+        when(mDeviceCapabilities.isChannelWidthSupported(ScanResult.CHANNEL_WIDTH_80MHZ))
+                .thenReturn(true);
+        when(mDeviceCapabilities.isChannelWidthSupported(ScanResult.CHANNEL_WIDTH_160MHZ))
+                .thenReturn(false);
+        when(mDeviceCapabilities.getMaxNumberTxSpatialStreams()).thenReturn(2);
+        when(mDeviceCapabilities.getMaxNumberRxSpatialStreams()).thenReturn(2);
+    }
+
+    private void setupResources() {
+        doReturn(true).when(mResource).getBoolean(
+                R.bool.config_wifi_framework_enable_associated_network_selection);
+        doReturn(60_000).when(mResource).getInteger(
+                R.integer.config_wifiSufficientDurationAfterUserSelectionMilliseconds);
+        doReturn(false).when(mResource).getBoolean(R.bool.config_wifi11axSupportOverride);
+        doReturn(false).when(mResource).getBoolean(
+                R.bool.config_wifiFrameworkMaxNumSpatialStreamDeviceOverrideEnable);
+        doReturn(2).when(mResource).getInteger(
+                R.integer.config_wifiFrameworkMaxNumSpatialStreamDeviceOverrideValue);
+    }
+
+    /**
+     * Back the mocked WifiConfigManager with the given saved networks, matching scan results
+     * the same way the real config store does.
+     */
+    private void setupConfigStore(WifiConfiguration[] savedNetworks) {
+        List<WifiConfiguration> networks = Arrays.asList(savedNetworks);
+        List<ScanResultMatchInfo> matchInfos = new ArrayList<>();
+        for (WifiConfiguration network : savedNetworks) {
+            matchInfos.add(ScanResultMatchInfo.fromWifiConfiguration(network));
+        }
+        when(mWifiConfigManager.getConfiguredNetworks()).thenReturn(networks);
+        when(mWifiConfigManager.getConfiguredNetwork(anyInt())).thenAnswer(invocation -> {
+            int networkId = invocation.getArgument(0);
+            for (WifiConfiguration network : savedNetworks) {
+                if (network.networkId == networkId) return network;
+            }
+            return null;
+        });
+        when(mWifiConfigManager.getSavedNetworkForScanDetailAndCache(any()))
+                .thenAnswer(invocation -> {
+                    ScanDetail scanDetail = invocation.getArgument(0);
+                    ScanResultMatchInfo matchInfo =
+                            ScanResultMatchInfo.fromScanResult(scanDetail.getScanResult());
+                    for (int i = 0; i < savedNetworks.length; i++) {
+                        if (matchInfos.get(i).equals(matchInfo)) return savedNetworks[i];
+                    }
+                    return null;
+                });
+    }
+
+    private static Set<String> getSsids(WifiConfiguration[] networks) {
+        Set<String> ssids = new HashSet<>();
+        for (WifiConfiguration network : networks) {
+            ssids.add(network.SSID);
+        }
+        return ssids;
+    }
+
+    private WifiConfiguration replayScan(List<ScanDetail> scanDetails,
+            StageStats nominateStats, StageStats selectStats) {
+        List<ClientModeManagerState> cmmStates = Arrays.asList(
+                new ClientModeManagerState(TEST_IFACE_NAME, false, true, new WifiInfo()));
+
+        long start = System.nanoTime();
+        List<WifiCandidates.Candidate> candidates = mWifiNetworkSelector.getCandidatesFromScan(
+                scanDetails, new HashSet<>(), cmmStates, false, true, true);
+        long nominateNs = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        WifiConfiguration selected = mWifiNetworkSelector.selectNetwork(candidates);
+        long selectNs = System.nanoTime() - start;
+
+        if (nominateStats != null) {
+            nominateStats.add(nominateNs);
+            selectStats.add(selectNs);
+        }
+        return selected;
+    }
+
+    private void replayTrace(String traceName) throws Exception {
+        ScanTrace trace = ScanTrace.loadFromResource(traceName);
+        WifiConfiguration[] savedNetworks = trace.generateSavedNetworks();
+        setupConfigStore(savedNetworks);
+        Set<String> savedSsids = getSsids(savedNetworks);
+        assertFalse(trace.getNumScans() == 0);
+
+        for (int i = 0; i < trace.getNumScans(); i++) {
+            List<ScanDetail> scanDetails = trace.getScan(i);
+            StageStats nominateStats = new StageStats("nominate");
+            StageStats selectStats = new StageStats("select");
+            WifiConfiguration selected = replayScan(scanDetails, null, null);
+            assertNotNull("No network selected for scan " + i + " of " + traceName, selected);
+            assertTrue(savedSsids.contains(selected.SSID));
+            for (int j = 1; j < WARMUP_ITERATIONS + ITERATIONS; j++) {
+                boolean measured = j >= WARMUP_ITERATIONS;
+                // Nothing is connected between the replays, so each replay of the same scan
+                // must select the same network.
+                assertSame(selected, replayScan(scanDetails, measured ? nominateStats : null,
+                        measured ? selectStats : null));
+            }
+            Log.i(TAG, traceName + " scan " + i + " at " + trace.getScanTimeMs(i) + "ms ("
+                    + scanDetails.size() + " results, selected " + selected.SSID + "): "
+                    + nominateStats + "; " + selectStats);
+        }
+    }
+
+    /**
+     * Replay the recorded scan traces through network selection and report the latency of each
+     * stage. Every scan of the traces contains at least one saved network, so a saved network must
+     * be selected for each of them.
+     */
+    @Test
+    public void replayScanTraces() throws Exception {
+        for (String traceName : TRACES) {
+            replayTrace(traceName);
+        }
+    }
+}
@@ -33,6 +33,7 @@ import android.content.Context;
 import android.content.Intent;
 import android.net.wifi.IScanResultsCallback;
 import android.net.wifi.ScanResult;
+import android.net.wifi.ScanResultsDelta;
 import android.net.wifi.WifiManager;
 import android.net.wifi.WifiScanner;
 import android.net.wifi.WifiScanner.ScanSettings.HiddenNetwork;
@@ -57,8 +58,12 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * Unit tests for {@link com.android.server.wifi.ScanRequestProxy}.
@@ -345,6 +350,87 @@ public class ScanRequestProxyTest extends WifiBaseTest {
         verifyScanMetricsDataWasSet();
     }
 
+    /**
+     * Verify that the scan results snapshot is published on scan results and cleared when
+     * scanning is disabled.
+     */
+    @Test
+    public void testScanResultsSnapshot() {
+        assertTrue(mScanRequestProxy.getScanResultsSnapshot().isEmpty());
+        testStartScanSuccess();
+
+        mGlobalScanListenerArgumentCaptor.getValue().onResults(mTestScanDatas1);
+        ScanTestUtil.assertScanResultsEqualsAnyOrder(
+                mTestScanDatas1[0].getResults(),
+                mScanRequestProxy.getScanResultsSnapshot().stream().toArray(ScanResult[]::new));
+
+        mScanRequestProxy.enableScanning(false, false);
+        assertTrue(mScanRequestProxy.getScanResultsSnapshot().isEmpty());
+    }
+
+    /**
+     * Verify that scan result deltas report the scan results added, updated and removed since
+     * the requested generation.
+     */
+    @Test
+    public void testScanResultsDelta() {
+        ScanResultsDelta delta = mScanRequestProxy.getScanResultsDelta(0);
+        assertFalse(delta.isFullSnapshot());
+        assertEquals(0, delta.getGeneration());
+        assertTrue(delta.getUpdatedResults().isEmpty());
+        testStartScanSuccess();
+
+        mGlobalScanListenerArgumentCaptor.getValue().onResults(mTestScanDatas1);
+        delta = mScanRequestProxy.getScanResultsDelta(0);
+        assertFalse(delta.isFullSnapshot());
+        assertEquals(1, delta.getGeneration());
+        ScanTestUtil.assertScanResultsEqualsAnyOrder(mTestScanDatas1[0].getResults(),
+                delta.getUpdatedResults().stream().toArray(ScanResult[]::new));
+        assertTrue(delta.getRemovedBssids().isEmpty());
+
+        // Same scan results again, nothing changed.
+        mGlobalScanListenerArgumentCaptor.getValue().onResults(mTestScanDatas1);
+        delta = mScanRequestProxy.getScanResultsDelta(1);
+        assertEquals(2, delta.getGeneration());
+        assertTrue(delta.getUpdatedResults().isEmpty());
+        assertTrue(delta.getRemovedBssids().isEmpty());
+
+        mGlobalScanListenerArgumentCaptor.getValue().onResults(mTestScanDatas2);
+        Set<String> expectedRemovedBssids = Arrays.stream(mTestScanDatas1[0].getResults())
+                .map(s -> s.BSSID).collect(Collectors.toSet());
+        for (long sinceGeneration : new long[] {0, 1, 2}) {
+            delta = mScanRequestProxy.getScanResultsDelta(sinceGeneration);
+            assertFalse(delta.isFullSnapshot());
+            assertEquals(3, delta.getGeneration());
+            ScanTestUtil.assertScanResultsEqualsAnyOrder(mTestScanDatas2[0].getResults(),
+                    delta.getUpdatedResults().stream().toArray(ScanResult[]::new));
+            assertEquals(expectedRemovedBssids, new HashSet<>(delta.getRemovedBssids()));
+        }
+
+        // Unknown generation returns a full snapshot.
+        delta = mScanRequestProxy.getScanResultsDelta(-1);
+        assertTrue(delta.isFullSnapshot());
+        assertEquals(3, delta.getGeneration());
+        ScanTestUtil.assertScanResultsEqualsAnyOrder(mTestScanDatas2[0].getResults(),
+                delta.getUpdatedResults().stream().toArray(ScanResult[]::new));
+        assertTrue(delta.getRemovedBssids().isEmpty());
+    }
+
+    /**
+     * Verify that a full snapshot is returned when the requested generation is older than the
+     * delta history.
+     */
+    @Test
+    public void testScanResultsDeltaHistoryExceeded() {
+        testStartScanSuccess();
+        for (int i = 0; i <= ScanRequestProxy.MAX_SCAN_RESULTS_DELTA_HISTORY; i++) {
+            mGlobalScanListenerArgumentCaptor.getValue().onResults(
+                    i % 2 == 0 ? mTestScanDatas1 : mTestScanDatas2);
+        }
+        assertTrue(mScanRequestProxy.getScanResultsDelta(0).isFullSnapshot());
+        assertFalse(mScanRequestProxy.getScanResultsDelta(1).isFullSnapshot());
+    }
+
     /**
      * Verify a successful scan request and processing of scan failure.
      */
@@ -21,7 +21,9 @@ import static android.net.wifi.WifiManager.WIFI_FEATURE_WPA3_SAE;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.validateMockitoUsage;
 import static org.mockito.Mockito.when;
@@ -540,4 +542,25 @@ public class ScanResultMatchInfoTest extends WifiBaseTest {
         assertNull(fromWifiConfig.matchForNetworkSelection(fromScanResult));
         assertFalse(fromWifiConfig.networkTypeEquals(fromScanResult));
     }
+
+    /**
+     * Verify that the ScanResultMatchInfo of a ScanDetail is computed once, and recomputed when
+     * the SSID or capabilities of its scan result change.
+     */
+    @Test
+    public void testScanDetailMatchInfoCached() {
+        WifiConfiguration pskConfig = WifiConfigurationTestUtil.createPskNetwork(TEST_SSID);
+        ScanDetail scanDetail = createScanDetailForNetwork(pskConfig, TEST_BSSID);
+        ScanResultMatchInfo matchInfo = scanDetail.getScanResultMatchInfo();
+        assertEquals(ScanResultMatchInfo.fromWifiConfiguration(pskConfig), matchInfo);
+        assertEquals(matchInfo.hashCode(),
+                ScanResultMatchInfo.fromWifiConfiguration(pskConfig).hashCode());
+        assertSame(matchInfo, scanDetail.getScanResultMatchInfo());
+
+        WifiConfiguration openConfig = WifiConfigurationTestUtil.createOpenNetwork(TEST_SSID);
+        scanDetail.getScanResult().capabilities = "[ESS]";
+        ScanResultMatchInfo updatedMatchInfo = scanDetail.getScanResultMatchInfo();
+        assertNotSame(matchInfo, updatedMatchInfo);
+        assertEquals(ScanResultMatchInfo.fromWifiConfiguration(openConfig), updatedMatchInfo);
+    }
 }
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi;
+
+import static com.android.server.wifi.WifiConfigurationTestUtil.SECURITY_EAP;
+import static com.android.server.wifi.WifiConfigurationTestUtil.SECURITY_NONE;
+import static com.android.server.wifi.WifiConfigurationTestUtil.SECURITY_PSK;
+import static com.android.server.wifi.WifiConfigurationTestUtil.SECURITY_SAE;
+
+import android.net.wifi.ScanResult.InformationElement;
+import android.net.wifi.WifiConfiguration;
+import android.net.wifi.WifiSsid;
+
+import com.android.server.wifi.hotspot2.NetworkDetail;
+import com.android.server.wifi.util.InformationElementUtil;
+import com.android.server.wifi.util.NativeUtil;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recorded scans and saved networks, loaded from a scan trace file to replay them through
+ * network selection.
+ *
+ * A scan trace is a text file with one entry per line:
+ * <ul>
+ * <li>network &lt;NONE|PSK|SAE|EAP&gt; &lt;SSID&gt;: a saved network.</li>
+ * <li>scan &lt;elapsed time in ms&gt;: starts a new scan.</li>
+ * <li>&lt;BSSID&gt; &lt;frequency&gt; &lt;RSSI&gt; &lt;capabilities&gt; &lt;IEs&gt; &lt;SSID&gt;:
+ * a scan result of the current scan. IEs are in hex, or "-" if none, and the SSID IE is
+ * added when loading the trace.</li>
+ * </ul>
+ * Empty lines and lines starting with '#' are ignored.
+ */
+public class ScanTrace {
+    private final List<String> mSavedNetworkSsids = new ArrayList<>();
+    private final List<Integer> mSavedNetworkSecurities = new ArrayList<>();
+    private final List<Long> mScanTimesMs = new ArrayList<>();
+    private final List<List<ScanDetail>> mScans = new ArrayList<>();
+
+    private ScanTrace() {
+    }
+
+    /**
+     * Load the scan trace from the given resource of the test package, e.g.
+     * "assets/scan_trace_office.txt".
+     */
+    public static ScanTrace loadFromResource(String resourceName) throws IOException {
+        InputStream in = ScanTrace.class.getClassLoader().getResourceAsStream(resourceName);
+        if (in == null) {
+            throw new IOException("Scan trace not found: " + resourceName);
+        }
+        try (BufferedReader reader =
+                new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            return parse(reader);
+        }
+    }
+
+    private static ScanTrace parse(BufferedReader reader) throws IOException {
+        ScanTrace trace = new ScanTrace();
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            try {
+                if (line.startsWith("network ")) {
+                    String[] fields = line.split(" ", 3);
+                    trace.mSavedNetworkSsids.add("\"" + fields[2] + "\"");
+                    trace.mSavedNetworkSecurities.add(parseSecurity(fields[1]));
+                } else if (line.startsWith("scan ")) {
+                    trace.mScanTimesMs.add(Long.parseLong(line.substring(5).trim()));
+                    trace.mScans.add(new ArrayList<>());
+                } else {
+                    if (trace.mScans.isEmpty()) {
+                        throw new IllegalArgumentException("Scan result outside of a scan");
+                    }
+                    trace.mScans.get(trace.mScans.size() - 1).add(
+                            parseScanDetail(line, trace.mScanTimesMs.get(
+                                    trace.mScanTimesMs.size() - 1)));
+                }
+            } catch (RuntimeException e) {
+                throw new IOException("Invalid scan trace line " + lineNumber + ": " + line, e);
+            }
+        }
+        return trace;
+    }
+
+    private static int parseSecurity(String security) {
+        switch (security) {
+            case "NONE":
+                return SECURITY_NONE;
+            case "PSK":
+                return SECURITY_PSK;
+            case "SAE":
+                return SECURITY_SAE;
+            case "EAP":
+                return SECURITY_EAP;
+            default:
+                throw new IllegalArgumentException("Unknown security " + security);
+        }
+    }
+
+    private static ScanDetail parseScanDetail(String line, long scanTimeMs) {
+        String[] fields = line.split(" ", 6);
+        String bssid = fields[0];
+        int frequency = Integer.parseInt(fields[1]);
+        int rssi = Integer.parseInt(fields[2]);
+        String caps = fields[3];
+        byte[] ssid = fields[5].getBytes(StandardCharsets.UTF_8);
+        byte[] otherIes = fields[4].equals("-")
+                ? new byte[0] : NativeUtil.hexStringToByteArray(fields[4]);
+        byte[] ieBytes = new byte[2 + ssid.length + otherIes.length];
+        ieBytes[0] = (byte) InformationElement.EID_SSID;
+        ieBytes[1] = (byte) ssid.length;
+        System.arraycopy(ssid, 0, ieBytes, 2, ssid.length);
+        System.arraycopy(otherIes, 0, ieBytes, 2 + ssid.length, otherIes.length);
+
+        InformationElement[] ies = InformationElementUtil.parseInformationElements(ieBytes);
+        NetworkDetail networkDetail = new NetworkDetail(bssid, ies, new ArrayList<>(), frequency);
+        return new ScanDetail(networkDetail, WifiSsid.createFromByteArray(ssid), bssid, caps,
+                rssi, frequency, scanTimeMs * 1000, ies, new ArrayList<>(), ieBytes);
+    }
+
+    /**
+     * Generate the configurations of the saved networks of the trace, with network IDs
+     * starting at 0.
+     */
+    public WifiConfiguration[] generateSavedNetworks() {
+        String[] ssids = mSavedNetworkSsids.toArray(new String[0]);
+        int[] securities = new int[mSavedNetworkSecurities.size()];
+        for (int i = 0; i < securities.length; i++) {
+            securities[i] = mSavedNetworkSecurities.get(i);
+        }
+        return WifiNetworkSelectorTestUtil.generateWifiConfigurations(ssids, securities);
+    }
+
+    /** Number of scans in the trace. */
+    public int getNumScans() {
+        return mScans.size();
+    }
+
+    /** Elapsed time at which the scan at the given index was recorded. */
+    public long getScanTimeMs(int index) {
+        return mScanTimesMs.get(index);
+    }
+
+    /** Scan results of the scan at the given index. */
+    public List<ScanDetail> getScan(int index) {
+        return mScans.get(index);
+    }
+}
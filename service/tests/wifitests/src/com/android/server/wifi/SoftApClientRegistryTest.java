@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.net.MacAddress;
+import android.net.wifi.WifiClient;
+
+import androidx.test.filters.SmallTest;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Unit tests for {@link SoftApClientRegistry}.
+ */
+@SmallTest
+public class SoftApClientRegistryTest extends WifiBaseTest {
+    private static final String TEST_INSTANCE_1 = "wlan1";
+    private static final String TEST_INSTANCE_2 = "wlan2";
+    private static final MacAddress TEST_MAC_1 = MacAddress.fromString("22:33:44:55:66:77");
+    private static final MacAddress TEST_MAC_2 = MacAddress.fromString("22:33:44:55:66:78");
+    private static final MacAddress TEST_MAC_3 = MacAddress.fromString("22:33:44:55:66:79");
+
+    private SoftApClientRegistry mRegistry;
+
+    @Before
+    public void setUp() throws Exception {
+        mRegistry = new SoftApClientRegistry();
+    }
+
+    /**
+     * Verify that clients are indexed by MAC address and counted per AP instance.
+     */
+    @Test
+    public void testAddAndRemoveClients() {
+        WifiClient client1 = new WifiClient(TEST_MAC_1, TEST_INSTANCE_1);
+        WifiClient client2 = new WifiClient(TEST_MAC_2, TEST_INSTANCE_1);
+        WifiClient client3 = new WifiClient(TEST_MAC_3, TEST_INSTANCE_2);
+        assertTrue(mRegistry.add(client1));
+        assertTrue(mRegistry.add(client2));
+        assertTrue(mRegistry.add(client3));
+        assertFalse(mRegistry.add(new WifiClient(TEST_MAC_1, TEST_INSTANCE_1)));
+
+        assertEquals(3, mRegistry.getCount());
+        assertEquals(2, mRegistry.getCount(TEST_INSTANCE_1));
+        assertEquals(1, mRegistry.getCount(TEST_INSTANCE_2));
+        assertTrue(mRegistry.contains(client2));
+        assertEquals(client3, mRegistry.getClient(TEST_MAC_3));
+        assertEquals(Arrays.asList(client1, client2, client3),
+                new ArrayList<>(mRegistry.getClients()));
+        assertEquals(Arrays.asList(client1, client2),
+                mRegistry.getClientsByInstance().get(TEST_INSTANCE_1));
+
+        assertFalse(mRegistry.remove(new WifiClient(TEST_MAC_2, TEST_INSTANCE_2)));
+        assertTrue(mRegistry.remove(client2));
+        assertFalse(mRegistry.contains(client2));
+        assertNull(mRegistry.getClient(TEST_MAC_2));
+        assertEquals(2, mRegistry.getCount());
+        assertEquals(1, mRegistry.getCount(TEST_INSTANCE_1));
+    }
+
+    /**
+     * Verify that a client connecting to another AP instance is moved to that instance.
+     */
+    @Test
+    public void testClientMovedToAnotherInstance() {
+        mRegistry.add(new WifiClient(TEST_MAC_1, TEST_INSTANCE_1));
+        WifiClient movedClient = new WifiClient(TEST_MAC_1, TEST_INSTANCE_2);
+        assertTrue(mRegistry.add(movedClient));
+
+        assertEquals(1, mRegistry.getCount());
+        assertEquals(0, mRegistry.getCount(TEST_INSTANCE_1));
+        assertEquals(1, mRegistry.getCount(TEST_INSTANCE_2));
+        // The late disconnection from the previous instance is ignored.
+        assertFalse(mRegistry.remove(new WifiClient(TEST_MAC_1, TEST_INSTANCE_1)));
+        assertTrue(mRegistry.contains(movedClient));
+    }
+
+    /**
+     * Verify that AP instances are kept without clients, and that removing an instance removes
+     * its clients.
+     */
+    @Test
+    public void testAddAndRemoveInstances() {
+        assertTrue(mRegistry.addInstance(TEST_INSTANCE_1).isEmpty());
+        mRegistry.add(new WifiClient(TEST_MAC_1, TEST_INSTANCE_2));
+        mRegistry.add(new WifiClient(TEST_MAC_2, TEST_INSTANCE_2));
+        assertEquals(Set.of(TEST_INSTANCE_1, TEST_INSTANCE_2), mRegistry.getInstances());
+        assertEquals(Collections.emptyList(),
+                mRegistry.getClientsByInstance().get(TEST_INSTANCE_1));
+
+        mRegistry.removeInstance(TEST_INSTANCE_2);
+        assertEquals(Set.of(TEST_INSTANCE_1), mRegistry.getInstances());
+        assertEquals(0, mRegistry.getCount());
+        assertNull(mRegistry.getClient(TEST_MAC_1));
+
+        mRegistry.clear();
+        assertTrue(mRegistry.getInstances().isEmpty());
+    }
+
+    /**
+     * Verify that the clients by instance are reported in the same form as a map of client
+     * lists.
+     */
+    @Test
+    public void testClientsByInstanceEqualsClientListMap() {
+        WifiClient client1 = new WifiClient(TEST_MAC_1, TEST_INSTANCE_1);
+        mRegistry.add(client1);
+        mRegistry.addInstance(TEST_INSTANCE_2);
+
+        List<WifiClient> expectedClients = new ArrayList<>();
+        expectedClients.add(client1);
+        assertEquals(Map.of(TEST_INSTANCE_1, expectedClients,
+                TEST_INSTANCE_2, new ArrayList<>()), mRegistry.getClientsByInstance());
+    }
+}
@@ -102,6 +102,10 @@ public class WifiCandidatesTest extends WifiBaseTest {
 
         doReturn(mScanResult1).when(mScanDetail1).getScanResult();
         doReturn(mScanResult2).when(mScanDetail2).getScanResult();
+        doAnswer(invocation -> ScanResultMatchInfo.fromScanResult(mScanResult1))
+                .when(mScanDetail1).getScanResultMatchInfo();
+        doAnswer(invocation -> ScanResultMatchInfo.fromScanResult(mScanResult2))
+                .when(mScanDetail2).getScanResultMatchInfo();
         doReturn(mPerBssid).when(mWifiScoreCard).lookupBssid(any(), any());
         doReturn(50).when(mPerBssid).estimatePercentInternetAvailability();
         MockResources mResources = new MockResources();
@@ -23,10 +23,13 @@ import static com.android.server.wifi.WifiChannelUtilization.CHANNEL_STATS_CACHE
 import static com.android.server.wifi.WifiChannelUtilization.DEFAULT_CACHE_UPDATE_INTERVAL_MIN_MS;
 import static com.android.server.wifi.WifiChannelUtilization.RADIO_ON_TIME_DIFF_MIN_MS;
 import static com.android.server.wifi.WifiChannelUtilization.UNKNOWN_FREQ;
+import static com.android.server.wifi.WifiChannelUtilization.UTILIZATION_AVERAGE_WINDOW_MS;
+import static com.android.server.wifi.WifiChannelUtilization.UTILIZATION_HISTORY_SIZE;
 import static com.android.server.wifi.util.InformationElementUtil.BssLoad.INVALID;
 import static com.android.server.wifi.util.InformationElementUtil.BssLoad.MAX_CHANNEL_UTILIZATION;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.mockito.Mockito.*;
 import static org.mockito.Mockito.validateMockitoUsage;
 
@@ -430,6 +433,65 @@ public class WifiChannelUtilizationTest extends WifiBaseTest {
                 mWifiChannelUtilization.getUtilizationRatio(freq));
     }
 
+    @Test
+    public void verifyTwoReadChanStatsWithManyFrequencies() throws Exception {
+        int numFreqs = 40;
+        WifiLinkLayerStats llstats1 = new WifiLinkLayerStats();
+        WifiLinkLayerStats llstats2 = new WifiLinkLayerStats();
+        for (int i = 0; i < numFreqs; i++) {
+            int freq = 5180 + i * 20;
+            ChannelStats cs1 = new ChannelStats();
+            cs1.frequency = freq;
+            cs1.radioOnTimeMs = RADIO_ON_TIME_DIFF_MIN_MS;
+            cs1.ccaBusyTimeMs = i;
+            llstats1.channelStatsMap.put(freq, cs1);
+            ChannelStats cs2 = new ChannelStats();
+            cs2.frequency = freq;
+            cs2.radioOnTimeMs = RADIO_ON_TIME_DIFF_MIN_MS * 3;
+            cs2.ccaBusyTimeMs = i * 3;
+            llstats2.channelStatsMap.put(freq, cs2);
+        }
+        when(mClock.getElapsedSinceBootMillis()).thenReturn(1L);
+        mWifiChannelUtilization.refreshChannelStatsAndChannelUtilization(llstats1, UNKNOWN_FREQ);
+        when(mClock.getElapsedSinceBootMillis()).thenReturn(2L);
+        mWifiChannelUtilization.refreshChannelStatsAndChannelUtilization(llstats2, UNKNOWN_FREQ);
+
+        for (int i = 0; i < numFreqs; i++) {
+            assertEquals(i * 2 * MAX_CHANNEL_UTILIZATION / (RADIO_ON_TIME_DIFF_MIN_MS * 2),
+                    mWifiChannelUtilization.getUtilizationRatio(5180 + i * 20));
+        }
+    }
+
+    @Test
+    public void verifyAverageUtilizationRatio() throws Exception {
+        int freq = 5180;
+        int numReads = UTILIZATION_HISTORY_SIZE + 2;
+        for (int i = 0; i < numReads; i++) {
+            WifiLinkLayerStats llstats = new WifiLinkLayerStats();
+            ChannelStats cs = new ChannelStats();
+            cs.frequency = freq;
+            cs.radioOnTimeMs = RADIO_ON_TIME_DIFF_MIN_MS * 2 * (i + 1);
+            cs.ccaBusyTimeMs = 10 * (i + 1);
+            llstats.channelStatsMap.put(freq, cs);
+            when(mClock.getElapsedSinceBootMillis()).thenReturn(1000L * i);
+            mWifiChannelUtilization.refreshChannelStatsAndChannelUtilization(llstats, freq);
+        }
+
+        assertEquals(INVALID, mWifiChannelUtilization.getAverageUtilizationRatio(5200));
+        // All the readings are referenced to the first one, which has the same utilization.
+        int latestUtilizationRatio = mWifiChannelUtilization.getUtilizationRatio(freq);
+        assertNotEquals(INVALID, latestUtilizationRatio);
+        mWifiChannelUtilization.setUtilizationRatio(freq, latestUtilizationRatio + 10);
+        assertEquals(latestUtilizationRatio,
+                mWifiChannelUtilization.getAverageUtilizationRatio(freq));
+
+        // Without estimates in the window, the latest utilization ratio is used.
+        when(mClock.getElapsedSinceBootMillis())
+                .thenReturn(1000L * numReads + UTILIZATION_AVERAGE_WINDOW_MS);
+        assertEquals(latestUtilizationRatio + 10,
+                mWifiChannelUtilization.getAverageUtilizationRatio(freq));
+    }
+
     @Test
     public void verifySetGetUtilizationRatio() throws Exception {
         int freq = 5180;
@@ -20,7 +20,9 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.any;
@@ -2197,6 +2199,196 @@ public class WifiConfigManagerTest extends WifiBaseTest {
                 retrievedNetworkWithPassword.enterpriseConfig.getPassword());
     }
 
+    /**
+     * Verifies that the legacy saved network snapshots are shared between callers of the same
+     * visibility class and mask the randomized MAC address accordingly.
+     */
+    @Test
+    public void testGetLegacySavedNetworksSnapshotIsCachedPerVisibilityClass() {
+        WifiConfiguration config = WifiConfigurationTestUtil.createOpenNetwork();
+        verifyAddNetworkToWifiConfigManager(config);
+
+        List<WifiConfiguration> privilegedConfigs =
+                mWifiConfigManager.getLegacySavedNetworksSnapshot(Process.WIFI_UID);
+        assertEquals(1, privilegedConfigs.size());
+        String macAddress = privilegedConfigs.get(0).getRandomizedMacAddress().toString();
+        assertNotEquals(WifiInfo.DEFAULT_MAC_ADDRESS, macAddress);
+        assertSame(privilegedConfigs,
+                mWifiConfigManager.getLegacySavedNetworksSnapshot(Process.SYSTEM_UID));
+        assertSame(privilegedConfigs,
+                mWifiConfigManager.getLegacySavedNetworksSnapshot(Process.WIFI_UID));
+
+        List<WifiConfiguration> maskedConfigs =
+                mWifiConfigManager.getLegacySavedNetworksSnapshot(Process.INVALID_UID);
+        assertNotSame(privilegedConfigs, maskedConfigs);
+        assertEquals(1, maskedConfigs.size());
+        assertRandomizedMacAddressMaskedInWifiConfiguration(maskedConfigs.get(0));
+
+        List<WifiConfiguration> carrierConfigs =
+                mWifiConfigManager.getLegacySavedNetworksSnapshot(TEST_CREATOR_UID);
+        assertEquals(macAddress, carrierConfigs.get(0).getRandomizedMacAddress().toString());
+        assertRandomizedMacAddressMaskedInWifiConfiguration(mWifiConfigManager
+                .getLegacySavedNetworksSnapshot(TEST_CREATOR_UID + 100).get(0));
+    }
+
+    /**
+     * Verifies that the legacy saved network snapshots are rebuilt when the configured networks
+     * change.
+     */
+    @Test
+    public void testGetLegacySavedNetworksSnapshotRebuiltOnNetworkChanges() {
+        WifiConfiguration network1 = WifiConfigurationTestUtil.createOpenNetwork();
+        WifiConfiguration network2 = WifiConfigurationTestUtil.createPskNetwork();
+        verifyAddNetworkToWifiConfigManager(network1);
+        long generation = mWifiConfigManager.getConfigGeneration();
+        List<WifiConfiguration> configs =
+                mWifiConfigManager.getLegacySavedNetworksSnapshot(Process.WIFI_UID);
+        assertEquals(1, configs.size());
+
+        NetworkUpdateResult result = verifyAddNetworkToWifiConfigManager(network2);
+        assertTrue(mWifiConfigManager.getConfigGeneration() > generation);
+        List<WifiConfiguration> updatedConfigs =
+                mWifiConfigManager.getLegacySavedNetworksSnapshot(Process.WIFI_UID);
+        assertNotSame(configs, updatedConfigs);
+        List<WifiConfiguration> savedNetworks =
+                mWifiConfigManager.getSavedNetworks(Process.WIFI_UID);
+        assertEquals(2, savedNetworks.size());
+        assertEquals(WifiConfigurationUtil.convertMultiTypeConfigsToLegacyConfigs(savedNetworks)
+                .size(), updatedConfigs.size());
+
+        // The candidate bookkeeping of network selection isn't visible to callers, so it must
+        // not invalidate the snapshot.
+        assertTrue(mWifiConfigManager.setNetworkCandidateScanResult(result.getNetworkId(),
+                createScanDetailForNetwork(network2).getScanResult(), 54,
+                SecurityParams.createSecurityParamsBySecurityType(
+                        WifiConfiguration.SECURITY_TYPE_PSK)));
+        assertTrue(mWifiConfigManager.clearNetworkCandidateScanResult(result.getNetworkId()));
+        assertSame(updatedConfigs,
+                mWifiConfigManager.getLegacySavedNetworksSnapshot(Process.WIFI_UID));
+    }
+
+    /**
+     * Returns the network with the given network ID in a new legacy saved network snapshot,
+     * after verifying that the snapshot was rebuilt since |previousSnapshot|.
+     */
+    private WifiConfiguration getNetworkFromRebuiltSnapshot(
+            List<WifiConfiguration> previousSnapshot, int networkId) {
+        List<WifiConfiguration> snapshot =
+                mWifiConfigManager.getLegacySavedNetworksSnapshot(Process.WIFI_UID);
+        assertNotSame(previousSnapshot, snapshot);
+        for (WifiConfiguration config : snapshot) {
+            if (config.networkId == networkId) return config;
+        }
+        fail("Network " + networkId + " not found in the snapshot");
+        return null;
+    }
+
+    /**
+     * Verifies that the legacy saved network snapshots reflect the runtime updates of the
+     * configured networks which are not followed by a store write.
+     */
+    @Test
+    public void testGetLegacySavedNetworksSnapshotReflectsRuntimeUpdates() {
+        WifiConfiguration network1 = WifiConfigurationTestUtil.createOpenNetwork();
+        WifiConfiguration network2 = WifiConfigurationTestUtil.createOpenNetwork();
+        int networkId = verifyAddNetworkToWifiConfigManager(network1).getNetworkId();
+        int otherNetworkId = verifyAddNetworkToWifiConfigManager(network2).getNetworkId();
+
+        List<WifiConfiguration> snapshot =
+                mWifiConfigManager.getLegacySavedNetworksSnapshot(Process.WIFI_UID);
+        mWifiConfigManager.noteCaptivePortalDetected(networkId);
+        WifiConfiguration config = getNetworkFromRebuiltSnapshot(snapshot, networkId);
+        assertFalse(config.getNetworkSelectionStatus().hasNeverDetectedCaptivePortal());
+
+        snapshot = mWifiConfigManager.getLegacySavedNetworksSnapshot(Process.WIFI_UID);
+        assertTrue(mWifiConfigManager.setNetworkDefaultGwMacAddress(
+                networkId, TEST_DEFAULT_GW_MAC_ADDRESS));
+        config = getNetworkFromRebuiltSnapshot(snapshot, networkId);
+        assertEquals(TEST_DEFAULT_GW_MAC_ADDRESS, config.defaultGwMacAddress);
+
+        snapshot = mWifiConfigManager.getLegacySavedNetworksSnapshot(Process.WIFI_UID);
+        assertTrue(mWifiConfigManager.incrementNetworkNoInternetAccessReports(networkId));
+        config = getNetworkFromRebuiltSnapshot(snapshot, networkId);
+        assertEquals(1, config.numNoInternetAccessReports);
+
+        snapshot = mWifiConfigManager.getLegacySavedNetworksSnapshot(Process.WIFI_UID);
+        assertTrue(mWifiConfigManager.setNetworkNoInternetAccessExpected(networkId, true));
+        config = getNetworkFromRebuiltSnapshot(snapshot, networkId);
+        assertTrue(config.noInternetAccessExpected);
+
+        mWifiConfigManager.setRecentFailureAssociationStatus(networkId,
+                WifiConfiguration.RECENT_FAILURE_POOR_CHANNEL_CONDITIONS);
+        snapshot = mWifiConfigManager.getLegacySavedNetworksSnapshot(Process.WIFI_UID);
+        mWifiConfigManager.clearRecentFailureReason(networkId);
+        config = getNetworkFromRebuiltSnapshot(snapshot, networkId);
+        assertEquals(WifiConfiguration.RECENT_FAILURE_NONE, config.getRecentFailureReason());
+
+        verifySetUserConnectChoice(networkId, otherNetworkId);
+        snapshot = mWifiConfigManager.getLegacySavedNetworksSnapshot(Process.WIFI_UID);
+        mWifiConfigManager.removeConnectChoiceFromAllNetworks(
+                mWifiConfigManager.getConfiguredNetwork(networkId).getProfileKey());
+        config = getNetworkFromRebuiltSnapshot(snapshot, otherNetworkId);
+        assertNull(config.getNetworkSelectionStatus().getConnectChoice());
+    }
+
+    /**
+     * Verifies that the legacy saved network snapshots reflect randomized MAC address updates,
+     * which change the configured networks without a store write.
+     */
+    @Test
+    public void testGetLegacySavedNetworksSnapshotReflectsRandomizedMacUpdate() {
+        setUpWifiConfigurationForEnhancedRandomization();
+        WifiConfiguration config = getFirstInternalWifiConfiguration();
+        MacAddress randMac = mWifiConfigManager.getLegacySavedNetworksSnapshot(Process.WIFI_UID)
+                .get(0).getRandomizedMacAddress();
+        assertEquals(config.getRandomizedMacAddress(), randMac);
+
+        when(mClock.getWallClockMillis()).thenReturn(TEST_WALLCLOCK_CREATION_TIME_MILLIS
+                + WifiConfigManager.ENHANCED_MAC_WAIT_AFTER_DISCONNECT_MS + 1);
+        MacAddress randMac2 = mWifiConfigManager.getRandomizedMacAndUpdateIfNeeded(config);
+        assertNotEquals(randMac, randMac2);
+        assertEquals(randMac2, mWifiConfigManager.getLegacySavedNetworksSnapshot(Process.WIFI_UID)
+                .get(0).getRandomizedMacAddress());
+    }
+
+    /**
+     * Verifies that the legacy saved network snapshots reflect the linking of networks, which
+     * changes the configured networks without a store write.
+     */
+    @Test
+    public void testGetLegacySavedNetworksSnapshotReflectsLinkedNetworks() {
+        WifiConfiguration network1 = WifiConfigurationTestUtil.createPskNetwork();
+        WifiConfiguration network2 = WifiConfigurationTestUtil.createPskNetwork();
+        verifyAddNetworkToWifiConfigManager(network1);
+        verifyAddNetworkToWifiConfigManager(network2);
+        assertTrue(mWifiConfigManager.setNetworkDefaultGwMacAddress(
+                network1.networkId, TEST_DEFAULT_GW_MAC_ADDRESS));
+        assertTrue(mWifiConfigManager.setNetworkDefaultGwMacAddress(
+                network2.networkId, TEST_DEFAULT_GW_MAC_ADDRESS));
+        assertNotNull(mWifiConfigManager.getSavedNetworkForScanDetailAndCache(
+                createScanDetailForNetwork(network1)));
+        assertNotNull(mWifiConfigManager.getSavedNetworkForScanDetailAndCache(
+                createScanDetailForNetwork(network2)));
+        mWifiConfigManager.updateNetworkSelectionStatus(network1.networkId,
+                TEST_NETWORK_SELECTION_ENABLE_REASON);
+        mWifiConfigManager.updateNetworkSelectionStatus(network2.networkId,
+                TEST_NETWORK_SELECTION_ENABLE_REASON);
+        for (WifiConfiguration config
+                : mWifiConfigManager.getLegacySavedNetworksSnapshot(Process.WIFI_UID)) {
+            assertTrue(config.linkedConfigurations == null
+                    || config.linkedConfigurations.isEmpty());
+        }
+
+        mWifiConfigManager.updateLinkedNetworks(network1.networkId);
+
+        List<WifiConfiguration> configs =
+                mWifiConfigManager.getLegacySavedNetworksSnapshot(Process.WIFI_UID);
+        assertEquals(2, configs.size());
+        for (WifiConfiguration config : configs) {
+            assertEquals(1, config.linkedConfigurations.size());
+        }
+    }
+
     /**
      * Verifies that randomized MAC address is masked out when we return
      * external configs except when explicitly asked for MAC address.
@@ -3047,6 +3239,55 @@ public class WifiConfigManagerTest extends WifiBaseTest {
         }
     }
 
+    /**
+     * Verifies that networks are only linked with the networks which share a BSSID prefix in
+     * {@link WifiConfigManager#getOrCreateScanDetailCacheForNetwork(WifiConfiguration)}, and
+     * that removed networks are no longer considered for linking.
+     */
+    @Test
+    public void testNetworkLinkUsingBSSIDPrefixIndex() {
+        WifiConfiguration network1 = WifiConfigurationTestUtil.createPskNetwork();
+        WifiConfiguration network2 = WifiConfigurationTestUtil.createPskNetwork();
+        WifiConfiguration network3 = WifiConfigurationTestUtil.createPskNetwork();
+        verifyAddNetworkToWifiConfigManager(network1);
+        verifyAddNetworkToWifiConfigManager(network2);
+        verifyAddNetworkToWifiConfigManager(network3);
+
+        // Networks 1 & 2 share AP hardware (with a different case), network 3 does not.
+        assertNotNull(mWifiConfigManager.getSavedNetworkForScanDetailAndCache(
+                createScanDetailForNetwork(network1, "af:89:56:34:56:67")));
+        assertNotNull(mWifiConfigManager.getSavedNetworkForScanDetailAndCache(
+                createScanDetailForNetwork(network2, "AF:89:56:34:56:68")));
+        assertNotNull(mWifiConfigManager.getSavedNetworkForScanDetailAndCache(
+                createScanDetailForNetwork(network3, "12:89:56:34:56:67")));
+
+        mWifiConfigManager.updateNetworkSelectionStatus(network1.networkId,
+                TEST_NETWORK_SELECTION_ENABLE_REASON);
+        mWifiConfigManager.updateNetworkSelectionStatus(network2.networkId,
+                TEST_NETWORK_SELECTION_ENABLE_REASON);
+        mWifiConfigManager.updateNetworkSelectionStatus(network3.networkId,
+                TEST_NETWORK_SELECTION_ENABLE_REASON);
+        mWifiConfigManager.updateLinkedNetworks(network1.networkId);
+        mWifiConfigManager.updateLinkedNetworks(network3.networkId);
+
+        WifiConfiguration retrievedNetwork1 =
+                mWifiConfigManager.getConfiguredNetwork(network1.networkId);
+        assertEquals(1, retrievedNetwork1.linkedConfigurations.size());
+        assertNotNull(retrievedNetwork1.linkedConfigurations.get(network2.getProfileKey()));
+        WifiConfiguration retrievedNetwork2 =
+                mWifiConfigManager.getConfiguredNetwork(network2.networkId);
+        assertEquals(1, retrievedNetwork2.linkedConfigurations.size());
+        assertNotNull(retrievedNetwork2.linkedConfigurations.get(network1.getProfileKey()));
+        assertNull(mWifiConfigManager.getConfiguredNetwork(network3.networkId)
+                .linkedConfigurations);
+
+        // Remove network 2 and ensure network 1 is no longer linked.
+        verifyRemoveNetworkFromWifiConfigManager(network2);
+        mWifiConfigManager.updateLinkedNetworks(network1.networkId);
+        assertNull(mWifiConfigManager.getConfiguredNetwork(network1.networkId)
+                .linkedConfigurations);
+    }
+
     /**
      * Verifies the foreground user switch using {@link WifiConfigManager#handleUserSwitch(int)}
      * and ensures that any shared private networks networkId is not changed.
@@ -4236,6 +4477,40 @@ public class WifiConfigManagerTest extends WifiBaseTest {
         assertEquals(network1.SSID, hiddenNetworks.get(2).ssid);
     }
 
+    /**
+     * Verifies that the network list generated using
+     * {@link WifiConfigManager#retrieveHiddenNetworkList()} is updated on network add, remove
+     * and connection.
+     */
+    @Test
+    public void testRetrieveHiddenListUpdatedOnNetworkChanges() {
+        WifiConfiguration network1 = WifiConfigurationTestUtil.createPskHiddenNetwork();
+        WifiConfiguration network2 = WifiConfigurationTestUtil.createOpenHiddenNetwork();
+        WifiConfiguration network3 = WifiConfigurationTestUtil.createPskNetwork();
+        verifyAddNetworkToWifiConfigManager(network1);
+        verifyAddNetworkToWifiConfigManager(network3);
+
+        List<WifiScanner.ScanSettings.HiddenNetwork> hiddenNetworks =
+                mWifiConfigManager.retrieveHiddenNetworkList();
+        assertEquals(1, hiddenNetworks.size());
+        assertEquals(network1.SSID, hiddenNetworks.get(0).ssid);
+        // Modifying the returned list must not affect the next retrieval.
+        hiddenNetworks.clear();
+        assertEquals(1, mWifiConfigManager.retrieveHiddenNetworkList().size());
+
+        verifyAddNetworkToWifiConfigManager(network2);
+        mWifiConfigManager.updateNetworkAfterConnect(network2.networkId, false, TEST_RSSI);
+        hiddenNetworks = mWifiConfigManager.retrieveHiddenNetworkList();
+        assertEquals(2, hiddenNetworks.size());
+        assertEquals(network2.SSID, hiddenNetworks.get(0).ssid);
+        assertEquals(network1.SSID, hiddenNetworks.get(1).ssid);
+
+        verifyRemoveNetworkFromWifiConfigManager(network2);
+        hiddenNetworks = mWifiConfigManager.retrieveHiddenNetworkList();
+        assertEquals(1, hiddenNetworks.size());
+        assertEquals(network1.SSID, hiddenNetworks.get(0).ssid);
+    }
+
     /**
      * Verifies the addition of network configurations using
      * {@link WifiConfigManager#addOrUpdateNetwork(WifiConfiguration, int)} with same SSID and
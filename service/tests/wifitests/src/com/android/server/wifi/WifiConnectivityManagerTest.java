@@ -184,6 +184,8 @@ public class WifiConnectivityManagerTest extends WifiBaseTest {
         Comparator<WifiConfiguration> comparator =
                 Comparator.comparingInt(mLruConnectionTracker::getAgeIndexOfNetwork);
         when(mWifiConfigManager.getScanListComparator()).thenReturn(comparator);
+        mChannelLikelihoodIndex = new ChannelLikelihoodIndex(mClock);
+        when(mWifiScoreCard.getChannelLikelihoodIndex()).thenReturn(mChannelLikelihoodIndex);
     }
 
     private void setUpResources(MockResources resources) {
@@ -255,6 +257,7 @@ public class WifiConnectivityManagerTest extends WifiBaseTest {
     @Mock private PasspointManager mPasspointManager;
     @Mock private WifiScoreCard.PerNetwork mPerNetwork;
     @Mock private WifiScoreCard.PerNetwork mPerNetwork1;
+    private ChannelLikelihoodIndex mChannelLikelihoodIndex;
     @Mock private PasspointConfiguration mPasspointConfiguration;
     @Mock private WifiConfiguration mSuggestionConfig;
     @Mock private WifiNetworkSuggestion mWifiNetworkSuggestion;
@@ -4107,21 +4110,57 @@ public class WifiConnectivityManagerTest extends WifiBaseTest {
     }
 
     /**
-     * Verify that the length of frequency set will not exceed the provided max value
+     * Verify that the length of frequency set will not exceed the provided max value, and that
+     * the channels of the most recently connected network are picked first, followed by the
+     * channels networks were most often observed on.
      */
     @Test
     public void testFetchChannelSetForPartialScanMaxCount() {
         WifiConfiguration configuration1 = WifiConfigurationTestUtil.createOpenNetwork();
         WifiConfiguration configuration2 = WifiConfigurationTestUtil.createOpenNetwork();
         when(mWifiConfigManager.getSavedNetworks(anyInt()))
-                .thenReturn(Arrays.asList(configuration1, configuration2));
+                .thenReturn(new ArrayList<>(Arrays.asList(configuration1, configuration2)));
 
         List<List<Integer>> freqs = linkScoreCardFreqsToNetwork(configuration1, configuration2);
+        for (int freq : freqs.get(0)) {
+            mChannelLikelihoodIndex.noteFrequency(configuration1.SSID, freq);
+        }
+        for (int freq : freqs.get(1)) {
+            mChannelLikelihoodIndex.noteFrequency(configuration2.SSID, freq);
+        }
+        mChannelLikelihoodIndex.noteFrequency(configuration1.SSID, TEST_FREQUENCY_3);
 
-        mLruConnectionTracker.addNetwork(configuration2);
         mLruConnectionTracker.addNetwork(configuration1);
+        mLruConnectionTracker.addNetwork(configuration2);
 
-        assertEquals(new HashSet<>(freqs.get(0)), mWifiConnectivityManager
+        assertEquals(new HashSet<>(freqs.get(1)), mWifiConnectivityManager
+                .fetchChannelSetForPartialScan(3, CHANNEL_CACHE_AGE_MINS));
+
+        Set<Integer> expected = new HashSet<>(freqs.get(1));
+        expected.add(TEST_FREQUENCY_3);
+        assertEquals(expected, mWifiConnectivityManager
+                .fetchChannelSetForPartialScan(4, CHANNEL_CACHE_AGE_MINS));
+    }
+
+    /**
+     * Verify that the partial scan channels only include channels on which networks eligible
+     * for scan optimization were observed.
+     */
+    @Test
+    public void testFetchChannelSetForPartialScanIgnoresIneligibleNetworks() {
+        WifiConfiguration configuration1 = WifiConfigurationTestUtil.createOpenNetwork();
+        WifiConfiguration configuration2 = WifiConfigurationTestUtil.createOpenNetwork();
+        configuration2.allowAutojoin = false;
+        when(mWifiConfigManager.getSavedNetworks(anyInt()))
+                .thenReturn(new ArrayList<>(Arrays.asList(configuration1, configuration2)));
+
+        when(mWifiScoreCard.lookupNetwork(configuration1.SSID)).thenReturn(mPerNetwork);
+        when(mPerNetwork.getFrequencies(anyLong())).thenReturn(new ArrayList<>());
+        mChannelLikelihoodIndex.noteFrequency(configuration1.SSID, TEST_FREQUENCY_1);
+        mChannelLikelihoodIndex.noteFrequency(configuration2.SSID, TEST_FREQUENCY_2);
+        mChannelLikelihoodIndex.noteFrequency(configuration2.SSID, TEST_FREQUENCY_2);
+
+        assertEquals(Set.of(TEST_FREQUENCY_1), mWifiConnectivityManager
                 .fetchChannelSetForPartialScan(3, CHANNEL_CACHE_AGE_MINS));
     }
 
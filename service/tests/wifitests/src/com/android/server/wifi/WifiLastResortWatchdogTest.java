@@ -17,6 +17,7 @@
 package com.android.server.wifi;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.*;
 import static org.mockito.MockitoAnnotations.*;
@@ -241,6 +242,42 @@ public class WifiLastResortWatchdogTest extends WifiBaseTest {
         assertEquals(mLastResortWatchdog.getRecentAvailableNetworks().size(), 0);
     };
 
+    /**
+     * Test that the trigger condition only considers the SSIDs which are still available, when an
+     * SSID over the failure threshold is culled.
+     * Expected behaviour: Watchdog triggers once the remaining SSID is over the failure threshold
+     */
+    @Test
+    public void testTriggerConditionAfterFailedSsidCulled() throws Exception {
+        List<Pair<ScanDetail, WifiConfiguration>> candidates = createFilteredQnsCandidates(
+                Arrays.copyOfRange(mSsids, 0, 2), Arrays.copyOfRange(mBssids, 0, 2),
+                Arrays.copyOfRange(mFrequencies, 0, 2), Arrays.copyOfRange(mCaps, 0, 2),
+                Arrays.copyOfRange(mLevels, 0, 2), Arrays.copyOfRange(mIsEphemeral, 0, 2));
+        mLastResortWatchdog.updateAvailableNetworks(candidates);
+        for (int i = 0; i < WifiLastResortWatchdog.FAILURE_THRESHOLD; i++) {
+            assertFalse(mLastResortWatchdog.noteConnectionFailureAndTriggerIfNeeded(mSsids[0],
+                    mBssids[0], WifiLastResortWatchdog.FAILURE_CODE_ASSOCIATION, false));
+        }
+        assertTrue(mLastResortWatchdog.isOverFailureThreshold(mBssids[0]));
+
+        // Only the second network is seen until the first one is culled
+        candidates = createFilteredQnsCandidates(
+                Arrays.copyOfRange(mSsids, 1, 2), Arrays.copyOfRange(mBssids, 1, 2),
+                Arrays.copyOfRange(mFrequencies, 1, 2), Arrays.copyOfRange(mCaps, 1, 2),
+                Arrays.copyOfRange(mLevels, 1, 2), Arrays.copyOfRange(mIsEphemeral, 1, 2));
+        for (int i = 0; i < WifiLastResortWatchdog.MAX_BSSID_AGE; i++) {
+            mLastResortWatchdog.updateAvailableNetworks(candidates);
+        }
+        assertEquals(1, mLastResortWatchdog.getRecentAvailableNetworks().size());
+
+        for (int i = 0; i < WifiLastResortWatchdog.FAILURE_THRESHOLD - 1; i++) {
+            assertFalse(mLastResortWatchdog.noteConnectionFailureAndTriggerIfNeeded(mSsids[1],
+                    mBssids[1], WifiLastResortWatchdog.FAILURE_CODE_DHCP, false));
+        }
+        assertTrue(mLastResortWatchdog.noteConnectionFailureAndTriggerIfNeeded(mSsids[1],
+                mBssids[1], WifiLastResortWatchdog.FAILURE_CODE_DHCP, false));
+    }
+
     /**
      * Case 3: Adding more networks over time
      * In this test, each successive (4 total) scan result buffers one more network.
@@ -112,7 +112,7 @@ public class WifiLockManagerTest extends WifiBaseTest {
         when(mClientModeManager2.getRole()).thenReturn(ROLE_CLIENT_SECONDARY_TRANSIENT);
 
         mWifiLockManager = new WifiLockManager(mContext, mBatteryStats,
-                mActiveModeWarden, mFrameworkFacade, mHandler, mClock, mWifiMetrics);
+                mActiveModeWarden, mFrameworkFacade, mHandler, mHandler, mClock, mWifiMetrics);
         verify(mContext, atLeastOnce()).registerReceiver(
                 mBroadcastReceiverCaptor.capture(), any(), any(), any());
         verify(mActiveModeWarden).registerPrimaryClientModeManagerChangedCallback(
@@ -127,6 +127,7 @@ public class WifiLockManagerTest extends WifiBaseTest {
         assertTrue(mWifiLockManager.acquireWifiLock(lockMode, tag, binder, ws));
         assertThat(mWifiLockManager.getStrongestLockMode(),
                 not(WifiManager.WIFI_MODE_NO_LOCKS_HELD));
+        mLooper.dispatchAll();
         InOrder inOrder = inOrder(binder, mBatteryStats);
 
         inOrder.verify(binder).linkToDeath(deathRecipient.capture(), eq(0));
@@ -148,6 +149,7 @@ public class WifiLockManagerTest extends WifiBaseTest {
                 ArgumentCaptor.forClass(IBinder.DeathRecipient.class);
 
         assertTrue(mWifiLockManager.releaseWifiLock(binder));
+        mLooper.dispatchAll();
         InOrder inOrder = inOrder(binder, mBatteryStats);
         inOrder.verify(binder).unlinkToDeath(deathRecipient.capture(), eq(0));
         inOrder.verify(mBatteryStats).reportFullWifiLockReleasedFromSource(any(WorkSource.class));
@@ -158,6 +160,7 @@ public class WifiLockManagerTest extends WifiBaseTest {
                 ArgumentCaptor.forClass(IBinder.DeathRecipient.class);
 
         assertTrue(mWifiLockManager.releaseWifiLock(binder));
+        mLooper.dispatchAll();
         InOrder inOrder = inOrder(binder, mBatteryStats);
         inOrder.verify(binder).unlinkToDeath(deathRecipient.capture(), eq(0));
     }
@@ -167,6 +170,7 @@ public class WifiLockManagerTest extends WifiBaseTest {
                 ArgumentCaptor.forClass(IBinder.DeathRecipient.class);
 
         assertTrue(mWifiLockManager.releaseWifiLock(binder));
+        mLooper.dispatchAll();
         InOrder inOrder = inOrder(binder, mBatteryStats);
         inOrder.verify(binder).unlinkToDeath(deathRecipient.capture(), eq(0));
         inOrder.verify(mBatteryStats).reportFullWifiLockReleasedFromSource(any(WorkSource.class));
@@ -330,6 +334,7 @@ public class WifiLockManagerTest extends WifiBaseTest {
                 DEFAULT_TEST_UID_1, "chain2");
 
         mWifiLockManager.updateWifiLockWorkSource(mBinder, updated);
+        mLooper.dispatchAll();
         InOrder inOrder = inOrder(mBatteryStats);
         inOrder.verify(mBatteryStats).reportFullWifiLockAcquiredFromSource(eq(updated));
         inOrder.verify(mBatteryStats).reportFullWifiLockReleasedFromSource(mChainedWorkSource);
@@ -351,6 +356,7 @@ public class WifiLockManagerTest extends WifiBaseTest {
         acquireWifiLockSuccessful(WifiManager.WIFI_MODE_FULL_HIGH_PERF, "", mBinder, mWorkSource);
 
         mWifiLockManager.updateWifiLockWorkSource(mBinder, newWorkSource);
+        mLooper.dispatchAll();
         InOrder inOrder = inOrder(mBatteryStats);
         inOrder.verify(mBatteryStats).reportFullWifiLockAcquiredFromSource(eq(newWorkSource));
         inOrder.verify(mBatteryStats).reportFullWifiLockReleasedFromSource(mWorkSource);
@@ -370,6 +376,7 @@ public class WifiLockManagerTest extends WifiBaseTest {
         acquireWifiLockSuccessful(WifiManager.WIFI_MODE_FULL_HIGH_PERF, "", mBinder, mWorkSource);
 
         mWifiLockManager.updateWifiLockWorkSource(mBinder, newWorkSource);
+        mLooper.dispatchAll();
         InOrder inOrder = inOrder(mBatteryStats);
         inOrder.verify(mBatteryStats).reportFullWifiLockAcquiredFromSource(eq(newWorkSource));
         inOrder.verify(mBatteryStats).reportFullWifiLockReleasedFromSource(mWorkSource);
@@ -1229,6 +1236,7 @@ public class WifiLockManagerTest extends WifiBaseTest {
         assertTrue(mWifiLockManager.acquireWifiLock(WifiManager.WIFI_MODE_FULL_HIGH_PERF, "",
                 mBinder, mWorkSource));
         assertEquals(WifiManager.WIFI_MODE_NO_LOCKS_HELD, mWifiLockManager.getStrongestLockMode());
+        mLooper.dispatchAll();
         verify(mBatteryStats, never()).reportFullWifiLockAcquiredFromSource(any());
     }
 
@@ -1243,6 +1251,7 @@ public class WifiLockManagerTest extends WifiBaseTest {
         mWifiLockManager.updateWifiClientConnected(mClientModeManager, true);
 
         assertEquals(WifiManager.WIFI_MODE_FULL_HIGH_PERF, mWifiLockManager.getStrongestLockMode());
+        mLooper.dispatchAll();
         verify(mBatteryStats).reportFullWifiLockAcquiredFromSource(eq(mWorkSource));
     }
 
@@ -1260,6 +1269,7 @@ public class WifiLockManagerTest extends WifiBaseTest {
         mWifiLockManager.updateWifiClientConnected(mClientModeManager, false);
 
         assertEquals(WifiManager.WIFI_MODE_NO_LOCKS_HELD, mWifiLockManager.getStrongestLockMode());
+        mLooper.dispatchAll();
         verify(mBatteryStats).reportFullWifiLockReleasedFromSource(mWorkSource);
     }
 
@@ -1467,6 +1477,25 @@ public class WifiLockManagerTest extends WifiBaseTest {
                 mWifiLockManager.getStrongestLockMode());
     }
 
+    /**
+     * Verify that the lock state changes are reported to battery stats on the stats handler,
+     * in the order in which they happened.
+     */
+    @Test
+    public void testBatteryStatsReportedInOrderOnStatsHandler() throws Exception {
+        mWifiLockManager.updateWifiClientConnected(mClientModeManager, true);
+        assertTrue(mWifiLockManager.acquireWifiLock(WifiManager.WIFI_MODE_FULL_HIGH_PERF, "",
+                mBinder, mWorkSource));
+        assertTrue(mWifiLockManager.releaseWifiLock(mBinder));
+        assertEquals(WifiManager.WIFI_MODE_NO_LOCKS_HELD, mWifiLockManager.getStrongestLockMode());
+        verify(mBatteryStats, never()).reportFullWifiLockAcquiredFromSource(any());
+
+        mLooper.dispatchAll();
+        InOrder inOrder = inOrder(mBatteryStats);
+        inOrder.verify(mBatteryStats).reportFullWifiLockAcquiredFromSource(mWorkSource);
+        inOrder.verify(mBatteryStats).reportFullWifiLockReleasedFromSource(mWorkSource);
+    }
+
     private void setScreenState(boolean screenOn) {
         BroadcastReceiver broadcastReceiver = mBroadcastReceiverCaptor.getValue();
         assertNotNull(broadcastReceiver);
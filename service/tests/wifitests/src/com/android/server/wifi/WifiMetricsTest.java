@@ -574,6 +574,8 @@ public class WifiMetricsTest extends WifiBaseTest {
         ScanResult mockScanResult = mock(ScanResult.class);
         when(mockScanDetail.getNetworkDetail()).thenReturn(mockNetworkDetail);
         when(mockScanDetail.getScanResult()).thenReturn(mockScanResult);
+        when(mockScanDetail.getScanResultMatchInfo())
+                .thenAnswer(invocation -> ScanResultMatchInfo.fromScanResult(mockScanResult));
         when(mockNetworkDetail.isHiddenBeaconFrame()).thenReturn(hidden);
         when(mockNetworkDetail.getHSRelease()).thenReturn(hSRelease);
         mockScanResult.capabilities = capabilities;
@@ -608,6 +610,8 @@ public class WifiMetricsTest extends WifiBaseTest {
         scanResult.BSSID = bssid;
         when(mockScanDetail.getNetworkDetail()).thenReturn(mockNetworkDetail);
         when(mockScanDetail.getScanResult()).thenReturn(scanResult);
+        when(mockScanDetail.getScanResultMatchInfo())
+                .thenAnswer(invocation -> ScanResultMatchInfo.fromScanResult(scanResult));
         when(mWns.isSignalTooWeak(eq(scanResult))).thenReturn(isWeakRssi);
         scanResult.capabilities = isOpen ? "" : "PSK";
         if (isSaved) {
@@ -635,6 +639,8 @@ public class WifiMetricsTest extends WifiBaseTest {
         scanResult.capabilities = "PSK";
         when(mockScanDetail.getNetworkDetail()).thenReturn(mockNetworkDetail);
         when(mockScanDetail.getScanResult()).thenReturn(scanResult);
+        when(mockScanDetail.getScanResultMatchInfo())
+                .thenAnswer(invocation -> ScanResultMatchInfo.fromScanResult(scanResult));
         when(mockNetworkDetail.getHSRelease()).thenReturn(hsRelease);
         when(mockNetworkDetail.getAnqpDomainID()).thenReturn(anqpDomainId);
         when(mockNetworkDetail.isInterworking()).thenReturn(true);
@@ -3176,6 +3182,10 @@ public class WifiMetricsTest extends WifiBaseTest {
         when(mockScanDetail80211mc.getNetworkDetail()).thenReturn(mockNetworkDetail80211mc);
         when(mockScanDetailNon80211mc.getScanResult()).thenReturn(mockScanResult);
         when(mockScanDetail80211mc.getScanResult()).thenReturn(mockScanResult);
+        when(mockScanDetailNon80211mc.getScanResultMatchInfo())
+                .thenAnswer(invocation -> ScanResultMatchInfo.fromScanResult(mockScanResult));
+        when(mockScanDetail80211mc.getScanResultMatchInfo())
+                .thenAnswer(invocation -> ScanResultMatchInfo.fromScanResult(mockScanResult));
         when(mWns.isSignalTooWeak(eq(mockScanDetail80211mc.getScanResult()))).thenReturn(true);
         List<ScanDetail> scan = new ArrayList<ScanDetail>();
 
@@ -22,6 +22,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -509,6 +510,63 @@ public class WifiMonitorTest extends WifiBaseTest {
         assertEquals(newState, result.state);
     }
 
+    /**
+     * Verify that repeated identical supplicant state change events are dispatched when
+     * coalescing is disabled, and dropped when it is enabled unless another event was sent in
+     * between.
+     */
+    @Test
+    public void testCoalesceSupplicantStateChangeEvents() {
+        mWifiMonitor.registerHandler(
+                WLAN_IFACE_NAME, WifiMonitor.SUPPLICANT_STATE_CHANGE_EVENT, mHandlerSpy);
+        mWifiMonitor.registerHandler(
+                WLAN_IFACE_NAME, WifiMonitor.ASSOCIATED_BSSID_EVENT, mHandlerSpy);
+        WifiSsid wifiSsid = WifiSsid.createFromAsciiEncoded(SSID);
+
+        // Disabled by default.
+        mWifiMonitor.broadcastSupplicantStateChangeEvent(
+                WLAN_IFACE_NAME, NETWORK_ID, wifiSsid, BSSID, SupplicantState.ASSOCIATED);
+        mWifiMonitor.broadcastSupplicantStateChangeEvent(
+                WLAN_IFACE_NAME, NETWORK_ID, wifiSsid, BSSID, SupplicantState.ASSOCIATED);
+        mLooper.dispatchAll();
+        verify(mHandlerSpy, times(2)).handleMessage(any(Message.class));
+
+        mWifiMonitor.setCoalesceSupplicantStateChangeEvents(true);
+        mWifiMonitor.broadcastSupplicantStateChangeEvent(
+                WLAN_IFACE_NAME, NETWORK_ID, wifiSsid, BSSID, SupplicantState.ASSOCIATED);
+        mWifiMonitor.broadcastSupplicantStateChangeEvent(
+                WLAN_IFACE_NAME, NETWORK_ID, wifiSsid, BSSID, SupplicantState.ASSOCIATED);
+        mLooper.dispatchAll();
+        verify(mHandlerSpy, times(3)).handleMessage(any(Message.class));
+
+        // A different state is dispatched.
+        mWifiMonitor.broadcastSupplicantStateChangeEvent(
+                WLAN_IFACE_NAME, NETWORK_ID, wifiSsid, BSSID, SupplicantState.COMPLETED);
+        mLooper.dispatchAll();
+        verify(mHandlerSpy, times(4)).handleMessage(any(Message.class));
+
+        // Another event in between resets the coalescing.
+        mWifiMonitor.broadcastAssociatedBssidEvent(WLAN_IFACE_NAME, BSSID);
+        mWifiMonitor.broadcastSupplicantStateChangeEvent(
+                WLAN_IFACE_NAME, NETWORK_ID, wifiSsid, BSSID, SupplicantState.COMPLETED);
+        mLooper.dispatchAll();
+        verify(mHandlerSpy, times(6)).handleMessage(any(Message.class));
+    }
+
+    /**
+     * Verify that registering the same handler twice only dispatches the event once.
+     */
+    @Test
+    public void testRegisterHandlerTwice() {
+        mWifiMonitor.registerHandler(
+                WLAN_IFACE_NAME, WifiMonitor.SCAN_RESULTS_EVENT, mHandlerSpy);
+        mWifiMonitor.registerHandler(
+                WLAN_IFACE_NAME, WifiMonitor.SCAN_RESULTS_EVENT, mHandlerSpy);
+        mWifiMonitor.broadcastScanResultEvent(WLAN_IFACE_NAME);
+        mLooper.dispatchAll();
+        verify(mHandlerSpy, times(1)).handleMessage(any(Message.class));
+    }
+
     /**
      * Broadcast message to two handlers test.
      */
@@ -22,8 +22,10 @@ import static android.net.wifi.WifiScanner.WIFI_BAND_5_GHZ;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assume.assumeFalse;
 import static org.junit.Assume.assumeTrue;
@@ -866,6 +868,50 @@ public class WifiNativeTest extends WifiBaseTest {
         }
     }
 
+    /**
+     * Verifies that the scan results of successive scans share the same BSSID, SSID and
+     * capabilities values.
+     */
+    @Test
+    public void testGetScanResultsSharesRepeatedValues() {
+        when(mWificondControl.getScanResults(anyString(), anyInt())).thenReturn(
+                Arrays.asList(createMockNativeScanResult()),
+                Arrays.asList(createMockNativeScanResult()));
+
+        ScanDetail firstDetail = mWifiNative.getScanResults(WIFI_IFACE_NAME).get(0);
+        ScanDetail secondDetail = mWifiNative.getScanResults(WIFI_IFACE_NAME).get(0);
+        ScanResult first = firstDetail.getScanResult();
+        ScanResult second = secondDetail.getScanResult();
+        assertSame(first.BSSID, second.BSSID);
+        assertSame(first.SSID, second.SSID);
+        assertSame(first.wifiSsid, second.wifiSsid);
+        assertSame(first.capabilities, second.capabilities);
+        assertSame(firstDetail.getScanResultMatchInfo().networkSsid,
+                secondDetail.getScanResultMatchInfo().networkSsid);
+    }
+
+    /**
+     * Verifies that the scan results of the APs of the same network share the same SSID values,
+     * including the SSID of their match info.
+     */
+    @Test
+    public void testGetScanResultsSharesSsidBetweenBssids() {
+        NativeScanResult otherBssidResult = createMockNativeScanResult();
+        otherBssidResult.bssid = TEST_BSSID.clone();
+        otherBssidResult.bssid[5]++;
+        when(mWificondControl.getScanResults(anyString(), anyInt())).thenReturn(
+                Arrays.asList(createMockNativeScanResult(), otherBssidResult));
+
+        ArrayList<ScanDetail> scanDetails = mWifiNative.getScanResults(WIFI_IFACE_NAME);
+        ScanResult first = scanDetails.get(0).getScanResult();
+        ScanResult second = scanDetails.get(1).getScanResult();
+        assertNotEquals(first.BSSID, second.BSSID);
+        assertSame(first.SSID, second.SSID);
+        assertSame(first.wifiSsid, second.wifiSsid);
+        assertSame(scanDetails.get(0).getScanResultMatchInfo().networkSsid,
+                scanDetails.get(1).getScanResultMatchInfo().networkSsid);
+    }
+
     /**
      * Verifies that getScanResults() can parse NativeScanResult from wificond correctly,
      * when there is radio chain info.
@@ -2906,6 +2906,56 @@ public class WifiNetworkSuggestionsManagerTest extends WifiBaseTest {
         assertEquals(hiddenNetworkSuggestion1.wifiConfiguration.SSID, hiddenNetworks.get(0).ssid);
     }
 
+    /**
+     * Verify that the hidden network list tracks suggestion add/remove and prioritizes the most
+     * recently connected hidden network suggestion.
+     */
+    @Test
+    public void testGetHiddenNetworksPrioritizesConnectedNetwork() {
+        WifiNetworkSuggestion hiddenNetworkSuggestion1 = createWifiNetworkSuggestion(
+                WifiConfigurationTestUtil.createPskHiddenNetwork(), null, true, false, true, true,
+                DEFAULT_PRIORITY_GROUP);
+        WifiNetworkSuggestion hiddenNetworkSuggestion2 = createWifiNetworkSuggestion(
+                WifiConfigurationTestUtil.createPskHiddenNetwork(), null, true, false, true, true,
+                DEFAULT_PRIORITY_GROUP);
+        List<WifiNetworkSuggestion> networkSuggestionList =
+                new ArrayList<WifiNetworkSuggestion>() {{
+                    add(hiddenNetworkSuggestion1);
+                    add(hiddenNetworkSuggestion2);
+                }};
+        assertEquals(WifiManager.STATUS_NETWORK_SUGGESTIONS_SUCCESS,
+                mWifiNetworkSuggestionsManager.add(networkSuggestionList, TEST_UID_1,
+                        TEST_PACKAGE_1, TEST_FEATURE));
+        mWifiNetworkSuggestionsManager.setHasUserApprovedForApp(true, TEST_UID_1, TEST_PACKAGE_1);
+        List<WifiScanner.ScanSettings.HiddenNetwork> hiddenNetworks =
+                mWifiNetworkSuggestionsManager.retrieveHiddenNetworkList();
+        assertEquals(2, hiddenNetworks.size());
+        assertEquals(hiddenNetworkSuggestion1.wifiConfiguration.SSID, hiddenNetworks.get(0).ssid);
+        assertEquals(hiddenNetworkSuggestion2.wifiConfiguration.SSID, hiddenNetworks.get(1).ssid);
+
+        // Simulate connecting to the second network.
+        WifiConfiguration connectNetwork =
+                new WifiConfiguration(hiddenNetworkSuggestion2.wifiConfiguration);
+        connectNetwork.fromWifiNetworkSuggestion = true;
+        connectNetwork.ephemeral = true;
+        connectNetwork.creatorName = TEST_PACKAGE_1;
+        connectNetwork.creatorUid = TEST_UID_1;
+        mWifiNetworkSuggestionsManager.handleConnectionAttemptEnded(
+                WifiMetrics.ConnectionEvent.FAILURE_NONE, connectNetwork, TEST_BSSID);
+        hiddenNetworks = mWifiNetworkSuggestionsManager.retrieveHiddenNetworkList();
+        assertEquals(2, hiddenNetworks.size());
+        assertEquals(hiddenNetworkSuggestion2.wifiConfiguration.SSID, hiddenNetworks.get(0).ssid);
+        assertEquals(hiddenNetworkSuggestion1.wifiConfiguration.SSID, hiddenNetworks.get(1).ssid);
+
+        // Remove the second network.
+        assertEquals(WifiManager.STATUS_NETWORK_SUGGESTIONS_SUCCESS,
+                mWifiNetworkSuggestionsManager.remove(List.of(hiddenNetworkSuggestion2),
+                        TEST_UID_1, TEST_PACKAGE_1));
+        hiddenNetworks = mWifiNetworkSuggestionsManager.retrieveHiddenNetworkList();
+        assertEquals(1, hiddenNetworks.size());
+        assertEquals(hiddenNetworkSuggestion1.wifiConfiguration.SSID, hiddenNetworks.get(0).ssid);
+    }
+
     /**
      * Verify handling of user clicking allow on the user approval dialog when first time
      * add suggestions.
@@ -76,7 +76,9 @@ import org.mockito.MockitoAnnotations;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Unit tests for {@link com.android.server.wifi.WifiScoreCard}.
@@ -1586,6 +1588,85 @@ public class WifiScoreCardTest extends WifiBaseTest {
         assertEquals(2432, (int) perNetwork.getFrequencies(Long.MAX_VALUE).get(0));
     }
 
+    /**
+     * Verify that frequencies added to networks feed the channel likelihood index, and are
+     * removed from it along with the network.
+     */
+    @Test
+    public void testAddFrequencyUpdatesChannelLikelihoodIndex() {
+        PerNetwork perNetwork = mWifiScoreCard.lookupNetwork(mWifiInfo.getSSID());
+        perNetwork.addFrequency(5805);
+        perNetwork.addFrequency(2432);
+        perNetwork.addFrequency(2432);
+        Set<String> ssids = Set.of(mWifiInfo.getSSID());
+        assertEquals(Set.of(2432), mWifiScoreCard.getChannelLikelihoodIndex()
+                .getTopChannels(ssids, 1, Long.MAX_VALUE));
+
+        mWifiScoreCard.removeNetwork(mWifiInfo.getSSID());
+        assertTrue(mWifiScoreCard.getChannelLikelihoodIndex()
+                .getTopChannels(ssids, 0, Long.MAX_VALUE).isEmpty());
+    }
+
+    /**
+     * Verify that frequencies evicted from the frequency list of a network are also removed
+     * from the channel likelihood index.
+     */
+    @Test
+    public void testEvictedFrequencyRemovedFromChannelLikelihoodIndex() {
+        PerNetwork perNetwork = mWifiScoreCard.lookupNetwork(mWifiInfo.getSSID());
+        perNetwork.addFrequency(5805);
+        for (int i = 0; i < 10; i++) {
+            perNetwork.addFrequency(2412 + i * 5);
+        }
+        Set<String> ssids = Set.of(mWifiInfo.getSSID());
+        Set<Integer> channels = mWifiScoreCard.getChannelLikelihoodIndex()
+                .getTopChannels(ssids, 0, Long.MAX_VALUE);
+        assertEquals(new HashSet<>(perNetwork.getFrequencies(Long.MAX_VALUE)), channels);
+        assertFalse(channels.contains(5805));
+    }
+
+    /**
+     * Verify that frequencies restored from the memory store feed the channel likelihood index,
+     * so that they are still picked for partial scans after a reboot.
+     */
+    @Test
+    public void testFrequenciesReadFromMemoryStoreUpdateChannelLikelihoodIndex() {
+        mWifiScoreCard.installMemoryStore(new WifiScoreCard.MemoryStore() {
+            @Override
+            public void read(String key, String name, WifiScoreCard.BlobListener listener) {
+                mBlobListeners.add(listener);
+            }
+            @Override
+            public void write(String key, String name, byte[] value) {
+            }
+            @Override
+            public void setCluster(String key, String cluster) {
+            }
+            @Override
+            public void removeCluster(String cluster) {
+            }
+        });
+        millisecondsPass(10_000);
+        PerNetwork perNetwork = mWifiScoreCard.lookupNetwork(mWifiInfo.getSSID());
+        assertEquals(1, mBlobListeners.size());
+        perNetwork.addFrequency(2412);
+
+        byte[] serialized = NetworkStats.newBuilder()
+                .addAllFrequencies(Arrays.asList(5805, 2437, 2412))
+                .build().toByteArray();
+        mBlobListeners.get(0).onBlobRetrieved(serialized);
+        perNetwork.finishPendingRead();
+
+        Set<String> ssids = Set.of(mWifiInfo.getSSID());
+        assertEquals(Set.of(2412, 2437, 5805), mWifiScoreCard.getChannelLikelihoodIndex()
+                .getTopChannels(ssids, 0, Long.MAX_VALUE));
+        // The restored frequencies age like they do in the frequency list of the network.
+        assertEquals(new HashSet<>(perNetwork.getFrequencies(1000L)),
+                mWifiScoreCard.getChannelLikelihoodIndex().getTopChannels(ssids, 0, 1000L));
+        assertEquals(Set.of(2412),
+                mWifiScoreCard.getChannelLikelihoodIndex().getTopChannels(ssids, 0, 1000L));
+    }
+
     private void addTotalBytes(long txBytes, long rxBytes) {
         mTotalTxBytes += txBytes;
         mTotalRxBytes += rxBytes;
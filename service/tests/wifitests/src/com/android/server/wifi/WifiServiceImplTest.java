@@ -61,6 +61,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.junit.Assume.assumeTrue;
@@ -73,6 +74,7 @@ import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.anyBoolean;
 import static org.mockito.Mockito.anyInt;
+import static org.mockito.Mockito.anyLong;
 import static org.mockito.Mockito.argThat;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.clearInvocations;
@@ -131,6 +133,7 @@ import android.net.wifi.ITrafficStateCallback;
 import android.net.wifi.IWifiConnectedNetworkScorer;
 import android.net.wifi.IWifiVerboseLoggingStatusChangedListener;
 import android.net.wifi.ScanResult;
+import android.net.wifi.ScanResultsDelta;
 import android.net.wifi.SecurityParams;
 import android.net.wifi.SoftApConfiguration;
 import android.net.wifi.SoftApInfo;
@@ -379,6 +382,7 @@ public class WifiServiceImplTest extends WifiBaseTest {
     @Mock LastCallerInfoManager mLastCallerInfoManager;
     @Mock BuildProperties mBuildProperties;
     @Mock LinkProbeManager mLinkProbeManager;
+    @Mock WifiMonitor mWifiMonitor;
 
     @Captor ArgumentCaptor<Intent> mIntentCaptor;
     @Captor ArgumentCaptor<Runnable> mOnStoppedListenerCaptor;
@@ -413,6 +417,7 @@ public class WifiServiceImplTest extends WifiBaseTest {
         when(mWifiInjector.getWifiNotificationManager()).thenReturn(mWifiNotificationManager);
         when(mWifiInjector.getBuildProperties()).thenReturn(mBuildProperties);
         when(mWifiInjector.getLinkProbeManager()).thenReturn(mLinkProbeManager);
+        when(mWifiInjector.getWifiMonitor()).thenReturn(mWifiMonitor);
         when(mHandlerThread.getThreadHandler()).thenReturn(new Handler(mLooper.getLooper()));
         when(mHandlerThread.getLooper()).thenReturn(mLooper.getLooper());
         when(mContext.getResources()).thenReturn(mResources);
@@ -610,6 +615,7 @@ public class WifiServiceImplTest extends WifiBaseTest {
     private WifiServiceImpl makeWifiServiceImplWithMockRunnerWhichTimesOut() {
         WifiThreadRunner mockRunner = mock(WifiThreadRunner.class);
         when(mockRunner.call(any(), any())).then(returnsSecondArg());
+        when(mockRunner.call(any(), any(), any())).then(returnsSecondArg());
         when(mockRunner.call(any(), any(int.class))).then(returnsSecondArg());
         when(mockRunner.call(any(), any(boolean.class))).then(returnsSecondArg());
         when(mockRunner.post(any())).thenReturn(false);
@@ -2489,7 +2495,7 @@ public class WifiServiceImplTest extends WifiBaseTest {
      */
     @Test
     public void testConfiguredNetworkListAreEmptyFromAppWithoutPermission() throws Exception {
-        when(mWifiConfigManager.getSavedNetworks(anyInt()))
+        when(mWifiConfigManager.getLegacySavedNetworksSnapshot(anyInt()))
                 .thenReturn(TEST_WIFI_CONFIGURATION_LIST);
 
         // no permission = target SDK=Q && not a carrier app
@@ -2508,7 +2514,7 @@ public class WifiServiceImplTest extends WifiBaseTest {
      */
     @Test
     public void testConfiguredNetworkListAreEmptyOnSecurityException() throws Exception {
-        when(mWifiConfigManager.getSavedNetworks(anyInt()))
+        when(mWifiConfigManager.getLegacySavedNetworksSnapshot(anyInt()))
                 .thenReturn(TEST_WIFI_CONFIGURATION_LIST);
 
         doThrow(new SecurityException()).when(mWifiPermissionsUtil).enforceCanAccessScanResults(
@@ -2527,7 +2533,7 @@ public class WifiServiceImplTest extends WifiBaseTest {
      */
     @Test
     public void testConfiguredNetworkListAreVisibleFromPermittedApp() throws Exception {
-        when(mWifiConfigManager.getSavedNetworks(anyInt()))
+        when(mWifiConfigManager.getLegacySavedNetworksSnapshot(anyInt()))
                 .thenReturn(TEST_WIFI_CONFIGURATION_LIST);
 
         when(mContext.checkPermission(eq(android.Manifest.permission.NETWORK_SETTINGS),
@@ -2538,7 +2544,7 @@ public class WifiServiceImplTest extends WifiBaseTest {
                 mWifiServiceImpl.getConfiguredNetworks(TEST_PACKAGE, TEST_FEATURE_ID, false);
         mLooper.stopAutoDispatchAndIgnoreExceptions();
 
-        verify(mWifiConfigManager).getSavedNetworks(eq(Process.WIFI_UID));
+        verify(mWifiConfigManager).getLegacySavedNetworksSnapshot(eq(Process.WIFI_UID));
         WifiConfigurationTestUtil.assertConfigurationsEqualForBackup(
                 TEST_WIFI_CONFIGURATION_LIST, configs.getList());
     }
@@ -2564,8 +2570,9 @@ public class WifiServiceImplTest extends WifiBaseTest {
                 2, 1200000, "\"blue\"", false, true, null, null, SECURITY_NONE);
         WifiConfiguration nonCallerNetwork1 = WifiConfigurationTestUtil.generateWifiConfig(
                 3, 1100000, "\"cyan\"", true, true, null, null, SECURITY_NONE);
-        when(mWifiConfigManager.getSavedNetworks(anyInt())).thenReturn(Arrays.asList(
-                callerNetwork0, callerNetwork1, nonCallerNetwork0, nonCallerNetwork1));
+        when(mWifiConfigManager.getLegacySavedNetworksSnapshot(anyInt())).thenReturn(
+                Arrays.asList(callerNetwork0, callerNetwork1, nonCallerNetwork0,
+                        nonCallerNetwork1));
 
         // Caller does NOT need to have location permission to be able to retrieve its own networks.
         doThrow(new SecurityException()).when(mWifiPermissionsUtil).enforceCanAccessScanResults(
@@ -2650,25 +2657,24 @@ public class WifiServiceImplTest extends WifiBaseTest {
                         .getResults();
         List<ScanResult> scanResultList =
                 new ArrayList<>(Arrays.asList(scanResults));
-        when(mScanRequestProxy.getScanResults()).thenReturn(scanResultList);
+        when(mScanRequestProxy.getScanResultsSnapshot()).thenReturn(scanResultList);
 
         String packageName = "test.com";
         String featureId = "test.com.featureId";
-        mLooper.startAutoDispatch();
         List<ScanResult> retrievedScanResultList = mWifiServiceImpl.getScanResults(packageName,
-                featureId);
-        mLooper.stopAutoDispatchAndIgnoreExceptions();
-        verify(mScanRequestProxy).getScanResults();
+                featureId).getList();
+        verify(mScanRequestProxy).getScanResultsSnapshot();
 
         ScanTestUtil.assertScanResultsEquals(scanResults,
                 retrievedScanResultList.toArray(new ScanResult[retrievedScanResultList.size()]));
     }
 
     /**
-     * Ensure that we handle scan results failure when posting the runnable to handler fails.
+     * Ensure that scan results are still returned when the Wifi thread is blocked, since they are
+     * read from the published snapshot.
      */
     @Test
-    public void testGetScanResultsFailureInRunWithScissors() {
+    public void testGetScanResultsDoesNotBlockOnWifiThread() {
         mWifiServiceImpl = makeWifiServiceImplWithMockRunnerWhichTimesOut();
 
         ScanResult[] scanResults =
@@ -2676,17 +2682,69 @@ public class WifiServiceImplTest extends WifiBaseTest {
                         .getResults();
         List<ScanResult> scanResultList =
                 new ArrayList<>(Arrays.asList(scanResults));
-        when(mScanRequestProxy.getScanResults()).thenReturn(scanResultList);
+        when(mScanRequestProxy.getScanResultsSnapshot()).thenReturn(scanResultList);
 
         String packageName = "test.com";
         String featureId = "test.com.featureId";
-        mLooper.startAutoDispatch();
         List<ScanResult> retrievedScanResultList = mWifiServiceImpl.getScanResults(packageName,
-                featureId);
-        mLooper.stopAutoDispatchAndIgnoreExceptions();
+                featureId).getList();
         verify(mScanRequestProxy, never()).getScanResults();
 
-        assertTrue(retrievedScanResultList.isEmpty());
+        ScanTestUtil.assertScanResultsEquals(scanResults,
+                retrievedScanResultList.toArray(new ScanResult[retrievedScanResultList.size()]));
+    }
+
+    /**
+     * Test fetching of scan result deltas.
+     */
+    @Test
+    public void testGetScanResultsDelta() {
+        ScanResult[] scanResults =
+                ScanTestUtil.createScanDatas(new int[][]{{2417, 2427, 5180, 5170}})[0]
+                        .getResults();
+        ScanResultsDelta delta = new ScanResultsDelta(5, false, Arrays.asList(scanResults),
+                Arrays.asList(TEST_BSSID));
+        when(mScanRequestProxy.getScanResultsDelta(3)).thenReturn(delta);
+
+        mLooper.startAutoDispatch();
+        ScanResultsDelta retrievedDelta = mWifiServiceImpl.getScanResultsDelta(3, TEST_PACKAGE_NAME,
+                TEST_FEATURE_ID);
+        mLooper.stopAutoDispatchAndIgnoreExceptions();
+
+        verify(mScanRequestProxy).getScanResultsDelta(3);
+        assertSame(delta, retrievedDelta);
+        verify(mScanRequestProxy, never()).getFullScanResultsDelta();
+    }
+
+    /**
+     * Verify that fetching scan result deltas fails w/o the NETWORK_SETTINGS permission.
+     */
+    @Test
+    public void testGetScanResultsDeltaWithoutPermission() {
+        doThrow(new SecurityException()).when(mContext).enforceCallingOrSelfPermission(
+                eq(android.Manifest.permission.NETWORK_SETTINGS), eq("WifiService"));
+
+        try {
+            mWifiServiceImpl.getScanResultsDelta(0, TEST_PACKAGE_NAME, TEST_FEATURE_ID);
+            fail("getScanResultsDelta should fail w/o the NETWORK_SETTINGS permission!");
+        } catch (SecurityException e) {
+            // empty clause
+        }
+        verify(mScanRequestProxy, never()).getScanResultsDelta(anyLong());
+    }
+
+    /**
+     * Ensure that all the cached scan results are returned if the Wifi thread is blocked.
+     */
+    @Test
+    public void testGetScanResultsDeltaReturnsFullSnapshotWhenWifiThreadBlocked() {
+        mWifiServiceImpl = makeWifiServiceImplWithMockRunnerWhichTimesOut();
+        ScanResultsDelta fullDelta = new ScanResultsDelta(5, true, Collections.emptyList(),
+                Collections.emptyList());
+        when(mScanRequestProxy.getFullScanResultsDelta()).thenReturn(fullDelta);
+
+        assertSame(fullDelta,
+                mWifiServiceImpl.getScanResultsDelta(3, TEST_PACKAGE_NAME, TEST_FEATURE_ID));
     }
 
     /**
@@ -8227,8 +8285,9 @@ public class WifiServiceImplTest extends WifiBaseTest {
         long featureFlags = WifiManager.WIFI_FEATURE_WPA3_SAE | WifiManager.WIFI_FEATURE_OWE;
         List<WifiConfiguration> testConfigs = setupMultiTypeConfigs(
                 featureFlags, true, true);
-        when(mWifiConfigManager.getSavedNetworks(anyInt()))
-                .thenReturn(testConfigs);
+        when(mWifiConfigManager.getLegacySavedNetworksSnapshot(anyInt()))
+                .thenReturn(WifiConfigurationUtil.convertMultiTypeConfigsToLegacyConfigs(
+                        testConfigs));
         when(mWifiConfigManager.getConfiguredNetworksWithPasswords())
                 .thenReturn(testConfigs);
         when(mContext.checkPermission(eq(android.Manifest.permission.NETWORK_SETTINGS),
@@ -8258,8 +8317,9 @@ public class WifiServiceImplTest extends WifiBaseTest {
         long featureFlags = WifiManager.WIFI_FEATURE_WPA3_SAE | WifiManager.WIFI_FEATURE_OWE;
         List<WifiConfiguration> testConfigs = setupMultiTypeConfigs(
                 featureFlags, false, false);
-        when(mWifiConfigManager.getSavedNetworks(anyInt()))
-                .thenReturn(testConfigs);
+        when(mWifiConfigManager.getLegacySavedNetworksSnapshot(anyInt()))
+                .thenReturn(WifiConfigurationUtil.convertMultiTypeConfigsToLegacyConfigs(
+                        testConfigs));
         when(mWifiConfigManager.getConfiguredNetworksWithPasswords())
                 .thenReturn(testConfigs);
         when(mContext.checkPermission(eq(android.Manifest.permission.NETWORK_SETTINGS),
@@ -8289,8 +8349,9 @@ public class WifiServiceImplTest extends WifiBaseTest {
         long featureFlags = 0L;
         List<WifiConfiguration> testConfigs = setupMultiTypeConfigs(
                 featureFlags, true, true);
-        when(mWifiConfigManager.getSavedNetworks(anyInt()))
-                .thenReturn(testConfigs);
+        when(mWifiConfigManager.getLegacySavedNetworksSnapshot(anyInt()))
+                .thenReturn(WifiConfigurationUtil.convertMultiTypeConfigsToLegacyConfigs(
+                        testConfigs));
         when(mWifiConfigManager.getConfiguredNetworksWithPasswords())
                 .thenReturn(testConfigs);
         when(mContext.checkPermission(eq(android.Manifest.permission.NETWORK_SETTINGS),
@@ -37,6 +37,8 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.Spy;
 
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.util.function.Supplier;
 
 @SmallTest
@@ -83,6 +85,16 @@ public class WifiThreadRunnerTest {
         verify(mSupplier).get();
     }
 
+    @Test
+    public void callWithTaskName_recordsQueueWaitTime() {
+        Integer result = mWifiThreadRunner.call(mSupplier, VALUE_ON_TIMEOUT, "testTask");
+
+        assertThat(result).isEqualTo(RESULT);
+        StringWriter sw = new StringWriter();
+        mWifiThreadRunner.dump(new PrintWriter(sw));
+        assertThat(sw.toString()).contains("testTask: count=1");
+    }
+
     @Test
     public void callFailure_returnValueOnTimeout() {
         doReturn(false).when(mHandler).post(any());
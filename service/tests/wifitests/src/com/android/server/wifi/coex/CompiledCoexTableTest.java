@@ -0,0 +1,305 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi.coex;
+
+import static android.net.wifi.CoexUnsafeChannel.POWER_CAP_NONE;
+import static android.net.wifi.WifiScanner.WIFI_BAND_24_GHZ;
+import static android.net.wifi.WifiScanner.WIFI_BAND_5_GHZ;
+import static android.telephony.TelephonyManager.NETWORK_TYPE_LTE;
+import static android.telephony.TelephonyManager.NETWORK_TYPE_NR;
+
+import static com.android.server.wifi.coex.CoexUtils.CHANNEL_SET_5_GHZ_40_MHZ;
+import static com.android.server.wifi.coex.CoexUtils.getIntermodCoexUnsafeChannels;
+import static com.android.server.wifi.coex.CoexUtils.getNeighboringCoexUnsafeChannels;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.junit.Assume.assumeTrue;
+
+import android.net.wifi.CoexUnsafeChannel;
+import android.telephony.SubscriptionManager;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.modules.utils.build.SdkLevel;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Unit tests for {@link com.android.server.wifi.coex.CompiledCoexTable}.
+ */
+@SmallTest
+public class CompiledCoexTableTest {
+    private static final int POWER_CAP_DBM = -50;
+
+    @Before
+    public void setUp() {
+        assumeTrue(SdkLevel.isAtLeastS());
+    }
+
+    private static Entry createNeighboringEntry(RatType rat, int band, int cellVictimMhz) {
+        NeighborThresholds neighborThresholds = new NeighborThresholds();
+        neighborThresholds.setCellVictimMhz(cellVictimMhz);
+        Params params = new Params();
+        params.setNeighborThresholds(neighborThresholds);
+        Entry entry = new Entry();
+        entry.setRat(rat);
+        entry.setBand(band);
+        entry.setPowerCapDbm(POWER_CAP_DBM);
+        entry.setParams(params);
+        return entry;
+    }
+
+    private static IntermodParams createIntermodParams(int n, int m, int overlap) {
+        IntermodParams intermodParams = new IntermodParams();
+        intermodParams.setN(n);
+        intermodParams.setM(m);
+        intermodParams.setOverlap(overlap);
+        return intermodParams;
+    }
+
+    private static Entry createIntermodEntry(int band) {
+        return createIntermodEntry(band, createIntermodParams(2, -1, 100), null);
+    }
+
+    private static Entry createIntermodEntry(int band, IntermodParams intermodParams2g,
+            IntermodParams intermodParams5g) {
+        Params params = new Params();
+        params.setIntermodParams2g(intermodParams2g);
+        params.setIntermodParams5g(intermodParams5g);
+        Entry entry = new Entry();
+        entry.setRat(RatType.LTE);
+        entry.setBand(band);
+        entry.setPowerCapDbm(POWER_CAP_DBM);
+        entry.setParams(params);
+        return entry;
+    }
+
+    private static CoexUtils.CoexCellChannel createCellChannel(int rat, int band,
+            int downlinkFreqKhz, int downlinkBandwidthKhz, int uplinkFreqKhz,
+            int uplinkBandwidthKhz) {
+        return new CoexUtils.CoexCellChannel(rat, band, downlinkFreqKhz, downlinkBandwidthKhz,
+                uplinkFreqKhz, uplinkBandwidthKhz, SubscriptionManager.INVALID_SUBSCRIPTION_ID);
+    }
+
+    private static Set<CoexUnsafeChannel> toSet(long[] bitmap, int powerCapDbm) {
+        CompiledCoexTable.UnsafeChannels unsafeChannels = new CompiledCoexTable.UnsafeChannels();
+        unsafeChannels.add(bitmap, powerCapDbm);
+        return new HashSet<>(unsafeChannels.toList());
+    }
+
+    /**
+     * Verifies that entries are looked up by RAT and band.
+     */
+    @Test
+    public void testGetEntry() {
+        CompiledCoexTable table = new CompiledCoexTable(Arrays.asList(
+                createNeighboringEntry(RatType.LTE, 40, 10),
+                createNeighboringEntry(RatType.NR, 41, 10)));
+
+        assertThat(table.getEntry(NETWORK_TYPE_LTE, 40)).isNotNull();
+        assertThat(table.getEntry(NETWORK_TYPE_NR, 41)).isNotNull();
+        assertThat(table.getEntry(NETWORK_TYPE_LTE, 41)).isNull();
+        assertThat(table.getEntry(NETWORK_TYPE_NR, 40)).isNull();
+    }
+
+    /**
+     * Verifies that the unsafe channels of a params entry are the ones computed by CoexUtils, and
+     * that they are computed once per cell channel frequency.
+     */
+    @Test
+    public void testParamsEntryMatchesCoexUtilsAndIsCached() {
+        CompiledCoexTable table = new CompiledCoexTable(Arrays.asList(
+                createNeighboringEntry(RatType.LTE, 40, 10)));
+        CompiledCoexTable.CompiledEntry entry = table.getEntry(NETWORK_TYPE_LTE, 40);
+        CoexUtils.CoexCellChannel cellChannel =
+                createCellChannel(NETWORK_TYPE_LTE, 40, 2399_900, 10_000, 0, 0);
+        List<CoexUtils.CoexCellChannel> cellChannels = Arrays.asList(cellChannel);
+
+        long[] bitmap = entry.getUnsafeChannels(cellChannel, cellChannels);
+        assertThat(toSet(bitmap, POWER_CAP_DBM)).containsExactlyElementsIn(
+                getNeighboringCoexUnsafeChannels(2399_900, 10_000, 10_000, POWER_CAP_DBM));
+        assertThat(entry.getUnsafeChannels(
+                createCellChannel(NETWORK_TYPE_LTE, 40, 2399_900, 10_000, 0, 0), cellChannels))
+                .isSameInstanceAs(bitmap);
+    }
+
+    /**
+     * Verifies that the intermod unsafe channels consider the downlinks of all cell channels.
+     */
+    @Test
+    public void testIntermodUsesAllCellChannels() {
+        CompiledCoexTable table = new CompiledCoexTable(Arrays.asList(createIntermodEntry(7)));
+        CompiledCoexTable.CompiledEntry entry = table.getEntry(NETWORK_TYPE_LTE, 7);
+        CoexUtils.CoexCellChannel aggressor =
+                createCellChannel(NETWORK_TYPE_LTE, 7, 2680_000, 10_000, 2560_000, 10_000);
+        CoexUtils.CoexCellChannel victim =
+                createCellChannel(NETWORK_TYPE_LTE, 1, 2140_000, 10_000, -1, 0);
+
+        Set<CoexUnsafeChannel> expected = new HashSet<>();
+        expected.addAll(getIntermodCoexUnsafeChannels(2560_000, 10_000, 2680_000, 10_000,
+                2, -1, 100, WIFI_BAND_24_GHZ, POWER_CAP_DBM));
+        expected.addAll(getIntermodCoexUnsafeChannels(2560_000, 10_000, 2140_000, 10_000,
+                2, -1, 100, WIFI_BAND_24_GHZ, POWER_CAP_DBM));
+        assertThat(toSet(entry.getUnsafeChannels(aggressor, Arrays.asList(aggressor, victim)),
+                POWER_CAP_DBM)).containsExactlyElementsIn(expected);
+    }
+
+    /**
+     * Verifies that the 5GHz intermod unsafe channels are computed with the 5GHz intermod params
+     * instead of the 2.4GHz ones, including when the entry has no 2.4GHz intermod params.
+     */
+    @Test
+    public void testIntermodUses5gParamsFor5gChannels() {
+        CoexUtils.CoexCellChannel cellChannel =
+                createCellChannel(NETWORK_TYPE_LTE, 7, 2680_000, 10_000, 2560_000, 10_000);
+        List<CoexUtils.CoexCellChannel> cellChannels = Arrays.asList(cellChannel);
+        // The 5GHz channels around 5240MHz minus the uplink land on the downlink.
+        List<CoexUnsafeChannel> expected5g = getIntermodCoexUnsafeChannels(
+                2560_000, 10_000, 2680_000, 10_000, -1, 1, 50, WIFI_BAND_5_GHZ, POWER_CAP_DBM);
+        assertThat(expected5g).contains(new CoexUnsafeChannel(WIFI_BAND_5_GHZ, 48, POWER_CAP_DBM));
+
+        CompiledCoexTable table = new CompiledCoexTable(Arrays.asList(
+                createIntermodEntry(7, null, createIntermodParams(-1, 1, 50))));
+        assertThat(toSet(table.getEntry(NETWORK_TYPE_LTE, 7)
+                .getUnsafeChannels(cellChannel, cellChannels), POWER_CAP_DBM))
+                .containsExactlyElementsIn(expected5g);
+
+        table = new CompiledCoexTable(Arrays.asList(createIntermodEntry(7,
+                createIntermodParams(2, -1, 100), createIntermodParams(-1, 1, 50))));
+        Set<CoexUnsafeChannel> expected = new HashSet<>(expected5g);
+        expected.addAll(getIntermodCoexUnsafeChannels(2560_000, 10_000, 2680_000, 10_000,
+                2, -1, 100, WIFI_BAND_24_GHZ, POWER_CAP_DBM));
+        assertThat(toSet(table.getEntry(NETWORK_TYPE_LTE, 7)
+                .getUnsafeChannels(cellChannel, cellChannels), POWER_CAP_DBM))
+                .containsExactlyElementsIn(expected);
+    }
+
+    /**
+     * Verifies that override entries are compiled once without modifying the parsed entry.
+     */
+    @Test
+    public void testOverrideEntryCompiled() {
+        Override2g override2g = new Override2g();
+        override2g.getChannel().add(6);
+        Override5g override5g = new Override5g();
+        override5g.getCategory().add(OverrideCategory5g._40Mhz);
+        Override override = new Override();
+        override.setOverride2g(override2g);
+        override.setOverride5g(override5g);
+        Entry entry = new Entry();
+        entry.setRat(RatType.LTE);
+        entry.setBand(40);
+        entry.setOverride(override);
+
+        CompiledCoexTable table = new CompiledCoexTable(Arrays.asList(entry));
+        CoexUtils.CoexCellChannel cellChannel =
+                createCellChannel(NETWORK_TYPE_LTE, 40, 2399_900, 10_000, 0, 0);
+        long[] bitmap = table.getEntry(NETWORK_TYPE_LTE, 40)
+                .getUnsafeChannels(cellChannel, Arrays.asList(cellChannel));
+
+        List<CoexUnsafeChannel> expected = new ArrayList<>();
+        expected.add(new CoexUnsafeChannel(WIFI_BAND_24_GHZ, 6));
+        for (int channel : CHANNEL_SET_5_GHZ_40_MHZ) {
+            expected.add(new CoexUnsafeChannel(WIFI_BAND_5_GHZ, channel));
+        }
+        assertThat(toSet(bitmap, POWER_CAP_NONE)).containsExactlyElementsIn(expected);
+        assertThat(override5g.getChannel()).isEmpty();
+    }
+
+    /**
+     * Verifies that the lowest power cap is kept for channels made unsafe several times, and that
+     * whole unsafe bands are detected.
+     */
+    @Test
+    public void testUnsafeChannelsKeepLowestPowerCap() {
+        long[] bitmap = new long[CompiledCoexTable.BITMAP_LENGTH];
+        // 2.4GHz channel 1.
+        bitmap[0] = 1L << 1;
+        CompiledCoexTable.UnsafeChannels unsafeChannels = new CompiledCoexTable.UnsafeChannels();
+        unsafeChannels.add(bitmap, POWER_CAP_NONE);
+        unsafeChannels.add(bitmap, -40);
+        unsafeChannels.add(bitmap, -30);
+        unsafeChannels.add(bitmap, POWER_CAP_NONE);
+        assertThat(unsafeChannels.toList()).containsExactly(
+                new CoexUnsafeChannel(WIFI_BAND_24_GHZ, 1, -40));
+
+        assertThat(unsafeChannels.isBandUnsafe(WIFI_BAND_5_GHZ)).isFalse();
+        unsafeChannels.add(CompiledCoexTable.getAll5gChannels(), POWER_CAP_NONE);
+        assertThat(unsafeChannels.isBandUnsafe(WIFI_BAND_5_GHZ)).isTrue();
+        unsafeChannels.remove(WIFI_BAND_5_GHZ, 36);
+        assertThat(unsafeChannels.isBandUnsafe(WIFI_BAND_5_GHZ)).isFalse();
+    }
+
+    /**
+     * Replays a burst of physical channel config changes alternating between a few cell channels,
+     * and verifies that the lookups in the compiled table, including the cached ones, match the
+     * computation by CoexUtils.
+     */
+    @Test
+    public void testPhysicalChannelConfigBurst() {
+        final int numUpdates = 20;
+        CompiledCoexTable table = new CompiledCoexTable(Arrays.asList(
+                createNeighboringEntry(RatType.LTE, 40, 10), createIntermodEntry(7)));
+        List<List<CoexUtils.CoexCellChannel>> configs = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            configs.add(Arrays.asList(
+                    createCellChannel(NETWORK_TYPE_LTE, 40, 2350_000 + i * 10_000, 10_000, 0, 0),
+                    createCellChannel(NETWORK_TYPE_LTE, 7, 2680_000, 10_000,
+                            2560_000 + i * 5_000, 10_000)));
+        }
+
+        for (int i = 0; i < numUpdates; i++) {
+            List<CoexUtils.CoexCellChannel> cellChannels = configs.get(i % configs.size());
+
+            Set<CoexUnsafeChannel> direct = new HashSet<>();
+            for (CoexUtils.CoexCellChannel cellChannel : cellChannels) {
+                if (cellChannel.getBand() == 40) {
+                    direct.addAll(getNeighboringCoexUnsafeChannels(
+                            cellChannel.getDownlinkFreqKhz(),
+                            cellChannel.getDownlinkBandwidthKhz(), 10_000, POWER_CAP_DBM));
+                } else {
+                    for (CoexUtils.CoexCellChannel victim : cellChannels) {
+                        direct.addAll(getIntermodCoexUnsafeChannels(
+                                cellChannel.getUplinkFreqKhz(),
+                                cellChannel.getUplinkBandwidthKhz(),
+                                victim.getDownlinkFreqKhz(), victim.getDownlinkBandwidthKhz(),
+                                2, -1, 100, WIFI_BAND_24_GHZ, POWER_CAP_DBM));
+                    }
+                }
+            }
+
+            CompiledCoexTable.UnsafeChannels unsafeChannels =
+                    new CompiledCoexTable.UnsafeChannels();
+            for (CoexUtils.CoexCellChannel cellChannel : cellChannels) {
+                CompiledCoexTable.CompiledEntry entry =
+                        table.getEntry(cellChannel.getRat(), cellChannel.getBand());
+                unsafeChannels.add(entry.getUnsafeChannels(cellChannel, cellChannels),
+                        entry.getPowerCapDbm());
+            }
+
+            assertThat(unsafeChannels.toList()).containsExactlyElementsIn(direct);
+        }
+    }
+}
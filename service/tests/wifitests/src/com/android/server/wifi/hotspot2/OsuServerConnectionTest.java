@@ -26,6 +26,7 @@ import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -115,7 +116,7 @@ public class OsuServerConnectionTest extends WifiBaseTest {
     @Before
     public void setUp() throws Exception {
         MockitoAnnotations.initMocks(this);
-        mOsuServerConnection = new OsuServerConnection(mLooper.getLooper());
+        mOsuServerConnection = new OsuServerConnection(mLooper.getLooper(), Runnable::run);
         mOsuServerConnection.enableVerboseLogging(true);
         mProviderIdentities.add(Pair.create(Locale.US, PROVIDER_NAME_VALID));
         mServerUrl = new URL(TEST_VALID_URL);
@@ -530,6 +531,66 @@ public class OsuServerConnectionTest extends WifiBaseTest {
         }
     }
 
+    /**
+     * Verifies that the CA certificates of every type are retrieved, and that the connections
+     * are released to be kept alive rather than disconnected.
+     */
+    @Test
+    public void verifyRetrieveTrustRootCertsForSeveralTypes() throws Exception {
+        // static mocking
+        MockitoSession session = ExtendedMockito.mockitoSession().mockStatic(
+                HttpsTransport.class).mockStatic(CertificateFactory.class).mockStatic(
+                ServiceProviderVerifier.class).startMocking();
+        try {
+            X509Certificate certificate = Mockito.mock(X509Certificate.class);
+            InputStream inputStream = Mockito.mock(InputStream.class);
+            when(inputStream.read(any(byte[].class), anyInt(), anyInt())).thenReturn(-1);
+            CertificateFactory certificateFactory = Mockito.mock(CertificateFactory.class);
+            when(certificateFactory.generateCertificate(any(InputStream.class))).thenReturn(
+                    certificate);
+            when(CertificateFactory.getInstance(anyString())).thenReturn(certificateFactory);
+            when(HttpsTransport.createInstance(any(Network.class), any(URL.class))).thenReturn(
+                    mHttpsTransport);
+            when(mHttpsServiceConnection.getResponseCode()).thenReturn(
+                    HttpURLConnection.HTTP_OK);
+            when(mHttpsServiceConnection.openInputStream()).thenReturn(inputStream);
+            when(ServiceProviderVerifier.verifyCertFingerprint(any(X509Certificate.class),
+                    any(byte[].class))).thenReturn(true);
+            List<HeaderProperty> properties = new ArrayList<>();
+            properties.add(new HeaderProperty("Content-Type", "application/x-x509-ca-cert"));
+            when(mHttpsServiceConnection.getResponseProperties()).thenReturn(properties);
+            ArgumentCaptor<Map<Integer, List<X509Certificate>>> argumentCaptor =
+                    ArgumentCaptor.forClass(Map.class);
+
+            // Test Data
+            Map<String, byte[]> aaaCertInfo = new HashMap<>();
+            aaaCertInfo.put("https://test.com/aaa1", "testData".getBytes());
+            aaaCertInfo.put("https://test.com/aaa2", "testData2".getBytes());
+            mTrustCertsInfo.put(OsuServerConnection.TRUST_CERT_TYPE_AAA, aaaCertInfo);
+            Map<String, byte[]> policyCertInfo = new HashMap<>();
+            policyCertInfo.put("https://test.com/policy", "testData3".getBytes());
+            mTrustCertsInfo.put(OsuServerConnection.TRUST_CERT_TYPE_POLICY, policyCertInfo);
+
+            establishServerConnection();
+
+            assertTrue(mOsuServerConnection.retrieveTrustRootCerts(mTrustCertsInfo));
+
+            mLooper.dispatchAll();
+
+            verify(mOsuServerCallbacks).onReceivedTrustRootCertificates(anyInt(),
+                    argumentCaptor.capture());
+            Assert.assertEquals(2, argumentCaptor.getValue().size());
+            Assert.assertEquals(2, argumentCaptor.getValue()
+                    .get(OsuServerConnection.TRUST_CERT_TYPE_AAA).size());
+            Assert.assertEquals(1, argumentCaptor.getValue()
+                    .get(OsuServerConnection.TRUST_CERT_TYPE_POLICY).size());
+            verify(mHttpsServiceConnection, times(3)).release();
+            verify(mHttpsServiceConnection, never()).disconnect();
+        } finally {
+            session.finishMocking();
+        }
+    }
+
     /**
      * Verifies that cleanup is properly called on the OsuServerHandlerThread.
      */
@@ -551,7 +612,8 @@ public class OsuServerConnectionTest extends WifiBaseTest {
 
             mLooper.dispatchAll();
 
-            verify(mHttpsServiceConnection).disconnect();
+            verify(mHttpsServiceConnection).release();
+            verify(mHttpsServiceConnection, never()).disconnect();
             reset(mHttpsServiceConnection);
 
             mOsuServerConnection.cleanup();
@@ -28,7 +28,9 @@ import static org.hamcrest.collection.IsIterableContainingInAnyOrder.containsInA
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.argThat;
@@ -1545,6 +1547,60 @@ public class PasspointManagerTest extends WifiBaseTest {
         }
     }
 
+    /**
+     * Verify that the OSU providers computed from an ANQP entry are reused until the ANQP entry
+     * is updated, replaced or removed.
+     */
+    @Test
+    public void getMatchingOsuProvidersCachedUntilAnqpEntryChanges() throws Exception {
+        List<I18Name> friendlyNames = Arrays.asList(
+                new I18Name(Locale.ENGLISH.getLanguage(), Locale.ENGLISH, "Test Provider"));
+        OsuProviderInfo providerInfo = new OsuProviderInfo(friendlyNames,
+                Uri.parse("https://test.com"), Arrays.asList(1), null, "access.test.com",
+                new ArrayList<>());
+        Map<ANQPElementType, ANQPElement> anqpElementMap = new HashMap<>();
+        anqpElementMap.put(ANQPElementType.HSOSUProviders,
+                new HSOsuProvidersElement(WifiSsid.createFromAsciiEncoded("Test SSID"),
+                        Arrays.asList(providerInfo)));
+        ANQPData anqpData = new ANQPData(mClock, anqpElementMap);
+        when(mAnqpCache.getEntry(TEST_ANQP_KEY)).thenReturn(anqpData);
+
+        MockitoSession session =
+                com.android.dx.mockito.inline.extended.ExtendedMockito.mockitoSession().mockStatic(
+                        InformationElementUtil.class).startMocking();
+        try {
+            InformationElementUtil.Vsa vsa = new InformationElementUtil.Vsa();
+            vsa.anqpDomainID = TEST_ANQP_DOMAIN_ID;
+            when(InformationElementUtil.getHS2VendorSpecificIE(isNull())).thenReturn(vsa);
+            List<ScanResult> scanResults = Arrays.asList(createTestScanResult());
+
+            OsuProvider osuProvider =
+                    mManager.getMatchingOsuProviders(scanResults).keySet().iterator().next();
+            // Same ANQP entry: the cached provider is returned.
+            assertSame(osuProvider,
+                    mManager.getMatchingOsuProviders(scanResults).keySet().iterator().next());
+
+            // Updated ANQP entry: the provider is computed again.
+            anqpData.update(new HashMap<>());
+            OsuProvider updatedOsuProvider =
+                    mManager.getMatchingOsuProviders(scanResults).keySet().iterator().next();
+            assertNotSame(osuProvider, updatedOsuProvider);
+            assertEquals(osuProvider, updatedOsuProvider);
+
+            // Replaced ANQP entry.
+            anqpElementMap.remove(ANQPElementType.HSOSUProviders);
+            when(mAnqpCache.getEntry(TEST_ANQP_KEY)).thenReturn(
+                    new ANQPData(mClock, anqpElementMap));
+            assertTrue(mManager.getMatchingOsuProviders(scanResults).isEmpty());
+
+            // Removed ANQP entry.
+            when(mAnqpCache.getEntry(TEST_ANQP_KEY)).thenReturn(null);
+            assertTrue(mManager.getMatchingOsuProviders(scanResults).isEmpty());
+        } finally {
+            session.finishMocking();
+        }
+    }
+
     /**
      * Verify that matching Passpoint configurations will be returned as map with corresponding
      * OSU providers.
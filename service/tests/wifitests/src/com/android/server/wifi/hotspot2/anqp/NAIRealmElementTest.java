@@ -98,4 +98,44 @@ public class NAIRealmElementTest extends WifiBaseTest {
 
         assertEquals(expected, NAIRealmElement.parse(getTestBufferWithNAIRealmData(2)));
     }
+
+    /**
+     * Verify that the realms of all NAI Realm Data are returned from a parsed element, without
+     * decoding the EAP methods.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void getRealmsFromParsedElement() throws Exception {
+        List<String> expectedRealms = new ArrayList<>();
+        expectedRealms.addAll(NAIRealmDataTestUtil.TEST_REALM_DATA.getRealms());
+        expectedRealms.addAll(NAIRealmDataTestUtil.TEST_REALM_DATA.getRealms());
+
+        assertEquals(expectedRealms,
+                NAIRealmElement.parse(getTestBufferWithNAIRealmData(2)).getRealms());
+        assertTrue(NAIRealmElement.parse(ByteBuffer.wrap(new byte[0])).getRealms().isEmpty());
+    }
+
+    /**
+     * Verify that the realms are returned from a parsed element when the length of a NAI Realm
+     * Data covers more bytes than its fields.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void getRealmsFromParsedElementWithPaddedNAIRealmData() throws Exception {
+        byte[] realmData = NAIRealmDataTestUtil.TEST_REAML_WITH_UTF8_DATA_BYTES;
+        int padding = 3;
+        ByteBuffer buffer = ByteBuffer.allocate(2 + realmData.length + padding)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putShort((short) 1);
+        buffer.put(realmData);
+        // Extend the length of the NAI Realm Data over the padding.
+        buffer.putShort(2, (short) (buffer.getShort(2) + padding));
+        buffer.position(0);
+
+        NAIRealmElement element = NAIRealmElement.parse(buffer);
+        assertEquals(2 + realmData.length, buffer.position());
+        assertEquals(NAIRealmDataTestUtil.TEST_REALM_DATA.getRealms(), element.getRealms());
+    }
 }
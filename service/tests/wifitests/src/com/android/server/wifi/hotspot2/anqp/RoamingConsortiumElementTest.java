@@ -17,6 +17,7 @@
 package com.android.server.wifi.hotspot2.anqp;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import android.util.Pair;
@@ -171,4 +172,22 @@ public class RoamingConsortiumElementTest extends WifiBaseTest {
         buffer.position(0);
         RoamingConsortiumElement.parse(buffer);
     }
+
+    /**
+     * Verify that the OIs of a parsed element are looked up from the raw OI duples the same way
+     * as from an element created from a list of OIs.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void containsOIFromParsedElement() throws Exception {
+        RoamingConsortiumElement parsedElement =
+                RoamingConsortiumElement.parse(ByteBuffer.wrap(getDefaultTestData()));
+        RoamingConsortiumElement element = getDefaultElement();
+        for (long oi : new long[] {TEST_OI1.second, TEST_OI4.second, 0x34L, 0x12345678L}) {
+            assertEquals(element.containsOI(oi), parsedElement.containsOI(oi));
+        }
+        assertTrue(parsedElement.containsOI(TEST_OI3.second));
+        assertFalse(parsedElement.containsOI(0x1235L));
+    }
 }
@@ -17,8 +17,10 @@
 package com.android.server.wifi.hotspot2.soap;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
@@ -34,6 +36,7 @@ import org.junit.Test;
 import org.ksoap2.HeaderProperty;
 import org.mockito.Mock;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -91,6 +94,58 @@ public class HttpsServiceConnectionTest extends WifiBaseTest {
         verify(mHttpsURLConnection).disconnect();
     }
 
+    /**
+     * Verify that releasing the connection reads and closes the rest of the response without
+     * calling {@link HttpsURLConnection#disconnect()}, so that the socket can be reused.
+     */
+    @Test
+    public void verifyReleaseDrainsResponse() throws IOException {
+        boolean[] closed = {false};
+        ByteArrayInputStream testInputStream = new ByteArrayInputStream(new byte[20000]) {
+            @Override
+            public void close() throws IOException {
+                closed[0] = true;
+                super.close();
+            }
+        };
+        when(mHttpsURLConnection.getInputStream()).thenReturn(testInputStream);
+
+        mHttpsServiceConnection.openInputStream().read();
+        mHttpsServiceConnection.release();
+
+        assertEquals(0, testInputStream.available());
+        assertTrue(closed[0]);
+        verify(mHttpsURLConnection, never()).disconnect();
+    }
+
+    /**
+     * Verify that releasing the connection calls {@link HttpsURLConnection#disconnect()} if the
+     * response is too large to be drained or couldn't be read.
+     */
+    @Test
+    public void verifyReleaseDisconnectsWhenResponseNotFullyRead() throws IOException {
+        when(mHttpsURLConnection.getInputStream())
+                .thenReturn(new ByteArrayInputStream(new byte[1024 * 1024]));
+        mHttpsServiceConnection.openInputStream();
+        mHttpsServiceConnection.release();
+        verify(mHttpsURLConnection).disconnect();
+
+        InputStream failingInputStream = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException();
+            }
+        };
+        when(mHttpsURLConnection.getInputStream()).thenReturn(failingInputStream);
+        mHttpsServiceConnection.openInputStream();
+        mHttpsServiceConnection.release();
+        verify(mHttpsURLConnection, times(2)).disconnect();
+
+        // The response was never opened.
+        mHttpsServiceConnection.release();
+        verify(mHttpsURLConnection, times(3)).disconnect();
+    }
+
     /**
      * Verify if the response code returned is same with response code from
      * {@link HttpsURLConnection#getResponseCode()}.
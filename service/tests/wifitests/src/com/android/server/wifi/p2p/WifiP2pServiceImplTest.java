@@ -25,6 +25,7 @@ import static com.android.server.wifi.WifiSettingsConfigStore.WIFI_P2P_PENDING_F
 import static com.android.server.wifi.WifiSettingsConfigStore.WIFI_VERBOSE_LOGGING_ENABLED;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
@@ -73,6 +74,7 @@ import android.net.wifi.WpsInfo;
 import android.net.wifi.p2p.WifiP2pConfig;
 import android.net.wifi.p2p.WifiP2pDevice;
 import android.net.wifi.p2p.WifiP2pDeviceList;
+import android.net.wifi.p2p.WifiP2pDeviceListDelta;
 import android.net.wifi.p2p.WifiP2pGroup;
 import android.net.wifi.p2p.WifiP2pGroupList;
 import android.net.wifi.p2p.WifiP2pInfo;
@@ -87,6 +89,8 @@ import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.Message;
 import android.os.Messenger;
+import android.os.Parcel;
+import android.os.Parcelable;
 import android.os.UserHandle;
 import android.os.UserManager;
 import android.os.WorkSource;
@@ -1606,6 +1610,157 @@ public class WifiP2pServiceImplTest extends WifiBaseTest {
         assertNotEquals(null, peers.get(mTestWifiP2pDevice.deviceAddress));
     }
 
+    private WifiP2pDevice createTestPeer(int index) {
+        WifiP2pDevice device = new WifiP2pDevice();
+        device.deviceName = "TestPeer" + index;
+        device.deviceAddress = String.format("02:00:00:00:%02x:%02x", index / 256, index % 256);
+        return device;
+    }
+
+    private void sendDeviceLostEventMsg(WifiP2pDevice device) throws Exception {
+        Message msg = Message.obtain();
+        msg.what = WifiP2pMonitor.P2P_DEVICE_LOST_EVENT;
+        msg.obj = device;
+        mP2pStateMachineMessenger.send(Message.obtain(msg));
+        mLooper.dispatchAll();
+    }
+
+    private void sendRequestPeersDeltaMsg(Messenger replyMessenger, long sinceGeneration)
+            throws Exception {
+        Bundle extras = new Bundle();
+        extras.putLong(WifiP2pManager.EXTRA_PEERS_SINCE_GENERATION, sinceGeneration);
+        Message msg = Message.obtain();
+        msg.what = WifiP2pManager.REQUEST_PEERS_DELTA;
+        msg.obj = extras;
+        msg.replyTo = replyMessenger;
+        mP2pStateMachineMessenger.send(Message.obtain(msg));
+        mLooper.dispatchAll();
+    }
+
+    private WifiP2pDeviceListDelta requestPeersDelta(long sinceGeneration) throws Exception {
+        reset(mClientHandler);
+        sendRequestPeersDeltaMsg(mClientMessenger, sinceGeneration);
+        verify(mClientHandler).sendMessage(mMessageCaptor.capture());
+        assertEquals(WifiP2pManager.RESPONSE_PEERS_DELTA, mMessageCaptor.getValue().what);
+        return (WifiP2pDeviceListDelta) mMessageCaptor.getValue().obj;
+    }
+
+    private List<Intent> getPeersChangedBroadcasts() {
+        ArgumentCaptor<Intent> intentCaptor = ArgumentCaptor.forClass(Intent.class);
+        verify(mContext, atLeastOnce()).sendBroadcastWithMultiplePermissions(
+                intentCaptor.capture(), any());
+        List<Intent> broadcasts = new ArrayList<>();
+        for (Intent intent : intentCaptor.getAllValues()) {
+            if (WifiP2pManager.WIFI_P2P_PEERS_CHANGED_ACTION.equals(intent.getAction())) {
+                broadcasts.add(intent);
+            }
+        }
+        return broadcasts;
+    }
+
+    private static int getParcelSize(Parcelable parcelable) {
+        Parcel parcel = Parcel.obtain();
+        parcelable.writeToParcel(parcel, 0);
+        int size = parcel.dataSize();
+        parcel.recycle();
+        return size;
+    }
+
+    /**
+     * Verify that the peers changed broadcasts are coalesced when many peers are found at once,
+     * and that a delta of the peer list is much smaller than the full peer list.
+     */
+    @Test
+    public void testPeersChangedBroadcastCoalescedDuringDiscovery() throws Exception {
+        final int numPeers = 200;
+        forceP2pEnabled(mClient1);
+        for (int i = 0; i < numPeers; i++) {
+            sendDeviceFoundEventMsg(createTestPeer(i));
+        }
+        // Only the first peer is broadcast right away, the rest is deferred.
+        List<Intent> broadcasts = getPeersChangedBroadcasts();
+        assertEquals(1, broadcasts.size());
+
+        mLooper.moveTimeForward(WifiP2pServiceImpl.PEERS_CHANGED_BROADCAST_MIN_INTERVAL_MS);
+        mLooper.dispatchAll();
+        broadcasts = getPeersChangedBroadcasts();
+        assertEquals(2, broadcasts.size());
+        WifiP2pDeviceList peers = broadcasts.get(1).getParcelableExtra(
+                WifiP2pManager.EXTRA_P2P_DEVICE_LIST);
+        assertEquals(numPeers, peers.getDeviceList().size());
+
+        // Nothing left to broadcast at the end of the next window.
+        mLooper.moveTimeForward(WifiP2pServiceImpl.PEERS_CHANGED_BROADCAST_MIN_INTERVAL_MS);
+        mLooper.dispatchAll();
+        assertEquals(2, getPeersChangedBroadcasts().size());
+
+        WifiP2pDeviceListDelta snapshot = requestPeersDelta(-1);
+        assertTrue(snapshot.isFullSnapshot());
+        assertEquals(numPeers, snapshot.getUpdatedDevices().size());
+
+        WifiP2pDevice updatedPeer = createTestPeer(0);
+        updatedPeer.deviceName = "UpdatedName";
+        sendDeviceFoundEventMsg(updatedPeer);
+        WifiP2pDeviceListDelta delta = requestPeersDelta(snapshot.getGeneration());
+        assertEquals(1, delta.getUpdatedDevices().size());
+        assertTrue(getParcelSize(delta) * 10 < getParcelSize(peers));
+    }
+
+    /**
+     * Verify that the peer list delta contains the peers found, updated and lost since the
+     * requested generation.
+     */
+    @Test
+    public void testRequestPeersDelta() throws Exception {
+        forceP2pEnabled(mClient1);
+        WifiP2pDevice peer0 = createTestPeer(0);
+        WifiP2pDevice peer1 = createTestPeer(1);
+        sendDeviceFoundEventMsg(peer0);
+        WifiP2pDeviceListDelta delta = requestPeersDelta(-1);
+        assertTrue(delta.isFullSnapshot());
+        assertEquals(1, delta.getUpdatedDevices().size());
+        long generation = delta.getGeneration();
+
+        // Same details as already reported: no change.
+        sendDeviceFoundEventMsg(createTestPeer(0));
+        delta = requestPeersDelta(generation);
+        assertFalse(delta.isFullSnapshot());
+        assertEquals(generation, delta.getGeneration());
+        assertTrue(delta.getUpdatedDevices().isEmpty());
+        assertTrue(delta.getRemovedDeviceAddresses().isEmpty());
+
+        sendDeviceFoundEventMsg(peer1);
+        sendDeviceLostEventMsg(peer0);
+        delta = requestPeersDelta(generation);
+        assertFalse(delta.isFullSnapshot());
+        assertEquals(1, delta.getUpdatedDevices().size());
+        assertEquals(peer1.deviceAddress, delta.getUpdatedDevices().get(0).deviceAddress);
+        assertEquals(Arrays.asList(peer0.deviceAddress), delta.getRemovedDeviceAddresses());
+
+        // Generations older than the kept history get a full snapshot.
+        for (int i = 2; i < WifiP2pServiceImpl.MAX_PEERS_DELTA_HISTORY + 3; i++) {
+            sendDeviceFoundEventMsg(createTestPeer(i));
+            requestPeersDelta(generation);
+        }
+        delta = requestPeersDelta(generation);
+        assertTrue(delta.isFullSnapshot());
+        assertTrue(delta.getRemovedDeviceAddresses().isEmpty());
+    }
+
+    /**
+     * Verify that an empty peer list delta is returned to a caller without the NETWORK_SETTINGS
+     * permission.
+     */
+    @Test
+    public void testRequestPeersDeltaWithoutPermission() throws Exception {
+        when(mWifiPermissionsUtil.checkNetworkSettingsPermission(anyInt())).thenReturn(false);
+        forceP2pEnabled(mClient1);
+        mockPeersList();
+        WifiP2pDeviceListDelta delta = requestPeersDelta(-1);
+        assertTrue(delta.getUpdatedDevices().isEmpty());
+        assertEquals(-1, delta.getGeneration());
+    }
+
     /**
      * Verify WifiP2pManager.RESPONSE_GROUP_INFO is returned with null object when a caller
      * uses abnormal way to send WifiP2pManager.REQUEST_GROUP_INFO (i.e no channel info updated).
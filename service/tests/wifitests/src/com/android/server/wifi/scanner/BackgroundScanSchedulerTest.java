@@ -666,6 +666,192 @@ public class BackgroundScanSchedulerTest extends WifiBaseTest {
         return collection.getAllChannels();
     }
 
+    /**
+     * Verify that a request fully covered by an existing bucket with a shorter period is added
+     * to that bucket without rebuilding the schedule.
+     */
+    @Test
+    public void addRequestCoveredByExistingBucketUpdatesIncrementally() {
+        Collection<ScanSettings> requests = new ArrayList<>();
+        requests.add(createRequest(WifiScanner.WIFI_BAND_BOTH, 30000, 0, 20,
+                WifiScanner.REPORT_EVENT_FULL_SCAN_RESULT));
+        mScheduler.updateSchedule(requests);
+        assertEquals(1, mScheduler.getFullUpdateCount());
+
+        ScanSettings addedRequest = createRequest(channelsToSpec(2400, 5150), 120000, 0, 20,
+                WifiScanner.REPORT_EVENT_AFTER_EACH_SCAN);
+        requests.add(addedRequest);
+        mScheduler.updateScheduleForAddedRequest(addedRequest, requests);
+
+        assertEquals(1, mScheduler.getFullUpdateCount());
+        assertEquals(1, mScheduler.getIncrementalUpdateCount());
+        WifiNative.ScanSettings schedule = mScheduler.getSchedule();
+        assertBuckets(schedule, 1);
+        assertEquals(WifiScanner.REPORT_EVENT_FULL_SCAN_RESULT
+                | WifiScanner.REPORT_EVENT_AFTER_EACH_SCAN, schedule.buckets[0].report_events);
+        assertEquals(0, mScheduler.getScheduledBucket(addedRequest));
+    }
+
+    /**
+     * Verify that a request which is not covered by an existing bucket results in a full
+     * rebuild of the schedule.
+     */
+    @Test
+    public void addRequestNotCoveredByExistingBucketRebuildsSchedule() {
+        Collection<ScanSettings> requests = new ArrayList<>();
+        requests.add(createRequest(WifiScanner.WIFI_BAND_24_GHZ, 30000, 0, 20,
+                WifiScanner.REPORT_EVENT_FULL_SCAN_RESULT));
+        mScheduler.updateSchedule(requests);
+
+        ScanSettings addedRequest = createRequest(WifiScanner.WIFI_BAND_5_GHZ, 30000, 0, 20,
+                WifiScanner.REPORT_EVENT_FULL_SCAN_RESULT);
+        requests.add(addedRequest);
+        mScheduler.updateScheduleForAddedRequest(addedRequest, requests);
+
+        assertEquals(2, mScheduler.getFullUpdateCount());
+        assertEquals(0, mScheduler.getIncrementalUpdateCount());
+        for (ScanSettings request : requests) {
+            assertSettingsSatisfied(mScheduler.getSchedule(), request, false, true);
+        }
+    }
+
+    /**
+     * Verify that removing a request whose channels are still scanned for other requests in the
+     * same bucket does not rebuild the schedule, while removing the request providing the
+     * channels does.
+     */
+    @Test
+    public void removeRequestUpdatesIncrementallyOnlyIfChannelsUnchanged() {
+        ArrayList<ScanSettings> requests = new ArrayList<>();
+        ScanSettings bandRequest = createRequest(WifiScanner.WIFI_BAND_BOTH, 30000, 0, 20,
+                WifiScanner.REPORT_EVENT_FULL_SCAN_RESULT);
+        ScanSettings channelRequest = createRequest(channelsToSpec(2400), 30000, 0, 20,
+                WifiScanner.REPORT_EVENT_AFTER_EACH_SCAN);
+        requests.add(bandRequest);
+        requests.add(channelRequest);
+        mScheduler.updateSchedule(requests);
+
+        requests.remove(channelRequest);
+        mScheduler.updateScheduleForRemovedRequest(channelRequest, requests);
+        assertEquals(1, mScheduler.getFullUpdateCount());
+        assertEquals(1, mScheduler.getIncrementalUpdateCount());
+        assertEquals(WifiScanner.REPORT_EVENT_FULL_SCAN_RESULT,
+                mScheduler.getSchedule().buckets[0].report_events);
+
+        requests.remove(bandRequest);
+        mScheduler.updateScheduleForRemovedRequest(bandRequest, requests);
+        assertEquals(2, mScheduler.getFullUpdateCount());
+        assertBuckets(mScheduler.getSchedule(), 0);
+    }
+
+    /**
+     * Verify that removing the request that needed the period of a bucket rebuilds the schedule,
+     * so that the requests merged into that bucket go back to scanning at their own period.
+     */
+    @Test
+    public void removeFastRequestRestoresPeriodOfMergedRequests() {
+        ArrayList<ScanSettings> requests = new ArrayList<>();
+        ScanSettings fastRequest = createRequest(WifiScanner.WIFI_BAND_BOTH, 10000, 0, 20,
+                WifiScanner.REPORT_EVENT_FULL_SCAN_RESULT);
+        ScanSettings slowRequest = createRequest(channelsToSpec(2400), 40000, 0, 20,
+                WifiScanner.REPORT_EVENT_AFTER_EACH_SCAN);
+        requests.add(fastRequest);
+        requests.add(slowRequest);
+        mScheduler.updateSchedule(requests);
+        assertBuckets(mScheduler.getSchedule(), 1);
+        assertEquals(10000, mScheduler.getSchedule().buckets[0].period_ms);
+
+        requests.remove(fastRequest);
+        mScheduler.updateScheduleForRemovedRequest(fastRequest, requests);
+
+        assertEquals(2, mScheduler.getFullUpdateCount());
+        assertEquals(0, mScheduler.getIncrementalUpdateCount());
+        assertBuckets(mScheduler.getSchedule(), 1);
+        assertEquals(30000, mScheduler.getSchedule().buckets[0].period_ms);
+        assertSettingsSatisfied(mScheduler.getSchedule(), slowRequest, false, true);
+    }
+
+    /**
+     * Verify that no incremental update is done if the last full build had to compact buckets to
+     * fit the max number of buckets.
+     */
+    @Test
+    public void noIncrementalUpdateWhenBucketsCompacted() {
+        mScheduler.setMaxBuckets(1);
+        ArrayList<ScanSettings> requests = new ArrayList<>();
+        requests.add(createRequest(WifiScanner.WIFI_BAND_BOTH, 30000, 0, 20,
+                WifiScanner.REPORT_EVENT_FULL_SCAN_RESULT));
+        requests.add(createRequest(WifiScanner.WIFI_BAND_BOTH, 120000, 0, 20,
+                WifiScanner.REPORT_EVENT_FULL_SCAN_RESULT));
+        mScheduler.updateSchedule(requests);
+
+        ScanSettings addedRequest = createRequest(channelsToSpec(2400), 30000, 0, 20,
+                WifiScanner.REPORT_EVENT_FULL_SCAN_RESULT);
+        requests.add(addedRequest);
+        mScheduler.updateScheduleForAddedRequest(addedRequest, requests);
+
+        assertEquals(2, mScheduler.getFullUpdateCount());
+        assertEquals(0, mScheduler.getIncrementalUpdateCount());
+    }
+
+    /**
+     * Verify that no incremental update is done after the available channels changed.
+     */
+    @Test
+    public void noIncrementalUpdateWhenChannelsChanged() {
+        ArrayList<ScanSettings> requests = new ArrayList<>();
+        requests.add(createRequest(WifiScanner.WIFI_BAND_BOTH, 30000, 0, 20,
+                WifiScanner.REPORT_EVENT_FULL_SCAN_RESULT));
+        mScheduler.updateSchedule(requests);
+
+        mChannelHelper.setBandChannels(new int[]{2400}, new int[]{5150}, new int[0], new int[0],
+                new int[0]);
+        ScanSettings addedRequest = createRequest(channelsToSpec(2400), 30000, 0, 20,
+                WifiScanner.REPORT_EVENT_FULL_SCAN_RESULT);
+        requests.add(addedRequest);
+        mScheduler.updateScheduleForAddedRequest(addedRequest, requests);
+
+        assertEquals(2, mScheduler.getFullUpdateCount());
+        assertEquals(0, mScheduler.getIncrementalUpdateCount());
+    }
+
+    /**
+     * Add and remove a large number of background scan clients one at a time, as
+     * WifiScanningService does, and verify that the schedule stays valid while almost all of the
+     * updates are done in place.
+     */
+    @Test
+    public void manyConcurrentClientsUpdatedIncrementally() {
+        final int numClients = 200;
+        final int[] periods = {10000, 30000, 60000, 120000};
+        ArrayList<ScanSettings> requests = new ArrayList<>();
+        ScanSettings bandRequest = createRequest(WifiScanner.WIFI_BAND_BOTH_WITH_DFS, 10000, 0,
+                20, WifiScanner.REPORT_EVENT_FULL_SCAN_RESULT);
+        requests.add(bandRequest);
+        mScheduler.updateSchedule(requests);
+
+        for (int i = 0; i < numClients; i++) {
+            ScanSettings request = createRequest(channelsToSpec(2400, 5150 + 25 * (i % 2)),
+                    periods[i % periods.length], 0, 20,
+                    WifiScanner.REPORT_EVENT_AFTER_EACH_SCAN);
+            requests.add(request);
+            mScheduler.updateScheduleForAddedRequest(request, requests);
+        }
+        WifiNative.ScanSettings schedule = mScheduler.getSchedule();
+        assertBuckets(schedule, 1);
+        for (ScanSettings request : requests) {
+            assertSettingsSatisfied(schedule, request, false, false);
+        }
+
+        while (requests.size() > 1) {
+            ScanSettings request = requests.remove(requests.size() - 1);
+            mScheduler.updateScheduleForRemovedRequest(request, requests);
+        }
+        assertEquals(1, mScheduler.getFullUpdateCount());
+        assertEquals(2 * numClients, mScheduler.getIncrementalUpdateCount());
+        assertSettingsSatisfied(mScheduler.getSchedule(), bandRequest, false, true);
+    }
+
     public void scheduleAndTestExactRequest(ScanSettings settings) {
         Collection<ScanSettings> requests = new ArrayList<>();
         requests.add(settings);
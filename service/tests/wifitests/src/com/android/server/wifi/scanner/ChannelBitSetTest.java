@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi.scanner;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.server.wifi.WifiBaseTest;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Unit tests for {@link com.android.server.wifi.scanner.ChannelBitSet}.
+ */
+@SmallTest
+public class ChannelBitSetTest extends WifiBaseTest {
+
+    private static ChannelBitSet createSet(int... frequencies) {
+        ChannelBitSet set = new ChannelBitSet();
+        for (int frequency : frequencies) {
+            set.add(frequency);
+        }
+        return set;
+    }
+
+    /**
+     * Verify that frequencies in every band map to a slot and back.
+     */
+    @Test
+    public void slotRoundTrip() {
+        int[] frequencies = {2400, 2412, 2484, 2500, 4900, 5180, 5885, 5900, 5925, 5935, 5955,
+                7115, 7125, 58320, 60480, 69120};
+        int previousSlot = -1;
+        for (int frequency : frequencies) {
+            int slot = ChannelBitSet.frequencyToSlot(frequency);
+            assertTrue("slot for " + frequency, slot > previousSlot);
+            assertEquals(frequency, ChannelBitSet.slotToFrequency(slot));
+            previousSlot = slot;
+        }
+        assertEquals(-1, ChannelBitSet.frequencyToSlot(0));
+        assertEquals(-1, ChannelBitSet.frequencyToSlot(5181));
+        assertEquals(-1, ChannelBitSet.frequencyToSlot(59000));
+    }
+
+    /**
+     * Verify add, contains and size, including frequencies that don't map to a slot.
+     */
+    @Test
+    public void addAndContains() {
+        ChannelBitSet set = createSet(2412, 5180, 5955, 60480, 0, 5181);
+        assertEquals(6, set.size());
+        assertTrue(set.contains(2412));
+        assertTrue(set.contains(5180));
+        assertTrue(set.contains(5955));
+        assertTrue(set.contains(60480));
+        assertTrue(set.contains(0));
+        assertTrue(set.contains(5181));
+        assertFalse(set.contains(2417));
+        assertFalse(set.contains(5185));
+        assertArrayEquals(new int[]{0, 2412, 5180, 5181, 5955, 60480}, set.toArray());
+
+        set.clear();
+        assertTrue(set.isEmpty());
+        assertEquals(0, set.size());
+        assertFalse(set.contains(0));
+    }
+
+    /**
+     * Verify union and intersection.
+     */
+    @Test
+    public void unionAndIntersection() {
+        ChannelBitSet set1 = createSet(2412, 5180, 0);
+        ChannelBitSet set2 = createSet(5180, 5955, 0);
+
+        ChannelBitSet union = createSet();
+        union.addAll(set1);
+        union.addAll(set2);
+        assertEquals(createSet(0, 2412, 5180, 5955), union);
+
+        ChannelBitSet intersection = createSet();
+        intersection.addAll(set1);
+        intersection.retainAll(set2);
+        assertEquals(createSet(0, 5180), intersection);
+    }
+
+    /**
+     * Verify containment and overlap checks.
+     */
+    @Test
+    public void containsAllAndIntersects() {
+        ChannelBitSet set = createSet(2412, 2437, 5180, 5955);
+        assertTrue(set.containsAll(createSet(2412, 5955)));
+        assertTrue(set.containsAll(createSet()));
+        assertFalse(set.containsAll(createSet(2412, 5200)));
+        assertFalse(set.containsAll(createSet(2412, 0)));
+        assertTrue(set.intersects(createSet(5200, 5180)));
+        assertFalse(set.intersects(createSet(5200, 2462)));
+        assertFalse(set.intersects(createSet()));
+    }
+
+    /**
+     * Verify that the Set view iterates the frequencies in increasing order, followed by the
+     * frequencies which don't map to a slot, and reflects later changes.
+     */
+    @Test
+    public void asSet() {
+        ChannelBitSet set = createSet(5955, 2412, 60480);
+        Set<Integer> view = set.asSet();
+        assertEquals(new HashSet<>(Arrays.asList(2412, 5955, 60480)), view);
+        assertTrue(view.contains(5955));
+        assertFalse(view.contains(5180));
+
+        set.add(5180);
+        set.add(5181);
+        assertEquals(5, view.size());
+        assertEquals(Arrays.asList(2412, 5180, 5955, 60480, 5181), new ArrayList<>(view));
+
+        set.clear();
+        assertTrue(view.isEmpty());
+        assertFalse(view.iterator().hasNext());
+    }
+}
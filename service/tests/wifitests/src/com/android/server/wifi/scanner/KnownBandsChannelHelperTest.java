@@ -42,6 +42,7 @@ import org.junit.runner.RunWith;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Set;
 
 /**
  * Unit tests for {@link com.android.server.wifi.scanner.KnownBandsChannelHelper}.
@@ -579,4 +580,24 @@ public class KnownBandsChannelHelperTest {
             assertTrue(mChannelCollection.isAllChannels());
         }
     }
+
+        /**
+         * Verify that the channel set reflects the channels added after it was retrieved, and is
+         * empty once the collection covers whole bands only.
+         */
+        @Test
+        public void getChannelSet() {
+            mChannelCollection.addChannel(2412);
+            Set<Integer> channelSet = mChannelCollection.getChannelSet();
+            assertEquals(new HashSet<Integer>(Arrays.asList(2412)), channelSet);
+
+            mChannelCollection.addChannel(5945);
+            assertEquals(new HashSet<Integer>(Arrays.asList(2412, 5945)), channelSet);
+
+            mChannelCollection.addChannel(2450);
+            mChannelCollection.addBand(WifiScanner.WIFI_BAND_24_GHZ);
+            mChannelCollection.addBand(WifiScanner.WIFI_BAND_6_GHZ);
+            assertTrue(mChannelCollection.getChannelSet().isEmpty());
+        }
+    }
 }
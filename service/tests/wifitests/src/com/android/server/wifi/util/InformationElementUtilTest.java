@@ -303,6 +303,9 @@ public class InformationElementUtilTest extends WifiBaseTest {
         String result = capabilities.generateCapabilitiesString();
 
         assertEquals(capsStr, result);
+        // The security flags must match what is parsed from the capabilities string.
+        assertEquals(ScanResultUtil.parseSecurityFlags(capsStr),
+                capabilities.generateSecurityFlags());
     }
 
     private void verifyCapabilityStringFromIe(
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.util.ArrayMap;
+import android.util.Log;
+
+import androidx.test.filters.LargeTest;
+
+import com.android.server.wifi.WifiBaseTest;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Benchmark of {@link com.android.server.wifi.util.LongHashMap} against the maps keyed by BSSID
+ * strings. The results are written to logcat under the "LongHashMapBenchmarkTest" tag. This is
+ * not a unit test, so it is excluded from the small test runs.
+ */
+@LargeTest
+public class LongHashMapBenchmarkTest extends WifiBaseTest {
+    private static final String TAG = "LongHashMapBenchmarkTest";
+
+    /**
+     * Compares the throughput of BSSID lookups by string in HashMap and ArrayMap with lookups of
+     * the packed BSSID in LongHashMap, and the table size per entry of the maps.
+     */
+    @Test
+    public void benchmarkBssidLookup() {
+        final int numBssids = 512;
+        final int numRounds = 200;
+        String[] bssids = new String[numBssids];
+        Map<String, Integer> hashMap = new HashMap<>();
+        Map<String, Integer> arrayMap = new ArrayMap<>();
+        LongHashMap<Integer> longHashMap = new LongHashMap<>();
+        for (int i = 0; i < numBssids; i++) {
+            // Consecutive BSSIDs from a few vendors, as seen in enterprise deployments.
+            bssids[i] = String.format("%02x:08:5c:67:%02x:%02x", i % 4, i / 256, i % 256);
+            hashMap.put(bssids[i], i);
+            arrayMap.put(bssids[i], i);
+            longHashMap.put(NativeUtil.macAddressStringToLong(bssids[i]), i);
+        }
+        // Look up copies of the strings, since the BSSIDs come from different ScanResults.
+        String[] queries = new String[numBssids];
+        for (int i = 0; i < numBssids; i++) {
+            queries[i] = new String(bssids[(i * 7) % numBssids]);
+        }
+
+        long hashMapNs = 0;
+        long arrayMapNs = 0;
+        long longHashMapNs = 0;
+        for (int round = 0; round < numRounds; round++) {
+            int hashMapSum = 0;
+            long start = System.nanoTime();
+            for (String query : queries) {
+                hashMapSum += hashMap.get(query);
+            }
+            hashMapNs += System.nanoTime() - start;
+
+            int arrayMapSum = 0;
+            start = System.nanoTime();
+            for (String query : queries) {
+                arrayMapSum += arrayMap.get(query);
+            }
+            arrayMapNs += System.nanoTime() - start;
+
+            int longHashMapSum = 0;
+            start = System.nanoTime();
+            for (String query : queries) {
+                longHashMapSum += longHashMap.get(NativeUtil.macAddressStringToLong(query));
+            }
+            longHashMapNs += System.nanoTime() - start;
+
+            assertEquals(hashMapSum, arrayMapSum);
+            assertEquals(hashMapSum, longHashMapSum);
+        }
+        int numLookups = numBssids * numRounds;
+        // Only the tables are accounted for, assuming 4 byte references. HashMap and ArrayMap
+        // additionally retain the BSSID string of each entry.
+        int longHashMapBytes = longHashMap.capacity() * (Long.BYTES + 4) / numBssids;
+        Log.i(TAG, numLookups + " BSSID lookups: HashMap " + hashMapNs / numLookups
+                + "ns, ArrayMap " + arrayMapNs / numLookups + "ns, LongHashMap "
+                + longHashMapNs / numLookups + "ns per lookup. LongHashMap " + longHashMapBytes
+                + " bytes per entry, versus about 36 bytes for HashMap and 12 bytes for ArrayMap,"
+                + " plus a 56 byte BSSID string");
+        assertTrue(longHashMapBytes <= 32);
+    }
+}
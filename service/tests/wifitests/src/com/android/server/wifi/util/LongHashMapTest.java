@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.server.wifi.WifiBaseTest;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Unit tests for {@link com.android.server.wifi.util.LongHashMap}.
+ */
+@SmallTest
+public class LongHashMapTest extends WifiBaseTest {
+    private static final long TEST_BSSID_1 = 0x0a085c678900L;
+    private static final long TEST_BSSID_2 = 0x0a085c678901L;
+
+    private LongHashMap<String> mMap;
+
+    @Before
+    public void setUp() throws Exception {
+        mMap = new LongHashMap<>();
+    }
+
+    /**
+     * Verify that values are mapped to their keys, and replaced by later puts.
+     */
+    @Test
+    public void putAndGet() {
+        assertTrue(mMap.isEmpty());
+        assertNull(mMap.put(TEST_BSSID_1, "a"));
+        assertNull(mMap.put(0L, "zero"));
+        assertEquals("a", mMap.put(TEST_BSSID_1, "b"));
+
+        assertEquals(2, mMap.size());
+        assertEquals("b", mMap.get(TEST_BSSID_1));
+        assertEquals("zero", mMap.get(0L));
+        assertNull(mMap.get(TEST_BSSID_2));
+        assertTrue(mMap.containsKey(TEST_BSSID_1));
+        assertFalse(mMap.containsKey(TEST_BSSID_2));
+    }
+
+    /**
+     * Verify that null values are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void putNullValue() {
+        mMap.put(TEST_BSSID_1, null);
+    }
+
+    /**
+     * Verify that removing entries keeps the colliding entries reachable.
+     */
+    @Test
+    public void removeKeepsOtherEntries() {
+        for (long i = 0; i < 100; i++) {
+            mMap.put(TEST_BSSID_1 + i, Long.toString(i));
+        }
+        for (long i = 0; i < 100; i += 2) {
+            assertEquals(Long.toString(i), mMap.remove(TEST_BSSID_1 + i));
+        }
+        assertNull(mMap.remove(TEST_BSSID_1));
+        assertEquals(50, mMap.size());
+        for (long i = 0; i < 100; i++) {
+            assertEquals(i % 2 == 0 ? null : Long.toString(i), mMap.get(TEST_BSSID_1 + i));
+        }
+    }
+
+    /**
+     * Verify that removeIf only removes the matching values.
+     */
+    @Test
+    public void removeIf() {
+        for (long i = 0; i < 100; i++) {
+            mMap.put(TEST_BSSID_1 + i, Long.toString(i));
+        }
+        assertTrue(mMap.removeIf(value -> Long.parseLong(value) >= 10));
+        assertFalse(mMap.removeIf(value -> Long.parseLong(value) >= 10));
+
+        assertEquals(10, mMap.size());
+        long[] keys = mMap.keys();
+        Arrays.sort(keys);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(TEST_BSSID_1 + i, keys[i]);
+        }
+        assertEquals(10, mMap.values().size());
+    }
+
+    /**
+     * Verify that clear removes all the entries and releases the grown table.
+     */
+    @Test
+    public void clear() {
+        int initialCapacity = mMap.capacity();
+        for (long i = 0; i < 100; i++) {
+            mMap.put(TEST_BSSID_1 + i, Long.toString(i));
+        }
+        mMap.clear();
+        assertEquals(0, mMap.size());
+        assertNull(mMap.get(TEST_BSSID_1));
+        assertEquals(initialCapacity, mMap.capacity());
+        assertArrayEquals(new long[0], mMap.keys());
+    }
+
+    /**
+     * Verify that the map behaves like a HashMap over a random sequence of operations.
+     */
+    @Test
+    public void randomOperationsMatchHashMap() {
+        Random random = new Random(0);
+        Map<Long, String> expected = new HashMap<>();
+        for (int i = 0; i < 10000; i++) {
+            long key = TEST_BSSID_1 + random.nextInt(256);
+            String value = Integer.toString(i);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), mMap.remove(key));
+            } else {
+                assertEquals(expected.put(key, value), mMap.put(key, value));
+            }
+            assertEquals(expected.size(), mMap.size());
+        }
+        for (Map.Entry<Long, String> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), mMap.get(entry.getKey()));
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.server.wifi.WifiBaseTest;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Unit tests for {@link com.android.server.wifi.util.LongHashSet}.
+ */
+@SmallTest
+public class LongHashSetTest extends WifiBaseTest {
+    private static final long TEST_BSSID_1 = 0x0a085c678900L;
+    private static final long TEST_BSSID_2 = 0x0a085c678901L;
+
+    private LongHashSet mSet;
+
+    @Before
+    public void setUp() throws Exception {
+        mSet = new LongHashSet();
+    }
+
+    /**
+     * Verify that added values are contained in the set, including 0.
+     */
+    @Test
+    public void addAndContains() {
+        assertTrue(mSet.isEmpty());
+        assertTrue(mSet.add(TEST_BSSID_1));
+        assertFalse(mSet.add(TEST_BSSID_1));
+        assertTrue(mSet.add(0L));
+        assertFalse(mSet.add(0L));
+
+        assertEquals(2, mSet.size());
+        assertTrue(mSet.contains(TEST_BSSID_1));
+        assertTrue(mSet.contains(0L));
+        assertFalse(mSet.contains(TEST_BSSID_2));
+        long[] values = mSet.values();
+        Arrays.sort(values);
+        assertArrayEquals(new long[]{0L, TEST_BSSID_1}, values);
+    }
+
+    /**
+     * Verify that removed values are no longer contained in the set.
+     */
+    @Test
+    public void remove() {
+        mSet.add(TEST_BSSID_1);
+        mSet.add(0L);
+        assertTrue(mSet.remove(TEST_BSSID_1));
+        assertFalse(mSet.remove(TEST_BSSID_1));
+        assertTrue(mSet.remove(0L));
+        assertFalse(mSet.remove(0L));
+        assertTrue(mSet.isEmpty());
+    }
+
+    /**
+     * Verify that clear removes all the values.
+     */
+    @Test
+    public void clear() {
+        for (long i = 0; i < 100; i++) {
+            mSet.add(TEST_BSSID_1 + i);
+        }
+        mSet.clear();
+        assertEquals(0, mSet.size());
+        assertFalse(mSet.contains(TEST_BSSID_1));
+    }
+
+    /**
+     * Verify that the set behaves like a HashSet over a random sequence of operations.
+     */
+    @Test
+    public void randomOperationsMatchHashSet() {
+        Random random = new Random(0);
+        Set<Long> expected = new HashSet<>();
+        for (int i = 0; i < 10000; i++) {
+            long value = random.nextInt(4) == 0 ? 0L : TEST_BSSID_1 + random.nextInt(256);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(value), mSet.remove(value));
+            } else {
+                assertEquals(expected.add(value), mSet.add(value));
+            }
+            assertEquals(expected.size(), mSet.size());
+        }
+        for (long value : expected) {
+            assertTrue(mSet.contains(value));
+        }
+    }
+}
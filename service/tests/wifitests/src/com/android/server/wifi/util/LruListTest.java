@@ -49,10 +49,11 @@ public class LruListTest extends WifiBaseTest {
      */
     @Test
     public void testLeastRecentEntryIsRemoved() {
-        for (int i = 0; i < TEST_MAX_SIZE + 1; i++) {
-            mLruList.add(i);
+        for (int i = 0; i < TEST_MAX_SIZE; i++) {
+            assertNull(mLruList.add(i));
         }
-        mLruList.add(2);
+        assertEquals(0, (int) mLruList.add(TEST_MAX_SIZE));
+        assertNull(mLruList.add(2));
         assertEquals(TEST_MAX_SIZE, mLruList.size());
         List<Integer> expected = Arrays.asList(new Integer[] {2, 3, 1});
         assertEquals(expected, mLruList.getEntries());
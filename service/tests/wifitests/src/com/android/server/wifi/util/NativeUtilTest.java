@@ -52,6 +52,25 @@ public class NativeUtilTest extends WifiBaseTest {
                 NativeUtil.macAddressToByteArray(null));
     }
 
+    /**
+     * Test that packing a typical colon-delimited MAC address into a long works, and that
+     * malformed MAC addresses are rejected.
+     */
+    @Test
+    public void testMacAddressStringToLong() throws Exception {
+        assertEquals(0x615243342516L, NativeUtil.macAddressStringToLong("61:52:43:34:25:16"));
+        assertEquals(0xaabbccddeeffL, NativeUtil.macAddressStringToLong("AA:bb:CC:dd:EE:ff"));
+        assertEquals(0L, NativeUtil.macAddressStringToLong("00:00:00:00:00:00"));
+        assertEquals(NativeUtil.INVALID_MAC_LONG, NativeUtil.macAddressStringToLong(null));
+        assertEquals(NativeUtil.INVALID_MAC_LONG, NativeUtil.macAddressStringToLong("any"));
+        assertEquals(NativeUtil.INVALID_MAC_LONG,
+                NativeUtil.macAddressStringToLong("61:52:43:34:25:1g"));
+        assertEquals(NativeUtil.INVALID_MAC_LONG,
+                NativeUtil.macAddressStringToLong("61-52-43-34-25-16"));
+        assertEquals(NativeUtil.INVALID_MAC_LONG,
+                NativeUtil.macAddressStringToLong("61:52:43:34:25:16:07"));
+    }
+
     /**
      * Test that conversion of byte array of mac address to typical colon-delimited MAC address
      * works.
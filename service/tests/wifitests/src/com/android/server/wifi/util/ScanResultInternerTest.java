@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.net.MacAddress;
+import android.net.wifi.WifiSsid;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.server.wifi.WifiBaseTest;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Unit tests for {@link com.android.server.wifi.util.ScanResultInterner}.
+ */
+@SmallTest
+public class ScanResultInternerTest extends WifiBaseTest {
+    private static final String TEST_BSSID = "aa:bb:cc:dd:ee:ff";
+    private static final String TEST_SSID = "TestSsid";
+    private static final String TEST_CAPABILITIES = "[WPA2-PSK-CCMP][ESS]";
+
+    private ScanResultInterner mInterner;
+
+    @Before
+    public void setUp() throws Exception {
+        mInterner = new ScanResultInterner();
+    }
+
+    /**
+     * Verify that the same BSSID string is returned for equal MAC addresses.
+     */
+    @Test
+    public void internBssid() {
+        String bssid = mInterner.internBssid(MacAddress.fromString(TEST_BSSID));
+        assertEquals(TEST_BSSID, bssid);
+        assertSame(bssid, mInterner.internBssid(MacAddress.fromString(TEST_BSSID)));
+        assertEquals("aa:bb:cc:dd:ee:00",
+                mInterner.internBssid(MacAddress.fromString("aa:bb:cc:dd:ee:00")));
+    }
+
+    /**
+     * Verify that the same WifiSsid is returned for equal SSID bytes.
+     */
+    @Test
+    public void internWifiSsid() {
+        WifiSsid wifiSsid = mInterner.internWifiSsid(TEST_SSID.getBytes(StandardCharsets.UTF_8));
+        assertEquals(WifiSsid.createFromAsciiEncoded(TEST_SSID), wifiSsid);
+        assertSame(wifiSsid,
+                mInterner.internWifiSsid(TEST_SSID.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(WifiSsid.createFromByteArray(null), mInterner.internWifiSsid(null));
+    }
+
+    /**
+     * Verify that the first copy of a string is returned for equal strings.
+     */
+    @Test
+    public void internString() {
+        String capabilities = new String(TEST_CAPABILITIES);
+        assertSame(capabilities, mInterner.intern(capabilities));
+        assertSame(capabilities, mInterner.intern(new String(TEST_CAPABILITIES)));
+        assertNull(mInterner.intern(null));
+    }
+
+    /**
+     * Verify that the least recently used values are evicted once a pool is full.
+     */
+    @Test
+    public void evictLeastRecentlyUsedValues() {
+        String first = mInterner.intern(new String("0"));
+        for (int i = 1; i < ScanResultInterner.MAX_STRINGS; i++) {
+            mInterner.intern(Integer.toString(i));
+        }
+        // Use the first value, so that the second one is evicted instead.
+        assertSame(first, mInterner.intern(new String("0")));
+        mInterner.intern("new");
+
+        assertSame(first, mInterner.intern(new String("0")));
+        String second = new String("1");
+        assertSame(second, mInterner.intern(second));
+
+        mInterner.clear();
+        String afterClear = new String("0");
+        assertNotSame(first, mInterner.intern(afterClear));
+    }
+
+    /**
+     * Verify that the pool hits are reported in the dump.
+     */
+    @Test
+    public void dumpReportsHits() {
+        mInterner.internBssid(MacAddress.fromString(TEST_BSSID));
+        mInterner.internBssid(MacAddress.fromString(TEST_BSSID));
+        StringWriter sw = new StringWriter();
+        mInterner.dump(new PrintWriter(sw));
+        assertTrue(sw.toString().contains("hits=1 misses=1"));
+    }
+}
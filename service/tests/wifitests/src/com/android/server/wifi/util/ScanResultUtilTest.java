@@ -488,6 +488,35 @@ public class ScanResultUtilTest extends WifiBaseTest {
         return ie;
     }
 
+    /**
+     * Verify that the security checks use the security flags set on the scan result while its
+     * capabilities are unchanged, and parse the capabilities once they are replaced.
+     */
+    @Test
+    public void testSecurityChecksUseSecurityFlags() {
+        ScanResult input = new ScanResult(WifiSsid.createFromAsciiEncoded("ssid"), "ssid",
+                "ab:cd:01:ef:45:89", 1245, 0, "[ESS]", -78, 2450, 1025, 22, 33, 20, 0,
+                0, true);
+        input.setSecurityFlags(ScanResultUtil.SECURITY_FLAG_SAE
+                | ScanResultUtil.SECURITY_FLAG_PROTOCOL_RSN);
+        assertTrue(ScanResultUtil.isScanResultForSaeNetwork(input));
+        assertFalse(ScanResultUtil.isScanResultForOpenNetwork(input));
+
+        input.capabilities = "[WPA2-PSK-CCMP][RSN-PSK-CCMP][ESS]";
+        assertTrue(ScanResultUtil.isScanResultForPskNetwork(input));
+        assertFalse(ScanResultUtil.isScanResultForSaeNetwork(input));
+        assertEquals(ScanResultUtil.parseSecurityFlags(input.capabilities),
+                input.getSecurityFlags());
+
+        // Copies keep the security flags.
+        ScanResult copy = new ScanResult(input);
+        assertEquals(input.getSecurityFlags(), copy.getSecurityFlags());
+
+        // Flags set for other capabilities are not returned.
+        copy.capabilities = "[ESS]";
+        assertEquals(ScanResult.INVALID_SECURITY_FLAGS, copy.getSecurityFlags());
+    }
+
     private static void validateScanDetail(ScanResult input, ScanDetail output) {
         assertNotNull("NetworkDetail was null", output.getNetworkDetail());
         assertNotNull("ScanResult was null", output.getScanResult());
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.server.wifi.WifiBaseTest;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link VersionedSnapshot}.
+ */
+@SmallTest
+public class VersionedSnapshotTest extends WifiBaseTest {
+    /**
+     * Verify that the initial value is published at version 0.
+     */
+    @Test
+    public void testInitialValue() {
+        VersionedSnapshot<String> snapshot = new VersionedSnapshot<>("initial");
+        assertEquals("initial", snapshot.getValue());
+        assertEquals(0, snapshot.getVersion());
+    }
+
+    /**
+     * Verify that each publish bumps the version and replaces the value.
+     */
+    @Test
+    public void testPublishIncrementsVersion() {
+        VersionedSnapshot<String> snapshot = new VersionedSnapshot<>("initial");
+        assertEquals(1, snapshot.publish("first"));
+        assertEquals(2, snapshot.publish("second"));
+
+        VersionedSnapshot.Snapshot<String> current = snapshot.get();
+        assertEquals(2, current.version);
+        assertEquals("second", current.value);
+    }
+
+    /**
+     * Verify that a snapshot obtained before a publish is not affected by it.
+     */
+    @Test
+    public void testOldSnapshotIsUnchanged() {
+        VersionedSnapshot<String> snapshot = new VersionedSnapshot<>("initial");
+        VersionedSnapshot.Snapshot<String> old = snapshot.get();
+        snapshot.publish("new");
+        assertEquals(0, old.version);
+        assertSame("initial", old.value);
+    }
+}